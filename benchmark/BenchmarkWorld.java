@@ -0,0 +1,207 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.Message;
+import core.MessageListener;
+import core.MetricsRegistry;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+import movement.MovementModel;
+import movement.StationaryMovement;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+
+/**
+ * Sets up the static state of the simulator for the benchmarks without a
+ * scenario file and creates stationary hosts with a
+ * {@link SimpleBroadcastInterface} and a router. The hosts are created in a
+ * square world whose size is given to {@link #init(int, Map)}; the settings
+ * of the host group are in the {@value #GROUP_NS} name space and those of
+ * the interface in the {@value #IFACE_NS} name space.
+ */
+public class BenchmarkWorld {
+    /** Name space of the host group settings ({@value}) */
+    public static final String GROUP_NS = "Group";
+    /** Name space of the interface settings ({@value}) */
+    public static final String IFACE_NS = "btInterface";
+    /** Transmit range of the interfaces (meters) */
+    public static final double RANGE = 10;
+
+    private final Random rng;
+    private final List<DTNHost> hosts;
+    private final int worldSize;
+
+    /**
+     * Initializes the settings and resets the static state of the simulator.
+     * @param worldSize Width and height of the world (meters)
+     * @param settings Extra settings (full names) or null
+     * @param seed Seed of the random host locations
+     */
+    public BenchmarkWorld(int worldSize, Map<String, String> settings,
+            long seed) {
+        this.worldSize = worldSize;
+        this.rng = new Random(seed);
+        this.hosts = new ArrayList<DTNHost>();
+        init(worldSize, settings);
+    }
+
+    /**
+     * Initializes the settings and resets the static state of the simulator.
+     * @param worldSize Width and height of the world (meters)
+     * @param settings Extra settings (full names) or null
+     */
+    public static void init(int worldSize, Map<String, String> settings) {
+        Properties props = new Properties();
+        props.setProperty("Scenario.name", "benchmark");
+        props.setProperty(MovementModel.MOVEMENT_MODEL_NS + "." +
+                MovementModel.WORLD_SIZE, worldSize + "," + worldSize);
+        props.setProperty(GROUP_NS + "." + StationaryMovement.LOCATION_S,
+                "0,0");
+        props.setProperty(IFACE_NS + "." + NetworkInterface.TRANSMIT_RANGE_S,
+                String.valueOf(RANGE));
+        props.setProperty(IFACE_NS + "." + NetworkInterface.TRANSMIT_SPEED_S,
+                "250k");
+        if (settings != null) {
+            props.putAll(settings);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            props.store(bytes, null);
+        } catch (IOException e) {
+            throw new SimError(e);
+        }
+        Settings.initFromStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        DTNSim.allAvailableInterfaces = new HashSet<>();
+        SimClock.reset();
+        DTNHost.reset();
+        Message.reset();
+        MetricsRegistry.reset();
+        ConnectivityGrid.reset();
+    }
+
+    /**
+     * Creates a router prototype with the settings of the host group.
+     * @return The router
+     */
+    public static MessageRouter passiveRouter() {
+        return new PassiveRouter(new Settings(GROUP_NS));
+    }
+
+    /**
+     * Creates a host at a random location.
+     * @param routerProto Prototype of the host's router
+     * @return The host
+     */
+    public DTNHost createHost(MessageRouter routerProto) {
+        List<NetworkInterface> ifaces = new ArrayList<NetworkInterface>();
+        ifaces.add(new SimpleBroadcastInterface(new Settings(IFACE_NS)));
+        DTNHost host = new DTNHost(new ArrayList<MessageListener>(), null,
+                "n", ifaces, new ModuleCommunicationBus(),
+                new StationaryMovement(new Settings(GROUP_NS)), routerProto);
+        host.setLocation(randomCoord());
+        for (NetworkInterface ni : host.getInterfaces()) {
+            ConnectivityGrid.ConnectivityGridFactory(IFACE_NS.hashCode(),
+                    RANGE).updateLocation(ni);
+        }
+        hosts.add(host);
+        return host;
+    }
+
+    /**
+     * Creates hosts at random locations.
+     * @param n Number of hosts
+     * @param routerProto Prototype of the hosts' routers
+     * @return All the hosts created so far
+     */
+    public List<DTNHost> createHosts(int n, MessageRouter routerProto) {
+        for (int i = 0; i < n; i++) {
+            createHost(routerProto);
+        }
+        return hosts;
+    }
+
+    /**
+     * Returns the hosts created so far.
+     * @return The hosts
+     */
+    public List<DTNHost> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Returns the connectivity grid of the interfaces.
+     * @return The grid
+     */
+    public ConnectivityGrid getGrid() {
+        return ConnectivityGrid.ConnectivityGridFactory(IFACE_NS.hashCode(),
+                RANGE);
+    }
+
+    /**
+     * Returns a random location in the world.
+     * @return The location
+     */
+    public Coord randomCoord() {
+        return new Coord(rng.nextDouble() * worldSize,
+                rng.nextDouble() * worldSize);
+    }
+
+    /**
+     * Moves a host by at most the given distance along both axes, staying
+     * in the world. The interfaces of the host see the new location at
+     * their next update.
+     * @param host The host
+     * @param step Maximum distance (meters)
+     */
+    public void jitter(DTNHost host, double step) {
+        Coord c = host.getLocation();
+        double x = clamp(c.getX() + (rng.nextDouble() * 2 - 1) * step);
+        double y = clamp(c.getY() + (rng.nextDouble() * 2 - 1) * step);
+        host.setLocation(new Coord(x, y));
+    }
+
+    private double clamp(double v) {
+        return Math.max(0, Math.min(worldSize, v));
+    }
+
+    /**
+     * Returns the size of a square world where the hosts have the given
+     * number of neighbours in range on average.
+     * @param nrofHosts Number of hosts
+     * @param neighbours Average number of hosts in range of a host
+     * @return Width and height of the world (meters)
+     */
+    public static int worldSizeFor(int nrofHosts, double neighbours) {
+        double areaPerHost = Math.PI * RANGE * RANGE / neighbours;
+        return (int) Math.ceil(Math.sqrt(areaPerHost * nrofHosts));
+    }
+
+    /**
+     * Returns the random number generator of the world.
+     * @return The generator
+     */
+    public Random getRandom() {
+        return rng;
+    }
+}
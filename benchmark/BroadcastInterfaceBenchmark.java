@@ -0,0 +1,74 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.DTNHost;
+import core.NetworkInterface;
+import interfaces.SimpleBroadcastInterface;
+
+/**
+ * JMH benchmark of {@link SimpleBroadcastInterface#update()}, i.e., the
+ * connectivity phase of a world update: all hosts move a little and then
+ * all interfaces update their location in the grid, tear down the
+ * connections that went out of range and connect to the new interfaces in
+ * range. The time is per world update. Run with the JMH runner, e.g.
+ * <CODE>java -cp ...:jmh-core.jar org.openjdk.jmh.Main
+ * BroadcastInterfaceBenchmark</CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastInterfaceBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int hosts;
+
+    @Param({"10"})
+    public double neighbours;
+
+    /** how far a host moves between the updates (meters) */
+    @Param({"1"})
+    public double step;
+
+    private BenchmarkWorld world;
+    private List<DTNHost> all;
+
+    @Setup
+    public void setUp() {
+        world = new BenchmarkWorld(
+                BenchmarkWorld.worldSizeFor(hosts, neighbours), null, 1);
+        all = world.createHosts(hosts, BenchmarkWorld.passiveRouter());
+        update(); // the initial connections
+    }
+
+    @Benchmark
+    public void update() {
+        for (int i = 0, n = all.size(); i < n; i++) {
+            world.jitter(all.get(i), step);
+        }
+        for (int i = 0, n = all.size(); i < n; i++) {
+            for (NetworkInterface ni : all.get(i).getInterfaces()) {
+                ni.update();
+            }
+        }
+    }
+}
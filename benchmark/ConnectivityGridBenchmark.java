@@ -0,0 +1,72 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.DTNHost;
+import core.NetworkInterface;
+import interfaces.ConnectivityGrid;
+
+/**
+ * JMH benchmark of {@link ConnectivityGrid#getNearInterfaces(
+ * NetworkInterface)} with different numbers of hosts. The hosts are placed
+ * at random in a world whose size keeps the average number of hosts in
+ * range constant, so the time per query should not grow with the number of
+ * hosts. Run with the JMH runner, e.g.
+ * <CODE>java -cp ...:jmh-core.jar org.openjdk.jmh.Main
+ * ConnectivityGridBenchmark</CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectivityGridBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int hosts;
+
+    @Param({"10"})
+    public double neighbours;
+
+    private ConnectivityGrid grid;
+    private NetworkInterface[] interfaces;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkWorld world = new BenchmarkWorld(
+                BenchmarkWorld.worldSizeFor(hosts, neighbours), null, 1);
+        List<DTNHost> all = world.createHosts(hosts,
+                BenchmarkWorld.passiveRouter());
+        interfaces = new NetworkInterface[all.size()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = all.get(i).getInterfaces().get(0);
+        }
+        grid = world.getGrid();
+    }
+
+    @Benchmark
+    public Collection<NetworkInterface> getNearInterfaces() {
+        NetworkInterface ni = interfaces[next];
+        next = (next + 1) % interfaces.length;
+        return grid.getNearInterfaces(ni);
+    }
+}
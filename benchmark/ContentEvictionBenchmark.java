@@ -0,0 +1,103 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Content;
+import core.ContentType;
+import core.Settings;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+
+/**
+ * JMH benchmark of storing contents to a full content store, i.e., of
+ * choosing and evicting a victim for each stored content, with different
+ * cache sizes and replacement policies ({@link
+ * MessageRouter#CACHE_POLICY_S}; <CODE>NONE</CODE> is the router's own
+ * choice). Run with the JMH runner, e.g.
+ * <CODE>java -cp ...:jmh-core.jar org.openjdk.jmh.Main
+ * ContentEvictionBenchmark</CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentEvictionBenchmark {
+    private static final int CONTENT_SIZE = 1000;
+
+    /** number of contents that fit in the content store */
+    @Param({"100", "1000", "10000"})
+    public int entries;
+
+    @Param({"NONE", "LRU", "S3FIFO"})
+    public String policy;
+
+    private StoringRouter router;
+    private int nextId;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(BenchmarkWorld.GROUP_NS + "." + MessageRouter.C_SIZE_S,
+                String.valueOf((long) entries * CONTENT_SIZE));
+        if (!policy.equals("NONE")) {
+            settings.put(BenchmarkWorld.GROUP_NS + "." +
+                    MessageRouter.CACHE_POLICY_S, policy);
+        }
+        BenchmarkWorld world = new BenchmarkWorld(1000, settings, 1);
+        router = (StoringRouter) world.createHost(new StoringRouter(
+                new Settings(BenchmarkWorld.GROUP_NS))).getRouter();
+        for (nextId = 1; nextId <= entries; nextId++) {
+            router.store(newContent(nextId));
+        }
+    }
+
+    private static Content newContent(int id) {
+        return new Content(id, ContentType.Content, 0, 3600, CONTENT_SIZE);
+    }
+
+    @Benchmark
+    public void storeAndEvict() {
+        router.store(newContent(nextId++));
+    }
+
+    /**
+     * Passive router that lets the benchmark store contents directly.
+     */
+    public static class StoringRouter extends PassiveRouter {
+        public StoringRouter(Settings s) {
+            super(s);
+        }
+
+        protected StoringRouter(StoringRouter r) {
+            super(r);
+        }
+
+        public void store(Content c) {
+            storeNewContentToContentStore(c);
+        }
+
+        @Override
+        public StoringRouter replicate() {
+            return new StoringRouter(this);
+        }
+    }
+}
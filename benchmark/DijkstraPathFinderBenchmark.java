@@ -0,0 +1,97 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Coord;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+
+/**
+ * JMH benchmark of {@link DijkstraPathFinder#getShortestPath(MapNode,
+ * MapNode)} on square street grids of different sizes. The grid has 100 m
+ * blocks and some of the streets are missing, so that the paths are not
+ * all straight. The end points of the paths are drawn at random. Run with
+ * the JMH runner, e.g. <CODE>java -cp ...:jmh-core.jar
+ * org.openjdk.jmh.Main DijkstraPathFinderBenchmark</CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DijkstraPathFinderBenchmark {
+    private static final double BLOCK = 100;
+    private static final double MISSING_STREETS = 0.2;
+    private static final int NROF_PATHS = 1024;
+
+    /** number of map nodes on a side of the grid */
+    @Param({"30", "100"})
+    public int side;
+
+    private DijkstraPathFinder finder;
+    private MapNode[] from;
+    private MapNode[] to;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random rng = new Random(1);
+        MapNode[][] nodes = new MapNode[side][side];
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                nodes[i][j] = new MapNode(new Coord(j * BLOCK, i * BLOCK));
+            }
+        }
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                /* the streets along the edges keep the grid connected */
+                if (j + 1 < side && (i == 0 || i == side - 1 ||
+                        rng.nextDouble() >= MISSING_STREETS)) {
+                    connect(nodes[i][j], nodes[i][j + 1]);
+                }
+                if (i + 1 < side && (j == 0 || j == side - 1 ||
+                        rng.nextDouble() >= MISSING_STREETS)) {
+                    connect(nodes[i][j], nodes[i + 1][j]);
+                }
+            }
+        }
+
+        finder = new DijkstraPathFinder(null);
+        from = new MapNode[NROF_PATHS];
+        to = new MapNode[NROF_PATHS];
+        for (int k = 0; k < NROF_PATHS; k++) {
+            from[k] = nodes[rng.nextInt(side)][rng.nextInt(side)];
+            to[k] = nodes[rng.nextInt(side)][rng.nextInt(side)];
+        }
+    }
+
+    private static void connect(MapNode a, MapNode b) {
+        a.addNeighbor(b);
+        b.addNeighbor(a);
+    }
+
+    @Benchmark
+    public List<MapNode> getShortestPath() {
+        int k = next;
+        next = (next + 1) % NROF_PATHS;
+        return finder.getShortestPath(from[k], to[k]);
+    }
+}
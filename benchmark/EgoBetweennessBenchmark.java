@@ -0,0 +1,78 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.DTNHost;
+import routing.SimBetTS;
+import routing.util.EgoNetwork;
+import routing.util.HostSet;
+
+/**
+ * JMH benchmark of the ego betweenness computation of the social routers
+ * ({@link EgoNetwork#betweenness()}, which <CODE>betweenness_update</CODE>
+ * of {@link SimBetTS} and its relatives call after each summary exchange)
+ * with different numbers of contacts. Each contact has reported a random
+ * set of the other contacts with the given density. Run with the JMH
+ * runner, e.g. <CODE>java -cp ...:jmh-core.jar org.openjdk.jmh.Main
+ * EgoBetweennessBenchmark</CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EgoBetweennessBenchmark {
+
+    @Param({"50", "200", "1000"})
+    public int contacts;
+
+    /** share of the other contacts each contact has met */
+    @Param({"0.1"})
+    public double density;
+
+    private EgoNetwork ego;
+
+    @Setup
+    public void setUp() {
+        BenchmarkWorld world = new BenchmarkWorld(1000, null, 1);
+        List<DTNHost> hosts = world.createHosts(contacts,
+                BenchmarkWorld.passiveRouter());
+        Random rng = world.getRandom();
+        ego = new EgoNetwork();
+        for (DTNHost h : hosts) {
+            ego.addContact(h);
+        }
+        for (DTNHost h : hosts) {
+            HostSet nc = new HostSet(contacts);
+            for (DTNHost other : hosts) {
+                if (other != h && rng.nextDouble() < density) {
+                    nc.add(other);
+                }
+            }
+            ego.setContactsOf(h, nc);
+        }
+    }
+
+    @Benchmark
+    public double betweenness() {
+        return ego.betweenness();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.Message;
+import core.MessageKind;
+import routing.MessageRouter;
+
+/**
+ * JMH benchmark of matching Interests against the content store in
+ * {@link MessageRouter#messageTransferred(String, DTNHost)} with different
+ * numbers of cached contents. The Interests ask for contents drawn
+ * uniformly from twice the cached catalog, so about half of them are cache
+ * hits. Every invocation transfers a batch of new Interests to a freshly
+ * created cache so that no Interest is seen twice and the buffers and
+ * matched requests of earlier invocations don't change the measured path.
+ * Run with the JMH runner, e.g.
+ * <CODE>java -cp ...:jmh-core.jar org.openjdk.jmh.Main
+ * InterestMatchingBenchmark</CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterestMatchingBenchmark {
+    private static final int CONTENT_SIZE = 1000;
+    private static final int NROF_INTERESTS = 4096;
+
+    @Param({"100", "1000", "10000"})
+    public int catalog;
+
+    private final Random rng = new Random(1);
+    private MessageRouter cache;
+    private DTNHost requester;
+    private Message[] interests;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        BenchmarkWorld world = new BenchmarkWorld(1000, null, 1);
+        MessageRouter proto = BenchmarkWorld.passiveRouter();
+        DTNHost cacheHost = world.createHost(proto);
+        requester = world.createHost(proto);
+        cache = cacheHost.getRouter();
+
+        ArrayList<Content> contents = new ArrayList<Content>();
+        for (int i = 1; i <= catalog; i++) {
+            contents.add(new Content(i, ContentType.Content, 0, 3600,
+                    CONTENT_SIZE));
+        }
+        cacheHost.addContents(contents);
+
+        interests = new Message[NROF_INTERESTS];
+        for (int i = 0; i < interests.length; i++) {
+            int id = 1 + rng.nextInt(2 * catalog);
+            interests[i] = new Message(requester, null,
+                    Message.requestIdOf("I" + i), MessageKind.Interest,
+                    CONTENT_SIZE, new Content(id, ContentType.Interest, 0,
+                    3600, CONTENT_SIZE));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NROF_INTERESTS)
+    public int transferInterests() {
+        int transferred = 0;
+        for (Message m : interests) {
+            cache.receiveMessage(m, requester);
+            if (cache.messageTransferred(m.getId(), requester) != null) {
+                transferred++;
+            }
+        }
+        return transferred;
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import core.DTNSim;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+import ui.DTNSimTextUI;
+
+/**
+ * Runs the macro benchmark scenarios (by default the settings files in
+ * {@value #SCENARIO_DIR}) headless and records their throughput
+ * (simulated seconds per wall clock second of the simulation loop), the
+ * peak heap usage, the GC time and the bytes allocated by the simulation
+ * thread. Each run is done in a JVM of its own with the class path of the
+ * runner, so that the runs don't share heap or JIT state. With several
+ * runs per scenario, the run with the median throughput is recorded.
+ * <P>
+ * The results are written as a CSV file with a row per scenario. If a
+ * baseline (a results file of an earlier run) is given, the results are
+ * compared to it and the runner exits with status 1 if a scenario got
+ * slower or used more memory than the tolerance allows.
+ * <P>
+ * Usage: <CODE>java -cp ... benchmark.MacroBenchmark [-runs n]
+ * [-out results.csv] [-baseline baseline.csv] [-tolerance 0.1]
+ * [-jvmArgs "-Xmx4g ..."] [settings files]</CODE>. Run from the
+ * repository root.
+ */
+public class MacroBenchmark {
+    /** Directory of the default scenarios ({@value}) */
+    public static final String SCENARIO_DIR = "benchmark/scenarios";
+    /** Suffix of the scenario settings files ({@value}) */
+    public static final String SCENARIO_SUFFIX = "_settings.txt";
+    /** Default results file ({@value}) */
+    public static final String DEF_OUTPUT = "reports/benchmark/results.csv";
+    /** Default relative tolerance of the baseline comparison ({@value}) */
+    public static final double DEF_TOLERANCE = 0.1;
+    /** GC time differences below this are noise (seconds) ({@value}) */
+    public static final double GC_NOISE = 0.2;
+
+    private static final String CHILD_FLAG = "-child";
+    /** Columns of the results file */
+    public static final String[] COLUMNS = {"scenario", "sim_seconds",
+            "wall_seconds", "sim_seconds_per_second", "setup_seconds",
+            "peak_heap_mb", "gc_seconds", "allocated_mb"};
+
+    private int runs = 1;
+    private String output = DEF_OUTPUT;
+    private String baseline;
+    private double tolerance = DEF_TOLERANCE;
+    private List<String> jvmArgs = new ArrayList<String>();
+    private List<String> scenarios = new ArrayList<String>();
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+        if (args.length > 0 && args[0].equals(CHILD_FLAG)) {
+            runChild(args[1], args[2]);
+            return;
+        }
+        MacroBenchmark mb = new MacroBenchmark();
+        try {
+            mb.parseArgs(args);
+            System.exit(mb.run() ? 0 : 1);
+        } catch (SimError e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if (a.startsWith("-") && i + 1 >= args.length) {
+                throw new SimError("Missing value for " + a);
+            }
+            if (a.equals("-runs")) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (a.equals("-out")) {
+                output = args[++i];
+            } else if (a.equals("-baseline")) {
+                baseline = args[++i];
+            } else if (a.equals("-tolerance")) {
+                tolerance = Double.parseDouble(args[++i]);
+            } else if (a.equals("-jvmArgs")) {
+                jvmArgs.addAll(Arrays.asList(args[++i].trim().split("\\s+")));
+            } else if (a.startsWith("-")) {
+                throw new SimError("Usage: java " +
+                        MacroBenchmark.class.getName() + " [-runs n] " +
+                        "[-out file] [-baseline file] [-tolerance t] " +
+                        "[-jvmArgs args] [settings files]");
+            } else {
+                scenarios.add(a);
+            }
+        }
+        if (runs < 1) {
+            throw new SimError("Invalid number of runs: " + runs);
+        }
+        if (scenarios.isEmpty()) {
+            File[] files = new File(SCENARIO_DIR).listFiles();
+            if (files == null) {
+                throw new SimError("No scenarios in " + SCENARIO_DIR);
+            }
+            Arrays.sort(files);
+            for (File f : files) {
+                if (f.getName().endsWith(SCENARIO_SUFFIX)) {
+                    scenarios.add(f.getPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs all the scenarios, writes the results and compares them to the
+     * baseline.
+     * @return False if a regression was found
+     */
+    private boolean run() {
+        List<Map<String, String>> results =
+                new ArrayList<Map<String, String>>();
+        for (String scenario : scenarios) {
+            List<Map<String, String>> scenarioRuns =
+                    new ArrayList<Map<String, String>>();
+            for (int i = 1; i <= runs; i++) {
+                print("Scenario " + scenario + ", run " + i + "/" + runs);
+                scenarioRuns.add(runScenario(scenario));
+            }
+            Collections.sort(scenarioRuns,
+                    new Comparator<Map<String, String>>() {
+                public int compare(Map<String, String> a,
+                        Map<String, String> b) {
+                    return Double.compare(value(a, COLUMNS[3]),
+                            value(b, COLUMNS[3]));
+                }
+            });
+            results.add(scenarioRuns.get(scenarioRuns.size() / 2));
+        }
+        writeResults(results);
+
+        print("---");
+        for (Map<String, String> r : results) {
+            print(String.format("%-24s %10.1f sim s/s %8.1f MB heap " +
+                    "%7.2f s GC %10.1f MB alloc", r.get(COLUMNS[0]),
+                    value(r, COLUMNS[3]), value(r, COLUMNS[5]),
+                    value(r, COLUMNS[6]), value(r, COLUMNS[7])));
+        }
+        if (baseline == null) {
+            return true;
+        }
+        return compare(results, readResults(baseline));
+    }
+
+    /**
+     * Runs a scenario in a new JVM.
+     * @return The results of the run
+     */
+    private Map<String, String> runScenario(String scenario) {
+        File resultFile;
+        try {
+            resultFile = File.createTempFile("macrobenchmark", ".csv");
+            resultFile.deleteOnExit();
+            List<String> cmd = new ArrayList<String>();
+            cmd.add(System.getProperty("java.home") + File.separator +
+                    "bin" + File.separator + "java");
+            cmd.add("-cp");
+            cmd.add(System.getProperty("java.class.path"));
+            cmd.addAll(jvmArgs);
+            cmd.add(MacroBenchmark.class.getName());
+            cmd.add(CHILD_FLAG);
+            cmd.add(resultFile.getAbsolutePath());
+            cmd.add(scenario);
+            Process p = new ProcessBuilder(cmd).inheritIO().start();
+            int status = p.waitFor();
+            if (status != 0) {
+                throw new SimError("Scenario " + scenario +
+                        " failed with exit status " + status);
+            }
+        } catch (IOException e) {
+            throw new SimError("Can't run scenario " + scenario + ": " +
+                    e.getMessage(), e);
+        } catch (InterruptedException e) {
+            throw new SimError("Interrupted while running " + scenario);
+        }
+        List<Map<String, String>> r = readResults(resultFile.getPath());
+        resultFile.delete();
+        if (r.size() != 1) {
+            throw new SimError("No results from scenario " + scenario);
+        }
+        return r.get(0);
+    }
+
+    /**
+     * Runs a scenario in this JVM and writes its results to a file.
+     */
+    private static void runChild(String resultFile, String scenario) {
+        DTNSim.allAvailableInterfaces = new HashSet<>();
+        Settings.init(scenario);
+        Settings.setRunIndex(0);
+        TimedTextUI ui = new TimedTextUI();
+        long start = System.nanoTime();
+        ui.start();
+        long end = System.nanoTime();
+
+        double setup = (ui.loopStart - start) / 1e9;
+        double wall = (end - ui.loopStart) / 1e9;
+        double simSeconds = SimClock.getTime() - ui.simStart;
+
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean gc :
+                ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP &&
+                    pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        Map<String, String> r = new LinkedHashMap<String, String>();
+        r.put(COLUMNS[0], new File(scenario).getName().replace(
+                SCENARIO_SUFFIX, ""));
+        r.put(COLUMNS[1], format(simSeconds));
+        r.put(COLUMNS[2], format(wall));
+        r.put(COLUMNS[3], format(wall > 0 ? simSeconds / wall : 0));
+        r.put(COLUMNS[4], format(setup));
+        r.put(COLUMNS[5], format(peakHeap / 1048576.0));
+        r.put(COLUMNS[6], format(gcMillis / 1000.0));
+        long allocated = allocatedBytes();
+        r.put(COLUMNS[7], allocated >= 0 ? format(allocated / 1048576.0) :
+                "-1");
+        List<Map<String, String>> results =
+                new ArrayList<Map<String, String>>();
+        results.add(r);
+        writeResults(resultFile, results);
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread, or -1 if the JVM
+     * can't tell.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        try {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getCurrentThreadAllocatedBytes();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Compares the results to the baseline and prints the differences.
+     * @return False if a regression was found
+     */
+    private boolean compare(List<Map<String, String>> results,
+            List<Map<String, String>> base) {
+        Map<String, Map<String, String>> baseByName =
+                new HashMap<String, Map<String, String>>();
+        for (Map<String, String> b : base) {
+            baseByName.put(b.get(COLUMNS[0]), b);
+        }
+        boolean ok = true;
+        print("--- compared to " + baseline + " (tolerance " +
+                format(tolerance * 100) + "%)");
+        for (Map<String, String> r : results) {
+            String name = r.get(COLUMNS[0]);
+            Map<String, String> b = baseByName.get(name);
+            if (b == null) {
+                print(name + ": not in the baseline");
+                continue;
+            }
+            /* lower throughput and higher memory use/GC time are worse */
+            ok &= check(name, COLUMNS[3], r, b, -1, 0);
+            ok &= check(name, COLUMNS[5], r, b, 1, 0);
+            ok &= check(name, COLUMNS[6], r, b, 1, GC_NOISE);
+            ok &= check(name, COLUMNS[7], r, b, 1, 0);
+        }
+        return ok;
+    }
+
+    /**
+     * Compares a value to its baseline.
+     * @param worse 1 if higher values are worse, -1 if lower values are
+     * @param noise Differences up to this are not regressions
+     * @return False if the value is a regression
+     */
+    private boolean check(String name, String column, Map<String, String> r,
+            Map<String, String> b, int worse, double noise) {
+        double v = value(r, column);
+        double bv = value(b, column);
+        if (v < 0 || bv < 0) {
+            return true; // not measured
+        }
+        double change = bv != 0 ? (v - bv) / bv : 0;
+        boolean regression = worse * (v - bv) > noise &&
+                worse * change > tolerance;
+        print(String.format("%-24s %-24s %12s -> %12s %+7.1f%%%s", name,
+                column, format(bv), format(v), change * 100,
+                regression ? "  REGRESSION" : ""));
+        return !regression;
+    }
+
+    private void writeResults(List<Map<String, String>> results) {
+        File dir = new File(output).getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new SimError("Couldn't create directory " + dir);
+        }
+        writeResults(output, results);
+        print("Results written to " + output);
+    }
+
+    private static void writeResults(String file,
+            List<Map<String, String>> results) {
+        try {
+            PrintWriter out = new PrintWriter(file);
+            out.println(String.join(",", COLUMNS));
+            for (Map<String, String> r : results) {
+                StringBuilder row = new StringBuilder();
+                for (String c : COLUMNS) {
+                    if (row.length() > 0) {
+                        row.append(',');
+                    }
+                    row.append(r.get(c));
+                }
+                out.println(row);
+            }
+            out.close();
+            if (out.checkError()) {
+                throw new IOException("write failed");
+            }
+        } catch (IOException e) {
+            throw new SimError("Couldn't write " + file + ": " +
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a results file.
+     * @return The rows as maps from column names to values
+     */
+    private static List<Map<String, String>> readResults(String file) {
+        List<Map<String, String>> results =
+                new ArrayList<Map<String, String>>();
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            String line = reader.readLine();
+            String[] header = line != null ? line.split(",") : new String[0];
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                Map<String, String> r = new HashMap<String, String>();
+                for (int i = 0; i < header.length && i < values.length; i++) {
+                    r.put(header[i], values[i]);
+                }
+                results.add(r);
+            }
+            reader.close();
+        } catch (IOException e) {
+            throw new SimError("Couldn't read " + file + ": " +
+                    e.getMessage(), e);
+        }
+        return results;
+    }
+
+    private static double value(Map<String, String> r, String column) {
+        String v = r.get(column);
+        return v != null ? Double.parseDouble(v) : -1;
+    }
+
+    private static String format(double v) {
+        return String.format("%.3f", v);
+    }
+
+    private static void print(String s) {
+        System.out.println(s);
+    }
+
+    /**
+     * Text UI that records when the simulation loop starts.
+     */
+    private static class TimedTextUI extends DTNSimTextUI {
+        private long loopStart;
+        private double simStart;
+
+        @Override
+        protected void runSim() {
+            loopStart = System.nanoTime();
+            simStart = SimClock.getTime();
+            super.runSim();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.SimClock;
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * JMH benchmark of {@link MaxPropDijkstra#getCosts(Integer, Set)} with
+ * different numbers of hosts and buffered message destinations. Each host
+ * has met a random set of other hosts, which gives the meeting probability
+ * sets the search walks through. The sources of the searches rotate over
+ * the hosts. Run with the JMH runner, e.g.
+ * <CODE>java -cp ...:jmh-core.jar org.openjdk.jmh.Main
+ * MaxPropDijkstraBenchmark</CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaxPropDijkstraBenchmark {
+
+    @Param({"100", "1000"})
+    public int hosts;
+
+    /** number of hosts each host has met */
+    @Param({"20"})
+    public int met;
+
+    /** number of destinations of the buffered messages */
+    @Param({"10", "100"})
+    public int destinations;
+
+    private MaxPropDijkstra dijkstra;
+    private Set<Integer> to;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SimClock.reset();
+        Random rng = new Random(1);
+        Map<Integer, MeetingProbabilitySet> probs =
+                new HashMap<Integer, MeetingProbabilitySet>();
+        for (int i = 0; i < hosts; i++) {
+            MeetingProbabilitySet set = new MeetingProbabilitySet(
+                    MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0);
+            for (int j = 0; j < met; j++) {
+                set.updateMeetingProbFor(rng.nextInt(hosts));
+            }
+            probs.put(i, set);
+        }
+        dijkstra = new MaxPropDijkstra(probs);
+        to = new HashSet<Integer>();
+        while (to.size() < Math.min(destinations, hosts)) {
+            to.add(rng.nextInt(hosts));
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, Double> getCosts() {
+        Integer from = next;
+        next = (next + 1) % hosts;
+        return dijkstra.getCosts(from, to);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import input.ZipfGenerator;
+
+/**
+ * JMH benchmark of creating a {@link ZipfGenerator} and drawing values from
+ * it with different catalog sizes and skews. Run with the JMH runner, e.g.
+ * <CODE>java -cp ...:jmh-core.jar org.openjdk.jmh.Main ZipfGeneratorBenchmark
+ * </CODE>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipfGeneratorBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    @Param({"0.2", "1.0"})
+    public double skew;
+
+    private ZipfGenerator zipf;
+
+    @Setup
+    public void setUp() {
+        zipf = new ZipfGenerator(size, skew, 1);
+    }
+
+    @Benchmark
+    public int next() {
+        return zipf.next();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ZipfGenerator create() {
+        return new ZipfGenerator(size, skew, 1);
+    }
+}
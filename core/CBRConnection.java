@@ -54,8 +54,9 @@ public class CBRConnection extends Connection {
 
 		if (retVal == MessageRouter.RCV_OK) {
 			this.msgOnFly = newMessage;
+			this.msgOffset = getResumeOffset(from, newMessage);
 			this.transferDoneTime = SimClock.getTime() +
-			(1.0*m.getSize()) / this.speed;
+			(1.0*(m.getSize() - this.msgOffset)) / this.speed;
 		}
 
 		return retVal;
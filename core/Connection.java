@@ -20,6 +20,9 @@ public abstract class Connection {
 	protected Message msgOnFly;
 	/** how many bytes this connection has transferred */
 	protected int bytesTransferred;
+	/** how many bytes of the message on fly the receiver already had from
+	 * an earlier, aborted transfer (the transfer continues from there) */
+	protected int msgOffset;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -100,7 +103,8 @@ public abstract class Connection {
 		assert msgOnFly != null : "No message to abort at " + msgFromNode;
 		int bytesRemaining = getRemainingByteCount();
 
-		this.bytesTransferred += msgOnFly.getSize() - bytesRemaining;
+		this.bytesTransferred += msgOnFly.getSize() - bytesRemaining
+			- msgOffset;
 
 		getOtherNode(msgFromNode).messageAborted(this.msgOnFly.getId(),
 				msgFromNode, bytesRemaining);
@@ -122,6 +126,19 @@ public abstract class Connection {
 	protected void clearMsgOnFly() {
 		this.msgOnFly = null;
 		this.msgFromNode = null;
+		this.msgOffset = 0;
+	}
+
+	/**
+	 * Asks the receiving host where an accepted transfer continues from.
+	 * @param from The sending host
+	 * @param m The message whose transfer was accepted
+	 * @return Number of bytes of the message the receiver already has
+	 * @see MessageRouter#getResumeOffset(Message, DTNHost)
+	 */
+	protected int getResumeOffset(DTNHost from, Message m) {
+		int offset = getOtherNode(from).getRouter().getResumeOffset(m, from);
+		return (offset > 0 && offset < m.getSize() ? offset : 0);
 	}
 
 	/**
@@ -134,7 +151,7 @@ public abstract class Connection {
 		assert this.msgOnFly != null : "Nothing to finalize in " + this;
 		assert msgFromNode != null : "msgFromNode is not set";
 
-		this.bytesTransferred += msgOnFly.getSize();
+		this.bytesTransferred += msgOnFly.getSize() - msgOffset;
 
 		getOtherNode(msgFromNode).messageTransferred(this.msgOnFly.getId(),
 				msgFromNode);
@@ -179,11 +196,12 @@ public abstract class Connection {
 		}
 		else {
 			if (isMessageTransferred()) {
-				return this.bytesTransferred + this.msgOnFly.getSize();
+				return this.bytesTransferred + this.msgOnFly.getSize()
+					- msgOffset;
 			}
 			else {
 				return this.bytesTransferred +
-				(msgOnFly.getSize() - getRemainingByteCount());
+				(msgOnFly.getSize() - getRemainingByteCount() - msgOffset);
 			}
 		}
 	}
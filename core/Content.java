@@ -5,6 +5,8 @@
  */
 package core;
 
+import java.util.BitSet;
+
 /**
  *
  * @author vusan
@@ -18,6 +20,16 @@ public class Content {
     int size;
     double timeOfReceived;
     boolean isPublishedContent;
+    /** index of the chunk this content is, or -1 for a whole content */
+    int chunkIndex;
+    /** number of chunks the whole content has */
+    int nrofChunks;
+    /** size of the whole content */
+    int totalSize;
+    /** chunks held by a partially cached content (null if complete) */
+    BitSet cachedChunks;
+    /** time when a chunk was last added to a partially cached content */
+    double lastChunkTime;
 
     public Content(int id, ContentType type, double timeOfCreation, double TTL, int size) {
         this.id = id;
@@ -26,6 +38,163 @@ public class Content {
         this.TTL = TTL;
         this.size = size;
         isPublishedContent = false;
+        this.chunkIndex = -1;
+        this.nrofChunks = 1;
+        this.totalSize = size;
+        this.cachedChunks = null;
+    }
+
+    /**
+     * Returns the number of chunks a content of the given size is split in.
+     *
+     * @param size Size of the content
+     * @param chunkSize Size of a chunk
+     * @return The number of chunks (at least one)
+     */
+    public static int nrofChunks(int size, int chunkSize) {
+        return Math.max(1, (size + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Returns a chunk of this content. All chunks but the last have the
+     * given chunk size. A chunk is named by the content id and its index.
+     *
+     * @param index Index of the chunk
+     * @param chunkSize Size of a chunk
+     * @return A new content that is the chunk
+     */
+    public Content getChunk(int index, int chunkSize) {
+        int n = nrofChunks(this.totalSize, chunkSize);
+        if (index < 0 || index >= n) {
+            throw new SimError("No chunk " + index + " in content " + id +
+                    " of " + n + " chunks");
+        }
+        int chunkBytes = Math.min(chunkSize, this.totalSize - index * chunkSize);
+        Content chunk = new Content(this.id, ContentType.Content,
+                this.timeOfCreation, this.TTL, chunkBytes);
+        chunk.chunkIndex = index;
+        chunk.nrofChunks = n;
+        chunk.totalSize = this.totalSize;
+        return chunk;
+    }
+
+    /**
+     * Returns an Interest for one chunk of the content of this Interest.
+     * A chunk Interest can be answered by any host that has the chunk
+     * cached, also if it doesn't have the whole content.
+     *
+     * @param index Index of the chunk
+     * @param nrofChunks Number of chunks the content has
+     * @return A new Interest for the chunk
+     */
+    public Content getChunkInterest(int index, int nrofChunks) {
+        if (index < 0 || index >= nrofChunks) {
+            throw new SimError("No chunk " + index + " in content " + id +
+                    " of " + nrofChunks + " chunks");
+        }
+        Content interest = new Content(this.id, ContentType.Interest,
+                this.timeOfCreation, this.TTL, this.size);
+        interest.chunkIndex = index;
+        interest.nrofChunks = nrofChunks;
+        return interest;
+    }
+
+    /**
+     * Returns a content store entry that holds only the given chunk. More
+     * chunks are added with {@link #addChunk(Content)}.
+     *
+     * @param chunk The first cached chunk
+     * @return A new, partially cached content
+     */
+    public static Content partialOf(Content chunk) {
+        Content c = new Content(chunk.id, ContentType.Content,
+                chunk.timeOfCreation, chunk.TTL, chunk.size);
+        c.nrofChunks = chunk.nrofChunks;
+        c.totalSize = chunk.totalSize;
+        if (c.nrofChunks > 1) {
+            c.cachedChunks = new BitSet(c.nrofChunks);
+            c.cachedChunks.set(chunk.chunkIndex);
+            c.lastChunkTime = SimClock.getTime();
+        }
+        return c;
+    }
+
+    /**
+     * Adds a chunk to a partially cached content. The size of the content
+     * grows by the size of the chunk, and the content becomes complete when
+     * all of its chunks are cached.
+     *
+     * @param chunk The chunk
+     * @return True if the chunk was added, false if it was already cached
+     */
+    public boolean addChunk(Content chunk) {
+        if (hasChunk(chunk.chunkIndex)) {
+            return false;
+        }
+        this.cachedChunks.set(chunk.chunkIndex);
+        this.size += chunk.size;
+        this.lastChunkTime = SimClock.getTime();
+        if (this.cachedChunks.cardinality() == this.nrofChunks) {
+            this.cachedChunks = null;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if this content is a chunk of a content, or an Interest
+     * for a chunk (see {@link #getChunkInterest(int, int)}).
+     *
+     * @return True for chunks and chunk Interests
+     */
+    public boolean isChunk() {
+        return chunkIndex >= 0;
+    }
+
+    /**
+     * Returns the time when a chunk was last added to this partially cached
+     * content.
+     *
+     * @return The simulation time of the last added chunk
+     */
+    public double getLastChunkTime() {
+        return lastChunkTime;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public int getNrofChunks() {
+        return nrofChunks;
+    }
+
+    /**
+     * Returns the size of the whole content (for chunks and partially cached
+     * contents too).
+     *
+     * @return The size of the whole content
+     */
+    public int getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Returns true if all chunks of the content are available.
+     *
+     * @return False for partially cached contents
+     */
+    public boolean isComplete() {
+        return cachedChunks == null;
+    }
+
+    /**
+     * Returns true if a chunk of this content is available.
+     *
+     * @param index Index of the chunk
+     * @return True if the chunk is cached (always true for complete contents)
+     */
+    public boolean hasChunk(int index) {
+        return cachedChunks == null || cachedChunks.get(index);
     }
 
     public int getContentId() {
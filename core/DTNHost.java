@@ -12,6 +12,8 @@ import movement.MovementModel;
 import movement.Path;
 import routing.MessageRouter;
 import routing.util.RoutingInfo;
+import util.BloomFilter;
+import util.CountingBloomFilter;
 
 import static core.Constants.DEBUG;
 import java.util.HashMap;
@@ -39,6 +41,8 @@ public class DTNHost implements Comparable<DTNHost> {
     private ModuleCommunicationBus comBus;
 
     private HashMap<Integer, Content> contentStore;
+    /** digest of the content ids in the content store (null if not used) */
+    private CountingBloomFilter contentDigest;
 
     static {
         DTNSim.registerForReset(DTNHost.class.getCanonicalName());
@@ -358,10 +362,23 @@ public class DTNHost implements Comparable<DTNHost> {
      * @param simulateConnections Should network layer be updated too
      */
     public void update(boolean simulateConnections) {
+        if (updateConnections(simulateConnections)) {
+            updateRouter();
+        }
+    }
+
+    /**
+     * Updates the node's network layer (the first part of
+     * {@link #update(boolean)}).
+     *
+     * @param simulateConnections Should network layer be updated too
+     * @return True if the radio is active and the router should be updated
+     */
+    public boolean updateConnections(boolean simulateConnections) {
         if (!isRadioActive()) {
             // Make sure inactive nodes don't have connections
             tearDownAllConnections();
-            return;
+            return false;
         }
 
         if (simulateConnections) {
@@ -369,6 +386,13 @@ public class DTNHost implements Comparable<DTNHost> {
                 i.update();
             }
         }
+        return true;
+    }
+
+    /**
+     * Updates the node's router (the second part of {@link #update(boolean)}).
+     */
+    public void updateRouter() {
         this.router.update();
     }
 
@@ -579,13 +603,27 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.getAddress() - h.getAddress();
     }
 
-    public void addContents(ArrayList<Content> listOfNewContents) {
+    /**
+     * Adds contents to the content store. A content whose id is already in
+     * the store is not added.
+     *
+     * @param listOfNewContents The contents to add
+     * @return True if any of the contents was added, false if all of them
+     * were already in the store
+     */
+    public boolean addContents(ArrayList<Content> listOfNewContents) {
+        boolean added = false;
         for (Content c : listOfNewContents) {
             if (!this.contentStore.containsKey(c.getContentId())) {
                 //System.out.println(c.getIsPublishedContent());
                 this.contentStore.put(c.getContentId(), c);
+                if (this.contentDigest != null) {
+                    this.contentDigest.add(c.getContentId());
+                }
+                added = true;
             }
         }
+        return added;
     }
 
     public Collection<Content> getContentStore() {
@@ -596,12 +634,50 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.contentStore.values();
     }
     public void deleteContent(Content c) {
-        this.contentStore.remove(c.getContentId());
+        if (this.contentStore.remove(c.getContentId()) != null
+                && this.contentDigest != null) {
+            this.contentDigest.remove(c.getContentId());
+        }
+    }
+    /**
+     * Returns the content with the given id from the content store.
+     *
+     * @param contentId The content id
+     * @return The content or null if it's not in the content store
+     */
+    public Content getContent(int contentId) {
+        return this.contentStore.get(contentId);
     }
+
     public boolean hasContainsContent(Content c) {
         return this.contentStore.containsKey(c.getContentId());
     }
     public boolean hasPublishedContent(Content c) {
         return (this.contentStore.containsKey(c.getContentId()) && this.contentStore.get(c.getContentId()).getIsPublishedContent());
     }
+
+    /**
+     * Starts keeping a digest of the content store with the given filter
+     * geometry. Content that is already in the store is added to the digest,
+     * and the digest follows later additions and deletions.
+     *
+     * @param nrofBits Number of bits in the digest
+     * @param nrofHashes Number of hash functions of the digest
+     */
+    public void enableContentDigest(int nrofBits, int nrofHashes) {
+        this.contentDigest = new CountingBloomFilter(nrofBits, nrofHashes);
+        for (Integer id : this.contentStore.keySet()) {
+            this.contentDigest.add(id);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the content store digest.
+     *
+     * @return A Bloom filter of the content ids in the content store, or
+     * null if no digest is kept
+     */
+    public BloomFilter getContentDigest() {
+        return this.contentDigest != null ? this.contentDigest.toBloomFilter() : null;
+    }
 }
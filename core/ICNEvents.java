@@ -0,0 +1,195 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ICN event listeners of a scenario, in a list per event type. A
+ * listener is added to the list of each event type it implements the
+ * {@link ICNListener} interface of, and an event is passed only to the
+ * listeners in its list. The routers share the same instance, so listeners
+ * added after the routers are created are informed too.
+ */
+public class ICNEvents {
+    private List<ICNListener.InterestMatched> interestMatched;
+    private List<ICNListener.AdvertisementMatched> advertisementMatched;
+    private List<ICNListener.RequestServed> requestServed;
+    private List<ICNListener.CacheLookup> cacheLookup;
+    private List<ICNListener.InterestPending> interestPending;
+    private List<ICNListener.PendingInterestSatisfied> pendingSatisfied;
+    private List<ICNListener.CacheDigestForward> cacheDigestForward;
+    private List<ICNListener.AdmissionDecided> admissionDecided;
+    private List<ICNListener.ContentStored> contentStored;
+    private List<ICNListener.ContentEvicted> contentEvicted;
+
+    /**
+     * Creates a new instance without listeners.
+     */
+    public ICNEvents() {
+        this.interestMatched = new ArrayList<ICNListener.InterestMatched>();
+        this.advertisementMatched =
+            new ArrayList<ICNListener.AdvertisementMatched>();
+        this.requestServed = new ArrayList<ICNListener.RequestServed>();
+        this.cacheLookup = new ArrayList<ICNListener.CacheLookup>();
+        this.interestPending = new ArrayList<ICNListener.InterestPending>();
+        this.pendingSatisfied =
+            new ArrayList<ICNListener.PendingInterestSatisfied>();
+        this.cacheDigestForward =
+            new ArrayList<ICNListener.CacheDigestForward>();
+        this.admissionDecided = new ArrayList<ICNListener.AdmissionDecided>();
+        this.contentStored = new ArrayList<ICNListener.ContentStored>();
+        this.contentEvicted = new ArrayList<ICNListener.ContentEvicted>();
+    }
+
+    /**
+     * Adds a listener to the lists of the event types it listens to.
+     *
+     * @param il The listener
+     */
+    public void add(ICNListener il) {
+        if (il instanceof ICNListener.InterestMatched) {
+            interestMatched.add((ICNListener.InterestMatched) il);
+        }
+        if (il instanceof ICNListener.AdvertisementMatched) {
+            advertisementMatched.add((ICNListener.AdvertisementMatched) il);
+        }
+        if (il instanceof ICNListener.RequestServed) {
+            requestServed.add((ICNListener.RequestServed) il);
+        }
+        if (il instanceof ICNListener.CacheLookup) {
+            cacheLookup.add((ICNListener.CacheLookup) il);
+        }
+        if (il instanceof ICNListener.InterestPending) {
+            interestPending.add((ICNListener.InterestPending) il);
+        }
+        if (il instanceof ICNListener.PendingInterestSatisfied) {
+            pendingSatisfied.add((ICNListener.PendingInterestSatisfied) il);
+        }
+        if (il instanceof ICNListener.CacheDigestForward) {
+            cacheDigestForward.add((ICNListener.CacheDigestForward) il);
+        }
+        if (il instanceof ICNListener.AdmissionDecided) {
+            admissionDecided.add((ICNListener.AdmissionDecided) il);
+        }
+        if (il instanceof ICNListener.ContentStored) {
+            contentStored.add((ICNListener.ContentStored) il);
+        }
+        if (il instanceof ICNListener.ContentEvicted) {
+            contentEvicted.add((ICNListener.ContentEvicted) il);
+        }
+    }
+
+    /**
+     * Informs the listeners of an Interest answered from a content store.
+     * @see ICNListener.InterestMatched#interestMatched(Message, DTNHost,
+     * boolean)
+     */
+    public void interestMatched(Message interest, DTNHost host,
+            boolean first) {
+        for (ICNListener.InterestMatched il : interestMatched) {
+            il.interestMatched(interest, host, first);
+        }
+    }
+
+    /**
+     * Informs the listeners of an Interest answered by an advertisement.
+     * @see ICNListener.AdvertisementMatched#advertisementMatched(Message,
+     * Message, DTNHost, boolean)
+     */
+    public void advertisementMatched(Message advert, Message interest,
+            DTNHost host, boolean first) {
+        for (ICNListener.AdvertisementMatched il : advertisementMatched) {
+            il.advertisementMatched(advert, interest, host, first);
+        }
+    }
+
+    /**
+     * Informs the listeners of a request answered for the first time.
+     * @see ICNListener.RequestServed#requestServed(Message, DTNHost, boolean)
+     */
+    public void requestServed(Message m, DTNHost host, boolean cacheHit) {
+        for (ICNListener.RequestServed il : requestServed) {
+            il.requestServed(m, host, cacheHit);
+        }
+    }
+
+    /**
+     * Informs the listeners of a cache lookup.
+     * @see ICNListener.CacheLookup#cacheLookup(Message, DTNHost, boolean)
+     */
+    public void cacheLookup(Message interest, DTNHost host, boolean hit) {
+        for (ICNListener.CacheLookup il : cacheLookup) {
+            il.cacheLookup(interest, host, hit);
+        }
+    }
+
+    /**
+     * Informs the listeners of an Interest recorded as pending.
+     * @see ICNListener.InterestPending#interestPending(Message, DTNHost,
+     * boolean)
+     */
+    public void interestPending(Message interest, DTNHost host,
+            boolean aggregated) {
+        for (ICNListener.InterestPending il : interestPending) {
+            il.interestPending(interest, host, aggregated);
+        }
+    }
+
+    /**
+     * Informs the listeners of a pending Interest that was served.
+     * @see ICNListener.PendingInterestSatisfied#pendingInterestSatisfied(
+     * Message, DTNHost)
+     */
+    public void pendingInterestSatisfied(Message interest, DTNHost host) {
+        for (ICNListener.PendingInterestSatisfied il : pendingSatisfied) {
+            il.pendingInterestSatisfied(interest, host);
+        }
+    }
+
+    /**
+     * Informs the listeners of an Interest sent because of a cache digest.
+     * @see ICNListener.CacheDigestForward#cacheDigestForward(Message,
+     * DTNHost, boolean)
+     */
+    public void cacheDigestForward(Message interest, DTNHost host,
+            boolean hit) {
+        for (ICNListener.CacheDigestForward il : cacheDigestForward) {
+            il.cacheDigestForward(interest, host, hit);
+        }
+    }
+
+    /**
+     * Informs the listeners of a cache admission decision.
+     * @see ICNListener.AdmissionDecided#admissionDecided(Content, DTNHost,
+     * boolean)
+     */
+    public void admissionDecided(Content content, DTNHost host,
+            boolean admitted) {
+        for (ICNListener.AdmissionDecided il : admissionDecided) {
+            il.admissionDecided(content, host, admitted);
+        }
+    }
+
+    /**
+     * Informs the listeners of a content added to a content store.
+     * @see ICNListener.ContentStored#contentStored(Content, DTNHost)
+     */
+    public void contentStored(Content content, DTNHost host) {
+        for (ICNListener.ContentStored il : contentStored) {
+            il.contentStored(content, host);
+        }
+    }
+
+    /**
+     * Informs the listeners of a content removed from a content store.
+     * @see ICNListener.ContentEvicted#contentEvicted(Content, DTNHost)
+     */
+    public void contentEvicted(Content content, DTNHost host) {
+        for (ICNListener.ContentEvicted il : contentEvicted) {
+            il.contentEvicted(content, host);
+        }
+    }
+}
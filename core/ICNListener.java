@@ -0,0 +1,164 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Interface for classes that want to be informed about the information
+ * centric networking events of the routers: Interests answered from content
+ * stores, pending Interests, cache lookups and the contents stored to and
+ * removed from the content stores.
+ * <P>
+ * A listener implements the nested interface of each event type it wants to
+ * know about ({@link All} for all of them). Reports implementing any of them
+ * are registered to all the routers of the scenario, in a list per event
+ * type (see {@link ICNEvents}), so the routers inform only the listeners of
+ * each event.
+ */
+public interface ICNListener {
+
+    /** Listener of the <CODE>interestMatched</CODE> events */
+    public interface InterestMatched extends ICNListener {
+        /**
+         * Method is called when an Interest is answered from the content store
+         * of a host.
+         *
+         * @param interest The Interest
+         * @param host The host that answered it
+         * @param first True if the request of the Interest was answered for the
+         * first time, false if another copy of it was already answered
+         */
+        public void interestMatched(Message interest, DTNHost host,
+                boolean first);
+    }
+
+    /** Listener of the <CODE>advertisementMatched</CODE> events */
+    public interface AdvertisementMatched extends ICNListener {
+        /**
+         * Method is called when an advertisement reaches a host that has an
+         * Interest for the advertised content in its buffer, and the Interest
+         * is answered with the content.
+         *
+         * @param advert The advertisement
+         * @param interest The Interest
+         * @param host The host that answered it
+         * @param first True if the request of the Interest was answered for the
+         * first time
+         */
+        public void advertisementMatched(Message advert, Message interest,
+                DTNHost host, boolean first);
+    }
+
+    /** Listener of the <CODE>requestServed</CODE> events */
+    public interface RequestServed extends ICNListener {
+        /**
+         * Method is called when a request is answered for the first time.
+         *
+         * @param m The Interest (or the advertisement) that was answered
+         * @param host The host that answered it
+         * @param cacheHit True if the content came from a cache, false if from
+         * the publisher of the content
+         */
+        public void requestServed(Message m, DTNHost host, boolean cacheHit);
+    }
+
+    /** Listener of the <CODE>cacheLookup</CODE> events */
+    public interface CacheLookup extends ICNListener {
+        /**
+         * Method is called when a host looks up the content of an Interest from
+         * its content store (hosts that publish the content do not count).
+         *
+         * @param interest The Interest
+         * @param host The host whose cache was looked up
+         * @param hit True if a cached content answered the Interest
+         */
+        public void cacheLookup(Message interest, DTNHost host, boolean hit);
+    }
+
+    /** Listener of the <CODE>interestPending</CODE> events */
+    public interface InterestPending extends ICNListener {
+        /**
+         * Method is called when a host records an Interest it forwards in its
+         * pending Interest table.
+         *
+         * @param interest The Interest
+         * @param host The host
+         * @param aggregated True if an Interest for the same content was
+         * already pending (and this one is not forwarded), false if not
+         */
+        public void interestPending(Message interest, DTNHost host,
+                boolean aggregated);
+    }
+
+    /** Listener of the <CODE>pendingInterestSatisfied</CODE> events */
+    public interface PendingInterestSatisfied extends ICNListener {
+        /**
+         * Method is called when a pending Interest is served with a content
+         * that reached the host.
+         *
+         * @param interest The Interest
+         * @param host The host
+         */
+        public void pendingInterestSatisfied(Message interest, DTNHost host);
+    }
+
+    /** Listener of the <CODE>cacheDigestForward</CODE> events */
+    public interface CacheDigestForward extends ICNListener {
+        /**
+         * Method is called when a host sends an Interest to a peer because the
+         * cache digest of the peer claimed the content.
+         *
+         * @param interest The Interest
+         * @param host The host that sent it
+         * @param hit True if the peer really had the content, false if the
+         * claim was a false positive
+         */
+        public void cacheDigestForward(Message interest, DTNHost host,
+                boolean hit);
+    }
+
+    /** Listener of the <CODE>admissionDecided</CODE> events */
+    public interface AdmissionDecided extends ICNListener {
+        /**
+         * Method is called when a host decides whether to cache a content that
+         * does not fit in its free cache space.
+         *
+         * @param content The new content
+         * @param host The host
+         * @param admitted True if the content was admitted, false if rejected
+         */
+        public void admissionDecided(Content content, DTNHost host,
+                boolean admitted);
+    }
+
+    /** Listener of the <CODE>contentStored</CODE> events */
+    public interface ContentStored extends ICNListener {
+        /**
+         * Method is called when a content is added to the content store of a
+         * host.
+         *
+         * @param content The content
+         * @param host The host
+         */
+        public void contentStored(Content content, DTNHost host);
+    }
+
+    /** Listener of the <CODE>contentEvicted</CODE> events */
+    public interface ContentEvicted extends ICNListener {
+        /**
+         * Method is called when a content is removed from the content store
+         * of a host (evicted or offloaded to another host).
+         *
+         * @param content The content
+         * @param host The host
+         */
+        public void contentEvicted(Content content, DTNHost host);
+    }
+
+    /** Listener of all the ICN events */
+    public interface All extends InterestMatched, AdvertisementMatched,
+            RequestServed, CacheLookup, InterestPending,
+            PendingInterestSatisfied, CacheDigestForward, AdmissionDecided,
+            ContentStored, ContentEvicted {
+    }
+}
@@ -5,11 +5,12 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import input.ZipfGenerator;
+import util.LongHashMap;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -17,9 +18,12 @@ import input.ZipfGenerator;
 public class Message implements Comparable<Message> {
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
+	/** Separator of the chunk index in the ids of content chunk messages */
+	public static final String CHUNK_SEPARATOR = "#";
 	private DTNHost from;
 	private DTNHost to;
-	/** Identifier of the message */
+	/** Identifier of the message (generated from the request identifier
+	 * and kind when first needed) */
 	private String id;
 	/** Size of the message (bytes) */
 	private int size;
@@ -29,6 +33,21 @@ public class Message implements Comparable<Message> {
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
+	/** Dense integer identifiers of the requests seen so far */
+	private static Map<String, Integer> requestIds;
+	/** Request identifier strings by their integer identifier */
+	private static List<String> requestNames;
+	/** Slots of the chunk message identifiers by the identifier index of
+	 * the whole message (high 32 bits) and the chunk index */
+	private static LongHashMap<Integer> chunkSlots;
+	/** Integer identifier of the request this message belongs to */
+	private int requestId;
+	/** Kind of the message within its request */
+	private MessageKind kind;
+	/** Integer index of this message's identifier */
+	private int idIndex;
+	/** Index of the content chunk this message carries, or -1 */
+	private int chunk;
 	/** The time this message was received */
 	private double timeReceived;
 	/** The time when this message was created */
@@ -43,10 +62,17 @@ public class Message implements Comparable<Message> {
 	private Message requestMsg;
         
 
-	/** Container for generic message properties. Note that all values
-	 * stored in the properties should be immutable because only a shallow
-	 * copy of the properties is made when replicating messages */
-	private Map<String, Object> properties;
+	/** Values of the generic object properties by {@link PropertyKey} slot
+	 * (null if the message has none). Note that all values stored in the
+	 * properties should be immutable because replicates share them */
+	private Object[] objectProperties;
+	/** Values of the primitive properties by {@link PropertyKey} slot */
+	private long[] primitiveProperties;
+	/** Bit mask of the primitive property slots that have a value */
+	private long primitivesSet;
+	/** True if the property arrays may be shared with a replicate and must
+	 * be copied before they are written to */
+	private boolean sharedProperties;
 
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -66,9 +92,40 @@ public class Message implements Comparable<Message> {
      * @param content
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size, Content content) {
+		this(from, to, requestIdOfMessage(id), MessageKind.of(id), size,
+				content);
+		this.id = id;
+		if (this.kind == MessageKind.Protocol) {
+			this.idIndex = protocolIndexOf(id);
+		} else {
+			this.chunk = chunkOf(MessageKind.requestOf(id));
+			if (this.chunk >= 0) {
+				this.idIndex = chunkIndexOf(this.requestId, this.kind,
+						this.chunk, true);
+			}
+		}
+	}
+
+	/**
+	 * Creates a new Message for a request identified by an integer. The
+	 * string id is only generated when it is asked for.
+	 * @param from Who the message is (originally) from
+	 * @param to Who the message is (originally) to
+	 * @param requestId Integer identifier of the request
+	 * 	(see {@link #requestIdOf(String)})
+	 * @param kind Kind of the message within the request
+	 * @param size Size of the message (in bytes)
+	 * @param content Content the message carries or null
+	 */
+	public Message(DTNHost from, DTNHost to, int requestId, MessageKind kind,
+			int size, Content content) {
 		this.from = from;
 		this.to = to;
-		this.id = id;
+		this.requestId = requestId;
+		this.kind = kind;
+		this.idIndex = kind == MessageKind.Protocol ? -1 :
+			indexOf(requestId, kind);
+		this.chunk = -1;
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
 		this.uniqueId = nextUniqueId;
@@ -78,7 +135,10 @@ public class Message implements Comparable<Message> {
 		this.initTtl = INFINITE_TTL;
 		this.responseSize = 0;
 		this.requestMsg = null;
-		this.properties = null;
+		this.objectProperties = null;
+		this.primitiveProperties = null;
+		this.primitivesSet = 0;
+		this.sharedProperties = false;
 		this.appID = null;
                 
                 if(content != null) {
@@ -88,6 +148,43 @@ public class Message implements Comparable<Message> {
 		addNodeOnPath(from);
 	}
 
+	/**
+	 * Creates a new content message that carries one chunk of a content.
+	 * The chunk messages of a request share its request identifier but
+	 * have an id of their own (request id, {@link #CHUNK_SEPARATOR} and
+	 * the chunk index).
+	 * @param from Who the message is (originally) from
+	 * @param to Who the message is (originally) to
+	 * @param requestId Integer identifier of the request
+	 * @param chunk Index of the chunk
+	 * @param size Size of the message (in bytes)
+	 * @param content The chunk the message carries
+	 */
+	public Message(DTNHost from, DTNHost to, int requestId, int chunk,
+			int size, Content content) {
+		this(from, to, requestId, MessageKind.Data, chunk, size, content);
+	}
+
+	/**
+	 * Creates a new message of given kind for one chunk of a content, i.e.,
+	 * a chunk message or an Interest for a chunk. The id of the message is
+	 * the request id, {@link #CHUNK_SEPARATOR}, the chunk index and the
+	 * suffix of the kind.
+	 * @param from Who the message is (originally) from
+	 * @param to Who the message is (originally) to
+	 * @param requestId Integer identifier of the request
+	 * @param kind Kind of the message within the request
+	 * @param chunk Index of the chunk
+	 * @param size Size of the message (in bytes)
+	 * @param content The chunk or chunk Interest the message carries
+	 */
+	public Message(DTNHost from, DTNHost to, int requestId, MessageKind kind,
+			int chunk, int size, Content content) {
+		this(from, to, requestId, kind, size, content);
+		this.chunk = chunk;
+		this.idIndex = chunkIndexOf(requestId, kind, chunk, true);
+	}
+
 	/**
 	 * Returns the node this message is originally from
 	 * @return the node this message is originally from
@@ -113,6 +210,13 @@ public class Message implements Comparable<Message> {
 	 * @return The message id
 	 */
 	public String getId() {
+		if (this.id == null) {
+			this.id = requestNames.get(requestId);
+			if (this.chunk >= 0) {
+				this.id += CHUNK_SEPARATOR + this.chunk;
+			}
+			this.id += kind.getSuffix();
+		}
 		return this.id;
 	}
 
@@ -125,6 +229,189 @@ public class Message implements Comparable<Message> {
 		return this.uniqueId;
 	}
 
+	/**
+	 * Returns a small integer index of the message identifier. The index is
+	 * the same for all replicates of the message, like {@link #getId()}.
+	 * Protocol messages (see {@link MessageKind#Protocol}) have negative
+	 * indexes that are computed from their ids and never interned, so they
+	 * can't be used as bit set indexes. The indexes of whole messages are
+	 * even and computed from the request identifier and kind; chunk
+	 * messages get odd indexes in the order their (whole message index,
+	 * chunk index) pairs are first seen, so the request identifiers aren't
+	 * used for them.
+	 * @return The identifier index
+	 */
+	public int getIdIndex() {
+		return this.idIndex;
+	}
+
+	/**
+	 * Returns the integer identifier of the request this message belongs to.
+	 * The interest, advertisement and content messages of the same request
+	 * have the same request identifier.
+	 * @return The request identifier or -1 for protocol messages
+	 */
+	public int getRequestId() {
+		return this.requestId;
+	}
+
+	/**
+	 * Returns the index of the content chunk this message carries
+	 * @return The chunk index or -1 if the message is not a chunk message
+	 */
+	public int getChunk() {
+		return this.chunk;
+	}
+
+	/**
+	 * Returns the kind of this message within its request
+	 * @return The message kind
+	 */
+	public MessageKind getKind() {
+		return this.kind;
+	}
+
+	/**
+	 * Returns the integer identifier of a request identifier string. New
+	 * identifiers are given in the order the strings are first seen,
+	 * starting from 0.
+	 * @param request The request identifier (message id without the kind
+	 * suffix)
+	 * @return The integer request identifier
+	 */
+	public static int requestIdOf(String request) {
+		Integer requestId = requestIds.get(request);
+		if (requestId == null) {
+			requestId = requestNames.size();
+			requestIds.put(request, requestId);
+			requestNames.add(request);
+		}
+		return requestId;
+	}
+
+	/**
+	 * Returns the integer request identifier of a message id, or -1 for
+	 * protocol message ids (which are not interned).
+	 */
+	private static int requestIdOfMessage(String id) {
+		if (MessageKind.isProtocolId(id)) {
+			return -1;
+		}
+		return requestIdOf(parentRequestOf(MessageKind.requestOf(id)));
+	}
+
+	/**
+	 * Returns the chunk index of a chunk message's request part of the id
+	 * (see {@link #CHUNK_SEPARATOR}), or -1 if it doesn't have one.
+	 */
+	private static int chunkOf(String request) {
+		int sep = request.lastIndexOf(CHUNK_SEPARATOR);
+		int digits = request.length() - sep - 1;
+		if (sep < 0 || digits < 1 || digits > 9) {
+			return -1;
+		}
+		for (int i = sep + 1; i < request.length(); i++) {
+			if (!Character.isDigit(request.charAt(i))) {
+				return -1;
+			}
+		}
+		return Integer.parseInt(request.substring(sep + 1));
+	}
+
+	/**
+	 * Returns the request a chunk message's request part of the id belongs
+	 * to, or the request itself if it isn't one of a chunk message.
+	 */
+	private static String parentRequestOf(String request) {
+		if (chunkOf(request) < 0) {
+			return request;
+		}
+		return request.substring(0, request.lastIndexOf(CHUNK_SEPARATOR));
+	}
+
+	/**
+	 * Returns the identifier index of a chunk message.
+	 * @param requestId The integer request identifier
+	 * @param kind The message kind
+	 * @param chunk Index of the chunk
+	 * @param create If true, a new index is given if the chunk message
+	 * hasn't been seen before
+	 * @return The identifier index, or -1 if it wasn't found or created
+	 */
+	private static int chunkIndexOf(int requestId, MessageKind kind,
+			int chunk, boolean create) {
+		long key = ((long) indexOf(requestId, kind) << 32) | chunk;
+		Integer slot = chunkSlots.get(key);
+		if (slot == null) {
+			if (!create) {
+				return -1;
+			}
+			slot = chunkSlots.size();
+			chunkSlots.put(key, slot);
+		}
+		return 2 * slot + 1;
+	}
+
+	/**
+	 * Returns the identifier index of a protocol message id. The indexes
+	 * are -2, -3, ... so that -1 still means an unknown id.
+	 */
+	private static int protocolIndexOf(String id) {
+		return -2 - MessageKind.protocolSequenceOf(id);
+	}
+
+	/**
+	 * Returns the identifier index of a message of given kind in a request.
+	 * @param requestId The integer request identifier
+	 * @param kind The message kind
+	 * @return The identifier index
+	 */
+	public static int indexOf(int requestId, MessageKind kind) {
+		return 2 * (requestId * MessageKind.values().length + kind.ordinal());
+	}
+
+	/**
+	 * Returns the integer index of a message identifier, giving the
+	 * identifier a new index if it has not been seen before.
+	 * @param id The message identifier
+	 * @return The identifier index
+	 */
+	public static int indexOf(String id) {
+		if (MessageKind.isProtocolId(id)) {
+			return protocolIndexOf(id);
+		}
+		String request = MessageKind.requestOf(id);
+		int requestId = requestIdOf(parentRequestOf(request));
+		int chunk = chunkOf(request);
+		if (chunk >= 0) {
+			return chunkIndexOf(requestId, MessageKind.of(id), chunk, true);
+		}
+		return indexOf(requestId, MessageKind.of(id));
+	}
+
+	/**
+	 * Returns the integer index of a message identifier that has been seen
+	 * before, or -1 if no message with such identifier has been created.
+	 * Protocol message ids always have an index.
+	 * @param id The message identifier
+	 * @return The identifier index or -1
+	 */
+	public static int lookupIndex(String id) {
+		if (MessageKind.isProtocolId(id)) {
+			return protocolIndexOf(id);
+		}
+		String request = MessageKind.requestOf(id);
+		Integer requestId = requestIds.get(parentRequestOf(request));
+		if (requestId == null) {
+			return -1;
+		}
+		int chunk = chunkOf(request);
+		if (chunk >= 0) {
+			return chunkIndexOf(requestId, MessageKind.of(id), chunk, false);
+		}
+		return indexOf(requestId, MessageKind.of(id));
+	}
+
 	/**
 	 * Returns the size of the message (in bytes)
 	 * @return the size of the message
@@ -177,6 +464,17 @@ public class Message implements Comparable<Message> {
 		}
 	}
 
+	/**
+	 * Returns the simulation time when the TTL of the message runs out or
+	 * Double.MAX_VALUE if the TTL is infinite.
+	 * @return The expiry time (seconds)
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + this.initTtl * 60.0;
+	}
 
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
@@ -260,7 +558,7 @@ public class Message implements Comparable<Message> {
 	 * @return a string representation of the message
 	 */
 	public String toString () {
-		return id;
+		return getId();
 	}
 
 	/**
@@ -277,11 +575,14 @@ public class Message implements Comparable<Message> {
 		this.initTtl = m.initTtl;
 		this.appID = m.appID;
 
-		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+		/* the property arrays are shared until either message changes
+		 * its properties */
+		this.objectProperties = m.objectProperties;
+		this.primitiveProperties = m.primitiveProperties;
+		this.primitivesSet = m.primitivesSet;
+		if (m.objectProperties != null || m.primitiveProperties != null) {
+			this.sharedProperties = true;
+			m.sharedProperties = true;
 		}
 	}
 
@@ -294,15 +595,11 @@ public class Message implements Comparable<Message> {
 	 * @param key The key which is used to lookup the value
 	 * @param value The value to store
 	 * @throws SimError if the message already has a value for the given key
+	 * @see #addProperty(PropertyKey, Object)
 	 */
+	@SuppressWarnings("unchecked")
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
-			/* check to prevent accidental name space collisions */
-			throw new SimError("Message " + this + " already contains value " +
-					"for a key " + key);
-		}
-
-		this.updateProperty(key, value);
+		addProperty((PropertyKey<Object>) PropertyKey.forName(key), value);
 	}
 
 	/**
@@ -312,10 +609,7 @@ public class Message implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.properties == null) {
-			return null;
-		}
-		return this.properties.get(key);
+		return getProperty(PropertyKey.forName(key));
 	}
 
 	/**
@@ -325,14 +619,213 @@ public class Message implements Comparable<Message> {
 	 * @param key The key which is used to lookup the value
 	 * @param value The new value to store
 	 */
+	@SuppressWarnings("unchecked")
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.properties == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.properties = new HashMap<String, Object>();
+		updateProperty((PropertyKey<Object>) PropertyKey.forName(key), value);
+	}
+
+	/**
+	 * Adds a typed property for this message.
+	 * @param key The property key
+	 * @param value The value to store
+	 * @throws SimError if the message already has a value for the given key
+	 */
+	public <T> void addProperty(PropertyKey<T> key, T value) throws SimError {
+		if (hasProperty(key)) {
+			/* check to prevent accidental name space collisions */
+			throw new SimError("Message " + this + " already contains value " +
+					"for a key " + key);
+		}
+		updateProperty(key, value);
+	}
+
+	/**
+	 * Returns true if the message has a value for the property.
+	 * @param key The property key
+	 * @return True if the property has a value
+	 */
+	public boolean hasProperty(PropertyKey<?> key) {
+		int i = key.getIndex();
+		if (key.getKind() == PropertyKey.Kind.OBJECT) {
+			return this.objectProperties != null &&
+					i < this.objectProperties.length &&
+					this.objectProperties[i] != null;
+		}
+		return (this.primitivesSet & (1L << i)) != 0;
+	}
+
+	/**
+	 * Returns the value of a typed property or null if the message has no
+	 * value for it. Primitive values are boxed; use the primitive getters
+	 * to avoid that.
+	 * @param key The property key
+	 * @return The value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getProperty(PropertyKey<T> key) {
+		if (!hasProperty(key)) {
+			return null;
+		}
+		long bits;
+		switch (key.getKind()) {
+		case OBJECT:
+			return (T) this.objectProperties[key.getIndex()];
+		case INT:
+			bits = this.primitiveProperties[key.getIndex()];
+			return (T) Integer.valueOf((int) bits);
+		case LONG:
+			bits = this.primitiveProperties[key.getIndex()];
+			return (T) Long.valueOf(bits);
+		default:
+			bits = this.primitiveProperties[key.getIndex()];
+			return (T) Double.valueOf(Double.longBitsToDouble(bits));
+		}
+	}
+
+	/**
+	 * Updates the value of a typed property. A null value removes the
+	 * property.
+	 * @param key The property key
+	 * @param value The new value
+	 */
+	public <T> void updateProperty(PropertyKey<T> key, T value) {
+		if (key.getKind() == PropertyKey.Kind.OBJECT) {
+			if (value == null && !hasProperty(key)) {
+				return;
+			}
+			prepareObjectSlot(key.getIndex());
+			this.objectProperties[key.getIndex()] = value;
+		}
+		else if (value == null) {
+			if (hasProperty(key)) {
+				prepareProperties();
+				this.primitivesSet &= ~(1L << key.getIndex());
+			}
+		}
+		else if (key.getKind() == PropertyKey.Kind.DOUBLE) {
+			setPrimitive(key, Double.doubleToRawLongBits(
+					((Number) value).doubleValue()));
+		}
+		else {
+			setPrimitive(key, ((Number) value).longValue());
 		}
+	}
+
+	/**
+	 * Returns the value of an integer property.
+	 * @param key The property key
+	 * @return The value
+	 * @throws SimError if the message has no value for the property
+	 */
+	public int getIntProperty(PropertyKey<Integer> key) throws SimError {
+		return (int) getPrimitive(key, PropertyKey.Kind.INT);
+	}
 
-		this.properties.put(key, value);
+	/**
+	 * Sets the value of an integer property.
+	 * @param key The property key
+	 * @param value The value
+	 */
+	public void updateIntProperty(PropertyKey<Integer> key, int value) {
+		checkKind(key, PropertyKey.Kind.INT);
+		setPrimitive(key, value);
+	}
+
+	/**
+	 * Returns the value of a long property.
+	 * @param key The property key
+	 * @return The value
+	 * @throws SimError if the message has no value for the property
+	 */
+	public long getLongProperty(PropertyKey<Long> key) throws SimError {
+		return getPrimitive(key, PropertyKey.Kind.LONG);
+	}
+
+	/**
+	 * Sets the value of a long property.
+	 * @param key The property key
+	 * @param value The value
+	 */
+	public void updateLongProperty(PropertyKey<Long> key, long value) {
+		checkKind(key, PropertyKey.Kind.LONG);
+		setPrimitive(key, value);
+	}
+
+	/**
+	 * Returns the value of a floating point property.
+	 * @param key The property key
+	 * @return The value
+	 * @throws SimError if the message has no value for the property
+	 */
+	public double getDoubleProperty(PropertyKey<Double> key) throws SimError {
+		return Double.longBitsToDouble(
+				getPrimitive(key, PropertyKey.Kind.DOUBLE));
+	}
+
+	/**
+	 * Sets the value of a floating point property.
+	 * @param key The property key
+	 * @param value The value
+	 */
+	public void updateDoubleProperty(PropertyKey<Double> key, double value) {
+		checkKind(key, PropertyKey.Kind.DOUBLE);
+		setPrimitive(key, Double.doubleToRawLongBits(value));
+	}
+
+	private void checkKind(PropertyKey<?> key, PropertyKey.Kind kind) {
+		if (key.getKind() != kind) {
+			throw new SimError("Message property " + key + " is not of type " +
+					kind);
+		}
+	}
+
+	private long getPrimitive(PropertyKey<?> key, PropertyKey.Kind kind) {
+		checkKind(key, kind);
+		if (!hasProperty(key)) {
+			throw new SimError("Message " + this + " has no value for a key " +
+					key);
+		}
+		return this.primitiveProperties[key.getIndex()];
+	}
+
+	private void setPrimitive(PropertyKey<?> key, long bits) {
+		int i = key.getIndex();
+		prepareProperties();
+		if (this.primitiveProperties == null) {
+			this.primitiveProperties = new long[i + 1];
+		}
+		else if (i >= this.primitiveProperties.length) {
+			this.primitiveProperties = Arrays.copyOf(this.primitiveProperties,
+					i + 1);
+		}
+		this.primitiveProperties[i] = bits;
+		this.primitivesSet |= 1L << i;
+	}
+
+	private void prepareObjectSlot(int i) {
+		prepareProperties();
+		if (this.objectProperties == null) {
+			this.objectProperties = new Object[i + 1];
+		}
+		else if (i >= this.objectProperties.length) {
+			this.objectProperties = Arrays.copyOf(this.objectProperties, i + 1);
+		}
+	}
+
+	/**
+	 * Makes private copies of the property arrays if they are shared with
+	 * a replicate of this message.
+	 */
+	private void prepareProperties() {
+		if (this.sharedProperties) {
+			if (this.objectProperties != null) {
+				this.objectProperties = this.objectProperties.clone();
+			}
+			if (this.primitiveProperties != null) {
+				this.primitiveProperties = this.primitiveProperties.clone();
+			}
+			this.sharedProperties = false;
+		}
 	}
 
 	/**
@@ -340,7 +833,10 @@ public class Message implements Comparable<Message> {
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size, content);
+		Message m = new Message(from, to, requestId, kind, size, content);
+		m.id = this.id;
+		m.chunk = this.chunk;
+		m.idIndex = this.idIndex;
 		m.copyFrom(this);
 		return m;
 	}
@@ -358,6 +854,9 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		requestIds = new HashMap<String, Integer>();
+		requestNames = new ArrayList<String>();
+		chunkSlots = new LongHashMap<Integer>();
 	}
 
 	/**
@@ -0,0 +1,106 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Kind of a message in the information centric extension. Interests and
+ * advertisements are created for the same request and share its identifier;
+ * the kind is told apart by a suffix of the message id, and the content sent
+ * back for an interest uses the plain request identifier.
+ * <P>
+ * Protocol messages (e.g. the per-contact hello and summary messages of the
+ * social routers) have ids of form {@value #PROTOCOL_PREFIX} and a
+ * sequence number. They are not requests and their ids are not interned
+ * (see {@link Message#getIdIndex()}).
+ */
+public enum MessageKind {
+    Data(""),
+    Interest("_interest"),
+    Advert("_advert"),
+    Protocol("");
+
+    /** Id prefix of protocol messages ({@value}) */
+    public static final String PROTOCOL_PREFIX = "summary";
+    /** Maximum number of digits in a protocol message id (so that the
+     * sequence number fits an int) */
+    private static final int MAX_PROTOCOL_DIGITS = 9;
+
+    private final String suffix;
+
+    private MessageKind(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * Returns the suffix that is appended to the request identifier to form
+     * the message id.
+     *
+     * @return The id suffix
+     */
+    public String getSuffix() {
+        return this.suffix;
+    }
+
+    /**
+     * Returns the kind of a message id.
+     *
+     * @param id The message id
+     * @return The kind the id's suffix tells
+     */
+    public static MessageKind of(String id) {
+        if (isProtocolId(id)) {
+            return Protocol;
+        }
+        if (id.endsWith(Interest.suffix)) {
+            return Interest;
+        }
+        if (id.endsWith(Advert.suffix)) {
+            return Advert;
+        }
+        return Data;
+    }
+
+    /**
+     * Returns the request identifier part of a message id, i.e. the id without
+     * the kind suffix.
+     *
+     * @param id The message id
+     * @return The request identifier
+     */
+    public static String requestOf(String id) {
+        return id.substring(0, id.length() - of(id).suffix.length());
+    }
+
+    /**
+     * Returns true if the id is a protocol message id, i.e.
+     * {@value #PROTOCOL_PREFIX} followed by a sequence number.
+     *
+     * @param id The message id
+     * @return True for protocol message ids
+     */
+    public static boolean isProtocolId(String id) {
+        int digits = id.length() - PROTOCOL_PREFIX.length();
+        if (digits < 1 || digits > MAX_PROTOCOL_DIGITS ||
+                !id.startsWith(PROTOCOL_PREFIX)) {
+            return false;
+        }
+        for (int i = PROTOCOL_PREFIX.length(); i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the sequence number of a protocol message id.
+     *
+     * @param id The protocol message id (see {@link #isProtocolId(String)})
+     * @return The sequence number
+     */
+    public static int protocolSequenceOf(String id) {
+        return Integer.parseInt(id.substring(PROTOCOL_PREFIX.length()));
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the run time metrics of the simulation. Routers, content
+ * stores, interfaces etc. get their counters, gauges and histograms from the
+ * registry by name and update them as things happen; reports (see
+ * report.MetricsReport) read the current values of all the metrics at their
+ * own pace. Asking for a metric with a name that is already registered
+ * returns the registered metric, so all the instances of a module share
+ * the metric and the values are totals over the hosts.
+ * <P>
+ * The names follow the Prometheus conventions: letters, digits, underscores
+ * and colons, counters end with <CODE>_total</CODE> and the unit is a suffix
+ * (e.g. <CODE>_bytes</CODE>). The registry is reset between the runs of a
+ * batch, so modules should get their metrics when they are initialized,
+ * not in static initializers.
+ */
+public class MetricsRegistry {
+    private static final Pattern NAME = Pattern.compile(
+            "[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static MetricsRegistry registry;
+
+    private Map<String, Metric> metrics;
+
+    static {
+        DTNSim.registerForReset(MetricsRegistry.class.getCanonicalName());
+        reset();
+    }
+
+    private MetricsRegistry() {
+        this.metrics = new LinkedHashMap<String, Metric>();
+    }
+
+    /**
+     * Returns the registry of the current run.
+     * @return The registry
+     */
+    public static MetricsRegistry getInstance() {
+        return registry;
+    }
+
+    /**
+     * Resets the static fields of the class
+     */
+    public static void reset() {
+        registry = new MetricsRegistry();
+    }
+
+    /**
+     * Returns a counter, registering it if needed.
+     *
+     * @param name Name of the counter
+     * @param help Description of the counter
+     * @return The counter
+     * @throws SimError if the name is invalid or belongs to a metric of
+     * another type
+     */
+    public Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+
+    /**
+     * Returns a gauge that is set by its users, registering it if needed.
+     *
+     * @param name Name of the gauge
+     * @param help Description of the gauge
+     * @return The gauge
+     * @throws SimError if the name is invalid or belongs to a metric of
+     * another type
+     */
+    public Gauge gauge(String name, String help) {
+        return register(new Gauge(name, help));
+    }
+
+    /**
+     * Returns a histogram, registering it if needed.
+     *
+     * @param name Name of the histogram
+     * @param help Description of the histogram
+     * @param bounds Upper bounds of the buckets in ascending order (a bucket
+     * for the larger values is added)
+     * @return The histogram
+     * @throws SimError if the name is invalid or belongs to a metric of
+     * another type
+     */
+    public Histogram histogram(String name, String help, double[] bounds) {
+        return register(new Histogram(name, help, bounds));
+    }
+
+    /**
+     * Registers a metric unless a metric with the same name is already
+     * registered. Gauges that compute their value when read (by overriding
+     * {@link Gauge#getValue()}) are registered with this.
+     *
+     * @param metric The metric
+     * @return The registered metric with the name of the given metric
+     * @throws SimError if the name is invalid or belongs to a metric of
+     * another type
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Metric> T register(T metric) {
+        Metric old = metrics.get(metric.getName());
+        if (old == null) {
+            metrics.put(metric.getName(), metric);
+            return metric;
+        }
+        if (!old.getType().equals(metric.getType())) {
+            throw new SimError("Metric " + metric.getName() + " is already " +
+                    "registered as a " + old.getType());
+        }
+        return (T) old;
+    }
+
+    /**
+     * Returns a registered metric.
+     * @param name Name of the metric
+     * @return The metric or null if there's no metric with the name
+     */
+    public Metric get(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * Returns all the registered metrics in the order they were registered.
+     * @return The metrics
+     */
+    public Collection<Metric> getMetrics() {
+        return Collections.unmodifiableCollection(
+                new ArrayList<Metric>(metrics.values()));
+    }
+
+    /**
+     * A named metric.
+     */
+    public abstract static class Metric {
+        private final String name;
+        private final String help;
+
+        /**
+         * Constructor.
+         * @param name Name of the metric
+         * @param help Description of the metric
+         */
+        protected Metric(String name, String help) {
+            if (name == null || !NAME.matcher(name).matches()) {
+                throw new SimError("Invalid metric name '" + name + "'");
+            }
+            this.name = name;
+            this.help = help;
+        }
+
+        /** @return The name of the metric */
+        public String getName() {
+            return name;
+        }
+
+        /** @return The description of the metric */
+        public String getHelp() {
+            return help;
+        }
+
+        /** @return The Prometheus type of the metric */
+        public abstract String getType();
+    }
+
+    /**
+     * A count that only increases.
+     */
+    public static class Counter extends Metric {
+        private long value;
+
+        /**
+         * Constructor.
+         * @param name Name of the counter
+         * @param help Description of the counter
+         */
+        public Counter(String name, String help) {
+            super(name, help);
+        }
+
+        /**
+         * Increments the counter by one
+         */
+        public void inc() {
+            value++;
+        }
+
+        /**
+         * Increments the counter.
+         * @param amount The amount to add (must not be negative)
+         */
+        public void inc(long amount) {
+            if (amount < 0) {
+                throw new SimError("Counter " + getName() +
+                        " can't be decremented");
+            }
+            value += amount;
+        }
+
+        /** @return The count */
+        public long getValue() {
+            return value;
+        }
+
+        @Override
+        public String getType() {
+            return "counter";
+        }
+    }
+
+    /**
+     * A value that can go up and down. Gauges that are computed from other
+     * values override {@link #getValue()}.
+     */
+    public static class Gauge extends Metric {
+        private double value;
+
+        /**
+         * Constructor.
+         * @param name Name of the gauge
+         * @param help Description of the gauge
+         */
+        public Gauge(String name, String help) {
+            super(name, help);
+        }
+
+        /**
+         * Sets the value.
+         * @param value The new value
+         */
+        public void set(double value) {
+            this.value = value;
+        }
+
+        /**
+         * Increases the value.
+         * @param amount The amount to add
+         */
+        public void inc(double amount) {
+            this.value += amount;
+        }
+
+        /**
+         * Decreases the value.
+         * @param amount The amount to subtract
+         */
+        public void dec(double amount) {
+            this.value -= amount;
+        }
+
+        /** @return The current value */
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public String getType() {
+            return "gauge";
+        }
+    }
+
+    /**
+     * Counts of observed values in buckets with fixed upper bounds, with the
+     * number and the sum of the values.
+     */
+    public static class Histogram extends Metric {
+        private final double[] bounds;
+        /** counts of the buckets; the last one is for the values above all
+         * the bounds */
+        private final long[] counts;
+        private long count;
+        private double sum;
+
+        /**
+         * Constructor.
+         * @param name Name of the histogram
+         * @param help Description of the histogram
+         * @param bounds Upper bounds of the buckets in ascending order
+         */
+        public Histogram(String name, String help, double[] bounds) {
+            super(name, help);
+            for (int i = 1; i < bounds.length; i++) {
+                if (!(bounds[i] > bounds[i - 1])) {
+                    throw new SimError("Bucket bounds of " + name +
+                            " are not in ascending order");
+                }
+            }
+            this.bounds = bounds.clone();
+            this.counts = new long[bounds.length + 1];
+        }
+
+        /**
+         * Adds a value to the histogram.
+         * @param value The value
+         */
+        public void observe(double value) {
+            int i = Arrays.binarySearch(bounds, value);
+            if (i < 0) {
+                i = -i - 1; // the first bound above the value
+            }
+            counts[i]++;
+            count++;
+            sum += value;
+        }
+
+        /** @return Copy of the upper bounds of the buckets */
+        public double[] getBounds() {
+            return bounds.clone();
+        }
+
+        /**
+         * Returns the number of values in a bucket and in the buckets below
+         * it (as the buckets of Prometheus histograms).
+         * @param index Index of the bucket; the number of bounds for the
+         * bucket of all the values
+         * @return The cumulative count
+         */
+        public long getCumulativeCount(int index) {
+            long c = 0;
+            for (int i = 0; i <= index; i++) {
+                c += counts[i];
+            }
+            return c;
+        }
+
+        /** @return The number of observed values */
+        public long getCount() {
+            return count;
+        }
+
+        /** @return The sum of the observed values */
+        public double getSum() {
+            return sum;
+        }
+
+        @Override
+        public String getType() {
+            return "histogram";
+        }
+    }
+}
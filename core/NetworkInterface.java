@@ -94,6 +94,12 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
      */
     private int activenessJitterValue;
 
+    /**
+     * contact metrics of the interfaces in the metrics registry
+     */
+    private MetricsRegistry.Gauge activeContacts;
+    private MetricsRegistry.Counter contacts;
+
     static {
         DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
         reset();
@@ -164,6 +170,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
      */
     public void setHost(DTNHost host) {
         this.host = host;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.activeContacts = metrics.gauge("contacts_active",
+                "Connections that are up");
+        this.contacts = metrics.counter("contacts_total",
+                "Connections set up");
         ModuleCommunicationBus comBus = host.getComBus();
 
         if (!comBus.containsProperty(SCAN_INTERVAL_ID)
@@ -353,6 +364,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
      */
     protected void connect(Connection con, NetworkInterface anotherInterface) {
         this.connections.add(con);
+        this.activeContacts.inc(1);
+        this.contacts.inc();
         notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
         // set up bidirectional connection
@@ -372,6 +385,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
     protected void disconnect(Connection con,
             NetworkInterface anotherInterface) {
         con.setUpState(false);
+        this.activeContacts.dec(1);
         notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 
         // tear down bidirectional connection
@@ -541,6 +555,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
         Connection con = this.connections.get(index);
         DTNHost anotherNode = anotherInterface.getHost();
         con.setUpState(false);
+        this.activeContacts.dec(1);
         notifyConnectionListeners(CON_DOWN, anotherNode);
 
         // tear down bidirectional connection
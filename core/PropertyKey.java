@@ -0,0 +1,155 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Key of a typed message property. Keys are registered once by name, usually
+ * into a static constant of the class that uses the property, and each key
+ * gets a slot index in the property arrays of {@link Message}. Integer, long
+ * and floating point properties are stored unboxed; use the primitive
+ * accessors of Message (e.g. {@link Message#getIntProperty(PropertyKey)})
+ * to avoid boxing altogether.
+ * <P>
+ * Registering the same name again returns the same key, so unrelated classes
+ * that agree on a property name (like the hello message properties of the
+ * social routers) share the value. The name can also be used with the string
+ * based property methods of Message.
+ *
+ * @param <T> Type of the property value
+ */
+public final class PropertyKey<T> {
+
+    /** Maximum number of primitive property keys */
+    public static final int MAX_PRIMITIVE_KEYS = 64;
+
+    /** How the values of a key are stored */
+    enum Kind { OBJECT, INT, LONG, DOUBLE }
+
+    private static Map<String, PropertyKey<?>> keys =
+        new HashMap<String, PropertyKey<?>>();
+    private static int nrofObjectKeys = 0;
+    private static int nrofPrimitiveKeys = 0;
+
+    private final String name;
+    private final Kind kind;
+    private final int index;
+
+    private PropertyKey(String name, Kind kind, int index) {
+        this.name = name;
+        this.kind = kind;
+        this.index = index;
+    }
+
+    /**
+     * Returns the key of an object valued property.
+     *
+     * @param name Name of the property
+     * @return The key
+     * @throws SimError if the name is registered with a primitive type
+     */
+    public static <T> PropertyKey<T> of(String name) {
+        return register(name, Kind.OBJECT);
+    }
+
+    /**
+     * Returns the key of an integer valued property.
+     *
+     * @param name Name of the property
+     * @return The key
+     * @throws SimError if the name is registered with another type
+     */
+    public static PropertyKey<Integer> ofInt(String name) {
+        return register(name, Kind.INT);
+    }
+
+    /**
+     * Returns the key of a long valued property.
+     *
+     * @param name Name of the property
+     * @return The key
+     * @throws SimError if the name is registered with another type
+     */
+    public static PropertyKey<Long> ofLong(String name) {
+        return register(name, Kind.LONG);
+    }
+
+    /**
+     * Returns the key of a floating point valued property.
+     *
+     * @param name Name of the property
+     * @return The key
+     * @throws SimError if the name is registered with another type
+     */
+    public static PropertyKey<Double> ofDouble(String name) {
+        return register(name, Kind.DOUBLE);
+    }
+
+    /**
+     * Returns the key registered with the given name, registering an object
+     * key if there is none yet.
+     *
+     * @param name Name of the property
+     * @return The key
+     */
+    static synchronized PropertyKey<?> forName(String name) {
+        PropertyKey<?> key = keys.get(name);
+        return key != null ? key : register(name, Kind.OBJECT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized <T> PropertyKey<T> register(String name,
+            Kind kind) {
+        PropertyKey<?> key = keys.get(name);
+        if (key != null) {
+            if (key.kind != kind) {
+                throw new SimError("Message property " + name +
+                        " is already registered as " + key.kind);
+            }
+            return (PropertyKey<T>) key;
+        }
+
+        int index;
+        if (kind == Kind.OBJECT) {
+            index = nrofObjectKeys++;
+        } else {
+            if (nrofPrimitiveKeys == MAX_PRIMITIVE_KEYS) {
+                throw new SimError("Too many primitive message properties (" +
+                        name + ")");
+            }
+            index = nrofPrimitiveKeys++;
+        }
+        key = new PropertyKey<T>(name, kind, index);
+        keys.put(name, key);
+        return (PropertyKey<T>) key;
+    }
+
+    /**
+     * Returns the name of the property
+     *
+     * @return The name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the slot index of the key among the keys of the same storage
+     * (object or primitive).
+     */
+    int getIndex() {
+        return this.index;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
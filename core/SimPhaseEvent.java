@@ -0,0 +1,60 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event of a phase of a world update (see
+ * {@link SimProfiler}). The class is loaded only if the JFR events are
+ * enabled.
+ */
+@Name("one.SimulationPhase")
+@Label("Simulation Phase")
+@Category("ONE Simulator")
+@Description("Time and allocations of a phase of a world update")
+@StackTrace(false)
+public class SimPhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Simulation Time")
+    @Description("Simulation time at the end of the update (seconds)")
+    double simTime;
+
+    @Label("Wall Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long wallTime;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocated;
+
+    /**
+     * Records an event if the event is enabled in the running recording.
+     * @param phase Name of the phase
+     * @param simTime Simulation time
+     * @param wallTime Wall clock time of the phase (nanoseconds)
+     * @param allocated Bytes allocated in the phase
+     */
+    public static void record(String phase, double simTime, long wallTime,
+            long allocated) {
+        SimPhaseEvent e = new SimPhaseEvent();
+        if (!e.isEnabled()) {
+            return;
+        }
+        e.phase = phase;
+        e.simTime = simTime;
+        e.wallTime = wallTime;
+        e.allocated = allocated;
+        e.commit();
+    }
+}
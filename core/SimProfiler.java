@@ -0,0 +1,226 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures where the wall clock time and the memory allocations of the
+ * simulation go. {@link World#update()} marks the phase it enters (external
+ * events, movement, connectivity, routing and update listeners) and the
+ * profiler charges the time and the bytes allocated by the simulation thread
+ * since the previous mark to the previous phase. The allocations are read
+ * from the {@link ThreadMXBean} of the JVM; if the JVM can't measure them,
+ * only the times are reported.
+ * <P>
+ * Profiling is off by default (see {@link #ENABLED_S}). Marking a phase
+ * takes two clock reads per host and update, which slows the simulation
+ * down by a few percent. The phases can also be recorded as Java Flight
+ * Recorder events (see {@link #JFR_S}), one event per phase and world
+ * update.
+ */
+public class SimProfiler {
+    /** Name space of the profiler settings ({@value}) */
+    public static final String PROFILER_NS = "Profiler";
+    /** Enable profiling -setting id ({@value}). Boolean, default false. */
+    public static final String ENABLED_S = "enabled";
+    /** Record the phases as Java Flight Recorder events -setting id
+     * ({@value}). Boolean, default false. The events are recorded only if a
+     * flight recording is running (e.g. with
+     * <CODE>-XX:StartFlightRecording</CODE>). */
+    public static final String JFR_S = "jfrEvents";
+
+    /* the phases of a world update */
+    public static final int EVENTS = 0;
+    public static final int MOVEMENT = 1;
+    public static final int CONNECTIVITY = 2;
+    public static final int ROUTING = 3;
+    public static final int LISTENERS = 4;
+    /** Names of the phases by phase number */
+    public static final String[] PHASE_NAMES = {"events", "movement",
+            "connectivity", "routing", "listeners"};
+    private static final int NONE = -1;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final boolean jfrEvents;
+
+    private int current;
+    private long phaseStart;
+    private long phaseAllocStart;
+    /** totals of the run */
+    private final long[] nanos;
+    private final long[] bytes;
+    /** totals at the end of the previous summary */
+    private final long[] intervalNanos;
+    private final long[] intervalBytes;
+    /** totals at the start of the current world update (for JFR) */
+    private final long[] updateNanos;
+    private final long[] updateBytes;
+
+    /**
+     * Creates a profiler with settings from the {@link #PROFILER_NS}
+     * name space.
+     * @param s The settings
+     */
+    public SimProfiler(Settings s) {
+        this(s.getBoolean(JFR_S, false));
+    }
+
+    /**
+     * Creates a profiler.
+     * @param jfrEvents If true, the phases are recorded as JFR events
+     */
+    public SimProfiler(boolean jfrEvents) {
+        this.jfrEvents = jfrEvents;
+        this.threads = allocationBean();
+        int n = PHASE_NAMES.length;
+        this.nanos = new long[n];
+        this.bytes = new long[n];
+        this.intervalNanos = new long[n];
+        this.intervalBytes = new long[n];
+        this.updateNanos = new long[n];
+        this.updateBytes = new long[n];
+        this.current = NONE;
+    }
+
+    /**
+     * Returns a profiler if profiling is enabled in the settings.
+     * @return The profiler or null if profiling is disabled
+     */
+    public static SimProfiler create() {
+        Settings s = new Settings(PROFILER_NS);
+        if (!s.getBoolean(ENABLED_S, false)) {
+            return null;
+        }
+        return new SimProfiler(s);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean b =
+                (com.sun.management.ThreadMXBean) bean;
+        try {
+            if (!b.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            b.setThreadAllocatedMemoryEnabled(true);
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+        return b;
+    }
+
+    /**
+     * Returns true if the allocations are measured
+     * @return True if the JVM can measure the allocations
+     */
+    public boolean isAllocationMeasured() {
+        return threads != null;
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Enters a phase, ending the current one.
+     * @param phase The phase (e.g. {@link #MOVEMENT})
+     */
+    public void enter(int phase) {
+        long now = System.nanoTime();
+        long alloc = allocatedBytes();
+        if (current != NONE) {
+            nanos[current] += now - phaseStart;
+            bytes[current] += alloc - phaseAllocStart;
+        }
+        current = phase;
+        phaseStart = now;
+        phaseAllocStart = alloc;
+    }
+
+    /**
+     * Ends the current phase at the end of a world update, and records the
+     * phases of the update as JFR events if requested.
+     */
+    public void updateDone() {
+        enter(NONE);
+        if (!jfrEvents) {
+            return;
+        }
+        for (int i = 0; i < nanos.length; i++) {
+            long dt = nanos[i] - updateNanos[i];
+            if (dt > 0) {
+                SimPhaseEvent.record(PHASE_NAMES[i], SimClock.getTime(), dt,
+                        bytes[i] - updateBytes[i]);
+            }
+            updateNanos[i] = nanos[i];
+            updateBytes[i] = bytes[i];
+        }
+    }
+
+    /**
+     * Returns the total wall clock time of a phase.
+     * @param phase The phase
+     * @return The time (nanoseconds)
+     */
+    public long getNanos(int phase) {
+        return nanos[phase];
+    }
+
+    /**
+     * Returns the total bytes allocated in a phase.
+     * @param phase The phase
+     * @return The bytes (0 if the allocations are not measured)
+     */
+    public long getAllocatedBytes(int phase) {
+        return bytes[phase];
+    }
+
+    /**
+     * Returns a table of the phases since the previous call of this method
+     * (or since the start).
+     * @return The table
+     */
+    public String intervalSummary() {
+        String s = summary(intervalNanos, intervalBytes);
+        System.arraycopy(nanos, 0, intervalNanos, 0, nanos.length);
+        System.arraycopy(bytes, 0, intervalBytes, 0, bytes.length);
+        return s;
+    }
+
+    /**
+     * Returns a table of the phases since the start.
+     * @return The table
+     */
+    public String totalSummary() {
+        return summary(new long[nanos.length], new long[bytes.length]);
+    }
+
+    /**
+     * Formats the phases as a table of the time, share of the time and
+     * allocations since the given totals.
+     */
+    private String summary(long[] fromNanos, long[] fromBytes) {
+        long total = 0;
+        for (int i = 0; i < nanos.length; i++) {
+            total += nanos[i] - fromNanos[i];
+        }
+        StringBuilder sb = new StringBuilder(String.format(
+                "%-13s %10s %7s %12s", "phase", "wall(s)", "share",
+                "alloc(MB)"));
+        for (int i = 0; i < nanos.length; i++) {
+            long dt = nanos[i] - fromNanos[i];
+            sb.append(String.format("%n%-13s %10.3f %6.1f%% %12s",
+                    PHASE_NAMES[i], dt / 1e9,
+                    total > 0 ? 100.0 * dt / total : 0.0,
+                    threads != null ? String.format("%.1f",
+                            (bytes[i] - fromBytes[i]) / 1048576.0) : "n/a"));
+        }
+        return sb.toString();
+    }
+}
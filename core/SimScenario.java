@@ -117,6 +117,10 @@ public class SimScenario implements Serializable {
 	private List<UpdateListener> updateListeners;
 	/** Global application event listeners */
 	private List<ApplicationListener> appListeners;
+	/** Global ICN event listeners */
+	private List<ICNListener> icnListeners;
+	/** The ICN event listeners by event type (shared by the routers) */
+	private ICNEvents icnEvents;
 
 	static {
 		DTNSim.registerForReset(SimScenario.class.getCanonicalName());
@@ -151,6 +155,8 @@ public class SimScenario implements Serializable {
 		this.movementListeners = new ArrayList<MovementListener>();
 		this.updateListeners = new ArrayList<UpdateListener>();
 		this.appListeners = new ArrayList<ApplicationListener>();
+		this.icnListeners = new ArrayList<ICNListener>();
+		this.icnEvents = new ICNEvents();
 		this.eqHandler = new EventQueueHandler();
 
 		/* TODO: check size from movement models */
@@ -315,6 +321,23 @@ public class SimScenario implements Serializable {
 		return this.appListeners;
 	}
 
+	/**
+	 * Adds a new ICN event listener for all nodes.
+	 * @param il The listener
+	 */
+	public void addICNListener(ICNListener il) {
+		this.icnListeners.add(il);
+		this.icnEvents.add(il);
+	}
+
+	/**
+	 * Returns the list of registered ICN event listeners
+	 * @return the list of registered ICN event listeners
+	 */
+	public List<ICNListener> getICNListeners() {
+		return this.icnListeners;
+	}
+
 	/**
 	 * Creates hosts for the scenario
 	 */
@@ -338,6 +361,7 @@ public class SimScenario implements Serializable {
 			MessageRouter mRouterProto =
 				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE +
 						s.getSetting(ROUTER_S));
+			mRouterProto.setICNListeners(this.icnEvents);
 
 			/* checks that these values are positive (throws Error if not) */
 			s.ensurePositiveValue(nrofHosts, NROF_HOSTS_S);
@@ -55,7 +55,8 @@ public class VBRConnection extends Connection {
 		if (retVal == MessageRouter.RCV_OK) {
 			this.msgOnFly = newMessage;
 			this.msgsize = m.getSize();
-			this.msgsent = 0;
+			this.msgOffset = getResumeOffset(from, newMessage);
+			this.msgsent = this.msgOffset;
 		}
 
 		return retVal;
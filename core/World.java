@@ -70,6 +70,10 @@ public class World {
      */
     private ScheduledUpdatesQueue scheduledUpdates;
     private boolean simulateConOnce;
+    /**
+     * Profiler of the updates (null if profiling is disabled)
+     */
+    private SimProfiler profiler;
 
     /**
      * Constructor.
@@ -105,6 +109,7 @@ public class World {
             randomizeUpdates = s.getBoolean(RANDOMIZE_UPDATES_S);
         }
         simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
+        this.profiler = SimProfiler.create();
 
         if (randomizeUpdates) {
             // creates the update order array that can be shuffled
@@ -169,22 +174,68 @@ public class World {
 
         /* process all events that are due until next interval update */
         while (this.nextQueueEventTime <= runUntil) {
+            enterPhase(SimProfiler.EVENTS);
             simClock.setTime(this.nextQueueEventTime);
             ExternalEvent ee = this.nextEventQueue.nextEvent();
             ee.processEvent(this);
             updateHosts(); // update all hosts after every event
+            enterPhase(SimProfiler.EVENTS);
             setNextEventQueue();
         }
 
+        enterPhase(SimProfiler.MOVEMENT);
         moveHosts(this.updateInterval);
         simClock.setTime(runUntil);
 
         updateHosts();
 
         /* inform all update listeners */
+        enterPhase(SimProfiler.LISTENERS);
         for (UpdateListener ul : this.updateListeners) {
             ul.updated(this.hosts);
         }
+        if (this.profiler != null) {
+            this.profiler.updateDone();
+        }
+    }
+
+    /**
+     * Tells the profiler (if profiling is enabled) that a phase of the
+     * update starts.
+     *
+     * @param phase The phase
+     */
+    private void enterPhase(int phase) {
+        if (this.profiler != null) {
+            this.profiler.enter(phase);
+        }
+    }
+
+    /**
+     * Updates a host, timing the network layer and the router separately if
+     * profiling is enabled.
+     *
+     * @param host The host to update
+     */
+    private void updateHost(DTNHost host) {
+        if (this.profiler == null) {
+            host.update(simulateConnections);
+            return;
+        }
+        this.profiler.enter(SimProfiler.CONNECTIVITY);
+        if (host.updateConnections(simulateConnections)) {
+            this.profiler.enter(SimProfiler.ROUTING);
+            host.updateRouter();
+        }
+    }
+
+    /**
+     * Returns the profiler of the updates.
+     *
+     * @return The profiler or null if profiling is disabled
+     */
+    public SimProfiler getProfiler() {
+        return this.profiler;
     }
 
     /**
@@ -198,7 +249,7 @@ public class World {
                 if (this.isCancelled) {
                     break;
                 }
-                hosts.get(i).update(simulateConnections);
+                updateHost(hosts.get(i));
             }
         } else { // update order randomizing is on
             assert this.updateOrder.size() == this.hosts.size() :
@@ -209,7 +260,7 @@ public class World {
                 if (this.isCancelled) {
                     break;
                 }
-                this.updateOrder.get(i).update(simulateConnections);
+                updateHost(this.updateOrder.get(i));
             }
         }
 
@@ -308,14 +359,14 @@ public class World {
             int n;
             for (int j = 0; j < length; j++) {;
                 n = rand.nextInt(tmpTrack.size()) + 1;
-                Content c = new Content(tmpTrack.get(n - 1), ContentType.Content, SimClock.getTime(), (double) 3600, drawMessageSize());
+                Content c = new Content(tmpTrack.get(n - 1), ContentType.Content, SimClock.getTime(), (double) 3600, drawContentSize(tmpTrack.get(n - 1)));
                 c.setIsPublishedContent(true);
                 contentEachPublisher.add(c);
                 tmpTrack.remove(n - 1);
             }
             if (i < MessageEventGenerator.numOfContents % MessageEventGenerator.arrayPublishers.length) {
                 n = rand.nextInt(tmpTrack.size()) + 1;
-                Content c = new Content(tmpTrack.get(n - 1), ContentType.Content, SimClock.getTime(), (double) 3600, drawMessageSize());
+                Content c = new Content(tmpTrack.get(n - 1), ContentType.Content, SimClock.getTime(), (double) 3600, drawContentSize(tmpTrack.get(n - 1)));
                 c.setIsPublishedContent(true);
                 contentEachPublisher.add(c);
                 tmpTrack.remove(n - 1);
@@ -324,6 +375,20 @@ public class World {
         }
     }
 
+    /**
+     * Returns the size of a published content: the size given by the
+     * popularity trace if one is used, otherwise a random size.
+     *
+     * @param contentId Id of the content
+     * @return The size of the content
+     */
+    protected int drawContentSize(int contentId) {
+        if (MessageEventGenerator.popularityTrace != null) {
+            return MessageEventGenerator.popularityTrace.getSize(contentId);
+        }
+        return drawMessageSize();
+    }
+
     protected int drawMessageSize() {
         Random rng = new Random();
         int sizeDiff = MessageEventGenerator.sizeRange[0] == MessageEventGenerator.sizeRange[1] ? 0
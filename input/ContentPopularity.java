@@ -0,0 +1,26 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+/**
+ * Interface for content popularity models that draw which content a request
+ * is for. Contents are identified by their popularity rank 1...N, 1 being the
+ * most popular one.
+ */
+public interface ContentPopularity {
+
+    /**
+     * Draws the content of the next request.
+     *
+     * @return A content id in range 1...{@link #getNrofContents()}
+     */
+    public int next();
+
+    /**
+     * Returns the number of contents the model draws from.
+     *
+     * @return The number of contents
+     */
+    public int getNrofContents();
+}
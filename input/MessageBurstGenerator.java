@@ -51,7 +51,8 @@ public class MessageBurstGenerator extends MessageEventGenerator {
 
 		msgSize = drawMessageSize();
 		MessageCreateEvent mce = new MessageCreateEvent(from, to, getID(),
-				msgSize, responseSize, this.nextEventsTime, -1);
+				msgSize, responseSize, this.nextEventsTime, -1,
+				this.popularity);
 
 		if (to < this.toHostRange[1] - 1) {
 			this.nextToOffset++;
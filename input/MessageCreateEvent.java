@@ -8,6 +8,7 @@ import core.Content;
 import core.ContentType;
 import core.DTNHost;
 import core.Message;
+import core.MessageKind;
 import core.World;
 import core.DTNSim;
 import core.SimClock;
@@ -21,6 +22,10 @@ public class MessageCreateEvent extends MessageEvent {
     private int size;
     private int responseSize;
     private int interestSize;
+    /** Sampler of the requested content, or null for the shared one */
+    private ContentPopularity popularity;
+    /** Id of the requested content, or 0 if it is drawn from a sampler */
+    private int contentId;
 
     /**
      * Creates a message creation event with a optional response request
@@ -36,10 +41,69 @@ public class MessageCreateEvent extends MessageEvent {
      */
     public MessageCreateEvent(int from, int to, String id, int size,
             int responseSize, double time, int interestSize) {
+        this(from, to, id, size, responseSize, time, interestSize, null);
+    }
+
+    /**
+     * Creates a message creation event whose requested content is drawn from
+     * the given sampler when the event is processed.
+     *
+     * @param from The creator of the message
+     * @param to Where the message is destined to
+     * @param id ID of the message
+     * @param size Size of the message
+     * @param responseSize Size of the requested response message or 0 if no
+     * response is requested
+     * @param time Time, when the message is created
+     * @param interestSize
+     * @param popularity Sampler of the requested content, or null to use
+     * {@link MessageEventGenerator#zipf}
+     */
+    public MessageCreateEvent(int from, int to, String id, int size,
+            int responseSize, double time, int interestSize,
+            ContentPopularity popularity) {
         super(from, to, id, time);
         this.size = size;
         this.responseSize = responseSize;
         this.interestSize = interestSize;
+        this.popularity = popularity;
+    }
+
+    /**
+     * Creates a message creation event for a request of a given content.
+     *
+     * @param from The creator of the message
+     * @param to Where the message is destined to
+     * @param id ID of the message
+     * @param size Size of the message
+     * @param responseSize Size of the requested response message or 0 if no
+     * response is requested
+     * @param time Time, when the message is created
+     * @param interestSize
+     * @param contentId Id of the requested content
+     */
+    public MessageCreateEvent(int from, int to, String id, int size,
+            int responseSize, double time, int interestSize, int contentId) {
+        this(from, to, id, size, responseSize, time, interestSize, null);
+        this.contentId = contentId;
+    }
+
+    /**
+     * Returns the id of the requested content.
+     *
+     * @return The content id, or 0 if it is drawn when the event is processed
+     */
+    public int getContentId() {
+        return this.contentId;
+    }
+
+    /**
+     * Returns the size of the message.
+     *
+     * @return The size
+     */
+    public int getSize() {
+        return this.size;
     }
 
     /**
@@ -56,9 +120,12 @@ public class MessageCreateEvent extends MessageEvent {
         // Modified CODE BY VU SAN HA HUYNH
         // Assume interest requested and content published at the same time, destination does not matter (unknonwn in realistic)
         // Interest - Type: 0
-        int zipfNumber = MessageEventGenerator.zipf.next();
+        int zipfNumber = contentId > 0 ? contentId
+                : (popularity != null ? popularity
+                        : MessageEventGenerator.zipf).next();
         Content content = new Content(zipfNumber, ContentType.Interest, SimClock.getTime(), 0, interestSize);
-        Message m1 = new Message(from, null, this.id + "_interest", interestSize, content);
+        int requestId = Message.requestIdOf(this.id);
+        Message m1 = new Message(from, null, requestId, MessageKind.Interest, interestSize, content);
 
         m1.setResponseSize(this.responseSize);
         from.createNewMessage(m1);
@@ -77,7 +144,7 @@ public class MessageCreateEvent extends MessageEvent {
         /*Random rand = new Random();
                 content = new Content(zipfNumber, ContentType.Advert, SimClock.getTime(), 0);*/
         Content c = new Content(content.getContentId(), ContentType.Advert, SimClock.getTime(), (double) 3600, this.size);
-        Message m2 = new Message(tmpTo, null, this.id + "_advert", this.size, c);
+        Message m2 = new Message(tmpTo, null, requestId, MessageKind.Advert, this.size, c);
 
         m2.setResponseSize(this.responseSize);
         tmpTo.createNewMessage(m2);
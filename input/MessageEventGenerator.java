@@ -32,6 +32,22 @@ public class MessageEventGenerator implements EventQueue {
 
     public static final String CONTENT_SIZE_S = "numOfContents";
     public static final String ZIPF_ALPHA = "zipfAlpha";
+    /**
+     * Seed of the content popularity (Zipf) sampler -setting id ({@value}).
+     * Each generator draws the requested contents from its own sampler.
+     * Default is derived from the {@link #MESSAGE_ID_PREFIX_S message id
+     * prefix}, so generators with different prefixes draw different content
+     * sequences.
+     */
+    public static final String ZIPF_SEED_S = "zipfSeed";
+    /**
+     * Content popularity trace file -setting id ({@value}). If defined, the
+     * requested contents and their sizes are drawn from the trace (see
+     * {@link RealContentTracesGenerator}) instead of the Zipf distribution and
+     * the size setting, and at most {@link #CONTENT_SIZE_S} contents are read
+     * from it. The seed is the {@link #ZIPF_SEED_S} setting.
+     */
+    public static final String POPULARITY_TRACE_S = "popularityTrace";
 
     public static final String MESSAGE_INTEREST_SIZE = "interestSize";
     /**
@@ -111,9 +127,18 @@ public class MessageEventGenerator implements EventQueue {
     public static int[] arrayPublishers;
 
     /**
-     * Random number generator for this Class
+     * Content popularity sampler of the latest generator
+     */
+    public static ContentPopularity zipf;
+    /**
+     * Popularity trace of the latest generator, or null if the contents are
+     * drawn from the Zipf distribution
      */
-    public static ZipfGenerator zipf;
+    public static RealContentTracesGenerator popularityTrace;
+    /**
+     * Content popularity sampler of this generator
+     */
+    protected ContentPopularity popularity;
     public static int numOfContents;
     public double zipfAlpha;
     protected Random rng;
@@ -134,8 +159,24 @@ public class MessageEventGenerator implements EventQueue {
         this.percentSubscriber = s.getDouble(PERCENT_SUBSCRIBER);
         this.percentPublisher = s.getDouble(PERCENT_PUBLISHER);
         this.zipfAlpha = s.getDouble(ZIPF_ALPHA);
-        zipf = new ZipfGenerator(numOfContents, this.zipfAlpha); //size, skewness
-        //zipf = new RealContentTracesGenerator(numOfContents);
+        /* like the rng's seed, but not the same as it */
+        long zipfSeed = s.contains(ZIPF_SEED_S) ? s.getInt(ZIPF_SEED_S)
+                : ZipfGenerator.DEFAULT_SEED + 31L * idPrefix.hashCode();
+        if (numOfContents < 1 || this.zipfAlpha < 0) {
+            throw new SettingsError("Invalid " + CONTENT_SIZE_S + " or "
+                    + ZIPF_ALPHA + " setting");
+        }
+        if (s.contains(POPULARITY_TRACE_S)) {
+            popularityTrace = new RealContentTracesGenerator(
+                    s.getSetting(POPULARITY_TRACE_S), numOfContents, zipfSeed);
+            numOfContents = popularityTrace.getNrofContents();
+            this.popularity = popularityTrace;
+        } else {
+            popularityTrace = null;
+            this.popularity = new ZipfGenerator(numOfContents,
+                    this.zipfAlpha, zipfSeed); //size, skewness
+        }
+        zipf = this.popularity;
 
         if (s.contains(MESSAGE_TIME_S)) {
             this.msgTime = s.getCsvDoubles(MESSAGE_TIME_S, 2);
@@ -361,7 +402,8 @@ public class MessageEventGenerator implements EventQueue {
 
         /* Create event and advance to next event */
         MessageCreateEvent mce = new MessageCreateEvent(from, to, this.getID(),
-                msgSize, responseSize, this.nextEventsTime, drawInterestMessageSize());
+                msgSize, responseSize, this.nextEventsTime, drawInterestMessageSize(),
+                this.popularity);
         this.nextEventsTime += interval;
 
         if (this.msgTime != null && this.nextEventsTime > this.msgTime[1]) {
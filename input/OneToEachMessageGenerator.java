@@ -67,7 +67,8 @@ public class OneToEachMessageGenerator extends MessageEventGenerator {
 		}
 
 		MessageCreateEvent mce = new MessageCreateEvent(from, to, getID(),
-				drawMessageSize(), responseSize, this.nextEventsTime, -1);
+				drawMessageSize(), responseSize, this.nextEventsTime, -1,
+				this.popularity);
 
 		return mce;
 	}
@@ -5,89 +5,292 @@
  */
 package input;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.NavigableMap;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import javafx.collections.transformation.SortedList;
+
+import core.SimError;
 
 /**
+ * Content popularity model that draws the requested contents by the view
+ * counts of a real content trace (e.g., the YouTube dataset). Each line of
+ * the trace describes one item as <CODE>|</CODE> separated fields, of which
+ * the second one is the length of the item (<CODE>[h:]m:s</CODE>) and the
+ * third one is its view count. Items with at most {@link #MIN_VIEWS} views
+ * are ignored.
+ * <P>
+ * The items are ranked by their view counts: content 1 is the most viewed
+ * item and is requested with a probability of its share of all the views.
+ * The size of each content is derived from the length of the item.
+ * <P>
+ * The trace is read once and the result is cached in a binary file next to
+ * it (the trace's name + {@link #CACHE_SUFFIX}), which is used instead of
+ * the trace as long as the trace does not change.
  *
  * @author psxvsh
  */
-public class RealContentTracesGenerator {
-
-    static String filepath = "F:\\Computer Science\\PhD\\One Simulator\\data\\Youtube Dataset\\";
-    static long totalViews = 3708600000L;
-    static double averageContentSize = 8.4; // MB
-    static double totalLength = 15.2; // years
-    static double averageLength = 4.97; // minutes
-
-    private Random random = new Random(0);
-    private NavigableMap<Double, HashMap<Integer, Double>> map;
-
-    public RealContentTracesGenerator(int numberOfContents) {
-        map = computeMap(numberOfContents);
-        /*for (Entry<Double, HashMap<Integer, Double>> entry : map.entrySet()) {
-            System.out.printf("%f ", entry.getKey());
-        }*/
+public class RealContentTracesGenerator implements ContentPopularity {
+
+    /** Suffix of the compiled trace file name ({@value}) */
+    public static final String CACHE_SUFFIX = ".popularity";
+    /** Items with at most this many views are ignored ({@value}) */
+    public static final int MIN_VIEWS = 100;
+
+    static final double averageContentSize = 8.4; // MB
+    static final double averageLength = 4.97; // minutes
+
+    private static final int CACHE_MAGIC = 0x504f5055; // "POPU"
+    private static final int CACHE_VERSION = 1;
+    private static final char SEPARATOR = '|';
+
+    private Random random;
+    /** Cumulative view share of the contents, in order of popularity */
+    private double[] cumulative;
+    /** Sizes of the contents (bytes), in order of popularity */
+    private int[] sizes;
+
+    /**
+     * Creates a generator from a trace, or from its compiled form if one is
+     * up to date.
+     *
+     * @param tracePath Path of the trace file
+     * @param numberOfContents Maximum number of items to read from the trace
+     * @param seed Seed for the random number generator
+     * @throws SimError if the trace can't be read or has no items
+     */
+    public RealContentTracesGenerator(String tracePath, int numberOfContents,
+            long seed) {
+        this.random = new Random(seed);
+        File trace = new File(tracePath);
+        File cache = new File(tracePath + CACHE_SUFFIX);
+        if (!readCache(cache, trace, numberOfContents)) {
+            readTrace(trace, numberOfContents);
+            writeCache(cache, trace, numberOfContents);
+        }
+        if (cumulative.length == 0) {
+            throw new SimError("No items in popularity trace " + tracePath);
+        }
+    }
+
+    public int next() {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (i < 0) {
+            i = -(i + 1); // insertion point: the first larger share
+        }
+        /* rounding may leave the last share just under 1.0 */
+        return Math.min(i, cumulative.length - 1) + 1;
+    }
+
+    public int getNrofContents() {
+        return cumulative.length;
+    }
+
+    /**
+     * Returns the size of a content.
+     *
+     * @param contentId Id (popularity rank) of the content
+     * @return The size in bytes
+     */
+    public int getSize(int contentId) {
+        return sizes[contentId - 1];
     }
 
-    private static NavigableMap<Double, HashMap<Integer, Double>> computeMap(
-            int numberOfContents) {
-        NavigableMap<Double, HashMap<Integer, Double>> map = new TreeMap<>(); // Views (Curriculum %) - ID - Size
+    /**
+     * Reads the items from the trace and ranks them by their view counts.
+     */
+    private void readTrace(File trace, int numberOfContents) {
+        double[] views = new double[Math.min(numberOfContents, 1024)];
+        int[] lengths = new int[views.length];
+        int n = 0;
+        int lineNr = 0;
 
-        double localTotalViews = 0L;
-        try (BufferedReader br = new BufferedReader(new FileReader(filepath + "YoutubeEntDec212006.txt"))) {
+        try (BufferedReader br = new BufferedReader(new FileReader(trace))) {
             String line;
-            int id = 0;
-            ArrayList<Double> viewsList = new ArrayList<>();
-            ArrayList<Map<Integer, Double>> IDAndSizeList = new ArrayList<>(); // ID - Size
-            Map<Integer, Double> tmp;
-            while ((line = br.readLine()) != null && id < numberOfContents) {
-                double views = Double.valueOf(line.split("\\|")[2]);
-                if (views > 100) {
-                    viewsList.add(views);
-                    String lengthStr = (line.split("\\|"))[1];
-                    double length = Double.valueOf(lengthStr.split(":")[0]) * 60 + Double.valueOf(lengthStr.split(":")[1]);
-                    tmp = new HashMap();
-                    tmp.put(id, (double) (length * averageContentSize / averageLength));
-                    IDAndSizeList.add(tmp);
-                    localTotalViews += views;
-                    id++;
+            while (n < numberOfContents && (line = br.readLine()) != null) {
+                lineNr++;
+                int f1 = line.indexOf(SEPARATOR);
+                int f2 = f1 < 0 ? -1 : line.indexOf(SEPARATOR, f1 + 1);
+                if (f2 < 0) {
+                    continue; // not an item line
                 }
+                int f3 = line.indexOf(SEPARATOR, f2 + 1);
+                double v = Double.parseDouble(line.substring(f2 + 1,
+                        f3 < 0 ? line.length() : f3).trim());
+                if (v <= MIN_VIEWS) {
+                    continue;
+                }
+                if (n == views.length) {
+                    views = Arrays.copyOf(views, 2 * n);
+                    lengths = Arrays.copyOf(lengths, 2 * n);
+                }
+                views[n] = v;
+                lengths[n] = parseLength(line, f1 + 1, f2);
+                n++;
             }
-            br.close();
-            Collections.sort(viewsList);
-            Collections.reverse(viewsList);
-            double sum = 0L;
-            int count = 0;
-            for (Map<Integer, Double> entry : IDAndSizeList) {
-                //System.out.println(viewsList.get(count));
-                sum += viewsList.get(count);
-                map.put((double) (sum / localTotalViews), (HashMap) entry);
-                count++;
-            }
-            //System.out.println(sum);
         } catch (IOException e) {
-            System.out.println(e.getMessage());
+            throw new SimError("Can't read popularity trace " + trace
+                    + ": " + e.getMessage(), e);
+        } catch (NumberFormatException e) {
+            throw new SimError("Invalid item on line " + lineNr
+                    + " of popularity trace " + trace, e);
         }
 
-        return map;
+        sortByViews(views, lengths, n);
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += views[i];
+        }
+        this.cumulative = new double[n];
+        this.sizes = new int[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += views[i];
+            cumulative[i] = sum / total;
+            sizes[i] = lengthToSize(lengths[i]);
+        }
     }
 
-    public int next() {
-        double value = random.nextDouble();
-        return map.ceilingEntry(value).getValue().entrySet().iterator().next().getKey() + 1;
+    /**
+     * Parses a <CODE>[h:]m:s</CODE> length from a part of a line.
+     *
+     * @return The length in seconds
+     */
+    private static int parseLength(String line, int start, int end) {
+        int seconds = 0;
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == ':') {
+                seconds = 60 * (seconds + value);
+                value = 0;
+            } else if (c >= '0' && c <= '9') {
+                value = 10 * value + (c - '0');
+            } else if (c != ' ') {
+                throw new NumberFormatException("Invalid length "
+                        + line.substring(start, end));
+            }
+        }
+        return seconds + value;
+    }
+
+    /**
+     * Returns the size of an item of the given length, assuming that an
+     * average length item is of the average size.
+     *
+     * @param length Length of the item (seconds)
+     * @return The size in bytes, at least 1
+     */
+    private static int lengthToSize(int length) {
+        double mb = length / (averageLength * 60) * averageContentSize;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                Math.round(mb * 1000000)));
+    }
+
+    /**
+     * Sorts the first n views into descending order (heap sort), moving the
+     * lengths along with them. Items with equal views keep no particular
+     * order.
+     */
+    private static void sortByViews(double[] views, int[] lengths, int n) {
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(views, lengths, i, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            swap(views, lengths, 0, end);
+            siftDown(views, lengths, 0, end);
+        }
+    }
+
+    /** Restores a min-heap (the smallest views first) below index i */
+    private static void siftDown(double[] views, int[] lengths, int i,
+            int n) {
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && views[child + 1] < views[child]) {
+                child++;
+            }
+            if (views[i] <= views[child]) {
+                return;
+            }
+            swap(views, lengths, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(double[] views, int[] lengths, int i, int j) {
+        double v = views[i];
+        views[i] = views[j];
+        views[j] = v;
+        int l = lengths[i];
+        lengths[i] = lengths[j];
+        lengths[j] = l;
+    }
+
+    /**
+     * Reads the compiled trace if it exists and was compiled from the current
+     * trace with the same number of contents.
+     *
+     * @return True if the cache was read, false if the trace must be read
+     */
+    private boolean readCache(File cache, File trace, int numberOfContents) {
+        if (!cache.isFile() || !trace.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(cache)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION
+                    || in.readLong() != trace.length()
+                    || in.readLong() != trace.lastModified()
+                    || in.readInt() != numberOfContents) {
+                return false;
+            }
+            int n = in.readInt();
+            double[] c = new double[n];
+            int[] s = new int[n];
+            for (int i = 0; i < n; i++) {
+                c[i] = in.readDouble();
+            }
+            for (int i = 0; i < n; i++) {
+                s[i] = in.readInt();
+            }
+            this.cumulative = c;
+            this.sizes = s;
+            return true;
+        } catch (IOException e) {
+            return false; // corrupted cache, compile it again
+        }
     }
-}
 
-// https://stackoverflow.com/questions/3481828/how-to-split-a-string-in-java
+    /**
+     * Writes the compiled trace. Failing to write it (e.g., to a read only
+     * directory) is not an error, the trace is just read again next time.
+     */
+    private void writeCache(File cache, File trace, int numberOfContents) {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(cache)))) {
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(CACHE_VERSION);
+            out.writeLong(trace.length());
+            out.writeLong(trace.lastModified());
+            out.writeInt(numberOfContents);
+            out.writeInt(cumulative.length);
+            for (double c : cumulative) {
+                out.writeDouble(c);
+            }
+            for (int s : sizes) {
+                out.writeInt(s);
+            }
+        } catch (IOException e) {
+            cache.delete();
+        }
+    }
+}
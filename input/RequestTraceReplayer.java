@@ -0,0 +1,183 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Message creation -external events generator that replays a request trace.
+ * Each line of the trace is one request:
+ * <CODE>time requester contentId [size]</CODE>, separated by white space or
+ * commas. Empty lines and lines starting with <CODE>#</CODE> are skipped, and
+ * the requests must be in time order.
+ * <P>
+ * The first request is created at the start of the {@link #MESSAGE_TIME_S}
+ * range (or at 0) and the rest keep their time differences, multiplied by
+ * {@link #TIME_SCALE_S}. Requesters are mapped to the host addresses of the
+ * {@link #HOST_RANGE_S} range (requester 0 to the first host) and content ids
+ * to the contents 1...{@link #CONTENT_SIZE_S}, by their value (or hash code
+ * if they are not numbers) modulo the size of the range. The size of a
+ * request is the size of the content's advertisement; if the trace has no
+ * size for it, a size is drawn from the {@link #MESSAGE_SIZE_S} range.
+ * <P>
+ * The trace is read one request ahead, so the replay takes constant memory
+ * regardless of the length of the trace. All the {@link MessageEventGenerator}
+ * settings must be defined, and they define the publishers of the contents
+ * as usual.
+ */
+public class RequestTraceReplayer extends MessageEventGenerator {
+    /** Path of the request trace -setting id ({@value}) */
+    public static final String TRACE_FILE_S = "traceFile";
+    /**
+     * Multiplier of the time differences of the requests -setting id
+     * ({@value}). Default is 1.
+     */
+    public static final String TIME_SCALE_S = "timeScale";
+
+    private String tracePath;
+    private BufferedReader reader;
+    private int lineNr;
+    private double timeScale;
+    private double startTime;
+    private double firstTraceTime;
+    private double lastTraceTime;
+    /** The next request, or null if there are no more requests */
+    private MessageCreateEvent next;
+
+    public RequestTraceReplayer(Settings s) {
+        super(s);
+        this.tracePath = s.valueFillString(s.getSetting(TRACE_FILE_S));
+        this.timeScale = s.getDouble(TIME_SCALE_S, 1);
+        if (this.timeScale <= 0) {
+            throw new SettingsError("Invalid " + TIME_SCALE_S + " "
+                    + this.timeScale);
+        }
+        this.startTime = this.msgTime != null ? this.msgTime[0] : 0;
+        this.firstTraceTime = Double.NaN;
+        this.lastTraceTime = Double.NEGATIVE_INFINITY;
+
+        try {
+            this.reader = new BufferedReader(new FileReader(tracePath));
+        } catch (IOException e) {
+            throw new SettingsError("Can't read request trace " + tracePath
+                    + ": " + e.getMessage());
+        }
+        this.next = readRequest();
+    }
+
+    @Override
+    public ExternalEvent nextEvent() {
+        if (next == null) {
+            return new ExternalEvent(Double.MAX_VALUE);
+        }
+        MessageCreateEvent mce = next;
+        next = readRequest();
+        return mce;
+    }
+
+    @Override
+    public double nextEventsTime() {
+        return next == null ? Double.MAX_VALUE : next.getTime();
+    }
+
+    /**
+     * Reads the next request from the trace.
+     *
+     * @return The request, or null if there are no more requests (in the
+     * time range)
+     */
+    private MessageCreateEvent readRequest() {
+        if (reader == null) {
+            return null;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNr++;
+                StringTokenizer tokens = new StringTokenizer(line, " \t,");
+                if (!tokens.hasMoreTokens()
+                        || line.trim().startsWith("#")) {
+                    continue;
+                }
+                MessageCreateEvent mce = parseRequest(tokens);
+                if (mce != null) {
+                    return mce;
+                }
+                break; // past the end of the time range
+            }
+            reader.close();
+            reader = null;
+            return null;
+        } catch (IOException e) {
+            throw new SimError("Reading request trace " + tracePath
+                    + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses a request from the tokens of a line.
+     *
+     * @return The request, or null if it is later than the time range
+     */
+    private MessageCreateEvent parseRequest(StringTokenizer tokens) {
+        double traceTime;
+        String requester;
+        String content;
+        int size;
+        try {
+            traceTime = Double.parseDouble(tokens.nextToken());
+            requester = tokens.nextToken();
+            content = tokens.nextToken();
+            size = tokens.hasMoreTokens()
+                    ? Integer.parseInt(tokens.nextToken()) : drawMessageSize();
+        } catch (RuntimeException e) {
+            throw new SimError("Invalid request on line " + lineNr
+                    + " of request trace " + tracePath, e);
+        }
+        if (traceTime < lastTraceTime) {
+            throw new SimError("Request on line " + lineNr + " of request "
+                    + "trace " + tracePath + " is out of time order");
+        }
+        lastTraceTime = traceTime;
+        if (Double.isNaN(firstTraceTime)) {
+            firstTraceTime = traceTime;
+        }
+
+        double time = startTime + (traceTime - firstTraceTime) * timeScale;
+        if (this.msgTime != null && time > this.msgTime[1]) {
+            return null;
+        }
+        int from = hostRange[0]
+                + fold(requester, 0, hostRange[1] - hostRange[0]);
+        int contentId = 1 + fold(content, 1, numOfContents);
+        return new MessageCreateEvent(from, from, getID(), size, 0, time,
+                drawInterestMessageSize(), contentId);
+    }
+
+    /**
+     * Maps an id of the trace to range 0...n-1.
+     *
+     * @param id The id
+     * @param base The id value that is mapped to 0
+     * @param n Size of the range
+     * @return The id's value (or its hash code if it is not a number) minus
+     * the base, modulo n
+     */
+    private static int fold(String id, int base, int n) {
+        long value;
+        try {
+            value = Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            value = id.hashCode();
+        }
+        return (int) ((((value - base) % n) + n) % n);
+    }
+}
@@ -6,44 +6,172 @@
 package input;
 
 import java.util.Random;
-import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
 /**
+ * Generator of Zipf distributed values in range 1...size, where value
+ * <CODE>k</CODE> is drawn with a probability proportional to
+ * <CODE>1/k^skew</CODE>.
+ * <P>
+ * Values are drawn with rejection-inversion sampling (W. Hoermann and G.
+ * Derflinger: "Rejection-inversion to generate variates from monotone
+ * discrete distributions", 1996), so no table of the item probabilities is
+ * needed and both the construction and a draw take constant time and memory
+ * regardless of the size of the catalog.
  *
  * @author psxvsh
  */
-public class ZipfGenerator {
+public class ZipfGenerator implements ContentPopularity {
 
-    private Random random = new Random(0);
-    private NavigableMap<Double, Integer> map;
+    /** Default seed of the random number generator */
+    public static final long DEFAULT_SEED = 0;
 
+    private final Random random;
+    private final int size;
+    private final double skew;
+
+    /** H(1.5) - 1, the upper bound of the inverted range */
+    private final double hIntegralX1;
+    /** H(size + 0.5), the lower bound of the inverted range */
+    private final double hIntegralSize;
+    /** Width of the range around a value where it is accepted directly */
+    private final double s;
+
+    /**
+     * Creates a generator seeded with {@link #DEFAULT_SEED}.
+     *
+     * @param size Number of different values (items)
+     * @param skew Skewness (exponent) of the distribution
+     */
     public ZipfGenerator(int size, double skew) {
-        map = computeMap(size, skew);
+        this(size, skew, DEFAULT_SEED);
     }
 
-    private static NavigableMap<Double, Integer> computeMap(
-            int size, double skew) {
-        NavigableMap<Double, Integer> map
-                = new TreeMap<Double, Integer>();
+    /**
+     * Creates a generator with its own random number generator.
+     *
+     * @param size Number of different values (items)
+     * @param skew Skewness (exponent) of the distribution
+     * @param seed Seed for the random number generator
+     */
+    public ZipfGenerator(int size, double skew, long seed) {
+        this(size, skew, new Random(seed));
+    }
 
-        double div = 0;
-        for (int i = 1; i <= size; i++) {
-            div += (1 / Math.pow(i, skew));
+    /**
+     * Creates a generator that draws from the given random number generator.
+     *
+     * @param size Number of different values (items)
+     * @param skew Skewness (exponent) of the distribution
+     * @param random The random number generator to use
+     * @throws IllegalArgumentException if size is not positive or the skew is
+     * negative
+     */
+    public ZipfGenerator(int size, double skew, Random random) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid Zipf size " + size);
         }
-
-        double sum = 0;
-        for (int i = 1; i <= size; i++) {
-            double p = (1.0d / Math.pow(i, skew)) / div;
-            sum += p;
-            map.put(sum, i - 1);
+        if (skew < 0 || Double.isNaN(skew)) {
+            throw new IllegalArgumentException("Invalid Zipf skew " + skew);
         }
-        return map;
+        this.random = random;
+        this.size = size;
+        this.skew = skew;
+        this.hIntegralX1 = hIntegral(1.5) - 1.0;
+        this.hIntegralSize = hIntegral(size + 0.5);
+        this.s = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2));
     }
 
+    /**
+     * Draws the next value.
+     *
+     * @return A value in range 1...size
+     */
     public int next() {
-        double value = random.nextDouble();
-        return map.ceilingEntry(value).getValue() + 1;
+        while (true) {
+            double u = hIntegralSize
+                    + random.nextDouble() * (hIntegralX1 - hIntegralSize);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > size) {
+                k = size;
+            }
+            /* accept directly close to the value, otherwise if u falls
+             * under the hat function's part that belongs to the value */
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of different values.
+     *
+     * @return The size of the range
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getNrofContents() {
+        return size;
+    }
+
+    /**
+     * Returns the skewness of the distribution.
+     *
+     * @return The skew
+     */
+    public double getSkew() {
+        return skew;
+    }
+
+    /**
+     * The hat function h(x) = 1/x^skew.
+     */
+    private double h(double x) {
+        return Math.exp(-skew * Math.log(x));
+    }
+
+    /**
+     * H(x), the integral of the hat function: (x^(1-skew) - 1) / (1-skew),
+     * or log(x) if the skew is 1.
+     */
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1.0 - skew) * logX) * logX;
+    }
+
+    /**
+     * The inverse of {@link #hIntegral(double)}.
+     */
+    private double hIntegralInverse(double x) {
+        double t = x * (1.0 - skew);
+        if (t < -1.0) {
+            /* limit to the domain of log1p, only rounding can get here */
+            t = -1.0;
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    /**
+     * log(1+x)/x, computed accurately also when x is close to 0.
+     */
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    /**
+     * (exp(x)-1)/x, computed accurately also when x is close to 0.
+     */
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1.0 + x * 0.5 * (1.0 + x * (1.0 / 3.0) * (1.0 + 0.25 * x));
     }
 }
@@ -9,6 +9,7 @@ import input.WKTMapReader;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -17,7 +18,13 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.Vector;
 
+import movement.map.AStarPathFinder;
+import movement.map.CompiledMap;
+import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.PathCache;
+import movement.map.PathFinder;
+import movement.map.RoadGraph;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
@@ -45,6 +52,19 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public static final String NROF_FILES_S = "nrofMapFiles";
 	/** map file -setting id ({@value})*/
 	public static final String FILE_S = "mapFile";
+	/**
+	 * Should the map files be compiled to a binary map that is read instead
+	 * of parsing the files in the later runs -setting id ({@value}).
+	 * Boolean, default false. The compiled map is used only if the contents
+	 * of the map files haven't changed since it was written.
+	 */
+	public static final String COMPILED_MAPS_S = "compiledMaps";
+	/**
+	 * Directory of the compiled maps -setting id ({@value}). Default is
+	 * the directory <CODE>one-maps</CODE> in the system's temporary
+	 * directory.
+	 */
+	public static final String COMPILED_MAP_DIR_S = "compiledMapDir";
 
 	/**
 	 * Per node group setting for selecting map node types that are OK for
@@ -55,6 +75,23 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	 */
 	public static final String MAP_SELECT_S = "okMaps";
 
+	/**
+	 * Per node group setting for selecting the shortest path finder of the
+	 * models that use one ({@value}). Value <CODE>Dijkstra</CODE> (default)
+	 * uses {@link DijkstraPathFinder} and <CODE>AStar</CODE> uses
+	 * {@link AStarPathFinder}.
+	 */
+	public static final String PATH_FINDER_S = "pathFinder";
+	/** number of ALT landmarks of the A* path finder -setting id ({@value})*/
+	public static final String LANDMARKS_S = "landmarks";
+	/** default number of ALT landmarks ({@value}) */
+	public static final int DEF_LANDMARKS = 8;
+	/**
+	 * Per node group setting for the number of shortest paths kept in
+	 * a LRU cache ({@value}). Default is 0 (no cache).
+	 */
+	public static final String PATH_CACHE_SIZE_S = "pathCacheSize";
+
 	/** the indexes of the OK map files or null if all maps are OK */
 	private int [] okMapNodeTypes;
 
@@ -177,6 +214,60 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return okMapNodeTypes;
 	}
 
+	/**
+	 * Creates a shortest path finder for the map of this model as defined
+	 * by the {@link #PATH_FINDER_S}, {@link #LANDMARKS_S} and
+	 * {@link #PATH_CACHE_SIZE_S} settings. With the default settings this is
+	 * a new {@link DijkstraPathFinder}; otherwise the finder and its cache
+	 * are shared by all the groups with the same settings and map.
+	 * @param settings The settings where the path finder settings are read
+	 * @param precompute Nodes whose shortest path trees are precomputed
+	 * (see {@link PathCache#precompute(java.util.Collection)}) or null
+	 * @return The path finder
+	 */
+	protected PathFinder createPathFinder(Settings settings,
+			Collection<MapNode> precompute) {
+		String type = settings.getSetting(PATH_FINDER_S, "Dijkstra");
+		int landmarks = settings.getInt(LANDMARKS_S, DEF_LANDMARKS);
+		int cacheSize = settings.getInt(PATH_CACHE_SIZE_S, 0);
+		boolean aStar = type.equalsIgnoreCase("AStar");
+
+		if (!aStar && !type.equalsIgnoreCase("Dijkstra")) {
+			throw new SettingsError("Unknown path finder '" + type +
+					"' for setting " +
+					settings.getFullPropertyName(PATH_FINDER_S));
+		}
+		if (landmarks < 0 || cacheSize < 0) {
+			throw new SettingsError("Negative value for setting " +
+					settings.getFullPropertyName(landmarks < 0 ?
+							LANDMARKS_S : PATH_CACHE_SIZE_S));
+		}
+		if (!aStar && cacheSize == 0 &&
+				(precompute == null || precompute.isEmpty())) {
+			return new DijkstraPathFinder(okMapNodeTypes);
+		}
+
+		RoadGraph graph = map.getRoadGraph();
+		int mask = RoadGraph.typeMask(okMapNodeTypes);
+		String key = (aStar ? "AStar:" + landmarks : "Dijkstra") + ":" +
+			mask + ":" + cacheSize;
+		PathCache cache = (PathCache)graph.getSharedFinder(key);
+		if (cache == null) {
+			PathFinder finder;
+			if (aStar) {
+				finder = new AStarPathFinder(graph, okMapNodeTypes, landmarks);
+			} else {
+				finder = new DijkstraPathFinder(okMapNodeTypes);
+			}
+			cache = new PathCache(finder, graph, okMapNodeTypes, cacheSize);
+			graph.putSharedFinder(key, cache);
+		}
+		if (precompute != null) {
+			cache.precompute(precompute);
+		}
+		return cache;
+	}
+
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
@@ -283,32 +374,75 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 			}
 		}
 
-		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		List<File> files = new ArrayList<File>();
+		int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		for (int i = 1; i <= nrofMapFiles; i++ ) {
+			String pathFile = settings.getSetting(FILE_S + i);
+			cachedMapFiles.add(pathFile);
+			files.add(new File(pathFile));
+		}
+		nrofMapFilesRead = nrofMapFiles;
 
-			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+		File compiled = null;
+		String hash = null;
+		simMap = null;
+		try {
+			if (settings.getBoolean(COMPILED_MAPS_S, false)) {
+				hash = CompiledMap.hash(files);
+				String dir = settings.getSetting(COMPILED_MAP_DIR_S,
+						new File(System.getProperty("java.io.tmpdir"),
+								"one-maps").getPath());
+				compiled = new File(dir, hash + CompiledMap.EXTENSION);
+				try {
+					simMap = CompiledMap.read(compiled, hash);
+				} catch (IOException e) {
+					System.err.println("Warning: ignoring compiled map: " +
+							e.getMessage());
+				}
 			}
 
-			nrofMapFilesRead = nrofMapFiles;
+			if (simMap == null) {
+				for (int i = 1; i <= nrofMapFiles; i++ ) {
+					r.addPaths(files.get(i-1), i);
+				}
+				simMap = r.getMap();
+				checkMapConnectedness(simMap.getNodes());
+				// mirrors the map (y' = -y) and moves its upper left corner
+				// to origo
+				simMap.mirror();
+				Coord offset = simMap.getMinBound().clone();
+				simMap.translate(-offset.getX(), -offset.getY());
+				if (compiled != null) {
+					writeCompiledMap(simMap, compiled, hash);
+				}
+			}
 		} catch (IOException e) {
 			throw new SimError(e.toString(),e);
 		}
 
-		simMap = r.getMap();
-		checkMapConnectedness(simMap.getNodes());
-		// mirrors the map (y' = -y) and moves its upper left corner to origo
-		simMap.mirror();
-		Coord offset = simMap.getMinBound().clone();
-		simMap.translate(-offset.getX(), -offset.getY());
 		checkCoordValidity(simMap.getNodes());
+		simMap.setReadOnly();
 
 		cachedMap = simMap;
 		return simMap;
 	}
 
+	/**
+	 * Writes a compiled map for the later runs. Failing to write it isn't
+	 * an error; the map is just parsed again the next time.
+	 * @param simMap The map
+	 * @param file The file of the compiled map
+	 * @param hash Hash of the map files
+	 */
+	private void writeCompiledMap(SimMap simMap, File file, String hash) {
+		try {
+			CompiledMap.write(simMap, file, hash);
+		} catch (IOException e) {
+			System.err.println("Warning: couldn't write compiled map " +
+					file + ": " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Checks that all map nodes can be reached from all other map nodes
 	 * @param nodes The list of nodes to check
@@ -6,8 +6,8 @@ package movement;
 
 import java.util.List;
 
-import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.PathFinder;
 import movement.map.PointsOfInterest;
 import core.Settings;
 
@@ -17,8 +17,16 @@ import core.Settings;
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	SwitchableMovement {
-	/** the Dijkstra shortest path finder */
-	private DijkstraPathFinder pathFinder;
+	/**
+	 * Should the shortest path trees from and to all the POIs be computed
+	 * in advance -setting id ({@value}). Boolean, default false. Needs
+	 * memory for two integers per map node and POI but makes the paths to
+	 * and from POIs free.
+	 */
+	public static final String PRECOMPUTE_POI_PATHS_S = "precomputePoiPaths";
+
+	/** the shortest path finder */
+	private PathFinder pathFinder;
 
 	/** Points Of Interest handler */
 	private PointsOfInterest pois;
@@ -29,9 +37,12 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	public ShortestPathMapBasedMovement(Settings settings) {
 		super(settings);
-		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
 		this.pois = new PointsOfInterest(getMap(), getOkMapNodeTypes(),
 				settings, rng);
+		boolean precompute = settings.getBoolean(PRECOMPUTE_POI_PATHS_S,
+				false);
+		this.pathFinder = createPathFinder(settings,
+				precompute ? pois.getPois() : null);
 	}
 
 	/**
@@ -0,0 +1,132 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* shortest path search over the {@link RoadGraph} of a map. The search
+ * is guided by the larger of the straight line distance to the destination
+ * and the ALT (A*, landmarks and triangle inequality) lower bound of
+ * {@link RoadGraph.Landmarks}, so it visits far fewer nodes than
+ * {@link DijkstraPathFinder}. The work arrays are allocated once and
+ * reused by all the searches. The paths are shortest paths, but of paths
+ * of equal length the search may return another one than
+ * {@link DijkstraPathFinder} does.
+ */
+public class AStarPathFinder implements PathFinder {
+    private final RoadGraph graph;
+    private final int mask;
+    /** landmarks or null if only the straight line distance is used */
+    private final RoadGraph.Landmarks landmarks;
+
+    /** distance from the source (valid if seen[v] == search) */
+    private final double[] g;
+    /** lower bound for the distance to the destination */
+    private final double[] h;
+    /** estimated length of the path via the node (g + h) */
+    private final double[] f;
+    private final int[] prev;
+    private final int[] seen;
+    private final int[] closed;
+    private final RoadGraph.NodeHeap open;
+    private int search;
+
+    /**
+     * Constructor.
+     * @param graph The graph of the map
+     * @param okMapNodes The map node types that are OK for paths or null if
+     * all nodes are OK
+     * @param nrofLandmarks Number of ALT landmarks (0 for none)
+     */
+    public AStarPathFinder(RoadGraph graph, int[] okMapNodes,
+            int nrofLandmarks) {
+        int n = graph.size();
+        this.graph = graph;
+        this.mask = RoadGraph.typeMask(okMapNodes);
+        this.landmarks = nrofLandmarks > 0 ?
+                graph.getLandmarks(nrofLandmarks) : null;
+        this.g = new double[n];
+        this.h = new double[n];
+        this.f = new double[n];
+        this.prev = new int[n];
+        this.seen = new int[n];
+        this.closed = new int[n];
+        this.open = new RoadGraph.NodeHeap(graph, f);
+        this.search = 0;
+    }
+
+    public List<MapNode> getShortestPath(MapNode from, MapNode to) {
+        if (from.compareTo(to) == 0) {
+            return Collections.singletonList(from);
+        }
+        int s = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        if (s < 0 || t < 0) {
+            return Collections.emptyList();
+        }
+
+        search++;
+        open.clear();
+        int[] off = graph.offsets(false);
+        int[] adj = graph.adjacent(false);
+        double[] w = graph.weights(false);
+
+        g[s] = 0;
+        h[s] = estimate(s, t);
+        f[s] = h[s];
+        seen[s] = search;
+        open.update(s);
+        boolean found = false;
+        while (!open.isEmpty()) {
+            int u = open.poll();
+            if (u == t) {
+                found = true;
+                break;
+            }
+            closed[u] = search;
+            for (int e = off[u]; e < off[u + 1]; e++) {
+                int v = adj[e];
+                if (closed[v] == search || !graph.isOk(v, mask)) {
+                    continue;
+                }
+                double d = g[u] + w[e];
+                if (seen[v] != search) {
+                    seen[v] = search;
+                    h[v] = estimate(v, t);
+                } else if (g[v] <= d) {
+                    continue;
+                }
+                g[v] = d;
+                f[v] = d + h[v];
+                prev[v] = u;
+                open.update(v);
+            }
+        }
+        if (!found) {
+            return Collections.emptyList();
+        }
+
+        ArrayList<MapNode> path = new ArrayList<MapNode>();
+        for (int v = t; v != s; v = prev[v]) {
+            path.add(graph.getNode(v));
+        }
+        path.add(from);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns a lower bound for the distance from a node to the destination
+     */
+    private double estimate(int v, int t) {
+        double h = graph.euclidean(v, t);
+        if (landmarks != null) {
+            h = Math.max(h, landmarks.lowerBound(v, t));
+        }
+        return h;
+    }
+}
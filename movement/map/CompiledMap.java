@@ -0,0 +1,240 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.SimError;
+
+/**
+ * Binary format of a compiled {@link SimMap}. A compiled map has the
+ * coordinates and type bit masks of the map nodes and their neighbours in
+ * CSR (compressed sparse row) form, in the order of
+ * {@link SimMap#getNodes()} and {@link MapNode#getNeighbors()}, so a map
+ * read back is the same as the one written. The file is tagged with a hash
+ * of the contents of the source files (see {@link #hash(List)}) and a file
+ * whose hash doesn't match is not used.
+ * <P>
+ * Layout (big endian): magic, format version, hash (length and UTF-8
+ * bytes), offset x and y, mirrored flag, number of nodes <CODE>n</CODE>,
+ * number of edges <CODE>m</CODE>, <CODE>n</CODE> x and y coordinates,
+ * <CODE>n</CODE> type masks, <CODE>n+1</CODE> edge offsets and
+ * <CODE>m</CODE> neighbour indexes.
+ */
+public class CompiledMap {
+    /** Magic number at the start of the files ("ONEM") */
+    public static final int MAGIC = 0x4f4e454d;
+    /** Version of the file format */
+    public static final int VERSION = 1;
+    /** File name extension of compiled maps ({@value}) */
+    public static final String EXTENSION = ".map";
+
+    private CompiledMap() {}
+
+    /**
+     * Returns a hash of the contents of map files. The hash changes if any
+     * of the files, their order (i.e., the node types) or the format
+     * version changes.
+     * @param files The map files
+     * @return Hex string of the SHA-256 hash
+     * @throws IOException if a file can't be read
+     */
+    public static String hash(List<File> files) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new SimError(e);
+        }
+        byte[] buf = new byte[64 * 1024];
+        digest.update(ByteBuffer.allocate(8).putInt(VERSION)
+                .putInt(files.size()).array());
+        for (File f : files) {
+            digest.update(ByteBuffer.allocate(8).putLong(f.length()).array());
+            InputStream in = new FileInputStream(f);
+            try {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    digest.update(buf, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Writes a map to a file. The file is first written with a temporary
+     * name and then renamed, so simulations reading the map at the same
+     * time never see a partial file.
+     * @param map The map
+     * @param file The file to write
+     * @param hash Hash of the map's source files
+     * @throws IOException if the file can't be written
+     */
+    public static void write(SimMap map, File file, String hash)
+            throws IOException {
+        List<MapNode> nodes = map.getNodes();
+        int n = nodes.size();
+        Map<MapNode, Integer> index =
+            new IdentityHashMap<MapNode, Integer>(2 * n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            index.put(nodes.get(i), i);
+            m += nodes.get(i).getNeighbors().size();
+        }
+        byte[] hashBytes = hash.getBytes("UTF-8");
+        ByteBuffer buf = ByteBuffer.allocate(4 + 4 + 4 + hashBytes.length +
+                8 + 8 + 1 + 4 + 4 + n * (8 + 8 + 4) + (n + 1) * 4 + m * 4);
+
+        buf.putInt(MAGIC).putInt(VERSION);
+        buf.putInt(hashBytes.length).put(hashBytes);
+        buf.putDouble(map.getOffset().getX());
+        buf.putDouble(map.getOffset().getY());
+        buf.put((byte) (map.isMirrored() ? 1 : 0));
+        buf.putInt(n).putInt(m);
+        for (MapNode node : nodes) {
+            buf.putDouble(node.getLocation().getX());
+            buf.putDouble(node.getLocation().getY());
+        }
+        for (MapNode node : nodes) {
+            buf.putInt(node.getTypeMask());
+        }
+        int edges = 0;
+        for (MapNode node : nodes) {
+            buf.putInt(edges);
+            edges += node.getNeighbors().size();
+        }
+        buf.putInt(edges);
+        for (MapNode node : nodes) {
+            for (MapNode neighbor : node.getNeighbors()) {
+                Integer i = index.get(neighbor);
+                if (i == null) {
+                    throw new IOException("Neighbor " + neighbor + " of " +
+                            node + " is not in the map");
+                }
+                buf.putInt(i);
+            }
+        }
+        buf.flip();
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't create directory " + dir);
+        }
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel ch = out.getChannel();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            if (!file.isFile()) { // not written by another simulation either
+                throw new IOException("Can't rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads a map from a file.
+     * @param file The file to read
+     * @param hash Hash of the map's source files
+     * @return The map or null if the file doesn't exist or is for
+     * other source files or another format version
+     * @throws IOException if the file can't be read or is corrupted
+     */
+    public static SimMap read(File file, String hash) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        ByteBuffer buf;
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel ch = in.getChannel();
+            buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining() && ch.read(buf) >= 0);
+        } finally {
+            in.close();
+        }
+        buf.flip();
+
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw new IOException(file + " is not a compiled map");
+            }
+            if (buf.getInt() != VERSION) {
+                return null;
+            }
+            byte[] hashBytes = new byte[buf.getInt()];
+            buf.get(hashBytes);
+            if (!hash.equals(new String(hashBytes, "UTF-8"))) {
+                return null;
+            }
+            Coord offset = new Coord(buf.getDouble(), buf.getDouble());
+            boolean mirrored = buf.get() != 0;
+            int n = buf.getInt();
+            int m = buf.getInt();
+
+            MapNode[] nodes = new MapNode[n];
+            Map<Coord, MapNode> nodesMap =
+                new LinkedHashMap<Coord, MapNode>(2 * n);
+            for (int i = 0; i < n; i++) {
+                nodes[i] = new MapNode(new Coord(buf.getDouble(),
+                        buf.getDouble()));
+                nodesMap.put(nodes[i].getLocation(), nodes[i]);
+            }
+            if (nodesMap.size() != n) {
+                throw new IOException("Duplicate node coordinates in " +
+                        file);
+            }
+            for (int i = 0; i < n; i++) {
+                int mask = buf.getInt();
+                for (int t = MapNode.MIN_TYPE; t <= MapNode.MAX_TYPE; t++) {
+                    if ((mask & (1 << t)) != 0) {
+                        nodes[i].addType(t);
+                    }
+                }
+            }
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i <= n; i++) {
+                offsets[i] = buf.getInt();
+            }
+            if (offsets[n] != m) {
+                throw new IOException("Invalid edge offsets in " + file);
+            }
+            for (int i = 0; i < n; i++) {
+                for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                    nodes[i].addNeighbor(nodes[buf.getInt()]);
+                }
+            }
+            return new SimMap(nodesMap, offset, mirrored);
+        } catch (RuntimeException e) { // buffer underflow or bad index
+            throw new IOException("Corrupted compiled map " + file, e);
+        }
+    }
+}
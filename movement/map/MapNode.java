@@ -111,6 +111,15 @@ public class MapNode implements Comparable<MapNode> {
 		}
 	}
 
+	/**
+	 * Returns the bit mask of the node's types (bit <CODE>t</CODE> is set
+	 * for type <CODE>t</CODE>)
+	 * @return The type bit mask or 0 if the node has no types
+	 */
+	int getTypeMask() {
+		return this.type;
+	}
+
 	/**
 	 * Returns the location of the node
 	 * @return the location of the node
@@ -0,0 +1,164 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Path finder that remembers the paths another path finder has found. The
+ * most recently used (from, to) paths are kept in a LRU cache of a fixed
+ * size. In addition, the shortest path trees from and to a set of nodes
+ * (e.g. the points of interest) can be precomputed, after which all the
+ * paths that start or end at such a node are answered from the trees
+ * without searching.
+ * <P>
+ * The returned paths are shared and must not be modified.
+ */
+public class PathCache implements PathFinder {
+    private final PathFinder finder;
+    private final RoadGraph graph;
+    private final int mask;
+    private final int capacity;
+    private final LinkedHashMap<Long, List<MapNode>> paths;
+    /** previous nodes on the paths from the precomputed nodes */
+    private final Map<Integer, int[]> fromTrees;
+    /** next nodes on the paths to the precomputed nodes */
+    private final Map<Integer, int[]> toTrees;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor.
+     * @param finder The path finder for the paths that are not cached
+     * @param graph The graph of the map
+     * @param okMapNodes The map node types that are OK for paths or null if
+     * all nodes are OK (must be the same as those of the finder)
+     * @param capacity Maximum number of paths in the LRU cache (0 for no
+     * LRU cache)
+     */
+    public PathCache(PathFinder finder, RoadGraph graph, int[] okMapNodes,
+            final int capacity) {
+        this.finder = finder;
+        this.graph = graph;
+        this.mask = RoadGraph.typeMask(okMapNodes);
+        this.capacity = capacity;
+        this.paths = new LinkedHashMap<Long, List<MapNode>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Long, List<MapNode>> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.fromTrees = new HashMap<Integer, int[]>();
+        this.toTrees = new HashMap<Integer, int[]>();
+    }
+
+    /**
+     * Computes the shortest path trees from and to the given nodes (unless
+     * they are computed already). Each node takes two integer arrays of
+     * the size of the map.
+     * @param nodes The nodes
+     */
+    public void precompute(Collection<MapNode> nodes) {
+        for (MapNode node : nodes) {
+            int i = graph.indexOf(node);
+            if (i < 0 || fromTrees.containsKey(i)) {
+                continue;
+            }
+            int[] prev = new int[graph.size()];
+            graph.shortestPaths(i, mask, false, prev);
+            fromTrees.put(i, prev);
+            int[] next = new int[graph.size()];
+            graph.shortestPaths(i, mask, true, next);
+            toTrees.put(i, next);
+        }
+    }
+
+    public List<MapNode> getShortestPath(MapNode from, MapNode to) {
+        if (from.compareTo(to) == 0) {
+            return Collections.singletonList(from);
+        }
+        int s = graph.indexOf(from);
+        int t = graph.indexOf(to);
+        if (s >= 0 && t >= 0) {
+            int[] tree = fromTrees.get(s);
+            if (tree != null) {
+                hits++;
+                return pathFromTree(tree, t, s, true);
+            }
+            tree = toTrees.get(t);
+            if (tree != null) {
+                hits++;
+                return pathFromTree(tree, s, t, false);
+            }
+        }
+        if (capacity == 0 || s < 0 || t < 0) {
+            misses++;
+            return finder.getShortestPath(from, to);
+        }
+
+        Long key = ((long) s << 32) | t;
+        List<MapNode> path = paths.get(key);
+        if (path != null) {
+            hits++;
+            return path;
+        }
+        misses++;
+        path = Collections.unmodifiableList(finder.getShortestPath(from, to));
+        paths.put(key, path);
+        return path;
+    }
+
+    /**
+     * Follows the links of a tree from a node to the root of the tree.
+     * @param reverse If true, the path is returned from the root to the
+     * node (the links are to the previous nodes on the paths)
+     */
+    private List<MapNode> pathFromTree(int[] links, int node, int root,
+            boolean reverse) {
+        if (links[node] < 0) {
+            return Collections.emptyList(); // not reachable
+        }
+        ArrayList<MapNode> path = new ArrayList<MapNode>();
+        for (int v = node; v != root; v = links[v]) {
+            path.add(graph.getNode(v));
+        }
+        path.add(graph.getNode(root));
+        if (reverse) {
+            Collections.reverse(path);
+        }
+        return Collections.unmodifiableList(path);
+    }
+
+    /**
+     * Returns the number of paths found from the cache or the trees
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of paths the other path finder was asked for
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of paths in the LRU cache
+     * @return The number of cached paths
+     */
+    public int size() {
+        return paths.size();
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.List;
+
+/**
+ * Finds shortest paths between the nodes of a map.
+ */
+public interface PathFinder {
+
+    /**
+     * Finds and returns a shortest path between two map nodes
+     * @param from The source of the path
+     * @param to The destination of the path
+     * @return a shortest path between the source and destination nodes in
+     * a list of MapNodes or an empty list if such path is not available.
+     * The list must not be modified.
+     */
+    public List<MapNode> getShortestPath(MapNode from, MapNode to);
+}
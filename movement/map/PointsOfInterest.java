@@ -100,6 +100,20 @@ public class PointsOfInterest {
 		return node;
 	}
 
+	/**
+	 * Returns all the POIs of all the POI groups of this instance
+	 * @return The POIs
+	 */
+	public List<MapNode> getPois() {
+		List<MapNode> all = new ArrayList<MapNode>();
+		for (List<MapNode> pois : poiLists) {
+			if (pois != null) {
+				all.addAll(pois);
+			}
+		}
+		return all;
+	}
+
 	/**
 	 * Reads POI selections and their probabilities from given Settings and
 	 * stores them to <CODE>poiLists</CODE> and <CODE>poiProbs</CODE>.
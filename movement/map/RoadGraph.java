@@ -0,0 +1,513 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexed, read-only representation of the road graph of a {@link SimMap}
+ * for the path finders: the map nodes are numbered from 0 and their
+ * coordinates, type masks and (forward and reverse) adjacency are kept in
+ * flat arrays in compressed sparse row (CSR) form. Edge weights are the
+ * euclidean lengths of the road segments.
+ * <P>
+ * The graph also has the ALT landmark distance tables of the A* search
+ * (see {@link #getLandmarks(int)}) and the path finders that are shared by
+ * all the nodes moving on the map (see {@link #getSharedFinder(String)}).
+ * The graph is built from the map as it is when {@link SimMap#getRoadGraph()}
+ * is first called; changing the map's topology later isn't noticed.
+ */
+public class RoadGraph {
+    /** Type mask that accepts all the nodes */
+    public static final int ALL_TYPES = -1;
+    /** Distance of unreachable nodes */
+    public static final double INFINITY = Double.POSITIVE_INFINITY;
+
+    private final MapNode[] nodes;
+    private final Map<MapNode, Integer> index;
+    private final double[] x;
+    private final double[] y;
+    private final int[] types;
+    /** order of the nodes by their coordinates (see MapNode#compareTo) */
+    private final int[] rank;
+    /** out-edges of node i are targets[offsets[i]..offsets[i+1]-1] */
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    /** in-edges of node i are sources[rOffsets[i]..rOffsets[i+1]-1] */
+    private final int[] rOffsets;
+    private final int[] sources;
+    private final double[] rWeights;
+
+    private final Map<Integer, Landmarks> landmarks;
+    private final Map<String, PathFinder> sharedFinders;
+
+    /**
+     * Builds the graph of map nodes. Edges to nodes that are not in the
+     * list are left out.
+     * @param mapNodes The nodes
+     */
+    public RoadGraph(List<MapNode> mapNodes) {
+        int n = mapNodes.size();
+        this.nodes = mapNodes.toArray(new MapNode[n]);
+        this.index = new IdentityHashMap<MapNode, Integer>(2 * n);
+        this.x = new double[n];
+        this.y = new double[n];
+        this.types = new int[n];
+        for (int i = 0; i < n; i++) {
+            index.put(nodes[i], i);
+            x[i] = nodes[i].getLocation().getX();
+            y[i] = nodes[i].getLocation().getY();
+            types[i] = nodes[i].getTypeMask();
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return nodes[a].compareTo(nodes[b]);
+            }
+        });
+        this.rank = new int[n];
+        for (int r = 0; r < n; r++) {
+            rank[order[r]] = r;
+        }
+
+        /* forward adjacency in the order of MapNode#getNeighbors() */
+        int[] outDegree = new int[n];
+        int[] inDegree = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            for (MapNode nb : nodes[i].getNeighbors()) {
+                Integer j = index.get(nb);
+                if (j != null) {
+                    outDegree[i]++;
+                    inDegree[j]++;
+                    m++;
+                }
+            }
+        }
+        this.offsets = prefixSums(outDegree);
+        this.rOffsets = prefixSums(inDegree);
+        this.targets = new int[m];
+        this.weights = new double[m];
+        this.sources = new int[m];
+        this.rWeights = new double[m];
+        int[] rFill = Arrays.copyOf(rOffsets, n);
+        int e = 0;
+        for (int i = 0; i < n; i++) {
+            for (MapNode nb : nodes[i].getNeighbors()) {
+                Integer j = index.get(nb);
+                if (j == null) {
+                    continue;
+                }
+                double w = nodes[i].getLocation().distance(nb.getLocation());
+                targets[e] = j;
+                weights[e] = w;
+                e++;
+                sources[rFill[j]] = i;
+                rWeights[rFill[j]] = w;
+                rFill[j]++;
+            }
+        }
+
+        this.landmarks = new HashMap<Integer, Landmarks>();
+        this.sharedFinders = new HashMap<String, PathFinder>();
+    }
+
+    private static int[] prefixSums(int[] degrees) {
+        int[] sums = new int[degrees.length + 1];
+        for (int i = 0; i < degrees.length; i++) {
+            sums[i + 1] = sums[i] + degrees[i];
+        }
+        return sums;
+    }
+
+    /**
+     * Returns the type mask of the given OK map node types (see
+     * {@link DijkstraPathFinder#DijkstraPathFinder(int[])}).
+     * @param okMapNodes The types or null if all nodes are OK
+     * @return The mask or {@link #ALL_TYPES}
+     */
+    public static int typeMask(int[] okMapNodes) {
+        if (okMapNodes == null) {
+            return ALL_TYPES;
+        }
+        int mask = 0;
+        for (int t : okMapNodes) {
+            mask |= 1 << t;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the number of nodes
+     * @return The number of nodes
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the number of (directed) edges
+     * @return The number of edges
+     */
+    public int nrofEdges() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the index of a map node
+     * @param node The node
+     * @return The index or -1 if the node is not in the graph
+     */
+    public int indexOf(MapNode node) {
+        Integer i = index.get(node);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * Returns the map node of an index
+     * @param i The index
+     * @return The node
+     */
+    public MapNode getNode(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * Returns true if a path may go through a node
+     * @param i Index of the node
+     * @param mask Type mask of the OK nodes (see {@link #typeMask(int[])})
+     * @return True if the node is OK
+     */
+    public boolean isOk(int i, int mask) {
+        return mask == ALL_TYPES || (types[i] & mask) != 0;
+    }
+
+    /**
+     * Returns the straight line distance between two nodes
+     */
+    double euclidean(int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    int rank(int i) {
+        return rank[i];
+    }
+
+    int[] offsets(boolean reverse) {
+        return reverse ? rOffsets : offsets;
+    }
+
+    int[] adjacent(boolean reverse) {
+        return reverse ? sources : targets;
+    }
+
+    double[] weights(boolean reverse) {
+        return reverse ? rWeights : weights;
+    }
+
+    /**
+     * Computes the shortest paths from a node to all the other nodes (or
+     * from all the nodes to a node). Like in {@link DijkstraPathFinder},
+     * the source of a path needn't be an OK node but all other nodes on
+     * it must be, and ties are broken like there, so the trees from a node
+     * give the same paths as {@link DijkstraPathFinder}.
+     * @param source Index of the source node (the destination if reverse)
+     * @param mask Type mask of the OK nodes
+     * @param reverse If true, the paths to the node are computed
+     * @param prev If not null, filled with the previous node on the path
+     * from the source (the next node on the path to the destination if
+     * reverse) of each node, or -1 if the node isn't reachable
+     * @return The distances from the source (to the destination if
+     * reverse); {@link #INFINITY} for unreachable nodes
+     */
+    public double[] shortestPaths(int source, int mask, boolean reverse,
+            int[] prev) {
+        int n = nodes.length;
+        double[] dist = new double[n];
+        Arrays.fill(dist, INFINITY);
+        if (prev != null) {
+            Arrays.fill(prev, -1);
+        }
+        boolean[] done = new boolean[n];
+        int[] off = offsets(reverse);
+        int[] adj = adjacent(reverse);
+        double[] w = weights(reverse);
+        NodeHeap heap = new NodeHeap(this, dist);
+
+        dist[source] = 0;
+        heap.update(source);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            done[u] = true;
+            /* forward, the nodes entered must be OK; in reverse, the
+             * nodes left (i.e., all but the paths' sources) */
+            if (reverse && !isOk(u, mask)) {
+                continue;
+            }
+            for (int e = off[u]; e < off[u + 1]; e++) {
+                int v = adj[e];
+                if (done[v] || (!reverse && !isOk(v, mask))) {
+                    continue;
+                }
+                double d = dist[u] + w[e];
+                if (dist[v] > d) {
+                    dist[v] = d;
+                    if (prev != null) {
+                        prev[v] = u;
+                    }
+                    heap.update(v);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Returns the ALT landmarks of the graph. The landmarks are chosen
+     * by farthest point selection and their distance tables are computed
+     * when first asked for; the result is kept for later calls.
+     * @param k Number of landmarks
+     * @return The landmarks (at most the number of nodes)
+     */
+    public Landmarks getLandmarks(int k) {
+        k = Math.min(k, nodes.length);
+        Landmarks l = landmarks.get(k);
+        if (l == null) {
+            l = new Landmarks(k);
+            landmarks.put(k, l);
+        }
+        return l;
+    }
+
+    /**
+     * Returns a path finder shared by all the users of the graph.
+     * @param key Key of the path finder's configuration
+     * @return The path finder or null if none is stored with the key
+     */
+    public PathFinder getSharedFinder(String key) {
+        return sharedFinders.get(key);
+    }
+
+    /**
+     * Stores a path finder to be shared by all the users of the graph.
+     * @param key Key of the path finder's configuration
+     * @param finder The path finder
+     */
+    public void putSharedFinder(String key, PathFinder finder) {
+        sharedFinders.put(key, finder);
+    }
+
+    /**
+     * Landmarks of the ALT heuristic and their distances from and to all
+     * the nodes (computed over all the nodes regardless of their types, so
+     * they are lower bounds for restricted paths too).
+     */
+    public class Landmarks {
+        /** distance from each landmark to each node */
+        final double[][] from;
+        /** distance from each node to each landmark */
+        final double[][] to;
+        private final int[] ids;
+
+        private Landmarks(int k) {
+            this.ids = new int[k];
+            this.from = new double[k][];
+            this.to = new double[k][];
+            if (k == 0) {
+                return;
+            }
+            /* start from the node farthest from the first node; each next
+             * landmark is the node farthest from the chosen ones */
+            double[] nearest = shortestPaths(0, ALL_TYPES, false, null);
+            for (int l = 0; l < k; l++) {
+                int far = 0;
+                for (int i = 1; i < nearest.length; i++) {
+                    if (nearest[i] != INFINITY &&
+                            (nearest[far] == INFINITY ||
+                            nearest[i] > nearest[far])) {
+                        far = i;
+                    }
+                }
+                ids[l] = far;
+                from[l] = shortestPaths(far, ALL_TYPES, false, null);
+                to[l] = shortestPaths(far, ALL_TYPES, true, null);
+                if (l == 0) {
+                    nearest = from[0].clone();
+                } else {
+                    for (int i = 0; i < nearest.length; i++) {
+                        nearest[i] = Math.min(nearest[i], from[l][i]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the number of landmarks
+         * @return The number of landmarks
+         */
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * Returns the map node of a landmark
+         * @param l Index of the landmark
+         * @return The node
+         */
+        public MapNode getNode(int l) {
+            return nodes[ids[l]];
+        }
+
+        /**
+         * Returns a lower bound for the distance between two nodes
+         * @param v Index of the source node
+         * @param t Index of the destination node
+         * @return The lower bound (0 if the landmarks don't tell)
+         */
+        public double lowerBound(int v, int t) {
+            double h = 0;
+            for (int l = 0; l < ids.length; l++) {
+                double[] fl = from[l];
+                double[] tl = to[l];
+                /* d(v,t) >= d(L,t) - d(L,v) and d(v,t) >= d(v,L) - d(t,L) */
+                if (fl[t] != INFINITY && fl[v] != INFINITY) {
+                    h = Math.max(h, fl[t] - fl[v]);
+                }
+                if (tl[v] != INFINITY && tl[t] != INFINITY) {
+                    h = Math.max(h, tl[v] - tl[t]);
+                }
+            }
+            return h;
+        }
+    }
+
+    /**
+     * Binary min-heap of node indexes keyed by a distance array (ties are
+     * broken by the order of the nodes' coordinates), with decrease-key.
+     */
+    static class NodeHeap {
+        private final RoadGraph graph;
+        private final double[] keys;
+        private int[] heap;
+        /** position of each node in the heap or -1 */
+        private final int[] pos;
+        private int size;
+
+        /**
+         * Creates a heap.
+         * @param graph The graph of the nodes
+         * @param keys The keys of the nodes
+         */
+        NodeHeap(RoadGraph graph, double[] keys) {
+            this.graph = graph;
+            this.keys = keys;
+            this.heap = new int[16];
+            this.pos = new int[graph.size()];
+            Arrays.fill(pos, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Empties the heap.
+         */
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                pos[heap[i]] = -1;
+            }
+            size = 0;
+        }
+
+        /**
+         * Adds a node or moves it up after its key has decreased.
+         * @param v The node
+         */
+        void update(int v) {
+            int i = pos[v];
+            if (i < 0) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, 2 * size);
+                }
+                i = size++;
+                heap[i] = v;
+                pos[v] = i;
+            }
+            siftUp(i);
+        }
+
+        /**
+         * Removes and returns the node with the smallest key.
+         * @return The node
+         */
+        int poll() {
+            int top = heap[0];
+            pos[top] = -1;
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                pos[heap[0]] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private boolean less(int a, int b) {
+            double ka = keys[a];
+            double kb = keys[b];
+            if (ka != kb) {
+                return ka < kb;
+            }
+            return graph.rank[a] < graph.rank[b];
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                int p = heap[parent];
+                if (!less(v, p)) {
+                    break;
+                }
+                heap[i] = p;
+                pos[p] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            int half = size >>> 1;
+            while (i < half) {
+                int c = 2 * i + 1;
+                if (c + 1 < size && less(heap[c + 1], heap[c])) {
+                    c++;
+                }
+                if (!less(heap[c], v)) {
+                    break;
+                }
+                heap[i] = heap[c];
+                pos[heap[i]] = i;
+                i = c;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+    }
+}
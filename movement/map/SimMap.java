@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 
 import core.Coord;
+import core.SimError;
 
 /**
  * A simulation map for node movement.
@@ -28,6 +29,10 @@ public class SimMap implements Serializable {
 
 	/** is re-hash needed before using hash mode (some coordinates changed) */
 	private boolean needsRehash = false;
+	/** can the map be translated or mirrored (see {@link #setReadOnly()}) */
+	private boolean readOnly = false;
+	/** indexed graph of the map for the path finders (built when needed) */
+	private transient RoadGraph roadGraph;
 
 	public SimMap(Map<Coord, MapNode> nodes) {
 		this.offset = new Coord(0,0);
@@ -37,6 +42,18 @@ public class SimMap implements Serializable {
 		setBounds();
 	}
 
+	/**
+	 * Creates a map whose nodes are already translated and/or mirrored.
+	 * @param nodes The nodes (in the order of {@link #getNodes()})
+	 * @param offset Offset of the translations done to the nodes
+	 * @param mirrored Are the nodes mirrored
+	 */
+	SimMap(Map<Coord, MapNode> nodes, Coord offset, boolean mirrored) {
+		this(nodes);
+		this.offset = offset;
+		this.isMirrored = mirrored;
+	}
+
 	/**
 	 * Returns all the map nodes in a list
 	 * @return all the map nodes in a list
@@ -62,6 +79,34 @@ public class SimMap implements Serializable {
 		return nodesMap.get(c);
 	}
 
+	/**
+	 * Makes the map read-only: it can't be translated or mirrored after
+	 * this. Maps shared by all the movement models are read-only.
+	 */
+	public void setReadOnly() {
+		this.readOnly = true;
+	}
+
+	/**
+	 * Returns true if the map is read-only
+	 * @return True if the map can't be translated or mirrored
+	 */
+	public boolean isReadOnly() {
+		return this.readOnly;
+	}
+
+	/**
+	 * Returns the indexed road graph of the map. The graph is built at the
+	 * first call and shared by all the callers after that.
+	 * @return The road graph
+	 */
+	public RoadGraph getRoadGraph() {
+		if (roadGraph == null) {
+			roadGraph = new RoadGraph(nodes);
+		}
+		return roadGraph;
+	}
+
 	/**
 	 * Returns the upper left corner coordinate of the map
 	 * @return the upper left corner coordinate of the map
@@ -102,6 +147,7 @@ public class SimMap implements Serializable {
 	 * @param dy the amount to translate Y coordinates
 	 */
 	public void translate(double dx, double dy) {
+		checkWritable();
 		for (MapNode n : nodes) {
 			n.getLocation().translate(dx, dy);
 		}
@@ -111,6 +157,7 @@ public class SimMap implements Serializable {
 		offset.translate(dx, dy);
 
 		needsRehash = true;
+		roadGraph = null;
 	}
 
 	/**
@@ -118,6 +165,7 @@ public class SimMap implements Serializable {
 	 */
 	public void mirror() {
 		assert !isMirrored : "Map data already mirrored";
+		checkWritable();
 
 		Coord c;
 		for (MapNode n : nodes) {
@@ -127,6 +175,7 @@ public class SimMap implements Serializable {
 		setBounds();
 		this.isMirrored = true;
 		needsRehash = true;
+		roadGraph = null;
 	}
 
 	/**
@@ -157,6 +206,16 @@ public class SimMap implements Serializable {
 		maxBound = new Coord(maxX, maxY);
 	}
 
+	/**
+	 * Throws a SimError if the map is read-only
+	 */
+	private void checkWritable() {
+		if (readOnly) {
+			throw new SimError("Can't change the read-only map shared by " +
+					"all the movement models");
+		}
+	}
+
 	/**
 	 * Returns a String representation of the map
 	 * @return a String representation of the map
@@ -0,0 +1,267 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.locks.LockSupport;
+
+import core.DTNHost;
+import core.SimError;
+
+/**
+ * Writes report output in a background thread. The simulation thread
+ * fills compact event records in a ring buffer (see {@link #claim()} and
+ * {@link #publish()}), and the writer thread formats the records to lines
+ * with a {@link RecordFormatter} and writes them through a large output
+ * buffer. The ring buffer has a single producer and a single consumer, so
+ * it needs no locks: the producer only moves the tail and the consumer only
+ * moves the head. If the buffer is full, the producer waits for the writer
+ * thread (back-pressure), so the memory use stays bounded however fast the
+ * events come. {@link #close()} writes all the published records before it
+ * returns.
+ */
+public class AsyncReportWriter {
+    /** Default capacity of the ring buffer (records) */
+    public static final int DEF_CAPACITY = 4096;
+    /** Size of the output buffer (chars) */
+    public static final int BUFFER_SIZE = 1 << 16;
+    /** How long the simulation thread waits for room in a full buffer (ns) */
+    private static final long FULL_PARK_NS = 50000;
+    /** How long the writer thread waits for records when idle (ns) */
+    private static final long IDLE_PARK_NS = 1000000;
+
+    private final Record[] ring;
+    private final int mask;
+    /** index of the next record the writer thread formats */
+    private volatile long head;
+    /** index of the next record the simulation thread fills */
+    private volatile long tail;
+    private volatile boolean closed;
+    private volatile Exception failure;
+
+    private final BufferedWriter out;
+    private final RecordFormatter formatter;
+    private final Thread thread;
+
+    /**
+     * Formats a record to a line of report output.
+     */
+    public interface RecordFormatter {
+        /**
+         * Appends the line of a record (without the line separator)
+         * @param r The record
+         * @param line The line to append to
+         */
+        public void format(Record r, StringBuilder line);
+    }
+
+    /**
+     * A record of a report event. The meaning of the fields, except
+     * {@link #text} of the plain line records, is up to the report.
+     */
+    public static class Record {
+        /** Type of a record that is a complete line in {@link #text} */
+        public static final int LINE = -1;
+
+        /** Report specific type of the record */
+        public int type;
+        /** Prefix of the line */
+        public String prefix;
+        /** Simulation time of the event */
+        public double time;
+        public DTNHost host1;
+        public DTNHost host2;
+        /** Text of the event, e.g. a message id, or the complete line */
+        public String text;
+        public String extra;
+        public double x;
+        public double y;
+        public double value;
+        public Object data;
+
+        private void clear() {
+            prefix = null;
+            host1 = null;
+            host2 = null;
+            text = null;
+            extra = null;
+            data = null;
+        }
+    }
+
+    /**
+     * Creates a writer and starts its thread.
+     *
+     * @param out The writer to write the lines to
+     * @param formatter Formatter of the records that are not plain lines
+     * @param capacity Capacity of the ring buffer; rounded up to a power of
+     * two
+     * @param name Name of the writer thread
+     */
+    public AsyncReportWriter(Writer out, RecordFormatter formatter,
+            int capacity, String name) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new Record[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Record();
+        }
+        this.mask = size - 1;
+        this.out = new BufferedWriter(out, BUFFER_SIZE);
+        this.formatter = formatter;
+
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the next free record of the ring buffer, waiting for the
+     * writer thread if the buffer is full. The record must be filled and
+     * published with {@link #publish()} before the next claim.
+     *
+     * @return The record to fill
+     */
+    public Record claim() {
+        if (closed) {
+            throw new SimError("Report output is already closed");
+        }
+        long t = tail;
+        while (t - head > mask) {
+            checkFailure();
+            LockSupport.parkNanos(FULL_PARK_NS);
+        }
+        Record r = ring[(int) (t & mask)];
+        r.type = Record.LINE;
+        return r;
+    }
+
+    /**
+     * Publishes the record returned by the latest {@link #claim()} to the
+     * writer thread.
+     */
+    public void publish() {
+        tail = tail + 1;
+    }
+
+    /**
+     * Writes a complete line.
+     *
+     * @param line The line
+     */
+    public void write(String line) {
+        Record r = claim();
+        r.text = line;
+        publish();
+    }
+
+    /**
+     * Writes all the published records, closes the output and stops the
+     * writer thread. Closing a closed writer has no effect.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new SimError("Couldn't write report output: " +
+                    failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Formats and writes the published records until the writer is closed
+     * (run by the writer thread).
+     */
+    private void drain() {
+        StringBuilder line = new StringBuilder();
+        boolean flushed = true;
+        try {
+            while (true) {
+                long h = head;
+                if (h == tail) {
+                    if (closed && h == tail) {
+                        break;
+                    }
+                    if (!flushed) { // let the output follow while idle
+                        out.flush();
+                        flushed = true;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NS);
+                    continue;
+                }
+                Record r = ring[(int) (h & mask)];
+                line.setLength(0);
+                if (r.prefix != null) {
+                    line.append(r.prefix);
+                }
+                if (r.type == Record.LINE) {
+                    line.append(r.text);
+                } else {
+                    formatter.format(r, line);
+                }
+                out.append(line);
+                out.newLine();
+                r.clear();
+                head = h + 1;
+                flushed = false;
+            }
+            out.close();
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Stores the cause of a failed write and discards the rest of the
+     * records, so that the simulation thread doesn't block on a full buffer
+     * before it notices the failure.
+     */
+    private void fail(Exception e) {
+        failure = e;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            /* the first failure is reported */
+        }
+        while (!closed || head != tail) {
+            if (head != tail) {
+                ring[(int) (head & mask)].clear();
+                head = head + 1;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NS);
+            }
+        }
+    }
+}
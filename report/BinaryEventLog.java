@@ -0,0 +1,358 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.ContentType;
+import core.SimError;
+
+/**
+ * Reader of the event logs written by {@link BinaryEventLogReport}. The log
+ * is read a block at a time; {@link #next()} moves to the next event, whose
+ * values are then available from the getters.
+ */
+public class BinaryEventLog {
+    private FileChannel channel;
+    private ByteBuffer lengthBuffer;
+    private ByteBuffer block;
+    private String scenarioName;
+    private int warmup;
+    private List<Entry> messages;
+
+    /* the columns of the current block */
+    private int nrofEvents;
+    private int current;
+    private byte[] types;
+    private double[] times;
+    private int[] host1;
+    private int[] host2;
+    private int[] msgs;
+    private byte[] flags;
+    private int[] msgHops;
+    private int[] refs;
+    private int[] refHops;
+    private long[] values;
+
+    /**
+     * A message of the log with the attributes it had when it was logged
+     * for the first time.
+     */
+    public static class Entry {
+        /** Id of the message */
+        public String id;
+        /** Chunk index of the message, -1 if not a chunk */
+        public int chunk;
+        public int size;
+        public int responseSize;
+        /** Flags of the message (see {@link BinaryEventLogReport#HELLO}
+         * etc.) */
+        public int flags;
+        /** Creation time of the request of a response message */
+        public double requestCreationTime;
+        /** Type of the content, null if the message has no content */
+        public ContentType contentType;
+        public int contentId;
+        public int contentSize;
+        public int contentTotalSize;
+        public int nrofChunks;
+        public int chunkIndex;
+
+        /**
+         * Returns true if the message has the flag(s)
+         * @param flag The flag(s)
+         * @return True if all the flags are set
+         */
+        public boolean is(int flag) {
+            return (flags & flag) == flag;
+        }
+    }
+
+    /**
+     * Opens a log and reads its header.
+     *
+     * @param file Path of the log file
+     * @throws IOException if the log can't be read
+     */
+    public BinaryEventLog(String file) throws IOException {
+        this.channel = FileChannel.open(Paths.get(file),
+                StandardOpenOption.READ);
+        this.lengthBuffer = ByteBuffer.allocate(4);
+        this.messages = new ArrayList<Entry>();
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(header);
+        if (header.getInt() != BinaryEventLogReport.MAGIC) {
+            throw new SimError(file + " is not an event log");
+        }
+        int version = header.getInt();
+        if (version != BinaryEventLogReport.VERSION) {
+            throw new SimError("Unsupported event log version " + version);
+        }
+        /* the name and the warm up are small; read them a byte at a time */
+        int len = readVarint(null);
+        ByteBuffer name = ByteBuffer.allocate(len);
+        readFully(name);
+        this.scenarioName = new String(name.array(), StandardCharsets.UTF_8);
+        this.warmup = readVarint(null);
+    }
+
+    /**
+     * Returns the name of the scenario the log is from
+     * @return The scenario name
+     */
+    public String getScenarioName() {
+        return scenarioName;
+    }
+
+    /**
+     * Returns the warm up period of the reports of the scenario
+     * @return The warm up period (seconds)
+     */
+    public int getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * Moves to the next event.
+     *
+     * @return True if there was an event, false at the end of the log
+     * @throws IOException if the log can't be read
+     */
+    public boolean next() throws IOException {
+        current++;
+        while (current >= nrofEvents) {
+            if (!readBlock()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Closes the log.
+     * @throws IOException if closing fails
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** @return The type of the event */
+    public int getType() {
+        return types[current];
+    }
+
+    /** @return The time of the event */
+    public double getTime() {
+        return times[current];
+    }
+
+    /** @return The address of the first host of the event, -1 if none */
+    public int getHost1() {
+        return host1[current] - 1;
+    }
+
+    /** @return The address of the second host of the event, -1 if none */
+    public int getHost2() {
+        return host2[current] - 1;
+    }
+
+    /** @return The message of the event or null if none */
+    public Entry getMessage() {
+        return msgs[current] > 0 ? messages.get(msgs[current] - 1) : null;
+    }
+
+    /** @return The number of nodes on the path of the message */
+    public int getPathLength() {
+        return msgHops[current];
+    }
+
+    /** @return The flag of the event (e.g. first delivery) */
+    public boolean getFlag() {
+        return (flags[current] & BinaryEventLogReport.FLAG) != 0;
+    }
+
+    /** @return True if the source of the message of the event published
+     * the content of the message */
+    public boolean isFromPublisher() {
+        return (flags[current] & BinaryEventLogReport.FROM_PUBLISHER) != 0;
+    }
+
+    /** @return The Interest of an advertisement match */
+    public Entry getInterest() {
+        return messages.get(refs[current] - 1);
+    }
+
+    /** @return The number of nodes on the path of the Interest of an
+     * advertisement match */
+    public int getInterestPathLength() {
+        return refHops[current];
+    }
+
+    /** @return The content id of a content event */
+    public int getContentId() {
+        return refs[current];
+    }
+
+    /** @return The content size of a content event */
+    public int getContentSize() {
+        return (int) values[current];
+    }
+
+    /** @return The time the message of a deletion event was received */
+    public double getReceiveTime() {
+        return Double.longBitsToDouble(
+                Double.doubleToLongBits(times[current]) - values[current]);
+    }
+
+    /**
+     * Reads the next block.
+     * @return True if a block was read, false at the end of the log
+     */
+    private boolean readBlock() throws IOException {
+        lengthBuffer.clear();
+        if (channel.read(lengthBuffer) <= 0) {
+            return false;
+        }
+        readFully(lengthBuffer);
+        int length = lengthBuffer.getInt();
+        if (block == null || block.capacity() < length) {
+            block = ByteBuffer.allocate(Math.max(length, 1 << 16));
+        }
+        block.clear();
+        block.limit(length);
+        readFully(block);
+
+        int n = readVarint(block);
+        int nrofNew = readVarint(block);
+        for (int i = 0; i < nrofNew; i++) {
+            messages.add(readEntry());
+        }
+        if (types == null || types.length < n) {
+            allocate(n);
+        }
+        block.get(types, 0, n);
+        long prev = 0;
+        for (int i = 0; i < n; i++) {
+            prev += unzigzag(readVarlong(block));
+            times[i] = Double.longBitsToDouble(prev);
+        }
+        for (int i = 0; i < n; i++) {
+            host1[i] = readVarint(block);
+        }
+        for (int i = 0; i < n; i++) {
+            host2[i] = readVarint(block);
+        }
+        for (int i = 0; i < n; i++) {
+            msgs[i] = readVarint(block);
+        }
+        block.get(flags, 0, n);
+        for (int i = 0; i < n; i++) {
+            msgHops[i] = msgs[i] != 0 ? readVarint(block) : 0;
+        }
+        for (int i = 0; i < n; i++) {
+            if (BinaryEventLogReport.hasRef(types[i])) {
+                refs[i] = readVarint(block);
+            }
+            if (types[i] == BinaryEventLogReport.ADVERT_MATCHED) {
+                refHops[i] = readVarint(block);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (BinaryEventLogReport.hasValue(types[i])) {
+                values[i] = unzigzag(readVarlong(block));
+            }
+        }
+        this.nrofEvents = n;
+        this.current = 0;
+        return true;
+    }
+
+    private void allocate(int n) {
+        types = new byte[n];
+        times = new double[n];
+        host1 = new int[n];
+        host2 = new int[n];
+        msgs = new int[n];
+        flags = new byte[n];
+        msgHops = new int[n];
+        refs = new int[n];
+        refHops = new int[n];
+        values = new long[n];
+    }
+
+    private Entry readEntry() {
+        Entry e = new Entry();
+        byte[] id = new byte[readVarint(block)];
+        block.get(id);
+        e.id = new String(id, StandardCharsets.UTF_8);
+        e.chunk = readVarint(block) - 1;
+        e.size = readVarint(block);
+        e.responseSize = readVarint(block);
+        e.flags = readVarint(block);
+        e.requestCreationTime = Double.NaN;
+        if (e.is(BinaryEventLogReport.RESPONSE)) {
+            e.requestCreationTime = block.getDouble();
+        }
+        if (e.is(BinaryEventLogReport.HAS_CONTENT)) {
+            e.contentType = ContentType.values()[readVarint(block)];
+            e.contentId = readVarint(block);
+            e.contentSize = readVarint(block);
+            e.contentTotalSize = readVarint(block);
+            e.nrofChunks = readVarint(block);
+            e.chunkIndex = readVarint(block) - 1;
+        }
+        return e;
+    }
+
+    private void readFully(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            if (channel.read(b) < 0) {
+                throw new SimError("Unexpected end of the event log");
+            }
+        }
+        b.flip();
+    }
+
+    /**
+     * Reads a variable length integer from a buffer or, if the buffer is
+     * null, from the channel.
+     */
+    private int readVarint(ByteBuffer b) {
+        return (int) readVarlong(b);
+    }
+
+    private long readVarlong(ByteBuffer b) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte x = (b != null ? b.get() : readByte());
+            v |= (long) (x & 0x7F) << shift;
+            if (x >= 0) {
+                return v;
+            }
+        }
+    }
+
+    private byte readByte() {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        try {
+            readFully(one);
+        } catch (IOException e) {
+            throw new SimError("Couldn't read the event log: " +
+                    e.getMessage(), e);
+        }
+        return one.get();
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
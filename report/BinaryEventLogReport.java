@@ -0,0 +1,549 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import core.ConnectionListener;
+import core.Content;
+import core.DTNHost;
+import core.ICNListener;
+import core.Message;
+import core.MessageListener;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Report that logs the connection, message and ICN events in a compact
+ * binary format, so that the message statistics can be computed afterwards
+ * from the log with {@link EventLogStats} instead of rerunning the
+ * simulation.
+ * <P>
+ * The log starts with a header (magic number, format version, scenario name
+ * and warm up time) that is followed by blocks of up to
+ * {@value #BLOCK_SIZE} events. Each block is stored column by column, which
+ * keeps similar values next to each other:
+ * <UL>
+ * <LI>the messages that are referred to for the first time in the block:
+ * their ids and the attributes the statistics need (size, content, ...)
+ * <LI>event types (a byte per event)
+ * <LI>event times: the difference of the bit pattern of the time and that of
+ * the previous event, so events of the same update take one byte
+ * <LI>host addresses and message indexes (variable length integers)
+ * <LI>event flags (e.g. first delivery or dropped, and whether the source
+ * of the message published its content)
+ * <LI>hop counts, references and values of the event types that have them
+ * </UL>
+ * The variable length integers use seven bits per byte, and a block is
+ * preceded by its length in bytes. See {@link BinaryEventLog} for reading
+ * the log.
+ */
+public class BinaryEventLogReport extends Report
+        implements ConnectionListener, MessageListener, ICNListener.All {
+    /** Magic number at the start of a log ({@value}) */
+    public static final int MAGIC = 0x4F4E454C;
+    /** Version of the log format ({@value}) */
+    public static final int VERSION = 1;
+    /** Maximum number of events in a block ({@value}) */
+    public static final int BLOCK_SIZE = 8192;
+    /** Suffix of the log file name ({@value}) */
+    public static final String LOG_SUFFIX = ".bin";
+    /** Size of the output buffer (bytes) */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /* event types */
+    public static final int CONN_UP = 0;
+    public static final int CONN_DOWN = 1;
+    public static final int CREATED = 2;
+    public static final int STARTED = 3;
+    public static final int ABORTED = 4;
+    public static final int TRANSFERRED = 5;
+    public static final int DELETED = 6;
+    public static final int INTEREST_MATCHED = 7;
+    public static final int ADVERT_MATCHED = 8;
+    public static final int REQUEST_SERVED = 9;
+    public static final int CACHE_LOOKUP = 10;
+    public static final int INTEREST_PENDING = 11;
+    public static final int PENDING_SATISFIED = 12;
+    public static final int DIGEST_FORWARD = 13;
+    public static final int ADMISSION = 14;
+    public static final int CONTENT_STORED = 15;
+    public static final int CONTENT_EVICTED = 16;
+    /** The end of the simulation (the time of the event is the end time) */
+    public static final int END = 17;
+
+    /* flags of the message entries */
+    public static final int HAS_CONTENT = 1;
+    public static final int HELLO = 2;
+    public static final int RESPONSE = 4;
+
+    /* flags of the events */
+    /** The flag of the event, e.g. first delivery or dropped */
+    public static final int FLAG = 1;
+    /** The source of the message of the event published its content (the
+     * copies of a content message may come from different hosts) */
+    public static final int FROM_PUBLISHER = 2;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    /** the block being encoded */
+    private ByteSink block;
+    /** the message entries of the block */
+    private ByteSink entries;
+
+    /* the columns of the block */
+    private byte[] types;
+    private double[] times;
+    private int[] host1;
+    private int[] host2;
+    private int[] msgs;
+    private byte[] flags;
+    private int[] msgHops;
+    private int[] refs;
+    private int[] refHops;
+    private long[] values;
+    private int nrofEvents;
+    private int nrofNewMessages;
+
+    /** log index + 1 of the messages by their id index, 0 if not logged */
+    private int[] logIndexes;
+    /** the same for protocol messages, by their sequence number */
+    private int[] protocolLogIndexes;
+    private int nrofMessages;
+
+    /**
+     * Constructor.
+     */
+    public BinaryEventLogReport() {
+        this.types = new byte[BLOCK_SIZE];
+        this.times = new double[BLOCK_SIZE];
+        this.host1 = new int[BLOCK_SIZE];
+        this.host2 = new int[BLOCK_SIZE];
+        this.msgs = new int[BLOCK_SIZE];
+        this.flags = new byte[BLOCK_SIZE];
+        this.msgHops = new int[BLOCK_SIZE];
+        this.refs = new int[BLOCK_SIZE];
+        this.refHops = new int[BLOCK_SIZE];
+        this.values = new long[BLOCK_SIZE];
+        this.block = new ByteSink();
+        this.entries = new ByteSink();
+        this.logIndexes = new int[1024];
+        this.protocolLogIndexes = new int[1024];
+        open();
+    }
+
+    @Override
+    protected String getOutputSuffix() {
+        return LOG_SUFFIX;
+    }
+
+    private void open() {
+        String file = getOutputFileName();
+        try {
+            this.channel = FileChannel.open(Paths.get(file),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new SimError("Couldn't open file '" + file +
+                    "' for report output\n" + e.getMessage(), e);
+        }
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ByteSink header = new ByteSink();
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putString(getScenarioName());
+        header.putVarint(this.warmupTime);
+        output(header);
+    }
+
+    /**
+     * Adds an event to the block.
+     *
+     * @return Index of the event in the block
+     */
+    private int event(int type, DTNHost h1, DTNHost h2, Message m,
+            boolean flag) {
+        int i = nrofEvents++;
+        types[i] = (byte) type;
+        times[i] = SimClock.getTime();
+        host1[i] = (h1 != null ? h1.getAddress() + 1 : 0);
+        host2[i] = (h2 != null ? h2.getAddress() + 1 : 0);
+        msgs[i] = (m != null ? messageIndex(m) + 1 : 0);
+        msgHops[i] = (m != null ? m.getHops().size() : 0);
+        int f = (flag ? FLAG : 0);
+        if (m != null && m.getContent() != null && m.getFrom() != null &&
+                m.getFrom().hasPublishedContent(m.getContent())) {
+            f |= FROM_PUBLISHER;
+        }
+        flags[i] = (byte) f;
+        return i;
+    }
+
+    /**
+     * Writes the block if it is full (called after an event is complete).
+     */
+    private void eventDone() {
+        if (nrofEvents == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Returns the log index of a message and adds the message entry to the
+     * block if the message wasn't logged before.
+     */
+    private int messageIndex(Message m) {
+        int idIndex = m.getIdIndex();
+        int[] indexes;
+        if (idIndex >= 0) {
+            logIndexes = ensureLength(logIndexes, idIndex + 1);
+            indexes = logIndexes;
+        } else { // protocol message, see Message#getIdIndex()
+            idIndex = -2 - idIndex;
+            protocolLogIndexes = ensureLength(protocolLogIndexes, idIndex + 1);
+            indexes = protocolLogIndexes;
+        }
+        if (indexes[idIndex] == 0) {
+            indexes[idIndex] = ++nrofMessages;
+            nrofNewMessages++;
+            writeEntry(m);
+        }
+        return indexes[idIndex] - 1;
+    }
+
+    private static int[] ensureLength(int[] a, int length) {
+        if (length <= a.length) {
+            return a;
+        }
+        int[] grown = new int[Math.max(length, 2 * a.length)];
+        System.arraycopy(a, 0, grown, 0, a.length);
+        return grown;
+    }
+
+    private void writeEntry(Message m) {
+        Content c = m.getContent();
+        int f = 0;
+        if (c != null) {
+            f |= HAS_CONTENT;
+        }
+        if (isHelloMessage(m)) {
+            f |= HELLO;
+        }
+        if (m.isResponse()) {
+            f |= RESPONSE;
+        }
+        entries.putString(m.getId());
+        entries.putVarint(m.getChunk() + 1);
+        entries.putVarint(m.getSize());
+        entries.putVarint(m.getResponseSize());
+        entries.putVarint(f);
+        if (m.isResponse()) {
+            entries.putDouble(m.getRequest().getCreationTime());
+        }
+        if (c != null) {
+            entries.putVarint(c.getContentType().ordinal());
+            entries.putVarint(c.getContentId());
+            entries.putVarint(c.getSize());
+            entries.putVarint(c.getTotalSize());
+            entries.putVarint(c.getNrofChunks());
+            entries.putVarint(c.getChunkIndex() + 1);
+        }
+    }
+
+    private void contentEvent(int type, Content c, DTNHost host,
+            boolean flag) {
+        int i = event(type, host, null, null, flag);
+        refs[i] = c.getContentId();
+        values[i] = c.getSize();
+        eventDone();
+    }
+
+    /**
+     * Encodes the events of the block column by column and writes it.
+     */
+    private void writeBlock() {
+        ByteSink b = this.block;
+        b.clear();
+        b.putVarint(nrofEvents);
+        b.putVarint(nrofNewMessages);
+        b.put(entries);
+        b.put(types, nrofEvents);
+        long prev = 0;
+        for (int i = 0; i < nrofEvents; i++) {
+            long bits = Double.doubleToLongBits(times[i]);
+            b.putVarlong(zigzag(bits - prev));
+            prev = bits;
+        }
+        for (int i = 0; i < nrofEvents; i++) {
+            b.putVarint(host1[i]);
+        }
+        for (int i = 0; i < nrofEvents; i++) {
+            b.putVarint(host2[i]);
+        }
+        for (int i = 0; i < nrofEvents; i++) {
+            b.putVarint(msgs[i]);
+        }
+        b.put(flags, nrofEvents);
+        for (int i = 0; i < nrofEvents; i++) {
+            if (msgs[i] != 0) {
+                b.putVarint(msgHops[i]);
+            }
+        }
+        for (int i = 0; i < nrofEvents; i++) {
+            if (hasRef(types[i])) {
+                b.putVarint(refs[i]);
+            }
+            if (types[i] == ADVERT_MATCHED) {
+                b.putVarint(refHops[i]);
+            }
+        }
+        for (int i = 0; i < nrofEvents; i++) {
+            if (hasValue(types[i])) {
+                b.putVarlong(zigzag(values[i]));
+            }
+        }
+
+        ByteSink length = new ByteSink();
+        length.putInt(b.size());
+        output(length);
+        output(b);
+        nrofEvents = 0;
+        nrofNewMessages = 0;
+        entries.clear();
+    }
+
+    /**
+     * Returns true if the events of the type have a reference (the second
+     * message or the content id)
+     *
+     * @param type Type of the event
+     * @return True if the type has a reference
+     */
+    public static boolean hasRef(int type) {
+        return type == ADVERT_MATCHED || hasValue(type);
+    }
+
+    /**
+     * Returns true if the events of the type have a value (the receive time
+     * of deleted messages or the content size)
+     *
+     * @param type Type of the event
+     * @return True if the type has a value
+     */
+    public static boolean hasValue(int type) {
+        return type == DELETED || type == ADMISSION ||
+                type == CONTENT_STORED || type == CONTENT_EVICTED;
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    /**
+     * Writes the bytes through the output buffer.
+     */
+    private void output(ByteSink bytes) {
+        try {
+            int off = 0;
+            while (off < bytes.size()) {
+                if (!buffer.hasRemaining()) {
+                    flushBuffer();
+                }
+                int n = Math.min(buffer.remaining(), bytes.size() - off);
+                buffer.put(bytes.bytes, off, n);
+                off += n;
+            }
+        } catch (IOException e) {
+            throw new SimError("Couldn't write the event log: " +
+                    e.getMessage(), e);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public void hostsConnected(DTNHost host1, DTNHost host2) {
+        event(CONN_UP, host1, host2, null, false);
+        eventDone();
+    }
+
+    public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+        event(CONN_DOWN, host1, host2, null, false);
+        eventDone();
+    }
+
+    public void newMessage(Message m) {
+        event(CREATED, m.getFrom(), null, m, false);
+        eventDone();
+    }
+
+    public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+        event(STARTED, from, to, m, false);
+        eventDone();
+    }
+
+    public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+        event(ABORTED, from, to, m, false);
+        eventDone();
+    }
+
+    public void messageTransferred(Message m, DTNHost from, DTNHost to,
+            boolean firstDelivery) {
+        event(TRANSFERRED, from, to, m, firstDelivery);
+        eventDone();
+    }
+
+    public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+        int i = event(DELETED, where, null, m, dropped);
+        /* the receive time as the difference of the bit patterns */
+        values[i] = Double.doubleToLongBits(times[i]) -
+                Double.doubleToLongBits(m.getReceiveTime());
+        eventDone();
+    }
+
+    public void interestMatched(Message interest, DTNHost host,
+            boolean first) {
+        event(INTEREST_MATCHED, host, null, interest, first);
+        eventDone();
+    }
+
+    public void advertisementMatched(Message advert, Message interest,
+            DTNHost host, boolean first) {
+        int i = event(ADVERT_MATCHED, host, null, advert, first);
+        refs[i] = messageIndex(interest) + 1;
+        refHops[i] = interest.getHops().size();
+        eventDone();
+    }
+
+    public void requestServed(Message m, DTNHost host, boolean cacheHit) {
+        event(REQUEST_SERVED, host, null, m, cacheHit);
+        eventDone();
+    }
+
+    public void cacheLookup(Message interest, DTNHost host, boolean hit) {
+        event(CACHE_LOOKUP, host, null, interest, hit);
+        eventDone();
+    }
+
+    public void interestPending(Message interest, DTNHost host,
+            boolean aggregated) {
+        event(INTEREST_PENDING, host, null, interest, aggregated);
+        eventDone();
+    }
+
+    public void pendingInterestSatisfied(Message interest, DTNHost host) {
+        event(PENDING_SATISFIED, host, null, interest, false);
+        eventDone();
+    }
+
+    public void cacheDigestForward(Message interest, DTNHost host,
+            boolean hit) {
+        event(DIGEST_FORWARD, host, null, interest, hit);
+        eventDone();
+    }
+
+    public void admissionDecided(Content content, DTNHost host,
+            boolean admitted) {
+        contentEvent(ADMISSION, content, host, admitted);
+    }
+
+    public void contentStored(Content content, DTNHost host) {
+        contentEvent(CONTENT_STORED, content, host, false);
+    }
+
+    public void contentEvicted(Content content, DTNHost host) {
+        contentEvent(CONTENT_EVICTED, content, host, false);
+    }
+
+    @Override
+    public void done() {
+        event(END, null, null, null, false);
+        writeBlock();
+        try {
+            flushBuffer();
+            channel.close();
+        } catch (IOException e) {
+            throw new SimError("Couldn't write the event log: " +
+                    e.getMessage(), e);
+        }
+        super.done();
+    }
+
+    /**
+     * A growable byte array with the encodings of the log values.
+     */
+    static class ByteSink {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        private void ensure(int n) {
+            if (size + n > bytes.length) {
+                byte[] grown = new byte[Math.max(size + n, 2 * bytes.length)];
+                System.arraycopy(bytes, 0, grown, 0, size);
+                bytes = grown;
+            }
+        }
+
+        void put(byte[] b, int len) {
+            ensure(len);
+            System.arraycopy(b, 0, bytes, size, len);
+            size += len;
+        }
+
+        void put(ByteSink other) {
+            put(other.bytes, other.size);
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            bytes[size++] = (byte) (v >>> 24);
+            bytes[size++] = (byte) (v >>> 16);
+            bytes[size++] = (byte) (v >>> 8);
+            bytes[size++] = (byte) v;
+        }
+
+        void putDouble(double d) {
+            long v = Double.doubleToLongBits(d);
+            putInt((int) (v >>> 32));
+            putInt((int) v);
+        }
+
+        void putVarint(int v) {
+            putVarlong(v & 0xFFFFFFFFL);
+        }
+
+        void putVarlong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+
+        void putString(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            putVarint(b.length);
+            put(b, b.length);
+        }
+    }
+}
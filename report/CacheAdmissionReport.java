@@ -0,0 +1,96 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.MessageRouter;
+import core.Content;
+import core.DTNHost;
+import core.ICNListener;
+import core.Message;
+
+/**
+ * Report of the cache admission decisions (see
+ * {@link MessageRouter#CACHE_ADMISSION_S}) and of the cache hit ratio. An
+ * admission decision is made when a new content does not fit in the free
+ * cache space; the content is either admitted (and another content evicted)
+ * or rejected. The hit ratio is the share of the Interests received by hosts
+ * other than the publisher of the content that were answered from a cache,
+ * so running the same scenario with and without admission shows its impact.
+ */
+public class CacheAdmissionReport extends Report
+        implements ICNListener.AdmissionDecided, ICNListener.CacheLookup {
+    private int nrofAdmitted;
+    private int nrofRejected;
+    private long admittedBytes;
+    private long rejectedBytes;
+    private int nrofLookups;
+    private int nrofHits;
+
+    /**
+     * Constructor.
+     */
+    public CacheAdmissionReport() {
+        init();
+    }
+
+    @Override
+    protected void init() {
+        super.init();
+        this.nrofAdmitted = 0;
+        this.nrofRejected = 0;
+        this.admittedBytes = 0;
+        this.rejectedBytes = 0;
+        this.nrofLookups = 0;
+        this.nrofHits = 0;
+    }
+
+    public void admissionDecided(Content c, DTNHost host, boolean admitted) {
+        if (isWarmup()) {
+            return;
+        }
+        if (admitted) {
+            this.nrofAdmitted++;
+            this.admittedBytes += c.getSize();
+        } else {
+            this.nrofRejected++;
+            this.rejectedBytes += c.getSize();
+        }
+    }
+
+    public void cacheLookup(Message interest, DTNHost host, boolean hit) {
+        if (isWarmup()) {
+            return;
+        }
+        this.nrofLookups++;
+        if (hit) {
+            this.nrofHits++;
+        }
+    }
+
+    @Override
+    public void done() {
+        int decisions = this.nrofAdmitted + this.nrofRejected;
+        double admitRatio = Double.NaN;
+        double hitRatio = Double.NaN;
+        if (decisions > 0) {
+            admitRatio = (1.0 * this.nrofAdmitted) / decisions;
+        }
+        if (this.nrofLookups > 0) {
+            hitRatio = (1.0 * this.nrofHits) / this.nrofLookups;
+        }
+
+        String statsText = "admission_checks: " + decisions
+                + "\nadmitted: " + this.nrofAdmitted
+                + "\nrejected: " + this.nrofRejected
+                + "\nadmit_ratio: " + format(admitRatio)
+                + "\nadmitted_bytes: " + this.admittedBytes
+                + "\nrejected_bytes: " + this.rejectedBytes
+                + "\nlookups: " + this.nrofLookups
+                + "\nhits: " + this.nrofHits
+                + "\nhit_ratio: " + format(hitRatio);
+
+        write(statsText);
+        super.done();
+    }
+}
@@ -16,6 +16,10 @@ import input.StandardEventsReader;
  * extra one-letter identifier to tell whether that message was delivered to
  * final destination, delivered there again, or just normally relayed
  * (see the public constants).
+ * <P>
+ * The events are written as records, so with asynchronous output (see
+ * {@link Report#ASYNC_OUTPUT_S}) the lines are formatted off the
+ * simulation thread.
  */
 public class EventLogReport extends Report
 	implements ConnectionListener, MessageListener {
@@ -27,35 +31,69 @@ public class EventLogReport extends Report
 	/** Extra info for message relayed event ("delivered again"): {@value} */
 	public static final String MESSAGE_TRANS_DELIVERED_AGAIN = "A";
 
+	/** Actions of the events; the record type is the index of the action */
+	private static final String[] ACTIONS = {StandardEventsReader.CONNECTION,
+		StandardEventsReader.DROP, StandardEventsReader.REMOVE,
+		StandardEventsReader.DELIVERED, StandardEventsReader.CREATE,
+		StandardEventsReader.ABORT, StandardEventsReader.SEND};
+	private static final int CONNECTION = 0;
+	private static final int DROP = 1;
+	private static final int REMOVE = 2;
+	private static final int DELIVERED = 3;
+	private static final int CREATE = 4;
+	private static final int ABORT = 5;
+	private static final int SEND = 6;
+
 	/**
-	 * Processes a log event by writing a line to the report file
-	 * @param action The action as a string
+	 * Processes a log event by writing a record of it to the report file
+	 * @param action Index of the action in {@link #ACTIONS}
 	 * @param host1 First host involved in the event (if any, or null)
 	 * @param host2 Second host involved in the event (if any, or null)
 	 * @param message The message involved in the event (if any, or null)
 	 * @param extra Extra info to append in the end of line (if any, or null)
 	 */
-	private void processEvent(final String action, final DTNHost host1,
+	private void processEvent(final int action, final DTNHost host1,
 			final DTNHost host2, final Message message, final String extra) {
-		write(getSimTime() + " " + action + " " + (host1 != null ? host1 : "")
-				+ (host2 != null ? (" " + host2) : "")
-				+ (message != null ? " " + message : "")
-				+ (extra != null ? " " + extra : ""));
+		AsyncReportWriter.Record r = newRecord();
+		r.type = action;
+		r.time = getSimTime();
+		r.host1 = host1;
+		r.host2 = host2;
+		r.text = (message != null ? message.getId() : null);
+		r.extra = extra;
+		writeRecord(r);
+	}
+
+	@Override
+	protected void formatRecord(AsyncReportWriter.Record r,
+			StringBuilder line) {
+		line.append(r.time).append(' ').append(ACTIONS[r.type]).append(' ');
+		if (r.host1 != null) {
+			line.append(r.host1);
+		}
+		if (r.host2 != null) {
+			line.append(' ').append(r.host2);
+		}
+		if (r.text != null) {
+			line.append(' ').append(r.text);
+		}
+		if (r.extra != null) {
+			line.append(' ').append(r.extra);
+		}
 	}
 
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		processEvent(StandardEventsReader.CONNECTION, host1, host2, null,
+		processEvent(CONNECTION, host1, host2, null,
 				StandardEventsReader.CONNECTION_UP);
 	}
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
-		processEvent(StandardEventsReader.CONNECTION, host1, host2, null,
+		processEvent(CONNECTION, host1, host2, null,
 				StandardEventsReader.CONNECTION_DOWN);
 	}
 
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
-		processEvent((dropped ? StandardEventsReader.DROP :
-			StandardEventsReader.REMOVE), where, null, m, null);
+		processEvent((dropped ? DROP : REMOVE), where, null, m, null);
 	}
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
@@ -71,18 +109,18 @@ public class EventLogReport extends Report
 			extra = MESSAGE_TRANS_RELAYED;
 		}
 
-		processEvent(StandardEventsReader.DELIVERED, from, to, m, extra);
+		processEvent(DELIVERED, from, to, m, extra);
 	}
 
 	public void newMessage(Message m) {
-		processEvent(StandardEventsReader.CREATE, m.getFrom(), null, m, null);
+		processEvent(CREATE, m.getFrom(), null, m, null);
 	}
 
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		processEvent(StandardEventsReader.ABORT, from, to, m, null);
+		processEvent(ABORT, from, to, m, null);
 	}
 
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		processEvent(StandardEventsReader.SEND, from, to, m, null);
+		processEvent(SEND, from, to, m, null);
 	}
 }
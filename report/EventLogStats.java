@@ -0,0 +1,340 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+
+import core.ConnectionListener;
+import core.Content;
+import core.ContentType;
+import core.ICNEvents;
+import core.ICNListener;
+import core.Message;
+import core.MessageKind;
+import core.MessageListener;
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Command line tool that computes report statistics from an event log of
+ * {@link BinaryEventLogReport} without rerunning the simulation. The events
+ * of the log are replayed to new instances of the reports, by default
+ * {@link MessageStatsReport} and {@link MessageContentStatsReport}, with the
+ * simulation clock set to the time of each event. The reports are written
+ * next to the log as <CODE>logname_ReportName.txt</CODE>.
+ * <P>
+ * Usage: <CODE>java report.EventLogStats log [report class names]</CODE>
+ * <P>
+ * The replayed messages carry the attributes the log has of them (id,
+ * size, content, path length, receive time of the deleted messages), but
+ * not the hosts: the hosts given to the reports are null. Only reports that
+ * don't use the hosts (like the default ones) can be replayed.
+ */
+public class EventLogStats {
+    /** The reports computed by default */
+    public static final String[] DEF_REPORTS = {"MessageStatsReport",
+            "MessageContentStatsReport"};
+    /** Suffix of the report files ({@value}) */
+    public static final String OUT_SUFFIX = ".txt";
+
+    private List<Report> reports;
+    private List<MessageListener> mListeners;
+    private List<ConnectionListener> cListeners;
+    private ICNEvents icnEvents;
+    /** id indexes of the messages whose source published the content (of
+     * the current event) */
+    private BitSet fromPublisher;
+
+    /**
+     * Computes the statistics of the log with the reports given on the
+     * command line.
+     * @param args The log file and the names of the reports
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java " + EventLogStats.class.getName()
+                    + " log [report class names]");
+            System.exit(1);
+        }
+        String[] names = DEF_REPORTS;
+        if (args.length > 1) {
+            names = new String[args.length - 1];
+            System.arraycopy(args, 1, names, 0, names.length);
+        }
+        try {
+            for (String out : new EventLogStats().replay(args[0], names)) {
+                System.out.println(out);
+            }
+        } catch (IOException e) {
+            System.err.println("Can't read " + args[0] + ": " +
+                    e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays a log to the reports and writes the reports.
+     *
+     * @param logFile Path of the log
+     * @param reportNames Names of the report classes (in the report
+     * package)
+     * @return Paths of the written reports
+     * @throws IOException if the log can't be read
+     */
+    public List<String> replay(String logFile, String[] reportNames)
+            throws IOException {
+        BinaryEventLog log = new BinaryEventLog(logFile);
+        String base = logFile.endsWith(BinaryEventLogReport.LOG_SUFFIX) ?
+                logFile.substring(0, logFile.length() -
+                        BinaryEventLogReport.LOG_SUFFIX.length()) : logFile;
+
+        Properties props = new Properties();
+        props.setProperty(SimScenario.SCENARIO_NS + "." + SimScenario.NAME_S,
+                log.getScenarioName());
+        props.setProperty(Report.REPORT_NS + "." + Report.WARMUP_S,
+                String.valueOf(log.getWarmup()));
+        String dir = new File(logFile).getAbsoluteFile().getParent();
+        props.setProperty(Report.REPORTDIR_SETTING, dir);
+        List<String> outputs = new ArrayList<String>();
+        for (String name : reportNames) {
+            String out = base + "_" + name + OUT_SUFFIX;
+            props.setProperty(settingsName(name) + "." +
+                    Report.OUTPUT_SETTING, out);
+            outputs.add(out);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        props.store(bytes, null);
+        Settings.initFromStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SimClock.reset();
+        Message.reset();
+
+        this.fromPublisher = new BitSet();
+        this.reports = new ArrayList<Report>();
+        this.mListeners = new ArrayList<MessageListener>();
+        this.cListeners = new ArrayList<ConnectionListener>();
+        this.icnEvents = new ICNEvents();
+        for (String name : reportNames) {
+            addReport(name);
+        }
+
+        try {
+            while (log.next()) {
+                SimClock.getInstance().setTime(log.getTime());
+                if (log.getType() == BinaryEventLogReport.END) {
+                    break;
+                }
+                replayEvent(log);
+            }
+        } finally {
+            log.close();
+        }
+        for (Report r : reports) {
+            r.done();
+        }
+        return outputs;
+    }
+
+    private static String settingsName(String reportName) {
+        if (reportName.equals(MessageContentStatsReport.class.getSimpleName())) {
+            return ReplayedContentStatsReport.class.getSimpleName();
+        }
+        return reportName;
+    }
+
+    private void addReport(String name) {
+        Report r;
+        if (name.equals(MessageContentStatsReport.class.getSimpleName())) {
+            r = new ReplayedContentStatsReport(fromPublisher);
+        } else {
+            r = (Report) new Settings().createObject(
+                    Report.class.getPackage().getName() + "." + name);
+        }
+        reports.add(r);
+        if (r instanceof MessageListener) {
+            mListeners.add((MessageListener) r);
+        }
+        if (r instanceof ConnectionListener) {
+            cListeners.add((ConnectionListener) r);
+        }
+        if (r instanceof ICNListener) {
+            icnEvents.add((ICNListener) r);
+        }
+    }
+
+    private void replayEvent(BinaryEventLog log) {
+        int type = log.getType();
+        boolean flag = log.getFlag();
+        Message m = null;
+        if (log.getMessage() != null) {
+            m = toMessage(log.getMessage(), log.getPathLength());
+            if (m.getIdIndex() >= 0) { // not a protocol message
+                fromPublisher.set(m.getIdIndex(), log.isFromPublisher());
+            }
+        }
+
+        switch (type) {
+        case BinaryEventLogReport.CONN_UP:
+            for (ConnectionListener cl : cListeners) {
+                cl.hostsConnected(null, null);
+            }
+            break;
+        case BinaryEventLogReport.CONN_DOWN:
+            for (ConnectionListener cl : cListeners) {
+                cl.hostsDisconnected(null, null);
+            }
+            break;
+        case BinaryEventLogReport.CREATED:
+            for (MessageListener ml : mListeners) {
+                ml.newMessage(m);
+            }
+            break;
+        case BinaryEventLogReport.STARTED:
+            for (MessageListener ml : mListeners) {
+                ml.messageTransferStarted(m, null, null);
+            }
+            break;
+        case BinaryEventLogReport.ABORTED:
+            for (MessageListener ml : mListeners) {
+                ml.messageTransferAborted(m, null, null);
+            }
+            break;
+        case BinaryEventLogReport.TRANSFERRED:
+            for (MessageListener ml : mListeners) {
+                ml.messageTransferred(m, null, null, flag);
+            }
+            break;
+        case BinaryEventLogReport.DELETED:
+            m.setReceiveTime(log.getReceiveTime());
+            for (MessageListener ml : mListeners) {
+                ml.messageDeleted(m, null, flag);
+            }
+            break;
+        case BinaryEventLogReport.INTEREST_MATCHED:
+            icnEvents.interestMatched(m, null, flag);
+            break;
+        case BinaryEventLogReport.ADVERT_MATCHED:
+            Message interest = toMessage(log.getInterest(),
+                    log.getInterestPathLength());
+            icnEvents.advertisementMatched(m, interest, null, flag);
+            break;
+        case BinaryEventLogReport.REQUEST_SERVED:
+            icnEvents.requestServed(m, null, flag);
+            break;
+        case BinaryEventLogReport.CACHE_LOOKUP:
+            icnEvents.cacheLookup(m, null, flag);
+            break;
+        case BinaryEventLogReport.INTEREST_PENDING:
+            icnEvents.interestPending(m, null, flag);
+            break;
+        case BinaryEventLogReport.PENDING_SATISFIED:
+            icnEvents.pendingInterestSatisfied(m, null);
+            break;
+        case BinaryEventLogReport.DIGEST_FORWARD:
+            icnEvents.cacheDigestForward(m, null, flag);
+            break;
+        default:
+            replayContentEvent(log, type, flag);
+        }
+    }
+
+    private void replayContentEvent(BinaryEventLog log, int type,
+            boolean flag) {
+        Content c = new Content(log.getContentId(), ContentType.Content, 0, 0,
+                log.getContentSize());
+        if (type == BinaryEventLogReport.ADMISSION) {
+            icnEvents.admissionDecided(c, null, flag);
+        } else if (type == BinaryEventLogReport.CONTENT_STORED) {
+            icnEvents.contentStored(c, null);
+        } else {
+            icnEvents.contentEvicted(c, null);
+        }
+    }
+
+    /**
+     * Creates a message with the attributes of a log entry.
+     * @param e The log entry
+     * @param pathLength Number of nodes on the path of the message
+     * @return The message
+     */
+    private Message toMessage(BinaryEventLog.Entry e, int pathLength) {
+        Content c = null;
+        if (e.contentType != null) {
+            if (e.chunkIndex >= 0 && e.contentType == ContentType.Interest) {
+                c = new Content(e.contentId, e.contentType, 0, 0,
+                        e.contentSize).getChunkInterest(e.chunkIndex,
+                        e.nrofChunks);
+            } else if (e.chunkIndex >= 0) {
+                /* all the chunks but the last have the size of a chunk */
+                int chunkSize = e.contentSize;
+                if (e.nrofChunks > 1 && e.chunkIndex == e.nrofChunks - 1) {
+                    chunkSize = (e.contentTotalSize - e.contentSize) /
+                            (e.nrofChunks - 1);
+                }
+                c = new Content(e.contentId, e.contentType, 0, 0,
+                        e.contentTotalSize).getChunk(e.chunkIndex, chunkSize);
+            } else {
+                c = new Content(e.contentId, e.contentType, 0, 0,
+                        e.contentSize);
+            }
+        }
+
+        Message m;
+        if (e.chunk >= 0) {
+            String name = MessageKind.requestOf(e.id);
+            String request = name.substring(0,
+                    name.lastIndexOf(Message.CHUNK_SEPARATOR));
+            m = new Message(null, null, Message.requestIdOf(request),
+                    MessageKind.of(e.id), e.chunk, e.size, c);
+        } else {
+            m = new Message(null, null, e.id, e.size, c);
+        }
+        /* the source is already on the path */
+        for (int i = 1; i < pathLength; i++) {
+            m.addNodeOnPath(null);
+        }
+        m.setResponseSize(e.responseSize);
+        if (e.is(BinaryEventLogReport.HELLO)) {
+            m.addProperty("HelloMessage.protoXchg", Boolean.TRUE);
+        }
+        if (e.is(BinaryEventLogReport.RESPONSE)) {
+            double now = SimClock.getTime();
+            SimClock.getInstance().setTime(e.requestCreationTime);
+            m.setRequest(new Message(null, null, m.getRequestId(),
+                    MessageKind.Interest, 0, null));
+            SimClock.getInstance().setTime(now);
+        }
+        return m;
+    }
+
+    /**
+     * Content statistics report that takes the publisher of a content
+     * message from the log instead of the content store of its source.
+     */
+    public static class ReplayedContentStatsReport
+            extends MessageContentStatsReport {
+        private BitSet fromPublisher;
+
+        /**
+         * Constructor.
+         * @param fromPublisher Id indexes of the messages whose source
+         * published the content
+         */
+        public ReplayedContentStatsReport(BitSet fromPublisher) {
+            this.fromPublisher = fromPublisher;
+        }
+
+        @Override
+        protected boolean isFromPublisher(Message m) {
+            return m.getIdIndex() >= 0 && fromPublisher.get(m.getIdIndex());
+        }
+    }
+}
@@ -19,8 +19,19 @@ public class LocationSnapshotReport extends SnapshotReport {
 	@Override
 	protected void writeSnapshot(DTNHost h) {
 		Coord location = h.getLocation();
-		write(h.toString() + " " +  format(location.getX()) + 
-				" " + format(location.getY()));
+		AsyncReportWriter.Record r = newRecord();
+		r.type = 0;
+		r.host1 = h;
+		r.x = location.getX();
+		r.y = location.getY();
+		writeRecord(r);
+	}
+
+	@Override
+	protected void formatRecord(AsyncReportWriter.Record r,
+			StringBuilder line) {
+		line.append(r.host1).append(' ').append(format(r.x)).append(' ')
+			.append(format(r.y));
 	}
 
 }
@@ -6,14 +6,14 @@ package report;
 
 import core.Content;
 import core.ContentType;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 import core.DTNHost;
+import core.ICNListener;
 import core.Message;
 import core.MessageListener;
+import util.LongHashMap;
 
 /**
  * Report for generating different kind of total statistics about message
@@ -23,14 +23,21 @@ import core.MessageListener;
  * <strong>Note:</strong> if some statistics could not be created (e.g. overhead
  * ratio if no messages were delivered) "NaN" is reported for double values and
  * zero for integer median(s).
+ * <P>
+ * The samples are summarized with {@link StreamingStatistics}, so the medians
+ * and the percentiles are approximate (within 1 % of the exact value) and the
+ * memory use does not grow with the number of messages.
  */
-public class MessageContentStatsReport extends Report implements MessageListener {
+public class MessageContentStatsReport extends Report implements MessageListener,
+        ICNListener.InterestMatched, ICNListener.AdvertisementMatched,
+        ICNListener.RequestServed, ICNListener.InterestPending,
+        ICNListener.PendingInterestSatisfied, ICNListener.CacheDigestForward {
 
-    private Map<String, Double> creationTimes;
-    private List<Double> latencies;
-    private List<Integer> hopCounts;
-    private List<Double> msgBufferTime;
-    private List<Double> rtt; // round trip times
+    private LongHashMap<Double> creationTimes;
+    private StreamingStatistics latencies;
+    private StreamingStatistics hopCounts;
+    private StreamingStatistics msgBufferTime;
+    private StreamingStatistics rtt; // round trip times
 
     private int nrofDropped;
     private int nrofRemoved;
@@ -48,9 +55,9 @@ public class MessageContentStatsReport extends Report implements MessageListener
     private int nrofAbortedCacheHit;
     private int nrofRelayedCacheHit;
     private int nrofDeliveredCacheHit;
-    private Map<String, Double> creationTimesCacheHit;
-    private List<Double> latenciesCacheHit;
-    private List<Integer> hopCountsCacheHit;
+    private LongHashMap<Double> creationTimesCacheHit;
+    private StreamingStatistics latenciesCacheHit;
+    private StreamingStatistics hopCountsCacheHit;
 
     private int nrofDroppedCacheMiss;
     private int nrofRemovedCacheMiss;
@@ -58,14 +65,14 @@ public class MessageContentStatsReport extends Report implements MessageListener
     private int nrofAbortedCacheMiss;
     private int nrofRelayedCacheMiss;
     private int nrofDeliveredCacheMiss;
-    private Map<String, Double> creationTimesCacheMiss;
-    private List<Double> latenciesCacheMiss;
-    private List<Integer> hopCountsCacheMiss;
+    private LongHashMap<Double> creationTimesCacheMiss;
+    private StreamingStatistics latenciesCacheMiss;
+    private StreamingStatistics hopCountsCacheMiss;
 
-    private List<Double> interestLatencies;
-    private List<Integer> interestHopCounts;
-    private List<Double> interestMsgBufferTime;
-    private List<Double> interestRtt; // round trip times
+    private StreamingStatistics interestLatencies;
+    private StreamingStatistics interestHopCounts;
+    private StreamingStatistics interestMsgBufferTime;
+    private StreamingStatistics interestRtt; // round trip times
 
     private int interestNrofDropped;
     private int interestNrofRemoved;
@@ -77,10 +84,10 @@ public class MessageContentStatsReport extends Report implements MessageListener
     private int interestNrofResponseDelivered;
     private int interestNrofDelivered;
 
-    private List<Double> advertisementLatencies;
-    private List<Integer> advertisementHopCounts;
-    private List<Double> advertisementMsgBufferTime;
-    private List<Double> advertisementRtt; // round trip times
+    private StreamingStatistics advertisementLatencies;
+    private StreamingStatistics advertisementHopCounts;
+    private StreamingStatistics advertisementMsgBufferTime;
+    private StreamingStatistics advertisementRtt; // round trip times
 
     private int advertisementNrofDropped;
     private int advertisementNrofRemoved;
@@ -92,17 +99,41 @@ public class MessageContentStatsReport extends Report implements MessageListener
     private int advertisementNrofResponseDelivered;
     private int advertisementNrofDelivered;
 
-    private HashMap<String, Content> matchedMessages;
-    private HashMap<Integer, String> deliveredMessages;
+    private LongHashMap<Content> matchedMessages;
     private HashMap<Integer, Integer> createdContents;
     private HashMap<Integer, Integer> deliveredContents;
-    private HashMap<Integer, ArrayList<Double>> delayContents;
+    private HashMap<Integer, DelayTotal> delayContents;
     private HashMap<Integer, Integer> duplicatedMatches;
 
     private int numCacheHit;
     private int numCacheMiss;
-    private List<Double> latenciesInterestCacheHit;
-    private List<Double> latenciesInterestCacheMiss;
+    /** Interests forwarded as the first pending Interest for a content */
+    private int interestNrofForwarded;
+    /** Interests aggregated to an earlier pending Interest */
+    private int interestNrofAggregated;
+    /** aggregated Interests served when the content came back */
+    private int interestNrofPitSatisfied;
+    /** Interests sent to a peer whose cache digest claimed the content */
+    private int interestNrofDigestForwarded;
+    /** digest claims that turned out to be false positives */
+    private int interestNrofDigestFalsePositives;
+    /** content chunk messages created and delivered to the requester */
+    private int chunkNrofCreated;
+    private int chunkNrofDelivered;
+    /** Interests for missing chunks created by the requesters */
+    private int chunkInterestNrofCreated;
+    /** chunked contents whose every chunk reached the requester */
+    private int chunkedNrofCompleted;
+    /** chunks delivered so far, by request id */
+    private HashMap<Integer, BitSet> deliveredChunks;
+    /** creation times of the first chunk of each request, by request id */
+    private HashMap<Integer, Double> firstChunkTimes;
+    /** content bytes delivered to the requesters (first deliveries) */
+    private long contentBytesDelivered;
+    /** content bytes transferred between any two hosts */
+    private long contentBytesRelayed;
+    private StreamingStatistics latenciesInterestCacheHit;
+    private StreamingStatistics latenciesInterestCacheMiss;
 
     /**
      * Constructor.
@@ -114,11 +145,11 @@ public class MessageContentStatsReport extends Report implements MessageListener
     @Override
     protected void init() {
         super.init();
-        this.creationTimes = new HashMap<String, Double>();
-        this.latencies = new ArrayList<Double>();
-        this.msgBufferTime = new ArrayList<Double>();
-        this.hopCounts = new ArrayList<Integer>();
-        this.rtt = new ArrayList<Double>();
+        this.creationTimes = new LongHashMap<Double>();
+        this.latencies = new StreamingStatistics();
+        this.msgBufferTime = new StreamingStatistics();
+        this.hopCounts = new StreamingStatistics();
+        this.rtt = new StreamingStatistics();
 
         this.nrofDropped = 0;
         this.nrofRemoved = 0;
@@ -138,9 +169,9 @@ public class MessageContentStatsReport extends Report implements MessageListener
         this.nrofAbortedCacheHit = 0;
         this.nrofRelayedCacheHit = 0;
         this.nrofDeliveredCacheHit = 0;
-        this.creationTimesCacheHit = new HashMap<String, Double>();
-        this.latenciesCacheHit = new ArrayList<Double>();
-        this.hopCountsCacheHit = new ArrayList<Integer>();
+        this.creationTimesCacheHit = new LongHashMap<Double>();
+        this.latenciesCacheHit = new StreamingStatistics();
+        this.hopCountsCacheHit = new StreamingStatistics();
 
         this.nrofDroppedCacheMiss = 0;
         this.nrofRemovedCacheMiss = 0;
@@ -148,14 +179,14 @@ public class MessageContentStatsReport extends Report implements MessageListener
         this.nrofAbortedCacheMiss = 0;
         this.nrofRelayedCacheMiss = 0;
         this.nrofDeliveredCacheMiss = 0;
-        this.creationTimesCacheMiss = new HashMap<String, Double>();
-        this.latenciesCacheMiss = new ArrayList<Double>();
-        this.hopCountsCacheMiss = new ArrayList<Integer>();
+        this.creationTimesCacheMiss = new LongHashMap<Double>();
+        this.latenciesCacheMiss = new StreamingStatistics();
+        this.hopCountsCacheMiss = new StreamingStatistics();
 
-        this.interestLatencies = new ArrayList<Double>();
-        this.interestMsgBufferTime = new ArrayList<Double>();
-        this.interestHopCounts = new ArrayList<Integer>();
-        this.interestRtt = new ArrayList<Double>();
+        this.interestLatencies = new StreamingStatistics();
+        this.interestMsgBufferTime = new StreamingStatistics();
+        this.interestHopCounts = new StreamingStatistics();
+        this.interestRtt = new StreamingStatistics();
 
         this.interestNrofDropped = 0;
         this.interestNrofRemoved = 0;
@@ -166,13 +197,26 @@ public class MessageContentStatsReport extends Report implements MessageListener
         this.interestNrofResponseReqCreated = 0;
         this.interestNrofResponseDelivered = 0;
         this.interestNrofDelivered = 0;
-        this.latenciesInterestCacheHit = new ArrayList<Double>();
-        this.latenciesInterestCacheMiss = new ArrayList<Double>();
-
-        this.advertisementLatencies = new ArrayList<Double>();
-        this.advertisementMsgBufferTime = new ArrayList<Double>();
-        this.advertisementHopCounts = new ArrayList<Integer>();
-        this.advertisementRtt = new ArrayList<Double>();
+        this.interestNrofForwarded = 0;
+        this.interestNrofAggregated = 0;
+        this.interestNrofPitSatisfied = 0;
+        this.interestNrofDigestForwarded = 0;
+        this.interestNrofDigestFalsePositives = 0;
+        this.chunkNrofCreated = 0;
+        this.chunkNrofDelivered = 0;
+        this.chunkInterestNrofCreated = 0;
+        this.chunkedNrofCompleted = 0;
+        this.deliveredChunks = new HashMap<Integer, BitSet>();
+        this.firstChunkTimes = new HashMap<Integer, Double>();
+        this.contentBytesDelivered = 0;
+        this.contentBytesRelayed = 0;
+        this.latenciesInterestCacheHit = new StreamingStatistics();
+        this.latenciesInterestCacheMiss = new StreamingStatistics();
+
+        this.advertisementLatencies = new StreamingStatistics();
+        this.advertisementMsgBufferTime = new StreamingStatistics();
+        this.advertisementHopCounts = new StreamingStatistics();
+        this.advertisementRtt = new StreamingStatistics();
 
         this.advertisementNrofDropped = 0;
         this.advertisementNrofRemoved = 0;
@@ -184,8 +228,7 @@ public class MessageContentStatsReport extends Report implements MessageListener
         this.advertisementNrofResponseDelivered = 0;
         this.advertisementNrofDelivered = 0;
 
-        this.matchedMessages = new HashMap<>();
-        this.deliveredMessages = new HashMap<>();
+        this.matchedMessages = new LongHashMap<>();
         this.createdContents = new HashMap<>();
         this.deliveredContents = new HashMap<>();
         this.delayContents = new HashMap<>();
@@ -207,7 +250,7 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 this.advertisementNrofDropped++;
             } else if (m.getContent().getContentType() == ContentType.Content) {
                 this.nrofDropped++;
-                if (!m.getFrom().hasPublishedContent(m.getContent())) {
+                if (!isFromPublisher(m)) {
                     this.nrofDroppedCacheHit++;
                 } else {
                     this.nrofDroppedCacheHit++;
@@ -220,7 +263,7 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 this.advertisementNrofRemoved++;
             } else if (m.getContent().getContentType() == ContentType.Content) {
                 this.nrofRemoved++;
-                if (!m.getFrom().hasPublishedContent(m.getContent())) {
+                if (!isFromPublisher(m)) {
                     this.nrofRemovedCacheHit++;
                 } else {
                     this.nrofRemovedCacheMiss++;
@@ -249,7 +292,7 @@ public class MessageContentStatsReport extends Report implements MessageListener
             this.advertisementNrofAborted++;
         } else if (m.getContent().getContentType() == ContentType.Content) {
             this.nrofAborted++;
-            if (!m.getFrom().hasPublishedContent(m.getContent())) {
+            if (!isFromPublisher(m)) {
                 this.nrofAbortedCacheHit++;
             } else {
                 this.nrofAbortedCacheMiss++;
@@ -272,7 +315,8 @@ public class MessageContentStatsReport extends Report implements MessageListener
             this.advertisementNrofRelayed++;
         } else if (m.getContent().getContentType() == ContentType.Content) {
             this.nrofRelayed++;
-            if (!m.getFrom().hasPublishedContent(m.getContent())) {
+            this.contentBytesRelayed += m.getSize();
+            if (!isFromPublisher(m)) {
                 this.nrofRelayedCacheHit++;
             } else {
                 this.nrofRelayedCacheMiss++;
@@ -283,7 +327,7 @@ public class MessageContentStatsReport extends Report implements MessageListener
 
             if (m.getContent().getContentType() == ContentType.Interest) {
                 this.interestLatencies.add(getSimTime()
-                        - this.creationTimes.get(m.getId()));
+                        - this.creationTimes.get(m.getIdIndex()));
                 this.interestNrofDelivered++;
                 this.interestHopCounts.add(m.getHops().size() - 1);
 
@@ -293,7 +337,7 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 }
             } else if (m.getContent().getContentType() == ContentType.Advert) {
                 this.advertisementLatencies.add(getSimTime()
-                        - this.creationTimes.get(m.getId()));
+                        - this.creationTimes.get(m.getIdIndex()));
                 this.advertisementNrofDelivered++;
                 this.advertisementHopCounts.add(m.getHops().size() - 1);
 
@@ -302,8 +346,19 @@ public class MessageContentStatsReport extends Report implements MessageListener
                     this.advertisementNrofResponseDelivered++;
                 }
             } else if (m.getContent().getContentType() == ContentType.Content) {
-                this.latencies.add(getSimTime()
-                        - this.creationTimes.get(m.getId()));
+                this.contentBytesDelivered += m.getSize();
+                if (m.getContent().isChunk() && !isContentCompleted(m)) {
+                    return; // the content is delivered with its last chunk
+                }
+                double created = this.creationTimes.get(m.getIdIndex());
+                if (m.getContent().isChunk()) {
+                    // from the first chunk, like a whole content's delay
+                    Double first = this.firstChunkTimes.remove(m.getRequestId());
+                    if (first != null) {
+                        created = first;
+                    }
+                }
+                this.latencies.add(getSimTime() - created);
                 this.nrofDelivered++;
                 this.hopCounts.add(m.getHops().size() - 1);
 
@@ -314,43 +369,38 @@ public class MessageContentStatsReport extends Report implements MessageListener
                     count++;
                     deliveredContents.put(m.getContent().getContentId(), count);
                 }
-                if (!delayContents.containsKey(m.getContent().getContentId())) {
-                    ArrayList<Double> tmp = new ArrayList<Double>();
-                    tmp.add(getSimTime()
-                            - this.creationTimes.get(m.getId()));
-                    delayContents.put(m.getContent().getContentId(), tmp);
-                } else {
-                    ArrayList<Double> tmp = delayContents.get(m.getContent().getContentId());
-                    tmp.add(getSimTime() - this.creationTimes.get(m.getId()));
-                    delayContents.put(m.getContent().getContentId(), tmp);
+                DelayTotal delays = delayContents.get(m.getContent().getContentId());
+                if (delays == null) {
+                    delays = new DelayTotal();
+                    delayContents.put(m.getContent().getContentId(), delays);
                 }
+                delays.sum += getSimTime() - created;
+                delays.count++;
                 if (m.isResponse()) {
                     this.rtt.add(getSimTime() - m.getRequest().getCreationTime());
                     this.nrofResponseDelivered++;
                 }
-                if (!m.getFrom().hasPublishedContent(m.getContent())) {
+                if (!isFromPublisher(m)) {
                     //System.out.println("-" + m.getId() + "-" + m.getContent().getContentId());
-                    if (this.creationTimesCacheHit.get(m.getId()) != null) {
+                    if (this.creationTimesCacheHit.get(m.getRequestId()) != null) {
                         this.latenciesCacheHit.add(getSimTime()
-                                - this.creationTimesCacheHit.get(m.getId()));
+                                - this.creationTimesCacheHit.get(m.getRequestId()));
                         this.nrofDeliveredCacheHit++;
                         this.hopCountsCacheHit.add(m.getHops().size() - 1);
                     } else { // Interest is created as cache miss, but the interest in cache hit delivered first.
-                        this.latenciesCacheMiss.add(getSimTime()
-                                - this.creationTimes.get(m.getId()));
+                        this.latenciesCacheMiss.add(getSimTime() - created);
                         this.nrofDeliveredCacheMiss++;
                         this.hopCountsCacheMiss.add(m.getHops().size() - 1);
                     }
 
                 } else {
-                    if (this.creationTimesCacheMiss.get(m.getId()) != null) {
+                    if (this.creationTimesCacheMiss.get(m.getRequestId()) != null) {
                         this.latenciesCacheMiss.add(getSimTime()
-                                - this.creationTimesCacheMiss.get(m.getId()));
+                                - this.creationTimesCacheMiss.get(m.getRequestId()));
                         this.nrofDeliveredCacheMiss++;
                         this.hopCountsCacheMiss.add(m.getHops().size() - 1);
                     } else { // the content not published by the host, interest meets message containing content => assume cache hit 
-                        this.latenciesCacheHit.add(getSimTime()
-                                - this.creationTimes.get(m.getId()));
+                        this.latenciesCacheHit.add(getSimTime() - created);
                         this.nrofDeliveredCacheHit++;
                         this.hopCountsCacheHit.add(m.getHops().size() - 1);
                     }
@@ -359,19 +409,58 @@ public class MessageContentStatsReport extends Report implements MessageListener
         }
     }
 
-    public boolean setDeliveredMessages(int hostAddress, String interestID) {
-        if (!deliveredMessages.containsKey(hostAddress) || deliveredMessages.get(hostAddress) != interestID) {
-            this.deliveredMessages.put(hostAddress, interestID);
-            return true;
-        } else {
+    /**
+     * Records the delivery of a content chunk to the requester.
+     *
+     * @param m The delivered chunk message
+     * @return True if all chunks of the content have now been delivered
+     */
+    private boolean isContentCompleted(Message m) {
+        Content chunk = m.getContent();
+        this.chunkNrofDelivered++;
+        BitSet chunks = this.deliveredChunks.get(m.getRequestId());
+        if (chunks == null) {
+            chunks = new BitSet(chunk.getNrofChunks());
+            this.deliveredChunks.put(m.getRequestId(), chunks);
+        }
+        chunks.set(chunk.getChunkIndex());
+        if (chunks.cardinality() < chunk.getNrofChunks()) {
             return false;
         }
+        this.deliveredChunks.remove(m.getRequestId());
+        this.chunkedNrofCompleted++;
+        return true;
+    }
+
+    /**
+     * Returns true if the message carries a content its source host has
+     * published, false if the content came from a cache.
+     *
+     * @param m The message
+     * @return True if the source of the message published the content
+     */
+    protected boolean isFromPublisher(Message m) {
+        return m.getFrom().hasPublishedContent(m.getContent());
+    }
+
+    public void interestMatched(Message interest, DTNHost host, boolean first) {
+        setMatchedMessages(interest);
+    }
+
+    public void advertisementMatched(Message advert, Message interest,
+            DTNHost host, boolean first) {
+        setInterestStats(interest);
+        setMatchedMessages(interest);
     }
 
-    public boolean setMatchedMessages(Message m) {
-        if (!matchedMessages.containsKey(m.getId())) {
+    public void requestServed(Message m, DTNHost host, boolean cacheHit) {
+        setCacheHitStats(m, cacheHit);
+    }
+
+    private boolean setMatchedMessages(Message m) {
+        if (!matchedMessages.containsKey(m.getIdIndex())) {
             //System.out.println("Hello: " + m.getId());
-            this.matchedMessages.put(m.getId(), m.getContent());
+            this.matchedMessages.put(m.getIdIndex(), m.getContent());
             return true;
         } else {
              if (!duplicatedMatches.containsKey(m.getContent().getContentId())) {
@@ -385,10 +474,10 @@ public class MessageContentStatsReport extends Report implements MessageListener
     }
 
     public void setAdvertisementStats(Message interest, Message m) {
-        if (!matchedMessages.containsKey(interest.getId())) {
+        if (!matchedMessages.containsKey(interest.getIdIndex())) {
             //System.out.println(m.getId());
             this.advertisementLatencies.add(getSimTime()
-                    - this.creationTimes.get(m.getId()));
+                    - this.creationTimes.get(m.getIdIndex()));
             this.advertisementNrofDelivered++;
             this.advertisementHopCounts.add(m.getHops().size() - 1);
 
@@ -399,11 +488,11 @@ public class MessageContentStatsReport extends Report implements MessageListener
         }
     }
 
-    public void setInterestStats(Message m) {
-        if (!matchedMessages.containsKey(m.getId())) {
+    private void setInterestStats(Message m) {
+        if (!matchedMessages.containsKey(m.getIdIndex())) {
             //System.out.println(m.getId());
             this.interestLatencies.add(getSimTime()
-                    - this.creationTimes.get(m.getId()));
+                    - this.creationTimes.get(m.getIdIndex()));
             this.interestNrofDelivered++;
             this.interestHopCounts.add(m.getHops().size() - 1);
 
@@ -412,26 +501,63 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 this.interestNrofResponseDelivered++;
             }
             this.latenciesInterestCacheHit.add(getSimTime()
-                    - this.creationTimes.get(m.getId()));
+                    - this.creationTimes.get(m.getIdIndex()));
 
         }
     }
 
-    public void setCacheHitStats(Message m, boolean isCacheHit) {
+    private void setCacheHitStats(Message m, boolean isCacheHit) {
         if (isCacheHit) {
             numCacheHit++;
             this.latenciesInterestCacheHit.add(getSimTime()
-                    - this.creationTimes.get(m.getId()));
-            //System.out.println("+" +m.getId().replace("_interest", "").replace("_advert", ""));
-            this.creationTimesCacheHit.put(m.getId().replace("_interest", "").replace("_advert", ""), getSimTime());
+                    - this.creationTimes.get(m.getIdIndex()));
+            //System.out.println("+" +m.getRequestId());
+            this.creationTimesCacheHit.put(m.getRequestId(), getSimTime());
 
         } else {
             numCacheMiss++;
             this.latenciesInterestCacheMiss.add(getSimTime()
-                    - this.creationTimes.get(m.getId()));
-            //System.out.println("." +m.getId().replace("_interest", "").replace("_advert", "") + "." + m.getContent().getContentId());
-            this.creationTimesCacheMiss.put(m.getId().replace("_interest", "").replace("_advert", ""), getSimTime());
+                    - this.creationTimes.get(m.getIdIndex()));
+            //System.out.println("." +m.getRequestId() + "." + m.getContent().getContentId());
+            this.creationTimesCacheMiss.put(m.getRequestId(), getSimTime());
+
+        }
+    }
+
+    public void interestPending(Message interest, DTNHost host,
+            boolean isAggregated) {
+        if (isWarmupID(interest.getId())) {
+            return;
+        }
+        if (isAggregated) {
+            this.interestNrofAggregated++;
+        } else {
+            this.interestNrofForwarded++;
+        }
+    }
 
+    public void pendingInterestSatisfied(Message interest, DTNHost host) {
+        if (isWarmupID(interest.getId())) {
+            return;
+        }
+        this.interestNrofPitSatisfied++;
+        if (!matchedMessages.containsKey(interest.getIdIndex())) {
+            this.matchedMessages.put(interest.getIdIndex(), interest.getContent());
+            this.interestLatencies.add(getSimTime()
+                    - this.creationTimes.get(interest.getIdIndex()));
+            this.interestNrofDelivered++;
+            this.interestHopCounts.add(interest.getHops().size() - 1);
+            setCacheHitStats(interest, true);
+        }
+    }
+
+    public void cacheDigestForward(Message interest, DTNHost host, boolean hit) {
+        if (isWarmupID(interest.getId())) {
+            return;
+        }
+        this.interestNrofDigestForwarded++;
+        if (!hit) {
+            this.interestNrofDigestFalsePositives++;
         }
     }
 
@@ -444,9 +570,12 @@ public class MessageContentStatsReport extends Report implements MessageListener
             return;
         }
 
-        this.creationTimes.put(m.getId(), getSimTime());
+        this.creationTimes.put(m.getIdIndex(), getSimTime());
 
-        if (m.getContent().getContentType() == ContentType.Interest) {
+        if (m.getContent().getContentType() == ContentType.Interest
+                && m.getContent().isChunk()) {
+            this.chunkInterestNrofCreated++; // not a new request
+        } else if (m.getContent().getContentType() == ContentType.Interest) {
             this.interestNrofCreated++;
             if (m.getResponseSize() > 0) {
                 this.interestNrofResponseReqCreated++;
@@ -464,6 +593,15 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 this.advertisementNrofResponseReqCreated++;
             }
         } else if (m.getContent().getContentType() == ContentType.Content) {
+            if (m.getContent().isChunk()) {
+                this.chunkNrofCreated++;
+                if (!this.firstChunkTimes.containsKey(m.getRequestId())) {
+                    this.firstChunkTimes.put(m.getRequestId(), getSimTime());
+                }
+                if (m.getContent().getChunkIndex() > 0) {
+                    return; // a content is counted once, with its first chunk
+                }
+            }
             this.nrofCreated++;
             if (m.getResponseSize() > 0) {
                 this.nrofResponseReqCreated++;
@@ -484,7 +622,7 @@ public class MessageContentStatsReport extends Report implements MessageListener
             this.advertisementNrofStarted++;
         } else if (m.getContent().getContentType() == ContentType.Content) {
             this.nrofStarted++;
-            if (!m.getFrom().hasPublishedContent(m.getContent())) {
+            if (!isFromPublisher(m)) {
                 this.nrofStartedCacheHit++;
             } else {
                 this.nrofStartedCacheMiss++;
@@ -554,6 +692,19 @@ public class MessageContentStatsReport extends Report implements MessageListener
                     / this.advertisementNrofResponseReqCreated;
         }
 
+        double chunkCompletion = Double.NaN;
+        if (this.chunkNrofCreated > 0) {
+            chunkCompletion = (1.0 * this.chunkNrofDelivered) / this.chunkNrofCreated;
+        }
+        double goodput = Double.NaN; // delivered content bytes per second
+        if (getSimTime() > 0) {
+            goodput = this.contentBytesDelivered / getSimTime();
+        }
+        double goodputRatio = Double.NaN; // delivered of transferred bytes
+        if (this.contentBytesRelayed > 0) {
+            goodputRatio = (1.0 * this.contentBytesDelivered) / this.contentBytesRelayed;
+        }
+
         String statsText = "created: " + this.nrofCreated
                 + "\nstarted: " + this.nrofStarted
                 + "\nrelayed: " + this.nrofRelayed
@@ -566,6 +717,8 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\noverhead_ratio: " + format(overHead)
                 + "\nlatency_avg: " + getAverage(this.latencies)
                 + "\nlatency_med: " + getMedian(this.latencies)
+                + "\nlatency_p90: " + getQuantile(this.latencies, 0.9)
+                + "\nlatency_p99: " + getQuantile(this.latencies, 0.99)
                 + "\npacket_loss1: " + format(1.0*this.nrofDropped/this.nrofStarted)
                 + "\npacket_loss2: " + format(1.0*(this.nrofStarted - this.nrofDropped - this.nrofRemoved)/this.nrofStarted)
                 + "\nhopcount_avg: " + getIntAverage(this.hopCounts)
@@ -574,6 +727,15 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\nbuffertime_med: " + getMedian(this.msgBufferTime)
                 + "\nrtt_avg: " + getAverage(this.rtt)
                 + "\nrtt_med: " + getMedian(this.rtt)
+                + "\nrtt_p90: " + getQuantile(this.rtt, 0.9)
+                + "\nrtt_p99: " + getQuantile(this.rtt, 0.99)
+                + "\nchunks_created: " + this.chunkNrofCreated
+                + "\nchunks_delivered: " + this.chunkNrofDelivered
+                + "\nchunk_interests_created: " + this.chunkInterestNrofCreated
+                + "\nchunked_completed: " + this.chunkedNrofCompleted
+                + "\nchunk_completion: " + format(chunkCompletion)
+                + "\ngoodput: " + format(goodput)
+                + "\ngoodput_ratio: " + format(goodputRatio)
                 + "\n"
                 + "\nInterest Created: " + this.interestNrofCreated
                 + "\nInterest Started: " + this.interestNrofStarted
@@ -581,6 +743,11 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\nInterest Aborted: " + this.interestNrofAborted
                 + "\nInterest Dropped: " + this.interestNrofDropped
                 + "\nInterest Removed: " + this.interestNrofRemoved
+                + "\nInterest Forwarded (PIT): " + this.interestNrofForwarded
+                + "\nInterest Aggregated (PIT): " + this.interestNrofAggregated
+                + "\nInterest Satisfied (PIT): " + this.interestNrofPitSatisfied
+                + "\nInterest Forwarded (digest): " + this.interestNrofDigestForwarded
+                + "\nInterest Digest False Positives: " + this.interestNrofDigestFalsePositives
                 + "\nCache Hit: " + this.numCacheHit
                 + "\nCache Miss: " + this.numCacheMiss
                 + "\nCache Hit Prob/Created: " + format((double) numCacheHit / this.interestNrofCreated)
@@ -594,6 +761,8 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\nInterest Overhead_ratio: " + format(interestOverHead)
                 + "\nInterest Latency_avg: " + getAverage(this.interestLatencies)
                 + "\nInterest Latency_med: " + getMedian(this.interestLatencies)
+                + "\nInterest Latency_p90: " + getQuantile(this.interestLatencies, 0.9)
+                + "\nInterest Latency_p99: " + getQuantile(this.interestLatencies, 0.99)
                 + "\nInterest Packet_loss1: " + format(1.0*this.interestNrofDropped/this.interestNrofStarted)
                 + "\nInterest Packet_loss2: " + format(1.0*(this.interestNrofStarted - this.interestNrofDropped - this.interestNrofRemoved)/this.interestNrofStarted)
                 + "\nInterest Hopcount_avg: " + getIntAverage(this.interestHopCounts)
@@ -602,6 +771,8 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\nInterest Buffertime_med: " + getMedian(this.interestMsgBufferTime)
                 + "\nInterest Rtt_avg: " + getAverage(this.interestRtt)
                 + "\nInterest Rtt_med: " + getMedian(this.interestRtt)
+                + "\nInterest Rtt_p90: " + getQuantile(this.interestRtt, 0.9)
+                + "\nInterest Rtt_p99: " + getQuantile(this.interestRtt, 0.99)
                 + "\n"
                 + "\nCacheHit started: " + this.nrofStartedCacheHit
                 + "\nCacheHit relayed: " + this.nrofRelayedCacheHit
@@ -613,6 +784,8 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\nCacheHit latency_avg: " + getAverage(this.latenciesCacheHit)
                 + "\nCacheHit latency_interest_avg: " + getAverage(this.latenciesInterestCacheHit)
                 + "\nCacheHit latency_med: " + getMedian(this.latenciesCacheHit)
+                + "\nCacheHit latency_p90: " + getQuantile(this.latenciesCacheHit, 0.9)
+                + "\nCacheHit latency_p99: " + getQuantile(this.latenciesCacheHit, 0.99)
                 + "\nCacheHit packet_loss1: " + format(1.0 * this.nrofDroppedCacheHit/this.nrofStartedCacheHit)
                 + "\nCacheHit packet_loss2: " + format(1.0 * (this.nrofStartedCacheHit - this.nrofDroppedCacheHit - this.nrofRemovedCacheHit)/this.nrofStartedCacheHit)
                 + "\nCacheHit hopcount_avg: " + getIntAverage(this.hopCountsCacheHit)
@@ -627,6 +800,8 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\nCacheMiss latency_avg: " + getAverage(this.latenciesCacheMiss)
                 + "\nCacheMiss latency_interest_avg: " + getAverage(this.latenciesInterestCacheMiss)
                 + "\nCacheMiss latency_med: " + getMedian(this.latenciesCacheMiss)
+                + "\nCacheMiss latency_p90: " + getQuantile(this.latenciesCacheMiss, 0.9)
+                + "\nCacheMiss latency_p99: " + getQuantile(this.latenciesCacheMiss, 0.99)
                 + "\nCacheMiss packet_loss1: " + format(1.0*this.nrofDroppedCacheMiss/this.nrofStartedCacheMiss)
                 + "\nCacheMiss packet_loss2: " + format(1.0*(this.nrofStartedCacheMiss - this.nrofDroppedCacheMiss - this.nrofRemovedCacheMiss)/this.nrofStartedCacheMiss)
                 + "\nCacheMiss hopcount_avg: " + getIntAverage(this.hopCountsCacheMiss)
@@ -643,6 +818,8 @@ public class MessageContentStatsReport extends Report implements MessageListener
                 + "\nAdvertisement Overhead_ratio: " + format(advertisementOverHead)
                 + "\nAdvertisement Latency_avg: " + getAverage(this.advertisementLatencies)
                 + "\nAdvertisement Latency_med: " + getMedian(this.advertisementLatencies)
+                + "\nAdvertisement Latency_p90: " + getQuantile(this.advertisementLatencies, 0.9)
+                + "\nAdvertisement Latency_p99: " + getQuantile(this.advertisementLatencies, 0.99)
                 + "\nAdvertisement Hopcount_avg: " + getIntAverage(this.advertisementHopCounts)
                 + "\nAdvertisement Hopcount_med: " + getIntMedian(this.advertisementHopCounts)
                 + "\nAdvertisement Buffertime_avg: " + getAverage(this.advertisementMsgBufferTime)
@@ -659,13 +836,13 @@ public class MessageContentStatsReport extends Report implements MessageListener
 
         for (Integer key : deliveredContents.keySet()) {
             double sr = (double) deliveredContents.get(key) / (double) createdContents.get(key);
-            statsText += "\n" + key.toString() + " " + (double) deliveredContents.get(key) + " " + sr + " " + getAverage(delayContents.get(key)).toString();
+            statsText += "\n" + key.toString() + " " + (double) deliveredContents.get(key) + " " + sr + " " + format(delayContents.get(key).getAverage());
         }
         statsText += "\n\n";*/
         for (Integer key : createdContents.keySet()) {
             if(deliveredContents.containsKey(key)) {
                 double successRatio = (double) deliveredContents.get(key) / (double) createdContents.get(key);
-                statsText += "\n" + key.toString() + ", " + createdContents.get(key).toString() + ", " + (double) deliveredContents.get(key) + ", " + successRatio + ", " + getAverage(delayContents.get(key)).toString() + ", " + duplicatedMatches.get(key);
+                statsText += "\n" + key.toString() + ", " + createdContents.get(key).toString() + ", " + (double) deliveredContents.get(key) + ", " + successRatio + ", " + format(delayContents.get(key).getAverage()) + ", " + duplicatedMatches.get(key);
             } else {
                 statsText += "\n" + key.toString() + ", " + createdContents.get(key).toString() + ", " + 0 + ", " + 0.0 + ", " + 0.0 + ", " + duplicatedMatches.get(key);
             }       
@@ -676,4 +853,14 @@ public class MessageContentStatsReport extends Report implements MessageListener
         super.done();
     }
 
+
+    /** Sum and number of the delivery delays of a content */
+    private static class DelayTotal {
+        private double sum;
+        private int count;
+
+        double getAverage() {
+            return sum / count;
+        }
+    }
 }
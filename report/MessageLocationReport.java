@@ -4,9 +4,11 @@
  */
 package report;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 
+import core.Coord;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
@@ -82,27 +84,40 @@ public class MessageLocationReport extends Report implements UpdateListener {
 	 * @param hosts The list of hosts in the world
 	 */
 	protected void createSnapshot(List<DTNHost> hosts) {
-		boolean isFirstMessage;
-		String reportLine;
+		List<String> ids;
 
 		write ("[" + (int)getSimTime() + "]"); /* write sim time stamp */
 
 		for (DTNHost host : hosts) {
-			isFirstMessage = true;
-			reportLine = "";
+			ids = null;
 			for (Message m : host.getMessageCollection()) {
 				if (isTracked(m)) {
-					if (isFirstMessage) {
-						reportLine = host.getLocation().toString();
-						isFirstMessage = false;
+					if (ids == null) {
+						ids = new ArrayList<String>();
 					}
-					reportLine += " " + m.getId();
+					ids.add(m.getId());
 				}
 			}
-			if (reportLine.length() > 0) {
-				write(reportLine); /* write coordinate and message IDs */
+			if (ids != null) {
+				/* coordinate and message IDs, formatted in formatRecord */
+				AsyncReportWriter.Record r = newRecord();
+				r.type = 0;
+				r.x = host.getLocation().getX();
+				r.y = host.getLocation().getY();
+				r.data = ids;
+				writeRecord(r);
 			}
 		}
 	}
 
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void formatRecord(AsyncReportWriter.Record r,
+			StringBuilder line) {
+		line.append(new Coord(r.x, r.y));
+		for (String id : (List<String>)r.data) {
+			line.append(' ').append(id);
+		}
+	}
+
 }
@@ -0,0 +1,202 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.DTNHost;
+import core.MetricsRegistry;
+import core.MetricsRegistry.Counter;
+import core.MetricsRegistry.Gauge;
+import core.MetricsRegistry.Histogram;
+import core.MetricsRegistry.Metric;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Samples the metrics of the {@link MetricsRegistry} every
+ * {@link SamplingReport#SAMPLE_INTERVAL_SETTING} simulated seconds and at
+ * the end of the simulation. The samples are written as rows of a CSV file
+ * (the output of the report): the simulation time followed by the value of
+ * each counter and gauge, and the count and the sum of each histogram.
+ * The columns are those of the metrics that are registered at the first
+ * sample. Counters count from the start of the simulation; no samples are
+ * taken during the warm up period.
+ * <P>
+ * After each sample, all the metrics are also written to a file in the
+ * Prometheus text format (see {@link #PROMETHEUS_OUTPUT_S}). The file is
+ * replaced as a whole, so it always has a complete snapshot, e.g. for a
+ * node exporter textfile collector.
+ */
+public class MetricsReport extends SamplingReport {
+    /** Path of the Prometheus text file -setting id ({@value}). Default is
+     * the path of the CSV output with the suffix {@value #PROM_SUFFIX}. */
+    public static final String PROMETHEUS_OUTPUT_S = "prometheusOutput";
+    /** Suffix of the report file without explicit output ({@value}) */
+    public static final String CSV_SUFFIX = ".csv";
+    /** Suffix of the default Prometheus text file ({@value}) */
+    public static final String PROM_SUFFIX = ".prom";
+
+    private String promFileName;
+    private List<Metric> columns;
+    private double lastSample;
+
+    /**
+     * Constructor.
+     */
+    public MetricsReport() {
+        Settings s = getSettings();
+        if (s.contains(PROMETHEUS_OUTPUT_S)) {
+            promFileName = s.valueFillString(s.getSetting(
+                    PROMETHEUS_OUTPUT_S));
+        } else {
+            String out = getOutputFileName();
+            if (out.endsWith(CSV_SUFFIX)) {
+                out = out.substring(0, out.length() - CSV_SUFFIX.length());
+            }
+            promFileName = out + PROM_SUFFIX;
+        }
+        this.lastSample = -1;
+    }
+
+    @Override
+    protected String getOutputSuffix() {
+        return CSV_SUFFIX;
+    }
+
+    @Override
+    protected void sample(List<DTNHost> hosts) {
+        if (isWarmup()) {
+            return;
+        }
+        writeSample();
+    }
+
+    /**
+     * Writes a row of the current values and the Prometheus file.
+     */
+    private void writeSample() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        if (columns == null) {
+            columns = new ArrayList<Metric>(registry.getMetrics());
+            writeHeader();
+        }
+        StringBuilder row = new StringBuilder(format(SimClock.getTime()));
+        for (Metric m : columns) {
+            if (m instanceof Counter) {
+                row.append(',').append(((Counter) m).getValue());
+            } else if (m instanceof Histogram) {
+                Histogram h = (Histogram) m;
+                row.append(',').append(h.getCount());
+                row.append(',').append(format(h.getSum()));
+            } else {
+                row.append(',').append(format(((Gauge) m).getValue()));
+            }
+        }
+        write(row.toString());
+        writePrometheus(registry);
+        lastSample = SimClock.getTime();
+    }
+
+    private void writeHeader() {
+        StringBuilder header = new StringBuilder("time");
+        for (Metric m : columns) {
+            if (m instanceof Histogram) {
+                header.append(',').append(m.getName()).append("_count");
+                header.append(',').append(m.getName()).append("_sum");
+            } else {
+                header.append(',').append(m.getName());
+            }
+        }
+        write(header.toString());
+    }
+
+    /**
+     * Writes all the metrics of the registry to the Prometheus text file.
+     * The file is written under a temporary name and then moved over the
+     * old one.
+     */
+    private void writePrometheus(MetricsRegistry registry) {
+        File file = new File(promFileName);
+        File tmp = new File(promFileName + ".tmp");
+        try {
+            PrintWriter pw = new PrintWriter(tmp);
+            pw.println("# Simulation time " + SimClock.getTime());
+            for (Metric m : registry.getMetrics()) {
+                pw.println("# HELP " + m.getName() + " " + escape(m.getHelp()));
+                pw.println("# TYPE " + m.getName() + " " + m.getType());
+                if (m instanceof Counter) {
+                    pw.println(m.getName() + " " + ((Counter) m).getValue());
+                } else if (m instanceof Histogram) {
+                    writeHistogram(pw, (Histogram) m);
+                } else {
+                    pw.println(m.getName() + " " +
+                            promValue(((Gauge) m).getValue()));
+                }
+            }
+            pw.close();
+            if (pw.checkError()) {
+                throw new IOException("write failed");
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new SimError("Couldn't write metrics to " + promFileName +
+                    ": " + e.getMessage(), e);
+        }
+    }
+
+    private void writeHistogram(PrintWriter pw, Histogram h) {
+        double[] bounds = h.getBounds();
+        for (int i = 0; i < bounds.length; i++) {
+            pw.println(h.getName() + "_bucket{le=\"" + promValue(bounds[i]) +
+                    "\"} " + h.getCumulativeCount(i));
+        }
+        pw.println(h.getName() + "_bucket{le=\"+Inf\"} " + h.getCount());
+        pw.println(h.getName() + "_sum " + promValue(h.getSum()));
+        pw.println(h.getName() + "_count " + h.getCount());
+    }
+
+    /**
+     * Formats a value as the Prometheus text format wants it
+     */
+    private static String promValue(double v) {
+        if (Double.isNaN(v)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(v)) {
+            return v > 0 ? "+Inf" : "-Inf";
+        }
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            return Long.toString((long) v);
+        }
+        return Double.toString(v);
+    }
+
+    private static String escape(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    @Override
+    public void done() {
+        if (!isWarmup() && SimClock.getTime() != lastSample) {
+            writeSample(); // the values at the end
+        }
+        super.done();
+    }
+}
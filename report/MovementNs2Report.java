@@ -14,6 +14,9 @@ import core.Settings;
  * as described in <A HREF="http://www.isi.edu/nsnam/ns/doc/node174.html">
  * http://www.isi.edu/nsnam/ns/doc/node174.html</A>.
  * This report ignores the warm up settings.
+ * The movement events are written as records, so with asynchronous output
+ * (see {@link Report#ASYNC_OUTPUT_S}) the lines are formatted off the
+ * simulation thread.
  */
 public class MovementNs2Report extends Report implements MovementListener {
 	/** node array's name -setting id ({@value})*/
@@ -30,6 +33,12 @@ public class MovementNs2Report extends Report implements MovementListener {
 	/** formatting string for coordinate values ({@value})*/
 	public static final String COORD_FORMAT = "%.5f";
 
+	/* types of the records */
+	private static final int SET_X = 0;
+	private static final int SET_Y = 1;
+	private static final int SET_Z = 2;
+	private static final int SET_DEST = 3;
+
 	private String nodeArray;
 	private String nsCmd;
 
@@ -60,19 +69,48 @@ public class MovementNs2Report extends Report implements MovementListener {
 	}
 
 	public void initialLocation(DTNHost host, Coord location) {
-		int index = host.getAddress();
-		write(nodeArray + "("+ index + ") set X_ " + fix(location.getX()));
-		write(nodeArray + "("+ index + ") set Y_ " + fix(location.getY()));
-		write(nodeArray + "("+ index + ") set Z_ 0");
+		writeRecord(SET_X, host, location, 0);
+		writeRecord(SET_Y, host, location, 0);
+		writeRecord(SET_Z, host, location, 0);
 	}
 
 	public void newDestination(DTNHost host, Coord dst, double speed) {
-		int index = host.getAddress();
-		double time = getSimTime();
+		writeRecord(SET_DEST, host, dst, speed);
+	}
+
+	private void writeRecord(int type, DTNHost host, Coord c, double speed) {
+		AsyncReportWriter.Record r = newRecord();
+		r.type = type;
+		r.time = getSimTime();
+		r.host1 = host;
+		r.x = c.getX();
+		r.y = c.getY();
+		r.value = speed;
+		writeRecord(r);
+	}
 
-		write(nsCmd + " at " + time + " \"\\" + nodeArray +	"(" + index + ")" +
-				" setdest " + fix(dst.getX()) + " " + fix(dst.getY()) +
-				" " + speed + "\"");
+	@Override
+	protected void formatRecord(AsyncReportWriter.Record r,
+			StringBuilder line) {
+		int index = r.host1.getAddress();
+		if (r.type == SET_DEST) {
+			line.append(nsCmd).append(" at ").append(r.time).append(" \"\\")
+				.append(nodeArray).append('(').append(index)
+				.append(") setdest ").append(fix(r.x)).append(' ')
+				.append(fix(r.y)).append(' ').append(r.value).append('"');
+			return;
+		}
+		line.append(nodeArray).append('(').append(index).append(") set ");
+		switch (r.type) {
+		case SET_X:
+			line.append("X_ ").append(fix(r.x));
+			break;
+		case SET_Y:
+			line.append("Y_ ").append(fix(r.y));
+			break;
+		default:
+			line.append("Z_ 0");
+		}
 	}
 
 	/**
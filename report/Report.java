@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -50,12 +51,27 @@ public abstract class Report {
 	 *  respective report classes for details. Default is 0. Must be a positive
 	 *  integer or 0. */
 	public static final String WARMUP_S = "warmup";
+	/** Asynchronous output -setting id ({@value}). If true, the report's
+	 * events are queued to a background thread that formats and writes
+	 * them (see {@link AsyncReportWriter}). Default is false. */
+	public static final String ASYNC_OUTPUT_S = "asyncOutput";
+	/** Capacity (records) of the asynchronous output queue -setting id
+	 * ({@value}). Default is {@value AsyncReportWriter#DEF_CAPACITY}. */
+	public static final String ASYNC_CAPACITY_S = "asyncCapacity";
 	/** Suffix of report files without explicit output */
 	public static final String OUT_SUFFIX = ".txt";
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX;
 	/** The print writer used to write output. See {@link #write(String)} */
 	protected PrintWriter out;
+	/** The asynchronous writer used instead of {@link #out} if
+	 * {@link #ASYNC_OUTPUT_S} is set */
+	private AsyncReportWriter asyncOut;
+	private boolean asyncOutput;
+	private int asyncCapacity;
+	/** the record of the synchronous output */
+	private AsyncReportWriter.Record syncRecord;
+	private StringBuilder syncLine;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
@@ -98,6 +114,10 @@ public abstract class Report {
 		}
 
 
+		this.asyncOutput = settings.getBoolean(ASYNC_OUTPUT_S, false);
+		this.asyncCapacity = settings.getInt(ASYNC_CAPACITY_S,
+				AsyncReportWriter.DEF_CAPACITY);
+
 		if (settings.contains(PRECISION_SETTING)) {
 			precision = settings.getInt(PRECISION_SETTING);
 			if (precision < 0) {
@@ -123,7 +143,7 @@ public abstract class Report {
 			outFileName = outDir + scenarioName +
 				"_" + this.getClass().getSimpleName();
 			if (outputInterval == -1) {
-				outFileName += OUT_SUFFIX; // no intervalled reports
+				outFileName += getOutputSuffix(); // no intervalled reports
 			}
 
 		}
@@ -137,6 +157,26 @@ public abstract class Report {
                 return true;
             }
         }
+	/**
+	 * Returns the suffix of the output file name that is used if the output
+	 * file is not set with {@link #OUTPUT_SETTING}. Called by the
+	 * constructor, so the method must not depend on the fields of the
+	 * subclass.
+	 * @return The suffix (by default {@value #OUT_SUFFIX})
+	 */
+	protected String getOutputSuffix() {
+		return OUT_SUFFIX;
+	}
+
+	/**
+	 * Returns the path of the output file (or the prefix of the files of
+	 * intervalled reports)
+	 * @return The path of the output file
+	 */
+	protected String getOutputFileName() {
+		return this.outFileName;
+	}
+
 	/**
 	 * Checks that a directory for a file exists or creates the directory
 	 * if it didn't exist.
@@ -199,7 +239,18 @@ public abstract class Report {
 	 */
 	private void createOutput(String outFileName) {
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			Writer fw = new FileWriter(outFileName);
+			if (asyncOutput) {
+				this.asyncOut = new AsyncReportWriter(fw,
+						new AsyncReportWriter.RecordFormatter() {
+					public void format(AsyncReportWriter.Record r,
+							StringBuilder line) {
+						formatRecord(r, line);
+					}
+				}, asyncCapacity, getClass().getSimpleName() + "Writer");
+			} else {
+				this.out = new PrintWriter(fw);
+			}
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName +
 					"' for report output\n" + e.getMessage(), e);
@@ -239,10 +290,76 @@ public abstract class Report {
 	 * @see #setPrefix(String)
 	 */
 	protected void write(String txt) {
-		if (out == null) {
+		if (out == null && asyncOut == null) {
 			init();
 		}
-		out.println(prefix + txt);
+		if (asyncOut != null) {
+			asyncOut.write(prefix + txt);
+		} else {
+			out.println(prefix + txt);
+		}
+	}
+
+	/**
+	 * Returns a record to fill with the data of an event. The record must be
+	 * written with {@link #writeRecord(AsyncReportWriter.Record)} before
+	 * the next record is asked for. With asynchronous output
+	 * ({@link #ASYNC_OUTPUT_S}) the record is formatted to a line in the
+	 * writer thread, otherwise right when it is written.
+	 * @return The record
+	 * @see #formatRecord(AsyncReportWriter.Record, StringBuilder)
+	 */
+	protected AsyncReportWriter.Record newRecord() {
+		if (out == null && asyncOut == null) {
+			init();
+		}
+		AsyncReportWriter.Record r;
+		if (asyncOut != null) {
+			r = asyncOut.claim();
+		} else {
+			if (syncRecord == null) {
+				syncRecord = new AsyncReportWriter.Record();
+				syncLine = new StringBuilder();
+			}
+			r = syncRecord;
+		}
+		r.type = AsyncReportWriter.Record.LINE;
+		r.prefix = prefix;
+		return r;
+	}
+
+	/**
+	 * Writes a record returned by {@link #newRecord()} as a line of the
+	 * report.
+	 * @param r The record
+	 */
+	protected void writeRecord(AsyncReportWriter.Record r) {
+		if (asyncOut != null) {
+			asyncOut.publish();
+			return;
+		}
+		syncLine.setLength(0);
+		syncLine.append(r.prefix);
+		if (r.type == AsyncReportWriter.Record.LINE) {
+			syncLine.append(r.text);
+		} else {
+			formatRecord(r, syncLine);
+		}
+		out.println(syncLine);
+	}
+
+	/**
+	 * Formats a record written by the report to a line. With asynchronous
+	 * output this is called by the writer thread, so the method must only
+	 * use the record and the settings of the report. Reports that write
+	 * records override this method.
+	 * @param r The record (not a plain line)
+	 * @param line The line to append to (the prefix is already appended)
+	 */
+	protected void formatRecord(AsyncReportWriter.Record r,
+			StringBuilder line) {
+		throw new SimError(getClass().getSimpleName() +
+				" can't format records of type " + r.type);
 	}
 
 	/**
@@ -340,6 +457,9 @@ public abstract class Report {
 		if (out != null) {
 			out.close();
 		}
+		if (asyncOut != null) {
+			asyncOut.close();
+		}
 	}
 
 	/**
@@ -405,6 +525,66 @@ public abstract class Report {
 		return values.get(values.size()/2);
 	}
 
+	/**
+	 * Returns the average of the values in streaming statistics
+	 * @param stats The statistics
+	 * @return average of the values in a formatted String or "NaN" if there
+	 * are no values
+	 */
+	public String getAverage(StreamingStatistics stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getMean());
+	}
+
+	/**
+	 * Returns the average of integer values in streaming statistics
+	 * @param stats The statistics
+	 * @return average of the values in a formatted String or "NaN" if there
+	 * are no values
+	 */
+	public String getIntAverage(StreamingStatistics stats) {
+		return getAverage(stats);
+	}
+
+	/**
+	 * Returns the median of the values in streaming statistics
+	 * @param stats The statistics
+	 * @return median of the values in a formatted String or "NaN" if there
+	 * are no values
+	 */
+	public String getMedian(StreamingStatistics stats) {
+		return getQuantile(stats, 0.5);
+	}
+
+	/**
+	 * Returns a quantile of the values in streaming statistics
+	 * @param stats The statistics
+	 * @param q The quantile (e.g. 0.9 for the 90th percentile)
+	 * @return the quantile in a formatted String or "NaN" if there are no
+	 * values
+	 */
+	public String getQuantile(StreamingStatistics stats, double q) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getQuantile(q));
+	}
+
+	/**
+	 * Returns the median of integer values in streaming statistics
+	 * @param stats The statistics
+	 * @return median of the values rounded to an integer or 0 if there are
+	 * no values
+	 */
+	public int getIntMedian(StreamingStatistics stats) {
+		if (stats.getCount() == 0) {
+			return 0;
+		}
+		return (int)Math.round(stats.getMedian());
+	}
+
 	/**
 	 * Returns the variance of the values in the List.
 	 *
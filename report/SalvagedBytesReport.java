@@ -0,0 +1,118 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.ActiveRouter;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+
+/**
+ * Report of the bytes that resumed transfers salvaged from aborted ones (see
+ * {@link ActiveRouter#RESUME_TRANSFERS_S}). Reports how many bytes were
+ * received in transfers that were aborted, and how many of those bytes the
+ * resumed transfers did not have to send again. Messages created during the
+ * warm up period are ignored.
+ */
+public class SalvagedBytesReport extends Report implements MessageListener {
+    private int nrofAborted;
+    private long abortedBytes;
+    private int nrofResumed;
+    private int nrofResumedCompleted;
+    private int nrofResumedAborted;
+    private long salvagedBytes;
+    private long transferredBytes;
+
+    /**
+     * Constructor.
+     */
+    public SalvagedBytesReport() {
+        init();
+    }
+
+    @Override
+    protected void init() {
+        super.init();
+        this.nrofAborted = 0;
+        this.abortedBytes = 0;
+        this.nrofResumed = 0;
+        this.nrofResumedCompleted = 0;
+        this.nrofResumedAborted = 0;
+        this.salvagedBytes = 0;
+        this.transferredBytes = 0;
+    }
+
+    public void newMessage(Message m) {
+        if (isWarmup()) {
+            addWarmupID(m.getId());
+        }
+    }
+
+    public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+        if (isWarmupID(m.getId())) {
+            return;
+        }
+        if (m.hasProperty(ActiveRouter.RESUME_OFFSET_PROP)) {
+            this.nrofResumed++;
+        }
+    }
+
+    public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+        if (isWarmupID(m.getId())) {
+            return;
+        }
+        int offset = getOffset(m);
+        this.nrofAborted++;
+        if (offset > 0) {
+            this.nrofResumedAborted++;
+        }
+        if (m.hasProperty(ActiveRouter.RECEIVED_BYTES_PROP)) {
+            /* only the bytes sent in this transfer were received now */
+            int received = m.getIntProperty(ActiveRouter.RECEIVED_BYTES_PROP);
+            this.abortedBytes += Math.max(0, received - offset);
+            this.transferredBytes += Math.max(0, received - offset);
+        }
+    }
+
+    public void messageTransferred(Message m, DTNHost from, DTNHost to,
+            boolean firstDelivery) {
+        if (isWarmupID(m.getId())) {
+            return;
+        }
+        int offset = getOffset(m);
+        if (offset > 0) {
+            this.nrofResumedCompleted++;
+            this.salvagedBytes += offset;
+        }
+        this.transferredBytes += m.getSize() - offset;
+    }
+
+    private int getOffset(Message m) {
+        return m.hasProperty(ActiveRouter.RESUME_OFFSET_PROP) ?
+                m.getIntProperty(ActiveRouter.RESUME_OFFSET_PROP) : 0;
+    }
+
+    // nothing to implement for the rest
+    public void messageDeleted(Message m, DTNHost where, boolean dropped) {}
+
+    @Override
+    public void done() {
+        double salvagedRatio = Double.NaN;
+        if (this.abortedBytes > 0) {
+            salvagedRatio = (1.0 * this.salvagedBytes) / this.abortedBytes;
+        }
+
+        String statsText = "aborted: " + this.nrofAborted
+                + "\naborted_bytes: " + this.abortedBytes
+                + "\nresumed: " + this.nrofResumed
+                + "\nresumed_completed: " + this.nrofResumedCompleted
+                + "\nresumed_aborted: " + this.nrofResumedAborted
+                + "\nsalvaged_bytes: " + this.salvagedBytes
+                + "\nsalvaged_ratio: " + format(salvagedRatio)
+                + "\ntransferred_bytes: " + this.transferredBytes;
+
+        write(statsText);
+        super.done();
+    }
+}
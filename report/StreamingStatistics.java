@@ -0,0 +1,211 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+/**
+ * Summary statistics of a stream of values in bounded memory. The count,
+ * mean, variance, minimum and maximum are exact; the mean and the variance
+ * are updated with Welford's algorithm. Quantiles come from a histogram with
+ * logarithmic buckets (as in HDR histograms and DDSketch): a positive value
+ * <CODE>v</CODE> is counted in bucket <CODE>ceil(log(v) / log(gamma))</CODE>,
+ * where <CODE>gamma = (1 + a) / (1 - a)</CODE> for the relative accuracy
+ * <CODE>a</CODE>, so any quantile of the positive values is within
+ * <CODE>a</CODE> of the true value relative to it. The number of buckets
+ * grows with the logarithm of the value range, e.g. about 1100 buckets
+ * for values between 1 ms and 100 days with the default accuracy.
+ * Values smaller than {@value #MIN_POSITIVE} (including zero) share one
+ * bucket that stands for zero.
+ */
+public class StreamingStatistics {
+    /** Default relative accuracy of the quantiles ({@value}) */
+    public static final double DEF_ACCURACY = 0.01;
+    /** Smallest value that gets a bucket of its own ({@value}) */
+    public static final double MIN_POSITIVE = 1e-9;
+    private static final int INITIAL_BUCKETS = 64;
+
+    private double gamma;
+    private double logGamma;
+    /** counts of the buckets from {@link #minKey} on */
+    private long[] counts;
+    private int minKey;
+    private long zeroCount;
+
+    private long count;
+    private double mean;
+    /** sum of the squared differences from the mean */
+    private double m2;
+    private double min;
+    private double max;
+
+    /**
+     * Creates statistics with the default quantile accuracy.
+     */
+    public StreamingStatistics() {
+        this(DEF_ACCURACY);
+    }
+
+    /**
+     * Creates statistics with the given quantile accuracy.
+     *
+     * @param accuracy Relative accuracy of the quantiles (0 < accuracy < 1)
+     */
+    public StreamingStatistics(double accuracy) {
+        if (!(accuracy > 0 && accuracy < 1)) {
+            throw new IllegalArgumentException("Invalid accuracy " + accuracy);
+        }
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds a value to the statistics.
+     *
+     * @param value The value
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+
+        if (value < MIN_POSITIVE) {
+            zeroCount++;
+        } else {
+            int i = index((int) Math.ceil(Math.log(value) / logGamma));
+            counts[i]++;
+        }
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return The number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values.
+     *
+     * @return The mean or NaN if there are no values
+     */
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the (population) variance of the values.
+     *
+     * @return The variance or NaN if there are no values
+     */
+    public double getVariance() {
+        return count > 0 ? m2 / count : Double.NaN;
+    }
+
+    /**
+     * Returns the standard deviation of the values.
+     *
+     * @return The standard deviation or NaN if there are no values
+     */
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the smallest value.
+     *
+     * @return The smallest value or NaN if there are no values
+     */
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    /**
+     * Returns the largest value.
+     *
+     * @return The largest value or NaN if there are no values
+     */
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    /**
+     * Returns a quantile of the values: the value with the rank
+     * <CODE>floor(q * count)</CODE> (zero based) in the sorted values, so
+     * that the median (q = 0.5) is the same element that
+     * {@link Report#getMedian(java.util.List)} picks.
+     *
+     * @param q The quantile (0 <= q <= 1)
+     * @return The (approximate) quantile or NaN if there are no values
+     */
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Invalid quantile " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.min(count - 1, (long) (q * count));
+        if (rank < zeroCount) {
+            return clamp(0);
+        }
+
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                /* the value in the middle of the bucket (relative error) */
+                double upper = Math.pow(gamma, minKey + i);
+                return clamp(2 * upper / (gamma + 1));
+            }
+        }
+        return max; // not reached
+    }
+
+    /**
+     * Returns the median of the values.
+     *
+     * @return The (approximate) median or NaN if there are no values
+     */
+    public double getMedian() {
+        return getQuantile(0.5);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Returns the index of a bucket in the count array, growing the array
+     * if the bucket is not in it yet.
+     */
+    private int index(int key) {
+        if (counts == null) {
+            counts = new long[INITIAL_BUCKETS];
+            minKey = key - INITIAL_BUCKETS / 2;
+        }
+        if (key < minKey) {
+            int shift = Math.max(minKey - key, counts.length);
+            long[] grown = new long[counts.length + shift];
+            System.arraycopy(counts, 0, grown, shift, counts.length);
+            counts = grown;
+            minKey -= shift;
+        } else if (key >= minKey + counts.length) {
+            int size = Math.max(key - minKey + 1, 2 * counts.length);
+            long[] grown = new long[size];
+            System.arraycopy(counts, 0, grown, 0, counts.length);
+            counts = grown;
+        }
+        return key - minKey;
+    }
+}
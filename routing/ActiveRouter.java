@@ -7,20 +7,29 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Random;
+import java.util.Set;
 
 import routing.util.EnergyModel;
 import routing.util.MessageTransferAcceptPolicy;
+import routing.util.PartialTransferTable;
+import routing.util.PeerStateTable;
 import routing.util.RoutingInfo;
+import util.BloomFilter;
 import util.Tuple;
 
 import core.Connection;
+import core.ContentType;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
 import core.NetworkInterface;
+import core.PropertyKey;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 
 /**
@@ -37,6 +46,48 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * from message buffer */
 	protected boolean deleteDelivered;
 
+	/** Cache digest -setting id ({@value}). Boolean valued. If set to true,
+	 * the host keeps a Bloom filter digest of its content store, digests
+	 * are exchanged when connections come up and Interests can be
+	 * forwarded towards peers whose digest claims the content
+	 * (see {@link #getCacheDigestRank(Message, DTNHost)}). Default=false. */
+	public static final String CACHE_DIGEST_S = "cacheDigest";
+	/** Cache digest size -setting id ({@value}). Number of bits in the
+	 * digest. Default=1024. */
+	public static final String CACHE_DIGEST_BITS_S = "cacheDigestBits";
+	/** Cache digest hashes -setting id ({@value}). Number of hash functions
+	 * of the digest. Default=3. */
+	public static final String CACHE_DIGEST_HASHES_S = "cacheDigestHashes";
+	/** default value for {@link #CACHE_DIGEST_BITS_S} */
+	public static final int DEF_CACHE_DIGEST_BITS = 1024;
+	/** default value for {@link #CACHE_DIGEST_HASHES_S} */
+	public static final int DEF_CACHE_DIGEST_HASHES = 3;
+
+	/** Resume transfers -setting id ({@value}). Boolean valued. If set to
+	 * true, the part of a message that was received before its transfer
+	 * was aborted is kept, and the next transfer of the same message (from
+	 * any host) continues from there. Default=false. */
+	public static final String RESUME_TRANSFERS_S = "resumeTransfers";
+	/** Resume timeout -setting id ({@value}). How long (seconds) a partially
+	 * received message is kept. Default=600. */
+	public static final String RESUME_TIMEOUT_S = "resumeTimeout";
+	/** Resume buffer -setting id ({@value}). Maximum number of partially
+	 * received messages kept. Default=10. */
+	public static final String RESUME_MAX_PARTIALS_S = "resumeMaxPartials";
+	/** default value for {@link #RESUME_TIMEOUT_S} */
+	public static final double DEF_RESUME_TIMEOUT = 600;
+	/** default value for {@link #RESUME_MAX_PARTIALS_S} */
+	public static final int DEF_RESUME_MAX_PARTIALS = 10;
+
+	/** Message property of a received message that tells the number of
+	 * bytes its transfer was resumed from (only set for resumed transfers) */
+	public static final PropertyKey<Integer> RESUME_OFFSET_PROP =
+		PropertyKey.ofInt("ActiveRouter.resumeOffset");
+	/** Message property of an aborted message that tells the number of
+	 * bytes that were received before the transfer was aborted */
+	public static final PropertyKey<Integer> RECEIVED_BYTES_PROP =
+		PropertyKey.ofInt("ActiveRouter.receivedBytes");
+
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	/** how often TTL check (discarding old messages) is performed */
@@ -49,6 +100,22 @@ public abstract class ActiveRouter extends MessageRouter {
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
 
+	/** number of bits in the cache digest (0 if digests are not used) */
+	private int cacheDigestBits;
+	private int cacheDigestHashes;
+	/** content store digests of the connected peers, from the start of
+	 * the contact */
+	private PeerStateTable<BloomFilter> peerDigests;
+	/** union of the digests the connected peers had of their own
+	 * connected peers */
+	private PeerStateTable<BloomFilter> twoHopDigests;
+
+	private boolean resumeTransfers;
+	private int resumeMaxPartials;
+	private double resumeTimeout;
+	/** partially received messages (null if transfers are not resumed) */
+	private PartialTransferTable partialTransfers;
+
 	/**
 	 * Constructor. Creates a new message router based on the settings in
 	 * the given Settings object.
@@ -66,6 +133,26 @@ public abstract class ActiveRouter extends MessageRouter {
 		} else {
 			this.energy = null; /* no energy model */
 		}
+
+		if (s.getBoolean(CACHE_DIGEST_S, false)) {
+			this.cacheDigestBits = s.getInt(CACHE_DIGEST_BITS_S,
+					DEF_CACHE_DIGEST_BITS);
+			this.cacheDigestHashes = s.getInt(CACHE_DIGEST_HASHES_S,
+					DEF_CACHE_DIGEST_HASHES);
+			if (this.cacheDigestBits < 1 || this.cacheDigestHashes < 1) {
+				throw new SettingsError("Invalid cache digest size " +
+						cacheDigestBits + " bits, " + cacheDigestHashes +
+						" hashes");
+			}
+		} else {
+			this.cacheDigestBits = 0; /* no cache digests */
+		}
+
+		this.resumeTransfers = s.getBoolean(RESUME_TRANSFERS_S, false);
+		this.resumeMaxPartials = s.getInt(RESUME_MAX_PARTIALS_S,
+				DEF_RESUME_MAX_PARTIALS);
+		this.resumeTimeout = s.getDouble(RESUME_TIMEOUT_S,
+				DEF_RESUME_TIMEOUT);
 	}
 
 	/**
@@ -77,6 +164,11 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.deleteDelivered = r.deleteDelivered;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
+		this.cacheDigestBits = r.cacheDigestBits;
+		this.cacheDigestHashes = r.cacheDigestHashes;
+		this.resumeTransfers = r.resumeTransfers;
+		this.resumeMaxPartials = r.resumeMaxPartials;
+		this.resumeTimeout = r.resumeTimeout;
 	}
 
 	@Override
@@ -84,12 +176,22 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		if (this.cacheDigestBits > 0) {
+			host.enableContentDigest(cacheDigestBits, cacheDigestHashes);
+			this.peerDigests = new PeerStateTable<BloomFilter>();
+			this.twoHopDigests = new PeerStateTable<BloomFilter>();
+		}
+		if (this.resumeTransfers) {
+			this.partialTransfers = new PartialTransferTable(
+					resumeMaxPartials, resumeTimeout);
+		}
 	}
 
 	/**
 	 * Called when a connection's state changes. If energy modeling is enabled,
 	 * and a new connection is created to this node, reduces the energy for the
-	 * device discovery (scan response) amount
+	 * device discovery (scan response) amount. If cache digests are used,
+	 * the initiator of a new connection exchanges the digests of both nodes.
 	 * @param con The connection whose state changed
 	 */
 	@Override
@@ -97,6 +199,174 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
+		if (this.peerDigests != null && con.isUp() &&
+				con.isInitiator(getHost())) {
+			DTNHost otherHost = con.getOtherNode(getHost());
+			MessageRouter otherRouter = otherHost.getRouter();
+			if (otherRouter instanceof ActiveRouter &&
+					((ActiveRouter)otherRouter).peerDigests != null) {
+				exchangeCacheDigests((ActiveRouter)otherRouter);
+			}
+		}
+		if (this.peerDigests != null && !con.isUp()) {
+			forgetCacheDigests(con);
+		}
+	}
+
+	/**
+	 * Drops the digests of a peer whose connection went down, unless the
+	 * hosts are still connected through another interface. The digests
+	 * (and the two-hop unions given to later peers) are thus only of the
+	 * currently connected peers and never claim content on the grounds of
+	 * an old contact.
+	 * @param con The connection that went down
+	 */
+	private void forgetCacheDigests(Connection con) {
+		DTNHost peer = con.getOtherNode(getHost());
+		for (Connection c : getConnections()) {
+			if (c != con && c.isUp() && c.getOtherNode(getHost()) == peer) {
+				return;
+			}
+		}
+		this.peerDigests.remove(peer);
+		this.twoHopDigests.remove(peer);
+	}
+
+	/**
+	 * Exchanges the content store digests, and the digests of the peers'
+	 * own peers, with another router. The two-hop digests are computed
+	 * before the one-hop digests are stored so that they don't include
+	 * the nodes' own digests.
+	 * @param other The router of the connected host
+	 */
+	private void exchangeCacheDigests(ActiveRouter other) {
+		DTNHost thisHost = getHost();
+		DTNHost otherHost = other.getHost();
+
+		putDigest(this.twoHopDigests, otherHost,
+				other.getNeighbourDigest(thisHost));
+		putDigest(other.twoHopDigests, thisHost,
+				this.getNeighbourDigest(otherHost));
+		putDigest(this.peerDigests, otherHost, otherHost.getContentDigest());
+		putDigest(other.peerDigests, thisHost, thisHost.getContentDigest());
+	}
+
+	private static void putDigest(PeerStateTable<BloomFilter> digests,
+			DTNHost host, BloomFilter digest) {
+		if (digest == null) {
+			digests.remove(host);
+		} else {
+			digests.put(host, digest);
+		}
+	}
+
+	/**
+	 * Returns the union of the digests this router has of its connected
+	 * peers.
+	 * @param excluded Host whose digest is not included
+	 * @return The union or null if there are no digests to combine (or the
+	 * digests have a different geometry)
+	 */
+	private BloomFilter getNeighbourDigest(DTNHost excluded) {
+		BloomFilter union = null;
+		for (Entry<DTNHost, BloomFilter> e : this.peerDigests.entrySet()) {
+			BloomFilter f = e.getValue();
+			if (e.getKey() == excluded) {
+				continue;
+			}
+			if (union == null) {
+				union = new BloomFilter(f);
+			} else if (union.getNrofBits() == f.getNrofBits() &&
+					union.getNrofHashes() == f.getNrofHashes()) {
+				union.or(f);
+			} else {
+				return null;
+			}
+		}
+		return union;
+	}
+
+	/**
+	 * Returns how strongly the cache digests suggest that a peer can satisfy
+	 * an Interest.
+	 * @param m The message
+	 * @param peer The peer
+	 * @return 2 if the peer's own digest claims the content of the Interest,
+	 * 1 if the digest of the peer's peers claims it, and 0 otherwise (also
+	 * if the message is not an Interest or cache digests are not used)
+	 */
+	protected int getCacheDigestRank(Message m, DTNHost peer) {
+		if (this.peerDigests == null || m.getContent() == null ||
+				m.getContent().getContentType() != ContentType.Interest) {
+			return 0;
+		}
+		int contentId = m.getContent().getContentId();
+		BloomFilter f = this.peerDigests.get(peer);
+		if (f != null && f.mightContain(contentId)) {
+			return 2;
+		}
+		f = this.twoHopDigests.get(peer);
+		if (f != null && f.mightContain(contentId)) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Orders message-connection tuples by the cache digests: Interests for
+	 * content that a peer's digest claims come first, the ones whose
+	 * two-hop digests claim the content next and the rest keep their order
+	 * after them. If a peer's own digest claims the content of an Interest,
+	 * the tuples of the same Interest to peers without any claim are
+	 * dropped. Does nothing if cache digests are not used.
+	 * @param tuples The tuples to order
+	 * @return The ordered tuples
+	 */
+	protected List<Tuple<Message, Connection>> sortByCacheDigest(
+			List<Tuple<Message, Connection>> tuples) {
+		if (this.peerDigests == null || tuples.size() == 0) {
+			return tuples;
+		}
+
+		List<Tuple<Message, Connection>> direct =
+			new ArrayList<Tuple<Message, Connection>>();
+		List<Tuple<Message, Connection>> twoHop =
+			new ArrayList<Tuple<Message, Connection>>();
+		List<Tuple<Message, Connection>> others =
+			new ArrayList<Tuple<Message, Connection>>();
+		Set<Message> claimed = new HashSet<Message>();
+
+		for (Tuple<Message, Connection> t : tuples) {
+			DTNHost peer = t.getValue().getOtherNode(getHost());
+			switch (getCacheDigestRank(t.getKey(), peer)) {
+			case 2:
+				direct.add(t);
+				claimed.add(t.getKey());
+				break;
+			case 1:
+				twoHop.add(t);
+				break;
+			default:
+				others.add(t);
+			}
+		}
+
+		direct.addAll(twoHop);
+		for (Tuple<Message, Connection> t : others) {
+			if (!claimed.contains(t.getKey())) {
+				direct.add(t);
+			}
+		}
+		return direct;
+	}
+
+	/**
+	 * Returns the size of the cache digest when it is sent to another node.
+	 * Routers that send hello messages can add this to their size.
+	 * @return The size in bytes, or 0 if cache digests are not used
+	 */
+	protected int getCacheDigestSize() {
+		return this.cacheDigestBits / 8;
 	}
 
 	@Override
@@ -138,10 +408,55 @@ public abstract class ActiveRouter extends MessageRouter {
 		return super.receiveMessage(m, from);
 	}
 
+	/**
+	 * Tells in the properties of the received replica where its transfer
+	 * continues from. The properties of an earlier hop's transfer are not
+	 * passed on.
+	 */
+	@Override
+	protected void putToIncomingBuffer(Message m, DTNHost from) {
+		int offset = getResumeOffset(m, from);
+		if (offset > 0) {
+			m.updateIntProperty(RESUME_OFFSET_PROP, offset);
+		} else if (m.hasProperty(RESUME_OFFSET_PROP)) {
+			m.updateProperty(RESUME_OFFSET_PROP, null);
+		}
+		if (m.hasProperty(RECEIVED_BYTES_PROP)) {
+			m.updateProperty(RECEIVED_BYTES_PROP, null);
+		}
+		super.putToIncomingBuffer(m, from);
+	}
+
+	@Override
+	public int getResumeOffset(Message m, DTNHost from) {
+		int offset = (partialTransfers != null ?
+				partialTransfers.get(m.getIdIndex()) : 0);
+		return offset < m.getSize() ? offset : 0;
+	}
+
+	/**
+	 * Records the number of bytes received of an aborted message and, if
+	 * transfers are resumed, keeps the received part.
+	 */
+	@Override
+	protected void partialMessageReceived(Message incoming,
+			int bytesRemaining) {
+		int received = (bytesRemaining >= 0 ?
+				incoming.getSize() - bytesRemaining : 0);
+		incoming.updateIntProperty(RECEIVED_BYTES_PROP, received);
+		if (partialTransfers != null && received > 0) {
+			partialTransfers.put(incoming.getIdIndex(), received);
+		}
+	}
+
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message m = super.messageTransferred(id, from);
 
+		if (partialTransfers != null) {
+			partialTransfers.remove(m.getIdIndex());
+		}
+
 		/**
 		 *  N.B. With application support the following if-block
 		 *  becomes obsolete, and the response size should be configured
@@ -190,6 +505,10 @@ public abstract class ActiveRouter extends MessageRouter {
 		retVal = con.startTransfer(getHost(), m);
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
+			DTNHost other = con.getOtherNode(getHost());
+			if (getCacheDigestRank(m, other) == 2) {
+				reportCacheDigestForward(m, other.hasContainsContent(m.getContent()));
+			}
 		}
 		else if (deleteDelivered && retVal == DENIED_OLD &&
 				m.getTo() == con.getOtherNode(this.getHost())) {
@@ -2,6 +2,9 @@ package routing;
 
 import java.util.*;
 import core.*;
+import routing.util.EgoNetwork;
+import routing.util.HostSet;
+import routing.util.PeerStateTable;
 import util.Tuple;
 
 // import core.SimClock;
@@ -26,22 +29,37 @@ public class CafeRouter extends ActiveRouter {
     /**
      * Message property key for the remaining available copies of a message
      */
-    public static final String MSG_COUNT_PROP = "Cafe.copies";
+    public static final PropertyKey<Integer> MSG_COUNT_PROP =
+            PropertyKey.ofInt("Cafe.copies");
     /**
      * Message property key for summary vector messages exchanged between direct
      * peers
      */
-    public static final String SUMMARY_XCHG_PROP = "HelloMessage.protoXchg";
-    public static final String AVGTIMEBUFFERFREE_XCHG_PROP = "Cafe.avgTimeBufferFree";
-    public static final String PRCTIMEBUFFERFULL_XCHG_PROP = "Cafe.prcTimeBufferFull";
-    public static final String AVGMSGDELAY_XCHG_PROP = "Cafe.avgMsgDelay";
-    public static final String EGOAVGTIMEBUFFERFREE_XCHG_PROP = "Cafe.EgoavgTimeBufferFree";
-    public static final String EGOPRCTIMEBUFFERFULL_XCHG_PROP = "Cafe.EgoprcTimeBufferFull";
-    public static final String EGOAVGMSGDELAY_XCHG_PROP = "Cafe.EgoavgMsgDelay";
-    public static final String EBC_XCHG_PROP = "HelloMessage.ebcXchg";
-    public static final String Fn_XCHG_PROP = "HelloMessage.FnXchg";
-    public static final String Dn_XCHG_PROP = "HelloMessage.DnXchg";
-    public static final String L_XCHG_PROP = "HelloMessage.LXchg";
+    public static final PropertyKey<Map<DTNHost, EncounterInfo>> SUMMARY_XCHG_PROP =
+            PropertyKey.of("HelloMessage.protoXchg");
+    /** Property carrying the sender's contact set ({@link HostSet}) */
+    public static final PropertyKey<HostSet> CONTACTS_XCHG_PROP =
+            PropertyKey.of("HelloMessage.contacts");
+    public static final PropertyKey<Long> AVGTIMEBUFFERFREE_XCHG_PROP =
+            PropertyKey.ofLong("Cafe.avgTimeBufferFree");
+    public static final PropertyKey<Double> PRCTIMEBUFFERFULL_XCHG_PROP =
+            PropertyKey.ofDouble("Cafe.prcTimeBufferFull");
+    public static final PropertyKey<Integer> AVGMSGDELAY_XCHG_PROP =
+            PropertyKey.ofInt("Cafe.avgMsgDelay");
+    public static final PropertyKey<Long> EGOAVGTIMEBUFFERFREE_XCHG_PROP =
+            PropertyKey.ofLong("Cafe.EgoavgTimeBufferFree");
+    public static final PropertyKey<Double> EGOPRCTIMEBUFFERFULL_XCHG_PROP =
+            PropertyKey.ofDouble("Cafe.EgoprcTimeBufferFull");
+    public static final PropertyKey<Integer> EGOAVGMSGDELAY_XCHG_PROP =
+            PropertyKey.ofInt("Cafe.EgoavgMsgDelay");
+    public static final PropertyKey<Double> EBC_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.ebcXchg");
+    public static final PropertyKey<Integer> Fn_XCHG_PROP =
+            PropertyKey.ofInt("HelloMessage.FnXchg");
+    public static final PropertyKey<Double> Dn_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.DnXchg");
+    public static final PropertyKey<Double> L_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.LXchg");
     protected static final String SUMMARY_XCHG_IDPREFIX = "summary";
     protected static final double defaultTransitivityThreshold = 60.0;
     protected static int protocolMsgIdx = 0;
@@ -50,8 +68,9 @@ public class CafeRouter extends ActiveRouter {
     /**
      * Stores information about nodes with which this host has come in contact
      */
-    protected Map<DTNHost, EncounterInfo> recentEncounters;
-    protected Map<DTNHost, Map<DTNHost, EncounterInfo>> neighborEncounters;
+    protected PeerStateTable<EncounterInfo> recentEncounters;
+    protected PeerStateTable<Map<DTNHost, EncounterInfo>> neighborEncounters;
+    protected EgoNetwork egoNetwork;
     // 
     protected long TimeBufferFull;
     protected long NumberOfTimesBufferFree;
@@ -85,8 +104,9 @@ public class CafeRouter extends ActiveRouter {
             transitivityTimerThreshold = defaultTransitivityThreshold;
         }
 
-        recentEncounters = new HashMap<DTNHost, EncounterInfo>();
-        neighborEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+        recentEncounters = new PeerStateTable<EncounterInfo>();
+        neighborEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
 
         // 
         TimeBufferFull = 0;
@@ -119,8 +139,9 @@ public class CafeRouter extends ActiveRouter {
         super(r);
         this.initialNrofCopies = r.initialNrofCopies;
 
-        recentEncounters = new HashMap<DTNHost, EncounterInfo>();
-        neighborEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+        recentEncounters = new PeerStateTable<EncounterInfo>();
+        neighborEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
 
         TimeBufferFull = 0; // or should it be r.percenTimeBufferFull;
         NumberOfTimesBufferFree = 0; // or shoult it be r.Num...
@@ -174,11 +195,13 @@ public class CafeRouter extends ActiveRouter {
             //recentEncounters.put(peer, new EncounterInfo(SimClock.getTime()));
             // we initialise with optimum values (before we get real info from peer)
             recentEncounters.put(peer, new EncounterInfo(SimClock.getTime(), 1, this.getBufferSize(), 0, 1, this.getBufferSize(), 0, 100.0, 100.0));
+            egoNetwork.addContact(peer);
 
         }
 
         if (!con.isUp()) {
             neighborEncounters.remove(peer);
+            egoNetwork.removeContactsOf(peer);
             return;
         }
 
@@ -187,26 +210,28 @@ public class CafeRouter extends ActiveRouter {
          * access to the peers we recently encountered; so we duplicate the recentEncounters
          * Map and attach it to a message.
          */
-        int msgSize = recentEncounters.size() * 64 + getMessageCollection().size() * 8;
+        int msgSize = recentEncounters.size() * 64 + getMessageCollection().size() * 8
+                + getCacheDigestSize();
         //
         msgSize += 64 * 6; // long.size() + double.size();
 
         Message newMsg = new Message(thisHost, peer, SUMMARY_XCHG_IDPREFIX + protocolMsgIdx++, msgSize, null);
         newMsg.addProperty(SUMMARY_XCHG_PROP, /*new HashMap<DTNHost, EncounterInfo>(*/ recentEncounters);
+        newMsg.addProperty(CONTACTS_XCHG_PROP, egoNetwork.getContacts());
 
         //
-        newMsg.addProperty(AVGTIMEBUFFERFREE_XCHG_PROP, AverageLengthTimeBufferFree);
-        newMsg.addProperty(PRCTIMEBUFFERFULL_XCHG_PROP, PercentTimeBufferFull);
-        newMsg.addProperty(AVGMSGDELAY_XCHG_PROP, AverageMessageDelay);
+        newMsg.updateLongProperty(AVGTIMEBUFFERFREE_XCHG_PROP, AverageLengthTimeBufferFree);
+        newMsg.updateDoubleProperty(PRCTIMEBUFFERFULL_XCHG_PROP, PercentTimeBufferFull);
+        newMsg.updateIntProperty(AVGMSGDELAY_XCHG_PROP, AverageMessageDelay);
 
-        newMsg.addProperty(EGOAVGTIMEBUFFERFREE_XCHG_PROP, EgoNetAverageLengthTimeBufferFree);
-        newMsg.addProperty(EGOPRCTIMEBUFFERFULL_XCHG_PROP, EgoNetPercentTimeBufferFull);
-        newMsg.addProperty(EGOAVGMSGDELAY_XCHG_PROP, EgoNetAverageMessageDelay);
+        newMsg.updateLongProperty(EGOAVGTIMEBUFFERFREE_XCHG_PROP, EgoNetAverageLengthTimeBufferFree);
+        newMsg.updateDoubleProperty(EGOPRCTIMEBUFFERFULL_XCHG_PROP, EgoNetPercentTimeBufferFull);
+        newMsg.updateIntProperty(EGOAVGMSGDELAY_XCHG_PROP, EgoNetAverageMessageDelay);
 
-        newMsg.addProperty(EBC_XCHG_PROP, new Double(this.EBC));
-        newMsg.addProperty(Fn_XCHG_PROP, new Integer(this.Fn));
-        newMsg.addProperty(Dn_XCHG_PROP, new Double(this.Dn));
-        newMsg.addProperty(L_XCHG_PROP, new Double(L()));
+        newMsg.updateDoubleProperty(EBC_XCHG_PROP, this.EBC);
+        newMsg.updateIntProperty(Fn_XCHG_PROP, this.Fn);
+        newMsg.updateDoubleProperty(Dn_XCHG_PROP, this.Dn);
+        newMsg.updateDoubleProperty(L_XCHG_PROP, L());
 
         createNewMessage(newMsg);
     }
@@ -215,7 +240,7 @@ public class CafeRouter extends ActiveRouter {
     public boolean createNewMessage(Message m) {
         makeRoomForNewMessage(m.getSize());
 
-        m.addProperty(MSG_COUNT_PROP, new Integer(initialNrofCopies));
+        m.addProperty(MSG_COUNT_PROP, initialNrofCopies);
         addToMessages(m, true);
         return true;
     }
@@ -228,7 +253,7 @@ public class CafeRouter extends ActiveRouter {
          * Here we update our last encounter times based on the information sent
          * from our peer. 
          */
-        Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>) m.getProperty(SUMMARY_XCHG_PROP);
+        Map<DTNHost, EncounterInfo> peerEncounters = m.getProperty(SUMMARY_XCHG_PROP);
         if (isDeliveredMessage(m) && peerEncounters != null) {
             double distTo = getHost().getLocation().distance(from.getLocation());
             double speed = from.getPath() == null ? 0 : from.getPath().getSpeed();
@@ -244,6 +269,11 @@ public class CafeRouter extends ActiveRouter {
              * implemented in update()
              */
             neighborEncounters.put(from, peerEncounters);
+            HostSet peerContacts = m.getProperty(CONTACTS_XCHG_PROP);
+            if (peerContacts == null) {
+                peerContacts = new HostSet(peerEncounters.keySet());
+            }
+            egoNetwork.setContactsOf(from, peerContacts);
 
             for (Map.Entry<DTNHost, EncounterInfo> entry : peerEncounters.entrySet()) {
                 DTNHost h = entry.getKey();
@@ -267,14 +297,15 @@ public class CafeRouter extends ActiveRouter {
                             peerEncounter.getAvgBuffFree(), peerEncounter.getPctBuffFull(), peerEncounter.getAverageMsgDelay(),
                             peerEncounter.getEgoAvgBuffFree(), peerEncounter.getEgoPctBuffFull(), peerEncounter.getEgoAverageMsgDelay(),
                             peerEncounter.getPercentBufferAvailable(), peerEncounter.getEgoPercentBufferAvailable());
-                    int _sim = similarity(recentEncounters.keySet(), neighborEncounters.get(from).keySet());
+                    int _sim = egoNetwork.similarity(from);
                     info.setSim(_sim);
-                    info.setStats(((Double) m.getProperty(EBC_XCHG_PROP)).doubleValue(),
-                            ((Integer) m.getProperty(Fn_XCHG_PROP)).intValue(),
-                            ((Double) m.getProperty(Dn_XCHG_PROP)).doubleValue(),
-                            ((Double) m.getProperty(L_XCHG_PROP)).doubleValue());
+                    info.setStats(m.getDoubleProperty(EBC_XCHG_PROP),
+                            m.getIntProperty(Fn_XCHG_PROP),
+                            m.getDoubleProperty(Dn_XCHG_PROP),
+                            m.getDoubleProperty(L_XCHG_PROP));
                     betweenness_update();
                     recentEncounters.put(h, info);
+                    egoNetwork.addContact(h);
                     continue;
                 }
 
@@ -292,12 +323,12 @@ public class CafeRouter extends ActiveRouter {
                     recentEncounters.get(h).updateEgoAvgMsgDelay(peerEncounter.getEgoAverageMsgDelay());
 //EncounterInfo info = recentEncounters.get(from);
 
-                    int _sim = similarity(recentEncounters.keySet(), neighborEncounters.get(from).keySet());
+                    int _sim = egoNetwork.similarity(from);
                     recentEncounters.get(h).setSim(_sim);
-                    recentEncounters.get(h).setStats(((Double) m.getProperty(EBC_XCHG_PROP)).doubleValue(),
-                            ((Integer) m.getProperty(Fn_XCHG_PROP)).intValue(),
-                            ((Double) m.getProperty(Dn_XCHG_PROP)).doubleValue(),
-                            ((Double) m.getProperty(L_XCHG_PROP)).doubleValue());
+                    recentEncounters.get(h).setStats(m.getDoubleProperty(EBC_XCHG_PROP),
+                            m.getIntProperty(Fn_XCHG_PROP),
+                            m.getDoubleProperty(Dn_XCHG_PROP),
+                            m.getDoubleProperty(L_XCHG_PROP));
                     betweenness_update();
                 }
             }
@@ -305,18 +336,18 @@ public class CafeRouter extends ActiveRouter {
         }
 
         //Normal message beyond here
-        Integer nrofCopies = (Integer) m.getProperty(MSG_COUNT_PROP);
+        int nrofCopies = m.getIntProperty(MSG_COUNT_PROP);
 
         nrofCopies = (int) Math.ceil(nrofCopies / 2.0);
 
-        m.updateProperty(MSG_COUNT_PROP, nrofCopies);
+        m.updateIntProperty(MSG_COUNT_PROP, nrofCopies);
 
         return m;
     }
 
     @Override
     protected void transferDone(Connection con) {
-        Integer nrofCopies;
+        int nrofCopies;
         String msgId = con.getMessage().getId();
         /* get this router's copy of the message */
         Message msg = getMessage(msgId);
@@ -325,7 +356,7 @@ public class CafeRouter extends ActiveRouter {
             return; // ..start of transfer -> no need to reduce amount of copies
         }
 
-        if (msg.getProperty(SUMMARY_XCHG_PROP) != null) {
+        if (msg.hasProperty(SUMMARY_XCHG_PROP)) {
             deleteMessage(msgId, false);
             return;
         }
@@ -335,14 +366,14 @@ public class CafeRouter extends ActiveRouter {
          * we apparently just transferred the msg (focus phase), then we should
          * delete it. 
          */
-        nrofCopies = (Integer) msg.getProperty(MSG_COUNT_PROP);
+        nrofCopies = msg.getIntProperty(MSG_COUNT_PROP);
         if (nrofCopies > 1) {
             nrofCopies /= 2;
         } else {
             deleteMessage(msgId, false);
         }
 
-        msg.updateProperty(MSG_COUNT_PROP, nrofCopies);
+        msg.updateIntProperty(MSG_COUNT_PROP, nrofCopies);
     }
 
     @Override
@@ -400,13 +431,11 @@ public class CafeRouter extends ActiveRouter {
         List<Tuple<Message, Connection>> focuslist = new LinkedList<Tuple<Message, Connection>>();
 
         for (Message m : getMessageCollection()) {
-            if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+            if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                 continue;
             }
 
-            Integer nrofCopies = (Integer) m.getProperty(MSG_COUNT_PROP);
-            assert nrofCopies != null : "Cafe message " + m + " didn't have "
-                    + "nrof copies property!";
+            int nrofCopies = m.getIntProperty(MSG_COUNT_PROP);
             if (nrofCopies > 1) {
                 spraylist.add(m);
             } else {
@@ -716,94 +745,11 @@ System.out.printf("%f- %d- %f- %f- %d- %f- %f-\n",TU_Social, TU_AverageMessageDe
     }
 
     public int similarity(Set<DTNHost> _A, Set<DTNHost> _B) {
-        Object[] A = _A.toArray();
-        Object[] B = _B.toArray();
-        int sim = 0;
-        for (Object _a : A) {
-            DTNHost a = (DTNHost) _a;
-            for (Object _b : B) {
-                DTNHost b = (DTNHost) _b;
-                if (a == b) {
-                    sim++;
-                    break;
-                }
-            }
-        }
-        return sim;
+        return new HostSet(_A).andCardinality(new HostSet(_B));
     }
 
     public void betweenness_update() {
-        int Ni = recentEncounters.size();
-        // Adjacency Matrix
-        int A[][] = new int[Ni][Ni];
-
-        //
-        Object[] fstHopIDs = recentEncounters.keySet().toArray();
-        // for each contact in our contact set
-        for (int i = 0; i < Ni; i++) {
-            DTNHost c1 = (DTNHost) fstHopIDs[i];
-            // see if they require us to connect them to our other contacts
-            for (int j = 0; j < Ni; j++) {
-                // dont try to connect them with themselves
-                if (i != j) {
-                    DTNHost c2 = (DTNHost) fstHopIDs[j];
-                    boolean adj = false;
-                    if (neighborEncounters.get(c1) != null) {
-                        for (Object _c1c : neighborEncounters.get(c1).keySet().toArray()) {
-                            DTNHost c1c = (DTNHost) _c1c;
-                            if (c1c == c2) {
-                                adj = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (adj) {
-                        A[i][j] = 1;
-                    } else {
-                        A[i][j] = 0;
-                    }
-                } else {
-                    A[i][j] = 0;
-                }
-            }
-        }
-
-        // A^2
-        double A2[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                A2[i][j] = 0;
-                for (int k = 0; k < Ni; k++) {
-                    A2[i][j] += A[i][k] * A[k][j];
-                }
-            }
-        }
-
-        // A^2[1-A]ij
-        double A3[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                if (A2[i][j] != 0) {
-                    A3[i][j] = 1.0 / (double) A2[i][j];
-                }
-            }
-        }
-
-        // Sum of values for dependant contacts
-        double b = 0.0;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = i + 1; j < Ni; j++) {
-
-                if (A[i][j] == 0) {
-
-                    b += A3[i][j];
-
-                }
-            }
-        }
-
-        this.EBC = b;
-
+        this.EBC = egoNetwork.betweenness();
     }
 
     protected void updateFnDn() {
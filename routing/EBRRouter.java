@@ -15,12 +15,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.HashSet;
 
+import routing.util.AckTable;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.PropertyKey;
 import core.Settings;
 import core.SimClock;
 import util.Tuple;
@@ -36,7 +36,8 @@ public class EBRRouter extends ActiveRouter {
 	public static final String UPDATE_POPINTERVAL = "updatePOPInterval";
 	/** Popularity router's settings namespace ({@value})*/ 
 	public static final String EBR_NS = "EBRRouter";    
-	public static final String MSG_COUNT_PROPERTY = EBR_NS + "." + "copies";
+	public static final PropertyKey<Integer> MSG_COUNT_PROPERTY =
+		PropertyKey.ofInt(EBR_NS + "." + "copies");
 
 	/** Popularity counter */
 	private double EV = 0;
@@ -51,7 +52,7 @@ public class EBRRouter extends ActiveRouter {
 	private double timeToUpdate = 0;
 
 	/** IDs of the messages that are known to have reached the final dst */
-	private Set<String> ackedMessageIds;
+	private AckTable ackedMessageIds;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -75,7 +76,7 @@ public class EBRRouter extends ActiveRouter {
 		this.initialNrofCopies = r.initialNrofCopies;
 		this.alpha = r.alpha;
 		this.updateInterval = r.updateInterval;
-		this.ackedMessageIds = new HashSet<String>();
+		this.ackedMessageIds = new AckTable();
 		this.EV = r.EV;
 		this.windowCounter = r.windowCounter;
 	}
@@ -97,8 +98,8 @@ public class EBRRouter extends ActiveRouter {
 			EBRRouter otherRouter = (EBRRouter)mRouter;
 
 			// exchange ACKed message data
-			this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-			otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+			this.ackedMessageIds.merge(otherRouter.ackedMessageIds, otherHost);
+			otherRouter.ackedMessageIds.merge(this.ackedMessageIds, getHost());
 			deleteAckedMessages();
 			otherRouter.deleteAckedMessages();
 
@@ -116,9 +117,9 @@ public class EBRRouter extends ActiveRouter {
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id)) {
-				this.deleteMessage(id, false);
+		for (Message m : getMessageCollection().toArray(new Message[0])) {
+			if (this.ackedMessageIds.contains(m)) {
+				this.deleteMessage(m.getId(), false);
 			}
 		}
 	}
@@ -127,7 +128,7 @@ public class EBRRouter extends ActiveRouter {
 	public boolean createNewMessage(Message msg) {
 		makeRoomForNewMessage(msg.getSize());	
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+		msg.addProperty(MSG_COUNT_PROPERTY, initialNrofCopies);
 		addToMessages(msg, true);				
 		return true;
 	}
@@ -183,7 +184,7 @@ public class EBRRouter extends ActiveRouter {
 				 */;
 				 double y = othRouter.getEV();
 				 double x = this.getEV();
-				 int n = ((Integer)m.getProperty(MSG_COUNT_PROPERTY)).intValue();
+				 int n = m.getIntProperty(MSG_COUNT_PROPERTY);
 
 				 /** The other nodes popularity is high enough to send message */
 				 if (Math.floor((y*n)/(x+y)) > 1) {
@@ -246,7 +247,7 @@ public class EBRRouter extends ActiveRouter {
 
 		/** If destination was reached, delete all copies from sender */
 		if (con.getMessage().getTo().equals(con.getOtherNode(getHost()))) {
-			this.ackedMessageIds.add(msgId);
+			this.ackedMessageIds.add(con.getMessage());
 			this.deleteMessage(msgId,false);
 			return;
 		}
@@ -258,11 +259,11 @@ public class EBRRouter extends ActiveRouter {
 		// Get nodes' EVs
 		double x = this.getEV();
 		double y = ((EBRRouter)con.getOtherNode(getHost()).getRouter()).getEV();
-		int n = ((Integer)msg.getProperty(MSG_COUNT_PROPERTY)).intValue();
+		int n = msg.getIntProperty(MSG_COUNT_PROPERTY);
 
 		// Transfered floor( y/(x+y) * n), and kept rest for self
 		int newCount = n - (int)Math.floor((y*n)/(x+y));
-		msg.updateProperty(MSG_COUNT_PROPERTY, new Integer(newCount));
+		msg.updateIntProperty(MSG_COUNT_PROPERTY, newCount);
 
 	}
 
@@ -275,18 +276,18 @@ public class EBRRouter extends ActiveRouter {
 
 		// If this is final dest, simply set num of copies to 1
 		if (msg.getTo().equals(this.getHost())) {
-			msg.updateProperty(MSG_COUNT_PROPERTY, new Integer(1));
-			this.ackedMessageIds.add(id);
+			msg.updateIntProperty(MSG_COUNT_PROPERTY, 1);
+			this.ackedMessageIds.add(msg);
 			return msg;
 		}
 
 		double y = this.getEV();
 		double x = ((EBRRouter)from.getRouter()).getEV();
-		int n = ((Integer)msg.getProperty(MSG_COUNT_PROPERTY)).intValue();
+		int n = msg.getIntProperty(MSG_COUNT_PROPERTY);
 
 		// "from" transfered floor( y/(x+y) * n) to self
 		int newCount = (int)Math.floor((y*n)/(x+y));
-		msg.updateProperty(MSG_COUNT_PROPERTY, new Integer(newCount));
+		msg.updateIntProperty(MSG_COUNT_PROPERTY, newCount);
 
 		return msg;
 	}
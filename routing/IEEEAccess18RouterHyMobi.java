@@ -12,12 +12,19 @@ import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.AckTable;
+import routing.util.CongestionEstimator;
+import routing.util.EgoNetwork;
+import routing.util.HostSet;
+import routing.util.PeerStateTable;
+import routing.util.SentMessageTable;
 import util.Tuple;
 import core.Connection;
 import core.Content;
 import core.ContentType;
 import core.DTNHost;
 import core.Message;
+import core.PropertyKey;
 import core.Settings;
 import core.SimClock;
 
@@ -40,11 +47,19 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
      * Message property key for summary vector messages exchanged between direct
      * peers
      */
-    public static final String SUMMARY_XCHG_PROP = "HelloMessage.protoXchg";
-    public static final String EBC_XCHG_PROP = "HelloMessage.ebcXchg";
-    public static final String Fn_XCHG_PROP = "HelloMessage.FnXchg";
-    public static final String Dn_XCHG_PROP = "HelloMessage.DnXchg";
-    public static final String L_XCHG_PROP = "HelloMessage.LXchg";
+    public static final PropertyKey<Map<DTNHost, EncounterInfo>> SUMMARY_XCHG_PROP =
+            PropertyKey.of("HelloMessage.protoXchg");
+    /** Property carrying the sender's contact set ({@link HostSet}) */
+    public static final PropertyKey<HostSet> CONTACTS_XCHG_PROP =
+            PropertyKey.of("HelloMessage.contacts");
+    public static final PropertyKey<Double> EBC_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.ebcXchg");
+    public static final PropertyKey<Integer> Fn_XCHG_PROP =
+            PropertyKey.ofInt("HelloMessage.FnXchg");
+    public static final PropertyKey<Double> Dn_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.DnXchg");
+    public static final PropertyKey<Double> L_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.LXchg");
 
     protected static final String SUMMARY_XCHG_IDPREFIX = "summary";
     protected static int protocolMsgIdx = 0;
@@ -86,7 +101,7 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
     /**
      * Map of which messages have been sent to which hosts from this host
      */
-    private Map<DTNHost, Set<String>> sentMessages;
+    private SentMessageTable sentMessages;
 
     /**
      * Over how many samples the "average number of bytes transferred per
@@ -116,12 +131,13 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
      */
     public static final double DEFAULT_ALPHA = 1.0;
 
-    private Set<String> ackedMessageIds;
+    private AckTable ackedMessageIds;
     /**
      * Stores information about nodes with which this host has come in contact
      */
-    protected Map<DTNHost, EncounterInfo> fstHopEncounters;
-    protected Map<DTNHost, Map<DTNHost, EncounterInfo>> secHopEncounters;
+    protected PeerStateTable<EncounterInfo> fstHopEncounters;
+    protected PeerStateTable<Map<DTNHost, EncounterInfo>> secHopEncounters;
+    protected EgoNetwork egoNetwork;
 
     // Ego Betweenness Centrality
     protected double EBC;
@@ -133,33 +149,26 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
     protected double TOC;
 
     //////////////////////////////////////// Congestion Avoidance /////////////////////////////////////////
-    private int numberOfTimeCongested = 0;
-    private ArrayList<Double> congestionDuration = new ArrayList<>();
-    private ArrayList<Double> congestionGap = new ArrayList<>();
-    private double congestionRecency = Double.MAX_VALUE;
-    private double congestionStartTime = -1.0;
-    private double congestionEndTime = -1.0;
-    private boolean isCongesting = false;
-    private double startTime;
-    private double freeTime = -1.0;
-
-    protected Map<DTNHost, ArrayList<Double>> reputationHistory;
-
-    protected Map<DTNHost, ArrayList<Double>> encountersHistory;
+    private CongestionEstimator congestion;
+
+    protected PeerStateTable<ArrayList<Double>> reputationHistory;
+
+    protected PeerStateTable<ArrayList<Double>> encountersHistory;
     //////////////////////////////////////// Congestion Avoidance /////////////////////////////////////////
 
     public IEEEAccess18RouterHyMobi(Settings s) {
         super(s);
         //Settings setts = new Settings(PROTOCOL_NS);
-        fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
-        secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
-        encountersHistory = new HashMap<DTNHost, ArrayList<Double>>();
+        fstHopEncounters = new PeerStateTable<EncounterInfo>();
+        secHopEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
+        encountersHistory = new PeerStateTable<ArrayList<Double>>();
 
         EBC = 0.0;
         Fn = 0;
         Dn = 0.0;
         TOC = SimClock.getTime();
-        reputationHistory = new HashMap<DTNHost, ArrayList<Double>>();
+        reputationHistory = new PeerStateTable<ArrayList<Double>>();
 
         Settings socialSettings = new Settings(PROTOCOL_NS);
         if (socialSettings.contains(ALPHA_S)) {
@@ -174,7 +183,7 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
         } else {
             probSetMaxSize = DEFAULT_PROB_SET_MAX_SIZE;
         }
-        startTime = SimClock.getTime();
+        congestion = new CongestionEstimator(SimClock.getTime());
     }
 
     /**
@@ -184,9 +193,10 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
      */
     public IEEEAccess18RouterHyMobi(IEEEAccess18RouterHyMobi r) {
         super(r);
-        fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
-        secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
-        encountersHistory = new HashMap<DTNHost, ArrayList<Double>>();
+        fstHopEncounters = new PeerStateTable<EncounterInfo>();
+        secHopEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
+        encountersHistory = new PeerStateTable<ArrayList<Double>>();
 
         EBC = 0.0;
         Fn = 0;
@@ -197,11 +207,11 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
         this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
         this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
         this.dijkstra = new MaxPropDijkstra(this.allProbs);
-        this.ackedMessageIds = new HashSet<String>();
+        this.ackedMessageIds = new AckTable();
         this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
-        this.sentMessages = new HashMap<DTNHost, Set<String>>();
-        startTime = SimClock.getTime();
-        reputationHistory = new HashMap<DTNHost, ArrayList<Double>>();
+        this.sentMessages = new SentMessageTable();
+        congestion = new CongestionEstimator(SimClock.getTime());
+        reputationHistory = new PeerStateTable<ArrayList<Double>>();
     }
 
     @Override
@@ -230,19 +240,22 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
             updateFnDn();
         } else {
             fstHopEncounters.put(peer, new EncounterInfo(SimClock.getTime()));
+            egoNetwork.addContact(peer);
         }
 
         if (con.isUp()) {
             this.costsForMessages = null;
             // TODO: Update msgSize to reflect SimBetTS contact
-            int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8;
+            int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8
+                    + getCacheDigestSize();
 
             Message newMsg = new Message(thisHost, peer, SUMMARY_XCHG_IDPREFIX + protocolMsgIdx++, msgSize, null);
             newMsg.addProperty(SUMMARY_XCHG_PROP, fstHopEncounters);
-            newMsg.addProperty(EBC_XCHG_PROP, new Double(this.EBC));
-            newMsg.addProperty(Fn_XCHG_PROP, new Integer(this.Fn));
-            newMsg.addProperty(Dn_XCHG_PROP, new Double(this.Dn));
-            newMsg.addProperty(L_XCHG_PROP, new Double(L()));
+            newMsg.addProperty(CONTACTS_XCHG_PROP, egoNetwork.getContacts());
+            newMsg.updateDoubleProperty(EBC_XCHG_PROP, this.EBC);
+            newMsg.updateIntProperty(Fn_XCHG_PROP, this.Fn);
+            newMsg.updateDoubleProperty(Dn_XCHG_PROP, this.Dn);
+            newMsg.updateDoubleProperty(L_XCHG_PROP, L());
 
             createNewMessage(newMsg);
 
@@ -265,8 +278,8 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
                 otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
 
                 /* exchange ACKed message data */
-                this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-                otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+                this.ackedMessageIds.merge(otherRouter.ackedMessageIds, otherHost);
+                otherRouter.ackedMessageIds.merge(this.ackedMessageIds, getHost());
                 deleteAckedMessages();
                 otherRouter.deleteAckedMessages();
 
@@ -286,9 +299,9 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
 
     // Important to remove messages that have been delivered already => not waste resource.
     private void deleteAckedMessages() {
-        for (String id : this.ackedMessageIds) {
-            if (this.hasMessage(id) && !isSending(id)) {
-                this.deleteMessage(id, false);
+        for (Message m : getMessageCollection().toArray(new Message[0])) {
+            if (this.ackedMessageIds.contains(m) && !isSending(m.getId())) {
+                this.deleteMessage(m.getId(), false);
             }
         }
     }
@@ -342,7 +355,7 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
          * Here we update our last encounter times based on the information sent
          * from our peer. 
          */
-        Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>) m.getProperty(SUMMARY_XCHG_PROP);
+        Map<DTNHost, EncounterInfo> peerEncounters = m.getProperty(SUMMARY_XCHG_PROP);
         if (isDeliveredMessage(m)) {
             if (peerEncounters != null) {
 
@@ -352,13 +365,18 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
                  */
                 secHopEncounters.put(from, peerEncounters);
                 EncounterInfo info = fstHopEncounters.get(from);
-                int _sim = similarity(fstHopEncounters.keySet(), secHopEncounters.get(from).keySet());
+                HostSet peerContacts = m.getProperty(CONTACTS_XCHG_PROP);
+                if (peerContacts == null) {
+                    peerContacts = new HostSet(peerEncounters.keySet());
+                }
+                egoNetwork.setContactsOf(from, peerContacts);
+                int _sim = egoNetwork.similarity(from);
                 info.setSim(_sim);
 
-                info.setStats(((Double) m.getProperty(EBC_XCHG_PROP)).doubleValue(),
-                        ((Integer) m.getProperty(Fn_XCHG_PROP)).intValue(),
-                        ((Double) m.getProperty(Dn_XCHG_PROP)).doubleValue(),
-                        ((Double) m.getProperty(L_XCHG_PROP)).doubleValue());
+                info.setStats(m.getDoubleProperty(EBC_XCHG_PROP),
+                        m.getIntProperty(Fn_XCHG_PROP),
+                        m.getDoubleProperty(Dn_XCHG_PROP),
+                        m.getDoubleProperty(L_XCHG_PROP));
                 betweenness_update();
 
                 if (this.hasMessage(m.getId()) && !isSending(m.getId())) {
@@ -366,7 +384,7 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
                 }
                 return null;
             }
-            this.ackedMessageIds.add(id);
+            this.ackedMessageIds.add(m);
         }
         //Normal message beyond here
         return m;
@@ -378,18 +396,16 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
         if (m == null) { // message has been dropped from the buffer after..
             return; // ..start of transfer -> no need to reduce amount of copies
         }
-        if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+        if (m.hasProperty(SUMMARY_XCHG_PROP)) {
             deleteMessage(m.getId(), false);
             return;
         }
 
-        String id = m.getId();
         DTNHost recipient = con.getOtherNode(getHost());
-        Set<String> sentMsgIds = this.sentMessages.get(recipient);
 
         /* was the message delivered to the final recipient? */
         if ((m.getTo() != null && m.getTo() == recipient)) { //|| m.getType() == 0 || m.getType() == 1
-            this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+            this.ackedMessageIds.add(m); // yes, add to ACKed messages
             this.deleteMessage(m.getId(), false); // delete from buffer
 
             if (reputationHistory.containsKey(recipient)) {
@@ -402,12 +418,8 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
             }
         }
 
-        /* update the map of where each message is already sent */
-        if (sentMsgIds == null) {
-            sentMsgIds = new HashSet<String>();
-            this.sentMessages.put(recipient, sentMsgIds);
-        }
-        sentMsgIds.add(id);
+        /* update the table of where each message is already sent */
+        this.sentMessages.add(recipient, m);
 
     }
 
@@ -416,12 +428,11 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
             return 0.0;
         }
         double reputation = 0.0;
-        for (Map.Entry<DTNHost, ArrayList<Double>> entry : reputationHistory.entrySet()) {
+        for (ArrayList<Double> history : reputationHistory.values()) {
             double reputation_past = 0.0;
             double reputation_recent = 0.0;
             double count_recent = 0.0;
             if (specificHost == null) {
-                ArrayList<Double> history = entry.getValue();
                 if (history.size() > 1) {
                     double milestoneTime = (history.get(history.size() - 1) + history.get(0)) / 2.0;
                     for (double time : history) {
@@ -475,12 +486,15 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
         if (newContent.getSize() > this.getCacheSize()) {
             return false; // message too big for the buffer
         }
+        if (!admitContent(newContent)) {
+            return false;
+        }
 
         long freeBuffer = this.getFreeCacheSize();
 
         /* delete messages from the buffer until there's enough space */
         while (freeBuffer < newContent.getSize()) {
-            Content c = getNextContentToRemove(newContent,true); // don't remove msgs being sent
+            Content c = getContentToEvict(newContent);
 
             if (c == null) {
                 return false; // couldn't remove any more messages
@@ -523,7 +537,7 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
         Collection<Message> messages = this.getMessageCollection();
         Message oldest = null;
         for (Message m : messages) {
-            if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+            if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                 continue;
             }
             if (excludeMsgBeingSent && isSending(m.getId())) {
@@ -603,7 +617,7 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
              * (optimization) */
                 Set<Integer> toSet = new HashSet<Integer>();
                 for (Message m : getMessageCollection()) {
-                    if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+                    if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                         continue;
                     }
                     if (m.getTo() == null) {
@@ -773,28 +787,7 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
 
     @Override
     protected int checkReceiving(Message m, DTNHost from) {
-        if (this.getFreeBufferSize() <= m.getSize()) {
-            if (!isCongesting) {
-                isCongesting = true;
-                this.numberOfTimeCongested++;
-                this.congestionStartTime = SimClock.getTime();
-                //System.out.printf("Node: %d - Start: %f", this.getHost().getAddress(), this.congestionStartTime);
-                if (this.congestionEndTime > 0) {
-                    this.congestionGap.add(this.congestionStartTime - this.congestionEndTime);
-                }
-                if (this.freeTime == -1.0) {
-                    this.freeTime = this.congestionStartTime - this.startTime;
-                }
-
-            }
-        } else {
-            if (isCongesting) {
-                isCongesting = false;
-                this.congestionEndTime = SimClock.getTime();
-                //System.out.printf("Node: %d - End: %f", this.getHost().getAddress(), this.congestionEndTime);
-                this.congestionDuration.add(this.congestionEndTime - this.congestionStartTime);
-            }
-        }
+        congestion.bufferChecked(this.getFreeBufferSize() <= m.getSize());
         return super.checkReceiving(m, from);
     }
 
@@ -825,7 +818,6 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
         for (Connection con : getConnections()) {
             DTNHost other = con.getOtherNode(getHost());
             IEEEAccess18RouterHyMobi othRouter = (IEEEAccess18RouterHyMobi) other.getRouter();
-            Set<String> sentMsgIds = this.sentMessages.get(other);
 
             if (othRouter.isTransferring()) {
                 continue; // skip hosts that are transferring
@@ -840,10 +832,10 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
                 }
                 /* skip message if this host has already sent it to the other
                  host (regardless of if the other host still has it) */
-                if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+                if (this.sentMessages.contains(other, m)) {
                     continue;
                 }
-                if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+                if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                     continue;
                 }
 
@@ -883,11 +875,11 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
         double C1 = 0.0;
         double C2 = 0.0;
         int N = encountersHistory.size();
-        for (Map.Entry<DTNHost, ArrayList<Double>> entry : encountersHistory.entrySet()) {
-            C1 += getSocialTieValue(entry.getKey());
+        for (DTNHost peer : encountersHistory.keySet()) {
+            C1 += getSocialTieValue(peer);
         }
-        for (Map.Entry<DTNHost, ArrayList<Double>> entry : encountersHistory.entrySet()) {
-            C2 += Math.pow(getSocialTieValue(entry.getKey()), 2);
+        for (DTNHost peer : encountersHistory.keySet()) {
+            C2 += Math.pow(getSocialTieValue(peer), 2);
         }
         C = (alpha / N) * C1 + ((1 - alpha) / N) * Math.pow(C1, 2) / C2;
         //System.out.printf("%f ",C);
@@ -1060,91 +1052,11 @@ public class IEEEAccess18RouterHyMobi extends ActiveRouter {
     }
 
     public int similarity(Set<DTNHost> _A, Set<DTNHost> _B) {
-        Object[] A = _A.toArray();
-        Object[] B = _B.toArray();
-        int sim = 0;
-        for (Object _a : A) {
-            DTNHost a = (DTNHost) _a;
-            for (Object _b : B) {
-                DTNHost b = (DTNHost) _b;
-                if (a == b) {
-                    sim++;
-                    break;
-                }
-            }
-        }
-        return sim;
+        return new HostSet(_A).andCardinality(new HostSet(_B));
     }
 
     public void betweenness_update() {
-        int Ni = fstHopEncounters.size();
-        // Adjacency Matrix
-        int A[][] = new int[Ni][Ni];
-
-        //
-        Object[] fstHopIDs = fstHopEncounters.keySet().toArray();
-        // for each contact in our contact set
-        for (int i = 0; i < Ni; i++) {
-            DTNHost c1 = (DTNHost) fstHopIDs[i];
-            // see if they require us to connect them to our other contacts
-            for (int j = 0; j < Ni; j++) {
-                // dont try to connect them with themselves
-                if (i != j) {
-                    DTNHost c2 = (DTNHost) fstHopIDs[j];
-                    boolean adj = false;
-                    if (secHopEncounters.get(c1) != null) {
-                        for (Object _c1c : secHopEncounters.get(c1).keySet().toArray()) {
-                            DTNHost c1c = (DTNHost) _c1c;
-                            if (c1c == c2) {
-                                adj = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (adj) {
-                        A[i][j] = 1;
-                    } else {
-                        A[i][j] = 0;
-                    }
-                } else {
-                    A[i][j] = 0;
-                }
-            }
-        }
-
-        // A^2
-        double A2[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                A2[i][j] = 0;
-                for (int k = 0; k < Ni; k++) {
-                    A2[i][j] += A[i][k] * A[k][j];
-                }
-            }
-        }
-
-        // A^2[1-A]ij
-        double A3[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                if (A2[i][j] != 0) {
-                    A3[i][j] = 1.0 / (double) A2[i][j];
-                }
-            }
-        }
-
-        // Sum of values for dependant contacts
-        double b = 0.0;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = i + 1; j < Ni; j++) {
-                if (A[i][j] == 0) {
-                    b += A3[i][j];
-                }
-            }
-        }
-        //System.out.println("Betttt: " + b);
-        this.EBC = b;
-
+        this.EBC = egoNetwork.betweenness();
     }
 
     protected void updateFnDn() {
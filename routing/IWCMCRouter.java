@@ -16,11 +16,16 @@ import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.AckTable;
+import routing.util.EgoNetwork;
+import routing.util.HostSet;
 import routing.util.RoutingInfo;
+import routing.util.SentMessageTable;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.PropertyKey;
 import core.Settings;
 import core.SimClock;
 
@@ -56,7 +61,7 @@ public class IWCMCRouter extends ActiveRouter {
     /**
      * IDs of the messages that are known to have reached the final dst
      */
-    private Set<String> ackedMessageIds;
+    private AckTable ackedMessageIds;
     /**
      * mapping of the current costs for all messages. This should be set to null
      * always when the costs should be updated (a host is met or a new message
@@ -70,7 +75,7 @@ public class IWCMCRouter extends ActiveRouter {
     /**
      * Map of which messages have been sent to which hosts from this host
      */
-    private Map<DTNHost, Set<String>> sentMessages;
+    private SentMessageTable sentMessages;
     /**
      * Over how many samples the "average number of bytes transferred per
      * transfer opportunity" is taken
@@ -99,11 +104,19 @@ public class IWCMCRouter extends ActiveRouter {
      * Message property key for summary vector messages exchanged between direct
      * peers
      */
-    public static final String SUMMARY_XCHG_PROP = "HelloMessage.protoXchg";
-    public static final String EBC_XCHG_PROP = "HelloMessage.ebcXchg";
-    public static final String Fn_XCHG_PROP = "HelloMessage.FnXchg";
-    public static final String Dn_XCHG_PROP = "HelloMessage.DnXchg";
-    public static final String L_XCHG_PROP = "HelloMessage.LXchg";
+    public static final PropertyKey<Map<DTNHost, EncounterInfo>> SUMMARY_XCHG_PROP =
+            PropertyKey.of("HelloMessage.protoXchg");
+    /** Property carrying the sender's contact set ({@link HostSet}) */
+    public static final PropertyKey<HostSet> CONTACTS_XCHG_PROP =
+            PropertyKey.of("HelloMessage.contacts");
+    public static final PropertyKey<Double> EBC_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.ebcXchg");
+    public static final PropertyKey<Integer> Fn_XCHG_PROP =
+            PropertyKey.ofInt("HelloMessage.FnXchg");
+    public static final PropertyKey<Double> Dn_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.DnXchg");
+    public static final PropertyKey<Double> L_XCHG_PROP =
+            PropertyKey.ofDouble("HelloMessage.LXchg");
     protected static int protocolMsgIdx = 0;
     protected static final String SUMMARY_XCHG_IDPREFIX = "summary";
 
@@ -130,6 +143,7 @@ public class IWCMCRouter extends ActiveRouter {
         }
         fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
         secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
 
         EBC = 0.0;
         Fn = 0;
@@ -148,12 +162,13 @@ public class IWCMCRouter extends ActiveRouter {
         this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
         this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
         this.dijkstra = new MaxPropDijkstra(this.allProbs);
-        this.ackedMessageIds = new HashSet<String>();
+        this.ackedMessageIds = new AckTable();
         this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
-        this.sentMessages = new HashMap<DTNHost, Set<String>>();
+        this.sentMessages = new SentMessageTable();
 
         fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
         secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
 
         EBC = 0.0;
         Fn = 0;
@@ -173,6 +188,7 @@ public class IWCMCRouter extends ActiveRouter {
             updateFnDn();
         } else {
             fstHopEncounters.put(peer, new EncounterInfo(SimClock.getTime()));
+            egoNetwork.addContact(peer);
         }
 
         if (con.isUp()) { // new connection
@@ -190,8 +206,8 @@ public class IWCMCRouter extends ActiveRouter {
                 IWCMCRouter otherRouter = (IWCMCRouter) mRouter;
 
                 /* exchange ACKed message data */
-                this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-                otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+                this.ackedMessageIds.merge(otherRouter.ackedMessageIds, otherHost);
+                otherRouter.ackedMessageIds.merge(this.ackedMessageIds, getHost());
                 deleteAckedMessages();
                 otherRouter.deleteAckedMessages();
 
@@ -210,14 +226,16 @@ public class IWCMCRouter extends ActiveRouter {
             }
             
                 // TODO: Update msgSize to reflect SimBetTS contact
-                int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8;
+                int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8
+                        + getCacheDigestSize();
                 //int msgSize = 1;
                 Message newMsg = new Message(thisHost, peer, SUMMARY_XCHG_IDPREFIX + protocolMsgIdx++, msgSize, null);
                 newMsg.addProperty(SUMMARY_XCHG_PROP, fstHopEncounters);
-                newMsg.addProperty(EBC_XCHG_PROP, new Double(this.EBC));
-                newMsg.addProperty(Fn_XCHG_PROP, new Integer(this.Fn));
-                newMsg.addProperty(Dn_XCHG_PROP, new Double(this.Dn));
-                newMsg.addProperty(L_XCHG_PROP, new Double(L()));
+                newMsg.addProperty(CONTACTS_XCHG_PROP, egoNetwork.getContacts());
+                newMsg.updateDoubleProperty(EBC_XCHG_PROP, this.EBC);
+                newMsg.updateIntProperty(Fn_XCHG_PROP, this.Fn);
+                newMsg.updateDoubleProperty(Dn_XCHG_PROP, this.Dn);
+                newMsg.updateDoubleProperty(L_XCHG_PROP, L());
 
                 createNewMessage(newMsg);
             
@@ -248,9 +266,9 @@ public class IWCMCRouter extends ActiveRouter {
      * Deletes the messages from the message buffer that are known to be ACKed
      */
     private void deleteAckedMessages() {
-        for (String id : this.ackedMessageIds) {
-            if (this.hasMessage(id) && !isSending(id)) {
-                this.deleteMessage(id, false);
+        for (Message m : getMessageCollection().toArray(new Message[0])) {
+            if (this.ackedMessageIds.contains(m) && !isSending(m.getId())) {
+                this.deleteMessage(m.getId(), false);
             }
         }
     }
@@ -259,7 +277,7 @@ public class IWCMCRouter extends ActiveRouter {
     public Message messageTransferred(String id, DTNHost from) {
         this.costsForMessages = null; // new message -> invalidate costs
         Message m = super.messageTransferred(id, from);
-        Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>) m.getProperty(SUMMARY_XCHG_PROP);
+        Map<DTNHost, EncounterInfo> peerEncounters = m.getProperty(SUMMARY_XCHG_PROP);
         /* was this node the final recipient of the message? */
         if (isDeliveredMessage(m)) {
             /*
@@ -270,17 +288,22 @@ public class IWCMCRouter extends ActiveRouter {
 
                 secHopEncounters.put(from, peerEncounters);
                 EncounterInfo info = fstHopEncounters.get(from);
-                int _sim = similarity(fstHopEncounters.keySet(), secHopEncounters.get(from).keySet());
+                HostSet peerContacts = m.getProperty(CONTACTS_XCHG_PROP);
+                if (peerContacts == null) {
+                    peerContacts = new HostSet(peerEncounters.keySet());
+                }
+                egoNetwork.setContactsOf(from, peerContacts);
+                int _sim = egoNetwork.similarity(from);
                 info.setSim(_sim);
-                info.setStats(((Double) m.getProperty(EBC_XCHG_PROP)).doubleValue(),
-                        ((Integer) m.getProperty(Fn_XCHG_PROP)).intValue(),
-                        ((Double) m.getProperty(Dn_XCHG_PROP)).doubleValue(),
-                        ((Double) m.getProperty(L_XCHG_PROP)).doubleValue());
+                info.setStats(m.getDoubleProperty(EBC_XCHG_PROP),
+                        m.getIntProperty(Fn_XCHG_PROP),
+                        m.getDoubleProperty(Dn_XCHG_PROP),
+                        m.getDoubleProperty(L_XCHG_PROP));
                 betweenness_update();
                 return m;
 
             }
-            this.ackedMessageIds.add(id);
+            this.ackedMessageIds.add(m);
         }
         return m;
     }
@@ -295,26 +318,20 @@ public class IWCMCRouter extends ActiveRouter {
     @Override
     protected void transferDone(Connection con) {
         Message m = con.getMessage();
-        if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+        if (m.hasProperty(SUMMARY_XCHG_PROP)) {
             deleteMessage(m.getId(), false);
             return;
         }
-        String id = m.getId();
         DTNHost recipient = con.getOtherNode(getHost());
-        Set<String> sentMsgIds = this.sentMessages.get(recipient);
 
         /* was the message delivered to the final recipient? */
         if (m.getTo() == recipient) {
-            this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+            this.ackedMessageIds.add(m); // yes, add to ACKed messages
             this.deleteMessage(m.getId(), false); // delete from buffer
         }
 
-        /* update the map of where each message is already sent */
-        if (sentMsgIds == null) {
-            sentMsgIds = new HashSet<String>();
-            this.sentMessages.put(recipient, sentMsgIds);
-        }
-        sentMsgIds.add(id);
+        /* update the table of where each message is already sent */
+        this.sentMessages.add(recipient, m);
 
     }
 
@@ -364,7 +381,7 @@ public class IWCMCRouter extends ActiveRouter {
         List<Message> validMessages = new ArrayList<Message>();
 
         for (Message m : messages) {
-            if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+            if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                 continue;
             }
             if (excludeMsgBeingSent && isSending(m.getId())) {
@@ -415,7 +432,7 @@ public class IWCMCRouter extends ActiveRouter {
              * (optimization) */
             Set<Integer> toSet = new HashSet<Integer>();
             for (Message m : getMessageCollection()) {
-                if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+                if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                     continue;
                 }
                 toSet.add(m.getTo().getAddress());
@@ -450,7 +467,6 @@ public class IWCMCRouter extends ActiveRouter {
         for (Connection con : getConnections()) {
             DTNHost other = con.getOtherNode(getHost());
             IWCMCRouter othRouter = (IWCMCRouter) other.getRouter();
-            Set<String> sentMsgIds = this.sentMessages.get(other);
 
             if (othRouter.isTransferring()) {
                 continue; // skip hosts that are transferring
@@ -465,10 +481,10 @@ public class IWCMCRouter extends ActiveRouter {
                 }
                 /* skip message if this host has already sent it to the other
                  host (regardless of if the other host still has it) */
-                if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+                if (this.sentMessages.contains(other, m)) {
                     continue;
                 }
-                if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+                if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                     continue;
                 }
                 /* message was a good candidate for sending */
@@ -491,6 +507,7 @@ public class IWCMCRouter extends ActiveRouter {
      */
     protected Map<DTNHost, EncounterInfo> fstHopEncounters;
     protected Map<DTNHost, Map<DTNHost, EncounterInfo>> secHopEncounters;
+    protected EgoNetwork egoNetwork;
     // Ego Betweenness Centrality
     protected double EBC;
     // F(n) = total contact frequency
@@ -654,7 +671,7 @@ public class IWCMCRouter extends ActiveRouter {
         /* creates a copy of the messages list, sorted by hop count */
         ArrayList<Message> msgs = new ArrayList<Message>();
         for (Message m : getMessageCollection()) {
-            if (m.getProperty(SUMMARY_XCHG_PROP) == null) {
+            if (!m.hasProperty(SUMMARY_XCHG_PROP)) {
                 msgs.add(m);
             }
 
@@ -845,94 +862,11 @@ public class IWCMCRouter extends ActiveRouter {
     }
 
     public int similarity(Set<DTNHost> _A, Set<DTNHost> _B) {
-        Object[] A = _A.toArray();
-        Object[] B = _B.toArray();
-        int sim = 0;
-        for (Object _a : A) {
-            DTNHost a = (DTNHost) _a;
-            for (Object _b : B) {
-                DTNHost b = (DTNHost) _b;
-                if (a == b) {
-                    sim++;
-                    break;
-                }
-            }
-        }
-        return sim;
+        return new HostSet(_A).andCardinality(new HostSet(_B));
     }
 
     public void betweenness_update() {
-        int Ni = fstHopEncounters.size();
-        // Adjacency Matrix
-        int A[][] = new int[Ni][Ni];
-
-        //
-        Object[] fstHopIDs = fstHopEncounters.keySet().toArray();
-        // for each contact in our contact set
-        for (int i = 0; i < Ni; i++) {
-            DTNHost c1 = (DTNHost) fstHopIDs[i];
-            // see if they require us to connect them to our other contacts
-            for (int j = 0; j < Ni; j++) {
-                // dont try to connect them with themselves
-                if (i != j) {
-                    DTNHost c2 = (DTNHost) fstHopIDs[j];
-                    boolean adj = false;
-                    if (secHopEncounters.get(c1) != null) {
-                        for (Object _c1c : secHopEncounters.get(c1).keySet().toArray()) {
-                            DTNHost c1c = (DTNHost) _c1c;
-                            if (c1c == c2) {
-                                adj = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (adj) {
-                        A[i][j] = 1;
-                    } else {
-                        A[i][j] = 0;
-                    }
-                } else {
-                    A[i][j] = 0;
-                }
-            }
-        }
-
-        // A^2
-        double A2[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                A2[i][j] = 0;
-                for (int k = 0; k < Ni; k++) {
-                    A2[i][j] += A[i][k] * A[k][j];
-                }
-            }
-        }
-
-        // A^2[1-A]ij
-        double A3[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                if (A2[i][j] != 0) {
-                    A3[i][j] = 1.0 / (double) A2[i][j];
-                }
-            }
-        }
-
-        // Sum of values for dependant contacts
-        double b = 0.0;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = i + 1; j < Ni; j++) {
-
-                if (A[i][j] == 0) {
-
-                    b += A3[i][j];
-
-                }
-            }
-        }
-
-        this.EBC = b;
-
+        this.EBC = egoNetwork.betweenness();
     }
 
     protected void updateFnDn() {
@@ -16,7 +16,9 @@ import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.AckTable;
 import routing.util.RoutingInfo;
+import routing.util.SentMessageTable;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
@@ -54,7 +56,7 @@ public class MaxPropRouter extends ActiveRouter {
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;
 	/** IDs of the messages that are known to have reached the final dst */
-	private Set<String> ackedMessageIds;
+	private AckTable ackedMessageIds;
 	/** mapping of the current costs for all messages. This should be set to
 	 * null always when the costs should be updated (a host is met or a new
 	 * message is received) */
@@ -63,7 +65,7 @@ public class MaxPropRouter extends ActiveRouter {
 	private DTNHost lastCostFrom;
 
 	/** Map of which messages have been sent to which hosts from this host */
-	private Map<DTNHost, Set<String>> sentMessages;
+	private SentMessageTable sentMessages;
 
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -115,9 +117,9 @@ public class MaxPropRouter extends ActiveRouter {
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
-		this.ackedMessageIds = new HashSet<String>();
+		this.ackedMessageIds = new AckTable();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
-		this.sentMessages = new HashMap<DTNHost, Set<String>>();
+		this.sentMessages = new SentMessageTable();
 	}
 
 	@Override
@@ -139,8 +141,8 @@ public class MaxPropRouter extends ActiveRouter {
 				MaxPropRouter otherRouter = (MaxPropRouter)mRouter;
 
 				/* exchange ACKed message data */
-				this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-				otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+				this.ackedMessageIds.merge(otherRouter.ackedMessageIds, otherHost);
+				otherRouter.ackedMessageIds.merge(this.ackedMessageIds, getHost());
 				deleteAckedMessages();
 				otherRouter.deleteAckedMessages();
 
@@ -183,9 +185,9 @@ public class MaxPropRouter extends ActiveRouter {
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id) && !isSending(id)) {
-				this.deleteMessage(id, false);
+		for (Message m : getMessageCollection().toArray(new Message[0])) {
+			if (this.ackedMessageIds.contains(m) && !isSending(m.getId())) {
+				this.deleteMessage(m.getId(), false);
 			}
 		}
 	}
@@ -196,7 +198,7 @@ public class MaxPropRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
-			this.ackedMessageIds.add(id);
+			this.ackedMessageIds.add(m);
 		}
 		return m;
 	}
@@ -210,22 +212,16 @@ public class MaxPropRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		Message m = con.getMessage();
-		String id = m.getId();
 		DTNHost recipient = con.getOtherNode(getHost());
-		Set<String> sentMsgIds = this.sentMessages.get(recipient);
 
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == recipient) {
-			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+			this.ackedMessageIds.add(m); // yes, add to ACKed messages
 			this.deleteMessage(m.getId(), false); // delete from buffer
 		}
 
-		/* update the map of where each message is already sent */
-		if (sentMsgIds == null) {
-			sentMsgIds = new HashSet<String>();
-			this.sentMessages.put(recipient, sentMsgIds);
-		}
-		sentMsgIds.add(id);
+		/* update the table of where each message is already sent */
+		this.sentMessages.add(recipient, m);
 	}
 
 	/**
@@ -353,7 +349,6 @@ public class MaxPropRouter extends ActiveRouter {
 		for (Connection con : getConnections()) {
 			DTNHost other = con.getOtherNode(getHost());
 			MaxPropRouter othRouter = (MaxPropRouter)other.getRouter();
-			Set<String> sentMsgIds = this.sentMessages.get(other);
 
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
@@ -368,7 +363,7 @@ public class MaxPropRouter extends ActiveRouter {
 				}
 				/* skip message if this host has already sent it to the other
 				   host (regardless of if the other host still has it) */
-				if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+				if (this.sentMessages.contains(other, m)) {
 					continue;
 				}
 				/* message was a good candidate for sending */
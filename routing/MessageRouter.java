@@ -4,10 +4,12 @@
  */
 package routing;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
@@ -16,15 +18,23 @@ import core.Connection;
 import core.Content;
 import core.ContentType;
 import core.DTNHost;
+import core.DTNSim;
+import core.ICNEvents;
 import core.Message;
+import core.MessageKind;
 import core.MessageListener;
+import core.MetricsRegistry;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import java.util.ArrayList;
-import report.MessageContentStatsReport;
+import routing.util.PendingInterestTable;
+import routing.cache.CachePolicy;
+import routing.util.RouterMetrics;
 import routing.util.RoutingInfo;
+import util.FrequencySketch;
+import util.LongHashMap;
 import util.Tuple;
 
 /**
@@ -56,6 +66,79 @@ public abstract class MessageRouter {
      */
     public static final String SEND_QUEUE_MODE_S = "sendQueue";
 
+    /**
+     * Interest aggregation -setting id ({@value}). Boolean valued. If true,
+     * the router keeps a {@link PendingInterestTable}: only the first
+     * Interest for a content id is forwarded, later Interests for the same
+     * content from other requests are recorded and served when the content
+     * passes through this host. Default is false.
+     */
+    public static final String INTEREST_AGGREGATION_S = "interestAggregation";
+
+    /**
+     * Content chunk size -setting id ({@value}). Integer value in bytes. If
+     * set, contents larger than this are sent as separate chunk messages
+     * (see {@link Content#getChunk(int, int)}) that are cached chunk by chunk,
+     * so a connection that breaks in the middle of a content only loses the
+     * chunk it was transferring. Default is 0 (contents are not chunked).
+     */
+    public static final String CHUNK_SIZE_S = "chunkSize";
+    /**
+     * Content chunk timeout -setting id ({@value}). Double value in seconds.
+     * A requester that has some but not all chunks of a requested content
+     * and gets no new chunk in this time sends an Interest for each missing
+     * chunk (see {@link Content#getChunkInterest(int, int)}). Partially
+     * cached contents of other requests that haven't got a new chunk in this
+     * time are evicted before any other content. 0 disables both. Default is
+     * {@value #DEF_CHUNK_TIMEOUT}.
+     */
+    public static final String CHUNK_TIMEOUT_S = "chunkTimeout";
+    /**
+     * Content chunk retries -setting id ({@value}). How many times a
+     * requester re-requests the missing chunks of a content. Default is
+     * {@value #DEF_CHUNK_RETRIES}.
+     */
+    public static final String CHUNK_RETRIES_S = "chunkRetries";
+    /** Default content chunk timeout */
+    public static final double DEF_CHUNK_TIMEOUT = 600;
+    /** Default number of content chunk retries */
+    public static final int DEF_CHUNK_RETRIES = 3;
+
+    /**
+     * Cache admission -setting id ({@value}). Boolean valued. If true, a new
+     * content is cached only if it has been requested (or received) more
+     * often recently than the content it would evict, as estimated by a
+     * {@link FrequencySketch} (TinyLFU). Default is false (all contents are
+     * admitted and the router only decides what to evict).
+     */
+    public static final String CACHE_ADMISSION_S = "cacheAdmission";
+    /**
+     * Width of the cache admission frequency sketch -setting id ({@value}).
+     * Should be about the number of contents that fit in the cache. Default
+     * is {@value #DEF_CACHE_ADMISSION_WIDTH}.
+     */
+    public static final String CACHE_ADMISSION_WIDTH_S = "cacheAdmissionWidth";
+    /**
+     * Cache admission doorkeeper -setting id ({@value}). Boolean valued. If
+     * true, the first request of a content in each sample period is only
+     * recorded in a Bloom filter in front of the frequency sketch. Default is
+     * false.
+     */
+    public static final String CACHE_ADMISSION_DOORKEEPER_S =
+            "cacheAdmissionDoorkeeper";
+    /**
+     * Content store replacement policy -setting id ({@value}). One of
+     * <CODE>LRU, LFU, ARC, GDSF, S3FIFO</CODE> (see {@link CachePolicy} and
+     * its implementations in the {@value #CACHE_POLICY_PACKAGE} package). If
+     * not set, the router's own {@link #getNextContentToRemove(Content,
+     * boolean)} decides what to evict.
+     */
+    public static final String CACHE_POLICY_S = "cachePolicy";
+    /** Package of the cache policy classes ({@value}) */
+    public static final String CACHE_POLICY_PACKAGE = "routing.cache";
+    /** Default width of the cache admission sketch */
+    public static final int DEF_CACHE_ADMISSION_WIDTH = 1024;
+
     /**
      * Setting value for random queue mode
      */
@@ -116,24 +199,36 @@ public abstract class MessageRouter {
     public static final int DENIED_UNSPECIFIED = -99;
 
     private List<MessageListener> mListeners;
+    /** ICN event listeners (shared by all the routers of a scenario) */
+    private ICNEvents icnEvents;
+    /**
+     * Identifier indexes of the Interests whose request has been answered
+     * (by any host)
+     */
+    private static BitSet matchedRequests;
     /**
-     * The messages being transferred with msgID_hostName keys
+     * The messages being transferred, keyed by the message's identifier index
+     * and the sending host's address (see {@link #incomingKey})
      */
-    private HashMap<String, Message> incomingMessages;
+    private LongHashMap<Message> incomingMessages;
+    /** number of incoming transfers by identifier index of the message */
+    private LongHashMap<Integer> nrofIncoming;
     /**
-     * The messages this router is carrying
+     * The messages this router is carrying, by identifier index
      */
-    private HashMap<String, Message> messages;
+    private LongHashMap<Message> messages;
 
     /**
-     * The messages this router has received as the final recipient
+     * The messages this router has received as the final recipient, by
+     * identifier index
      */
-    private HashMap<String, Message> deliveredMessages;
+    private LongHashMap<Message> deliveredMessages;
 
     /**
-     * The messages that Applications on this router have blacklisted
+     * Identifier indexes of the messages that Applications on this router
+     * have blacklisted
      */
-    private HashMap<String, Object> blacklistedMessages;
+    private BitSet blacklistedMessages;
     /**
      * Host where this router belongs to
      */
@@ -152,12 +247,58 @@ public abstract class MessageRouter {
      * Queue mode for sending messages
      */
     private int sendQueueMode;
+    /**
+     * Is Interest aggregation enabled
+     */
+    private boolean interestAggregation;
+    /**
+     * Pending Interests of this router (null if aggregation is disabled)
+     */
+    private PendingInterestTable pendingInterests;
+    /**
+     * Size of content chunks (0 if contents are not chunked)
+     */
+    private int chunkSize;
+    /**
+     * Content chunk timeout and the number of retries of missing chunks
+     */
+    private double chunkTimeout;
+    private int chunkRetries;
+    /**
+     * Chunked contents this host has requested, by content id (null if
+     * missing chunks are not re-requested)
+     */
+    private HashMap<Integer, ChunkRequest> chunkRequests;
+    /**
+     * Is cache admission enabled, and the geometry of its sketch
+     */
+    private boolean cacheAdmission;
+    private int cacheAdmissionWidth;
+    private boolean cacheAdmissionDoorkeeper;
+    /**
+     * Recent request frequencies of contents (null if cache admission is
+     * disabled)
+     */
+    private FrequencySketch admissionSketch;
+    /**
+     * Replacement policy of the content store (null if the router decides)
+     */
+    private CachePolicy cachePolicy;
+    /**
+     * Metrics of the router in the metrics registry of the run
+     */
+    private RouterMetrics metrics;
 
     /**
      * applications attached to the host
      */
     private HashMap<String, Collection<Application>> applications = null;
 
+    static {
+        DTNSim.registerForReset(MessageRouter.class.getCanonicalName());
+        reset();
+    }
+
     /**
      * Constructor. Creates a new message router based on the settings in the
      * given Settings object. Size of the message buffer is read from
@@ -170,6 +311,7 @@ public abstract class MessageRouter {
         this.cacheSize = Integer.MAX_VALUE; // defaults to rather large buffer
         this.msgTtl = Message.INFINITE_TTL;
         this.applications = new HashMap<String, Collection<Application>>();
+        this.icnEvents = new ICNEvents();
 
         if (s.contains(B_SIZE_S)) {
             this.bufferSize = s.getLong(B_SIZE_S);
@@ -200,6 +342,35 @@ public abstract class MessageRouter {
         } else {
             sendQueueMode = Q_MODE_RANDOM;
         }
+
+        this.interestAggregation = s.getBoolean(INTEREST_AGGREGATION_S, false);
+        this.chunkSize = s.getInt(CHUNK_SIZE_S, 0);
+        if (this.chunkSize < 0) {
+            throw new SettingsError("Invalid value for "
+                    + s.getFullPropertyName(CHUNK_SIZE_S));
+        }
+        this.chunkTimeout = s.getDouble(CHUNK_TIMEOUT_S, DEF_CHUNK_TIMEOUT);
+        this.chunkRetries = s.getInt(CHUNK_RETRIES_S, DEF_CHUNK_RETRIES);
+        if (this.chunkTimeout < 0 || this.chunkRetries < 0) {
+            throw new SettingsError("Invalid value for "
+                    + s.getFullPropertyName(CHUNK_TIMEOUT_S) + " or "
+                    + s.getFullPropertyName(CHUNK_RETRIES_S));
+        }
+        this.cacheAdmission = s.getBoolean(CACHE_ADMISSION_S, false);
+        this.cacheAdmissionWidth = s.getInt(CACHE_ADMISSION_WIDTH_S,
+                DEF_CACHE_ADMISSION_WIDTH);
+        this.cacheAdmissionDoorkeeper = s.getBoolean(
+                CACHE_ADMISSION_DOORKEEPER_S, false);
+        if (this.cacheAdmissionWidth < 1) {
+            throw new SettingsError("Invalid value for "
+                    + s.getFullPropertyName(CACHE_ADMISSION_WIDTH_S));
+        }
+        if (s.contains(CACHE_POLICY_S)) {
+            String policy = s.getSetting(CACHE_POLICY_S).trim().toUpperCase()
+                    .replace("-", "");
+            this.cachePolicy = (CachePolicy) s.createIntializedObject(
+                    CACHE_POLICY_PACKAGE + "." + policy + "CachePolicy");
+        }
     }
 
     /**
@@ -210,12 +381,28 @@ public abstract class MessageRouter {
      * @param mListeners The message listeners
      */
     public void init(DTNHost host, List<MessageListener> mListeners) {
-        this.incomingMessages = new HashMap<String, Message>();
-        this.messages = new HashMap<String, Message>();
-        this.deliveredMessages = new HashMap<String, Message>();
-        this.blacklistedMessages = new HashMap<String, Object>();
+        this.incomingMessages = new LongHashMap<Message>();
+        this.nrofIncoming = new LongHashMap<Integer>();
+        this.messages = new LongHashMap<Message>();
+        this.deliveredMessages = new LongHashMap<Message>();
+        this.blacklistedMessages = new BitSet();
+        if (this.chunkSize > 0 && this.chunkTimeout > 0) {
+            this.chunkRequests = new HashMap<Integer, ChunkRequest>();
+        }
+        if (this.interestAggregation) {
+            this.pendingInterests = new PendingInterestTable();
+        }
+        if (this.cacheAdmission) {
+            this.admissionSketch = new FrequencySketch(cacheAdmissionWidth,
+                    cacheAdmissionDoorkeeper);
+        }
+        if (this.cachePolicy != null) {
+            this.cachePolicy.init(this.cacheSize);
+        }
         this.mListeners = mListeners;
         this.host = host;
+        this.metrics = new RouterMetrics(MetricsRegistry.getInstance());
+        this.metrics.bufferAdded(this.bufferSize);
     }
 
     /**
@@ -228,6 +415,17 @@ public abstract class MessageRouter {
         this.cacheSize = r.cacheSize;
         this.msgTtl = r.msgTtl;
         this.sendQueueMode = r.sendQueueMode;
+        this.interestAggregation = r.interestAggregation;
+        this.chunkSize = r.chunkSize;
+        this.chunkTimeout = r.chunkTimeout;
+        this.chunkRetries = r.chunkRetries;
+        this.cacheAdmission = r.cacheAdmission;
+        this.cacheAdmissionWidth = r.cacheAdmissionWidth;
+        this.cacheAdmissionDoorkeeper = r.cacheAdmissionDoorkeeper;
+        if (r.cachePolicy != null) {
+            this.cachePolicy = r.cachePolicy.replicate();
+        }
+        this.icnEvents = r.icnEvents;
 
         this.applications = new HashMap<String, Collection<Application>>();
         for (Collection<Application> apps : r.applications.values()) {
@@ -237,6 +435,37 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Resets the static fields of the class
+     */
+    public static void reset() {
+        matchedRequests = new BitSet();
+    }
+
+    /**
+     * Sets the listeners that are informed about the ICN events of this
+     * router (and of its replicates).
+     *
+     * @param icnEvents The listeners
+     */
+    public void setICNListeners(ICNEvents icnEvents) {
+        this.icnEvents = icnEvents;
+    }
+
+    /**
+     * Marks the request of an Interest answered.
+     *
+     * @param interest The Interest
+     * @return True if the request was not answered before
+     */
+    protected static boolean markRequestMatched(Message interest) {
+        if (matchedRequests.get(interest.getIdIndex())) {
+            return false;
+        }
+        matchedRequests.set(interest.getIdIndex());
+        return true;
+    }
+
     /**
      * Updates router. This method should be called (at least once) on every
      * simulation interval to update the status of transfer(s).
@@ -247,6 +476,74 @@ public abstract class MessageRouter {
                 app.update(this.host);
             }
         }
+        if (this.chunkRequests != null && !this.chunkRequests.isEmpty()) {
+            requestMissingChunks();
+        }
+        if (this.pendingInterests != null) {
+            requeueInterests(this.pendingInterests.expire());
+        }
+    }
+
+    /**
+     * Forwards again the Interests released from the PIT when the Interest
+     * they were aggregated to expired or was dropped. The first released
+     * Interest for a content is put back to the buffer and the others are
+     * aggregated to it.
+     *
+     * @param interests The released Interests
+     */
+    protected void requeueInterests(List<Message> interests) {
+        for (Message m : interests) {
+            if (hasMessage(m.getId()) || m.getSize() > getFreeBufferSize()) {
+                continue;
+            }
+            if (this.pendingInterests.add(m)) {
+                this.blacklistedMessages.clear(m.getIdIndex());
+                addToMessages(m, false);
+            }
+        }
+    }
+
+    /**
+     * Sends Interests for the missing chunks of the contents this host has
+     * requested and got no new chunk of in the chunk timeout (see
+     * {@link #CHUNK_TIMEOUT_S}). A request is given up after the configured
+     * number of retries.
+     */
+    protected void requestMissingChunks() {
+        double now = SimClock.getTime();
+        Iterator<ChunkRequest> i = this.chunkRequests.values().iterator();
+        while (i.hasNext()) {
+            ChunkRequest r = i.next();
+            if (now - r.lastProgress < this.chunkTimeout) {
+                continue;
+            }
+            Content interest = r.interest.getContent();
+            Content entry = this.host.getContent(interest.getContentId());
+            if (r.retries >= this.chunkRetries
+                    || (entry != null && entry.isComplete())) {
+                i.remove();
+                continue;
+            }
+            r.retries++;
+            r.lastProgress = now;
+            if (entry == null) {
+                continue; // no chunk yet, the Interest is still on its way
+            }
+            for (int c = 0; c < entry.getNrofChunks(); c++) {
+                if (entry.hasChunk(c)) {
+                    continue;
+                }
+                Message m = new Message(this.host, null,
+                        r.interest.getRequestId(), MessageKind.Interest, c,
+                        r.interest.getSize(),
+                        interest.getChunkInterest(c, entry.getNrofChunks()));
+                if (!hasMessage(m.getId())) { // else still on its way
+                    m.setResponseSize(r.interest.getResponseSize());
+                    this.host.createNewMessage(m);
+                }
+            }
+        }
     }
 
     /**
@@ -263,7 +560,7 @@ public abstract class MessageRouter {
      * @return The message
      */
     protected Message getMessage(String id) {
-        return this.messages.get(id);
+        return this.messages.get(Message.lookupIndex(id));
     }
 
     /**
@@ -273,7 +570,7 @@ public abstract class MessageRouter {
      * @return True if the router has message with this id, false if not
      */
     public boolean hasMessage(String id) {
-        return this.messages.containsKey(id);
+        return this.messages.containsKey(Message.lookupIndex(id));
     }
 
     /**
@@ -286,7 +583,7 @@ public abstract class MessageRouter {
      * as the final recipient.
      */
     protected boolean isDeliveredMessage(Message m) {
-        return (this.deliveredMessages.containsKey(m.getId()));
+        return (this.deliveredMessages.containsKey(m.getIdIndex()));
     }
 
     /**
@@ -299,7 +596,8 @@ public abstract class MessageRouter {
      * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
      */
     protected boolean isBlacklistedMessage(String id) {
-        return this.blacklistedMessages.containsKey(id);
+        int index = Message.lookupIndex(id);
+        return index >= 0 && this.blacklistedMessages.get(index);
     }
 
     /**
@@ -473,7 +771,25 @@ public abstract class MessageRouter {
         // then the message is not considered as 'delivered' to this host.
         if (aMessage.getTo() != null) {
             if (aMessage.getContent() != null && aMessage.getContent().getContentType() == ContentType.Content) {
-                storeNewContentToContentStore(aMessage.getContent());
+                recordContentAccess(aMessage.getContent().getContentId());
+                if (aMessage.getContent().isChunk()) {
+                    Content entry = storeNewChunkToContentStore(aMessage.getContent());
+                    if (entry != null && entry.isComplete()) {
+                        satisfyPendingInterests(entry, aMessage.getRequestId());
+                    }
+                    ChunkRequest request = null;
+                    if (entry != null && this.chunkRequests != null) {
+                        request = this.chunkRequests.get(entry.getContentId());
+                    }
+                    if (request != null && entry.isComplete()) {
+                        this.chunkRequests.remove(entry.getContentId());
+                    } else if (request != null) {
+                        request.lastProgress = SimClock.getTime();
+                    }
+                } else {
+                    storeNewContentToContentStore(aMessage.getContent());
+                    satisfyPendingInterests(aMessage.getContent(), aMessage.getRequestId());
+                }
             }
             isFinalRecipient = aMessage.getTo() == this.host;
             isFirstDelivery = isFinalRecipient
@@ -484,25 +800,17 @@ public abstract class MessageRouter {
                 // -> put to buffer
                 addToMessages(aMessage, false);
             } else if (isFirstDelivery) {
-                this.deliveredMessages.put(id, aMessage);
+                this.deliveredMessages.put(incoming.getIdIndex(), aMessage);
             } else if (outgoing == null) {
                 // Blacklist messages that an app wants to drop.
                 // Otherwise the peer will just try to send it back again.
-                this.blacklistedMessages.put(id, null);
+                blacklist(incoming);
             }
 
+            this.metrics.messageTransferred(aMessage, isFirstDelivery);
             for (MessageListener ml : this.mListeners) {
-                MessageContentStatsReport report = (MessageContentStatsReport) ml;
-                if (report.setDeliveredMessages(this.host.getAddress(), aMessage.getId())) {
-                    /*if(isFirstDelivery) {
-                    System.out.println("Content: " + aMessage.getId());
-                    }*/
-                    ml.messageTransferred(aMessage, from, this.host,
-                            isFirstDelivery);
-                } else {
-                    ml.messageTransferred(aMessage, from, this.host,
-                            false);
-                }
+                ml.messageTransferred(aMessage, from, this.host,
+                        isFirstDelivery);
             }
 
             return aMessage;
@@ -517,7 +825,7 @@ public abstract class MessageRouter {
                     if (temp.getContent()!= null && temp.getContent().getContentType() == ContentType.Advert && temp.getContent().getContentId() == aMessage.getContent().getContentId()) {
                         isFinalRecipient = true;
                         Content content = new Content(temp.getContent().getContentId(), ContentType.Content, temp.getContent().getContentTimeOfCreation(), 0);
-                        Message m1 = new Message(this.getHost(), aMessage.getFrom(), aMessage.getId().replace("_interest", ""), temp.getSize(), content);
+                        Message m1 = new Message(this.getHost(), aMessage.getFrom(), aMessage.getRequestId(), MessageKind.Data, temp.getSize(), content);
                         this.getHost().createNewMessage(m1);
                         for (MessageListener ml : this.mListeners) {
                             MessageContentStatsReport report = (MessageContentStatsReport) ml;
@@ -533,7 +841,7 @@ public abstract class MessageRouter {
                     if (temp.getContent()!= null && temp.getContent().getContentType() == ContentType.Interest && temp.getContent().getContentId() == aMessage.getContent().getContentId()) {
                         isFinalRecipient = true;
                         Content content = new Content(aMessage.getContent().getContentId(), ContentType.Content, aMessage.getContent().getContentTimeOfCreation(), 0);
-                        Message m1 = new Message(this.getHost(), temp.getFrom(), temp.getId().replace("_interest", ""), aMessage.getSize(), content);
+                        Message m1 = new Message(this.getHost(), temp.getFrom(), temp.getRequestId(), MessageKind.Data, aMessage.getSize(), content);
                         this.getHost().createNewMessage(m1);
                         for (MessageListener ml : this.mListeners) {
                             MessageContentStatsReport report = (MessageContentStatsReport) ml;
@@ -547,33 +855,49 @@ public abstract class MessageRouter {
             // BLOCKED
             
             if (aMessage.getContent() != null && aMessage.getContent().getContentType() == ContentType.Interest) { // Interest
-                boolean isContinue = true;
-                for (Content content : this.host.getContentStore()) {
-                    if (content.getContentId() == aMessage.getContent().getContentId()) {
+                recordContentAccess(aMessage.getContent().getContentId());
+                Content stored = this.host.getContent(aMessage.getContent().getContentId());
+                if (stored != null && aMessage.getContent().isChunk()) {
+                    // a chunk Interest is answered by any host with the chunk
+                    if (canSendChunk(stored, aMessage.getContent().getChunkIndex())) {
                         isFinalRecipient = true;
-                        Content clone = new Content(content.getContentId(), ContentType.Content, content.getContentTimeOfCreation(), (double) 3600, content.getSize());
-                        Message m1 = new Message(this.getHost(), aMessage.getFrom(), aMessage.getId().replace("_interest", ""), content.getSize(), clone);
-                        this.getHost().createNewMessage(m1);
-                        if (content.getIsPublishedContent()) { // this node is publisher
-                            //System.out.println("?" + aMessage.getId() + "?" + content.getContentId() + "?" + this.getHost());
-                            isCacheHit = false;
-                        } else {
-                            isCacheHit = true; // true
+                        createChunkMessage(stored, aMessage.getContent().getChunkIndex(), aMessage);
+                        isCacheHit = !stored.getIsPublishedContent();
+                        if (isCacheHit && this.cachePolicy != null) {
+                            this.cachePolicy.contentAccessed(stored);
                         }
-                        for (MessageListener ml : this.mListeners) {
-                            MessageContentStatsReport report = (MessageContentStatsReport) ml;
-                            isAllowedToMatch = report.setMatchedMessages(aMessage);
+                    }
+                } else if (stored != null && !stored.isComplete()) {
+                    // a partial content answers with the chunks it has, and
+                    // the Interest goes on for the rest
+                    answerInterest(stored, aMessage);
+                    if (this.cachePolicy != null) {
+                        this.cachePolicy.contentAccessed(stored);
+                    }
+                } else if (stored != null) {
+                    isFinalRecipient = true;
+                    createContentMessages(stored, aMessage);
+                    if (stored.getIsPublishedContent()) { // this node is publisher
+                        isCacheHit = false;
+                    } else {
+                        isCacheHit = true;
+                        if (this.cachePolicy != null) {
+                            this.cachePolicy.contentAccessed(stored);
                         }
-                        isContinue = false;
-                        break;
                     }
+                    isAllowedToMatch = markRequestMatched(aMessage);
+                    this.icnEvents.interestMatched(aMessage, this.host,
+                            isAllowedToMatch);
+                }
+                if (isCacheHit || !isFinalRecipient) { // not served by the publisher
+                    reportCacheLookup(aMessage, isCacheHit);
                 }
                 /*if (isContinue) {
                     for (Message temp : this.host.getMessageCollection()) {
                         if (temp.getContent() != null && temp.getContent().getContentType() == ContentType.Advert && temp.getContent().getContentId() == aMessage.getContent().getContentId()) {
                             isFinalRecipient = true;
                             Content clone = new Content(temp.getContent().getContentId(), ContentType.Content, temp.getContent().getContentTimeOfCreation(), (double) 3600, temp.getContent().getSize());
-                            Message m1 = new Message(this.getHost(), aMessage.getFrom(), aMessage.getId().replace("_interest", ""), temp.getSize(), clone);
+                            Message m1 = new Message(this.getHost(), aMessage.getFrom(), aMessage.getRequestId(), MessageKind.Data, temp.getSize(), clone);
                             this.getHost().createNewMessage(m1);
                             isCacheHit = true;
                             for (MessageListener ml : this.mListeners) {
@@ -588,35 +912,48 @@ public abstract class MessageRouter {
                 }*/
             } else if (aMessage.getContent() != null && aMessage.getContent().getContentType() == ContentType.Advert) { // Advertisement
                 storeNewContentToContentStore(aMessage.getContent());
+                int servedRequestId = -1;
                 for (Message temp : this.host.getMessageCollection()) {
                     if (temp.getContent() != null && temp.getContent().getContentType() == ContentType.Interest && temp.getContent().getContentId() == aMessage.getContent().getContentId()) {
                         isFinalRecipient = true;
-                        Content clone = new Content(aMessage.getContent().getContentId(), ContentType.Content, aMessage.getContent().getContentTimeOfCreation(), (double) 3600, aMessage.getContent().getSize());
-                        Message m1 = new Message(this.getHost(), temp.getFrom(), temp.getId().replace("_interest", ""), aMessage.getContent().getSize(), clone);
-                        this.getHost().createNewMessage(m1);
+                        answerInterest(aMessage.getContent(), temp);
                         isCacheHit = true;
-                        for (MessageListener ml : this.mListeners) {
-                            MessageContentStatsReport report = (MessageContentStatsReport) ml;
-                            report.setInterestStats(temp);
-                            isAllowedToMatch = report.setMatchedMessages(temp);
-                        }
+                        servedRequestId = temp.getRequestId();
+                        isAllowedToMatch = markRequestMatched(temp);
+                        this.icnEvents.advertisementMatched(aMessage, temp,
+                                this.host, isAllowedToMatch);
                         break;
                     }
                 } 
+                satisfyPendingInterests(aMessage.getContent(), servedRequestId);
             } 
+
+            boolean isAggregated = false;
+            if (this.pendingInterests != null && !isFinalRecipient && outgoing != null
+                    && aMessage.getContent() != null && aMessage.getContent().getContentType() == ContentType.Interest
+                    && !aMessage.getContent().isChunk()) {
+                isAggregated = !this.pendingInterests.add(aMessage);
+                this.icnEvents.interestPending(aMessage, this.host, isAggregated);
+            }
+
             isFirstDelivery = isFinalRecipient
                     && !isDeliveredMessage(aMessage);
 
-            if (!isFinalRecipient && outgoing != null) {
+            if (isAggregated) {
+                // recorded in the PIT and served when the content passes by,
+                // or forwarded again if the PIT entry expires (see update());
+                // blacklisted meanwhile so that peers don't keep offering it
+                blacklist(incoming);
+            } else if (!isFinalRecipient && outgoing != null) {
                 // not the final recipient and app doesn't want to drop the message
                 // -> put to buffer
                 addToMessages(aMessage, false);
             } else if (isFirstDelivery) {
-                this.deliveredMessages.put(id, aMessage);
+                this.deliveredMessages.put(incoming.getIdIndex(), aMessage);
             } else if (outgoing == null) {
                 // Blacklist messages that an app wants to drop.
                 // Otherwise the peer will just try to send it back again.
-                this.blacklistedMessages.put(id, null);
+                blacklist(incoming);
             }
 
             if (isAllowedToMatch) {
@@ -625,13 +962,14 @@ public abstract class MessageRouter {
                 } else if(aMessage.getContent().getContentType() == ContentType.Content){
                    System.out.println("Advert: " + aMessage.getId()); 
                 }*/
+                this.metrics.messageTransferred(aMessage, isFirstDelivery);
                 for (MessageListener ml : this.mListeners) {
                     ml.messageTransferred(aMessage, from, this.host,
                             isFirstDelivery);
-                    MessageContentStatsReport report = (MessageContentStatsReport) ml;
-                    report.setCacheHitStats(aMessage, isCacheHit);
                 }
+                this.icnEvents.requestServed(aMessage, this.host, isCacheHit);
             } else {
+                this.metrics.messageTransferred(aMessage, false);
                 for (MessageListener ml : this.mListeners) {
                     ml.messageTransferred(aMessage, from, this.host,
                             false);
@@ -642,12 +980,156 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Serves the Interests that are pending for a content that this host has
+     * just received. A content message is created for each pending request
+     * except the one the content was already sent or created for.
+     *
+     * @param content The received content
+     * @param servedRequestId Request id of the Interest the content is for,
+     * or -1 if none
+     */
+    protected void satisfyPendingInterests(Content content, int servedRequestId) {
+        if (this.pendingInterests == null) {
+            return;
+        }
+        for (Message interest : this.pendingInterests.remove(content.getContentId())) {
+            if (interest.getRequestId() == servedRequestId) {
+                continue;
+            }
+            createContentMessages(content, interest);
+            markRequestMatched(interest);
+            this.icnEvents.pendingInterestSatisfied(interest, this.host);
+        }
+    }
+
+    /**
+     * Informs the listeners of an Interest that was sent to a peer whose cache
+     * digest claimed the content of the Interest.
+     *
+     * @param interest The Interest that was sent
+     * @param hit True if the peer really had the content, false if the
+     * claim was a false positive of the digest
+     */
+    protected void reportCacheDigestForward(Message interest, boolean hit) {
+        this.icnEvents.cacheDigestForward(interest, this.host, hit);
+    }
+
+    /**
+     * Creates the content messages that answer an Interest: the requested
+     * chunk for a chunk Interest, otherwise the whole content (see
+     * {@link #createContentMessages(Content, Message)}).
+     *
+     * @param content The cached content
+     * @param interest The Interest to answer
+     */
+    protected void answerInterest(Content content, Message interest) {
+        int index = interest.getContent().getChunkIndex();
+        if (index < 0) {
+            createContentMessages(content, interest);
+        } else if (canSendChunk(content, index)) {
+            createChunkMessage(content, index, interest);
+        }
+    }
+
+    /**
+     * Creates the content messages that answer an Interest. If content
+     * chunking is enabled and the content is larger than a chunk, a message
+     * is created for each chunk; otherwise one message carries the whole
+     * content. Only the cached chunks of a partially cached content are
+     * sent.
+     *
+     * @param content The content
+     * @param interest The Interest to answer
+     */
+    protected void createContentMessages(Content content, Message interest) {
+        if (this.chunkSize == 0 || content.getTotalSize() <= this.chunkSize) {
+            if (content.isComplete()) {
+                Content clone = new Content(content.getContentId(), ContentType.Content, content.getContentTimeOfCreation(), (double) 3600, content.getTotalSize());
+                Message m1 = new Message(this.getHost(), interest.getFrom(), interest.getRequestId(), MessageKind.Data, clone.getSize(), clone);
+                this.getHost().createNewMessage(m1);
+            }
+            return;
+        }
+        int n = Content.nrofChunks(content.getTotalSize(), this.chunkSize);
+        for (int i = 0; i < n; i++) {
+            if (canSendChunk(content, i)) {
+                createChunkMessage(content, i, interest);
+            }
+        }
+    }
+
+    /**
+     * Creates the message of one content chunk that answers an Interest.
+     *
+     * @param content The content (complete or partially cached)
+     * @param index Index of the chunk
+     * @param interest The Interest to answer
+     */
+    protected void createChunkMessage(Content content, int index, Message interest) {
+        Content clone = new Content(content.getContentId(), ContentType.Content, content.getContentTimeOfCreation(), (double) 3600, content.getTotalSize());
+        Content chunk = clone.getChunk(index, this.chunkSize);
+        Message m1 = new Message(this.getHost(), interest.getFrom(), interest.getRequestId(), index, chunk.getSize(), chunk);
+        this.getHost().createNewMessage(m1);
+    }
+
+    /**
+     * Returns true if this host can send a chunk of a cached content. A
+     * partially cached content can only be sent by chunks of the same size
+     * as it was received.
+     *
+     * @param content The cached content
+     * @param index Index of the chunk
+     * @return True if the chunk is cached and chunking is enabled
+     */
+    protected boolean canSendChunk(Content content, int index) {
+        if (this.chunkSize == 0) {
+            return false;
+        }
+        int n = Content.nrofChunks(content.getTotalSize(), this.chunkSize);
+        if (!content.isComplete() && content.getNrofChunks() != n) {
+            return false;
+        }
+        return index >= 0 && index < n && content.hasChunk(index);
+    }
+
     protected void storeNewContentToContentStore(Content content) {
         if (!this.host.hasContainsContent(content) && makeRoomForContent(content)) {
             addToContentStore(content);
         }
     }
 
+    /**
+     * Caches a content chunk. The chunk is added to the partially cached
+     * content in the content store, or a new partial content is stored for
+     * it.
+     *
+     * @param chunk The chunk
+     * @return The content store entry of the chunk's content, or null if
+     * there was no room for the chunk
+     */
+    protected Content storeNewChunkToContentStore(Content chunk) {
+        Content entry = this.host.getContent(chunk.getContentId());
+        if (entry != null && entry.hasChunk(chunk.getChunkIndex())) {
+            return entry;
+        }
+        if (!makeRoomForContent(chunk)) {
+            return null;
+        }
+        /* making room may have removed the partial content */
+        entry = this.host.getContent(chunk.getContentId());
+        if (entry == null) {
+            entry = Content.partialOf(chunk);
+            addToContentStore(entry);
+        } else if (entry.addChunk(chunk)) {
+            if (this.cachePolicy != null && !entry.getIsPublishedContent()) {
+                this.cachePolicy.contentAdded(entry); // the entry grew
+            }
+            this.metrics.chunkStored(entry, chunk);
+        }
+        return entry;
+    }
+
     /**
      * Puts a message to incoming messages buffer. Two messages with the same ID
      * are distinguished by the from host.
@@ -656,7 +1138,34 @@ public abstract class MessageRouter {
      * @param from Who the message was from (previous hop).
      */
     protected void putToIncomingBuffer(Message m, DTNHost from) {
-        this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+        if (this.incomingMessages.put(incomingKey(m.getIdIndex(), from),
+                m) == null) {
+            Integer n = this.nrofIncoming.get(m.getIdIndex());
+            this.nrofIncoming.put(m.getIdIndex(), n == null ? 1 : n + 1);
+        }
+    }
+
+    /**
+     * Blacklists a message so that it isn't accepted again. Protocol
+     * messages are never offered again, so they aren't blacklisted.
+     *
+     * @param m The message
+     */
+    private void blacklist(Message m) {
+        if (m.getIdIndex() >= 0) {
+            this.blacklistedMessages.set(m.getIdIndex());
+        }
+    }
+
+    /**
+     * Returns the incoming buffer key of a message from a host.
+     *
+     * @param idIndex Identifier index of the message
+     * @param from The host that sent the message (previous hop)
+     * @return The key
+     */
+    private static long incomingKey(int idIndex, DTNHost from) {
+        return ((long) idIndex << 32) | (from.getAddress() & 0xFFFFFFFFL);
     }
 
     /**
@@ -668,7 +1177,20 @@ public abstract class MessageRouter {
      * @return The found message or null if such message wasn't found
      */
     protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-        return this.incomingMessages.remove(id + "_" + from.toString());
+        int index = Message.lookupIndex(id);
+        if (index == -1) {
+            return null;
+        }
+        Message m = this.incomingMessages.remove(incomingKey(index, from));
+        if (m != null) {
+            int n = this.nrofIncoming.get(index);
+            if (n == 1) {
+                this.nrofIncoming.remove(index);
+            } else {
+                this.nrofIncoming.put(index, n - 1);
+            }
+        }
+        return m;
     }
 
     /**
@@ -679,7 +1201,7 @@ public abstract class MessageRouter {
      * @return True if such message is incoming right now
      */
     protected boolean isIncomingMessage(String id) {
-        return this.incomingMessages.containsKey(id);
+        return this.nrofIncoming.containsKey(Message.lookupIndex(id));
     }
 
     /**
@@ -691,8 +1213,17 @@ public abstract class MessageRouter {
      * message, if false, nothing is informed.
      */
     protected void addToMessages(Message m, boolean newMessage) {
-        this.messages.put(m.getId(), m);
-
+        Message replaced = this.messages.put(m.getIdIndex(), m);
+        this.metrics.messageAdded(m, replaced, newMessage);
+
+        if (newMessage && this.chunkRequests != null
+                && m.getKind() == MessageKind.Interest && m.getChunk() < 0
+                && m.getFrom() == this.host && m.getContent() != null
+                && !this.chunkRequests.containsKey(
+                        m.getContent().getContentId())) {
+            this.chunkRequests.put(m.getContent().getContentId(),
+                    new ChunkRequest(m));
+        }
         if (newMessage) {
             for (MessageListener ml : this.mListeners) {
                 ml.newMessage(m);
@@ -703,19 +1234,29 @@ public abstract class MessageRouter {
     protected void addToContentStore(Content c) {
         ArrayList<Content> list = new ArrayList<>();
         list.add(c);
-        this.host.addContents(list);
+        if (!this.host.addContents(list)) {
+            return; // the content was already stored
+        }
+        if (this.cachePolicy != null && !c.getIsPublishedContent()) {
+            this.cachePolicy.contentAdded(c);
+        }
+        this.metrics.contentStored(c);
+        this.icnEvents.contentStored(c, this.host);
     }
 
     protected boolean makeRoomForContent(Content newContent) {
         if (newContent.getSize() > this.getCacheSize()) {
             return false; // message too big for the buffer
         }
+        if (!admitContent(newContent)) {
+            return false;
+        }
 
         long freeBuffer = this.getFreeCacheSize();
 
         /* delete messages from the buffer until there's enough space */
         while (freeBuffer < newContent.getSize()) {
-            Content c = getNextContentToRemove(newContent, true); // don't remove msgs being sent
+            Content c = getContentToEvict(newContent);
 
             if (c == null) {
                 return false; // couldn't remove any more messages
@@ -729,6 +1270,111 @@ public abstract class MessageRouter {
         return true;
     }
 
+    /**
+     * Records a request (or an arrival) of a content for cache admission.
+     *
+     * @param contentId Id of the content
+     */
+    protected void recordContentAccess(int contentId) {
+        if (this.admissionSketch != null) {
+            this.admissionSketch.increment(contentId);
+        }
+    }
+
+    /**
+     * Decides if a new content is worth caching when the cache admission is
+     * enabled (see {@link #CACHE_ADMISSION_S}). If the content fits in the
+     * free cache space it is always admitted; otherwise it is admitted only
+     * if it has been accessed more often recently than the content that
+     * {@link #getContentToEvict(Content)} would evict first.
+     * Routers that override {@link #makeRoomForContent(Content)} should call
+     * this before evicting anything.
+     *
+     * @param newContent The content to cache
+     * @return True if the content may be cached, false if not
+     */
+    protected boolean admitContent(Content newContent) {
+        if (this.admissionSketch == null
+                || this.getFreeCacheSize() >= newContent.getSize()) {
+            return true;
+        }
+        Content victim = getContentToEvict(newContent);
+        if (victim == null
+                || victim.getContentId() == newContent.getContentId()) {
+            return true; // nothing to compare to, eviction decides
+        }
+        boolean admitted = this.admissionSketch.frequency(
+                newContent.getContentId())
+                > this.admissionSketch.frequency(victim.getContentId());
+        this.icnEvents.admissionDecided(newContent, this.host, admitted);
+        return admitted;
+    }
+
+    /**
+     * Informs the listeners about an Interest looked up from the cache.
+     *
+     * @param interest The Interest
+     * @param hit True if a cached (not published) content answered it
+     */
+    protected void reportCacheLookup(Message interest, boolean hit) {
+        this.metrics.cacheLookup(hit);
+        this.icnEvents.cacheLookup(interest, this.host, hit);
+    }
+
+    /**
+     * Returns the content to evict next to make room for a new content: the
+     * choice of the configured {@link CachePolicy}, or of
+     * {@link #getNextContentToRemove(Content, boolean)} if there is none.
+     * Routers that override {@link #makeRoomForContent(Content)} should evict
+     * the contents this returns.
+     *
+     * @param newContent The content that needs room
+     * @return The content to evict, or null if nothing should be evicted
+     */
+    protected Content getContentToEvict(Content newContent) {
+        Content stale = getStalePartialContent(newContent);
+        if (stale != null) {
+            return stale;
+        }
+        if (this.cachePolicy != null) {
+            return this.cachePolicy.nextToEvict();
+        }
+        return getNextContentToRemove(newContent, true); // don't remove msgs being sent
+    }
+
+    /**
+     * Returns a partially cached content that hasn't got a new chunk in the
+     * chunk timeout (see {@link #CHUNK_TIMEOUT_S}) and isn't requested by
+     * this host.
+     *
+     * @param newContent The content that needs room
+     * @return The stale content or null if there is none
+     */
+    protected Content getStalePartialContent(Content newContent) {
+        if (this.chunkSize == 0 || this.chunkTimeout == 0) {
+            return null;
+        }
+        double now = SimClock.getTime();
+        for (Content c : this.getContentStore()) {
+            if (!c.isComplete() && !c.getIsPublishedContent()
+                    && c.getContentId() != newContent.getContentId()
+                    && now - c.getLastChunkTime() >= this.chunkTimeout
+                    && !this.chunkRequests.containsKey(c.getContentId())) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the content replacement policy of this router.
+     *
+     * @return The policy, or null if the router decides what to evict
+     */
+    public CachePolicy getCachePolicy() {
+        return this.cachePolicy;
+    }
+
     protected Content getNextContentToRemove(Content newContent, boolean excludeMsgBeingSent) {
         Collection<Content> contentStore = this.getContentStore();
         Content oldest = null;
@@ -747,6 +1393,11 @@ public abstract class MessageRouter {
 
     protected void deleteContent(Content c) {
         this.host.deleteContent(c);
+        if (this.cachePolicy != null) {
+            this.cachePolicy.contentRemoved(c);
+        }
+        this.metrics.contentEvicted(c);
+        this.icnEvents.contentEvicted(c, this.host);
     }
 
     /**
@@ -756,7 +1407,10 @@ public abstract class MessageRouter {
      * @return The removed message or null if message for the ID wasn't found
      */
     protected Message removeFromMessages(String id) {
-        Message m = this.messages.remove(id);
+        Message m = this.messages.remove(Message.lookupIndex(id));
+        if (m != null) {
+            this.metrics.messageRemoved(m);
+        }
         return m;
     }
 
@@ -775,12 +1429,41 @@ public abstract class MessageRouter {
             throw new SimError("No incoming message for id " + id
                     + " to abort in " + this.host);
         }
+        partialMessageReceived(incoming, bytesRemaining);
 
         for (MessageListener ml : this.mListeners) {
             ml.messageTransferAborted(incoming, from, this.host);
         }
     }
 
+    /**
+     * Called (on the receiving host) when the transfer of a message was
+     * aborted, before the message listeners are informed. Routers that can
+     * resume transfers may keep the received part of the message.
+     *
+     * @param incoming The partially received message
+     * @param bytesRemaining Nrof bytes that were left before the transfer
+     * would have been ready; or -1 if the number of bytes is not known
+     */
+    protected void partialMessageReceived(Message incoming, int bytesRemaining) {
+        // nothing to do by default
+    }
+
+    /**
+     * Returns the number of bytes of a message this router already has
+     * from an earlier, aborted transfer, i.e., the offset where a transfer
+     * that has just been accepted with {@link #receiveMessage(Message, DTNHost)}
+     * continues from.
+     *
+     * @param m The message being received
+     * @param from Host the message is from (previous hop)
+     * @return The number of bytes (0 if the transfer starts from the
+     * beginning)
+     */
+    public int getResumeOffset(Message m, DTNHost from) {
+        return 0;
+    }
+
     /**
      * Creates a new message to the router.
      *
@@ -809,6 +1492,16 @@ public abstract class MessageRouter {
             //throw new SimError("no message for id "
             //      + id + " to remove at " + this.host);
         } else {
+            if (drop) {
+                this.metrics.messageDropped();
+            }
+            if (drop && this.pendingInterests != null
+                    && removed.getKind() == MessageKind.Interest
+                    && removed.getContent() != null
+                    && !removed.getContent().isChunk()) {
+                // let the Interests aggregated to it go on
+                this.pendingInterests.release(removed);
+            }
             for (MessageListener ml : this.mListeners) {
                 ml.messageDeleted(removed, this.host, drop);
             }
@@ -984,4 +1677,21 @@ public abstract class MessageRouter {
                 + this.getHost().toString() + " with " + getNrofMessages()
                 + " messages";
     }
+
+    /**
+     * A chunked content requested by this host.
+     */
+    private static class ChunkRequest {
+        /** The Interest that requested the whole content */
+        private final Message interest;
+        /** Time of the last new chunk or re-request */
+        private double lastProgress;
+        /** How many times the missing chunks have been requested */
+        private int retries;
+
+        private ChunkRequest(Message interest) {
+            this.interest = interest;
+            this.lastProgress = SimClock.getTime();
+        }
+    }
 }
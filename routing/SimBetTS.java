@@ -1,6 +1,9 @@
 package routing;
 
 import java.util.*;
+import routing.util.EgoNetwork;
+import routing.util.HostSet;
+import routing.util.PeerStateTable;
 import util.Tuple;
 import core.*;
 
@@ -14,11 +17,19 @@ public class SimBetTS extends ActiveRouter
 	/** identifier for the difference in timer values needed to forward on a message copy */
 	public static final String TIMER_THRESHOLD_S = "transitivityTimerThreshold";
 	/** Message property key for summary vector messages exchanged between direct peers */
-	public static final String SUMMARY_XCHG_PROP = "HelloMessage.protoXchg";
-	public static final String EBC_XCHG_PROP = "SimBetTS.ebcXchg";
-	public static final String Fn_XCHG_PROP = "SimBetTS.FnXchg";
-	public static final String Dn_XCHG_PROP = "SimBetTS.DnXchg";
-	public static final String L_XCHG_PROP = "SimBetTS.LXchg";
+	public static final PropertyKey<Map<DTNHost, EncounterInfo>> SUMMARY_XCHG_PROP =
+		PropertyKey.of("HelloMessage.protoXchg");
+	/** Property carrying the sender's contact set ({@link HostSet}) */
+	public static final PropertyKey<HostSet> CONTACTS_XCHG_PROP =
+		PropertyKey.of("HelloMessage.contacts");
+	public static final PropertyKey<Double> EBC_XCHG_PROP =
+		PropertyKey.ofDouble("SimBetTS.ebcXchg");
+	public static final PropertyKey<Integer> Fn_XCHG_PROP =
+		PropertyKey.ofInt("SimBetTS.FnXchg");
+	public static final PropertyKey<Double> Dn_XCHG_PROP =
+		PropertyKey.ofDouble("SimBetTS.DnXchg");
+	public static final PropertyKey<Double> L_XCHG_PROP =
+		PropertyKey.ofDouble("SimBetTS.LXchg");
 	
 	protected static final String SUMMARY_XCHG_IDPREFIX = "summary";
 	protected static final double defaultTransitivityThreshold = 60.0;
@@ -26,8 +37,9 @@ public class SimBetTS extends ActiveRouter
 	
 	
 	/** Stores information about nodes with which this host has come in contact */
-	protected Map<DTNHost, EncounterInfo> fstHopEncounters;
-	protected Map<DTNHost, Map<DTNHost, EncounterInfo>> secHopEncounters;
+	protected PeerStateTable<EncounterInfo> fstHopEncounters;
+	protected PeerStateTable<Map<DTNHost, EncounterInfo>> secHopEncounters;
+	protected EgoNetwork egoNetwork;
 	
 	// Ego Betweenness Centrality
 	protected double EBC;
@@ -42,8 +54,9 @@ public class SimBetTS extends ActiveRouter
 	{
 		super(s);
 		//Settings setts = new Settings(PROTOCOL_NS);
-		fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
-		secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+		fstHopEncounters = new PeerStateTable<EncounterInfo>();
+		secHopEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+		egoNetwork = new EgoNetwork();
 		
 		EBC = 0.0;
 		Fn = 0;
@@ -59,8 +72,9 @@ public class SimBetTS extends ActiveRouter
 	public SimBetTS(SimBetTS r)
 	{
 		super(r);		
-		fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
-		secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+		fstHopEncounters = new PeerStateTable<EncounterInfo>();
+		secHopEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+		egoNetwork = new EgoNetwork();
 		
 		EBC = 0.0;
 		Fn = 0;
@@ -98,19 +112,22 @@ public class SimBetTS extends ActiveRouter
 		else
 		{
 			fstHopEncounters.put(peer, new EncounterInfo(SimClock.getTime()));
+			egoNetwork.addContact(peer);
 		}
 		
 		if(con.isUp())
 		{
 			// TODO: Update msgSize to reflect SimBetTS contact
-			int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8;
+			int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8
+					+ getCacheDigestSize();
 			
 			Message newMsg = new Message(thisHost, peer, SUMMARY_XCHG_IDPREFIX + protocolMsgIdx++, msgSize, null);
 			newMsg.addProperty(SUMMARY_XCHG_PROP, fstHopEncounters);
-			newMsg.addProperty(EBC_XCHG_PROP, new Double(this.EBC));
-			newMsg.addProperty(Fn_XCHG_PROP, new Integer(this.Fn));
-			newMsg.addProperty(Dn_XCHG_PROP, new Double(this.Dn));
-			newMsg.addProperty(L_XCHG_PROP, new Double(L()));
+			newMsg.addProperty(CONTACTS_XCHG_PROP, egoNetwork.getContacts());
+			newMsg.updateDoubleProperty(EBC_XCHG_PROP, this.EBC);
+			newMsg.updateIntProperty(Fn_XCHG_PROP, this.Fn);
+			newMsg.updateDoubleProperty(Dn_XCHG_PROP, this.Dn);
+			newMsg.updateDoubleProperty(L_XCHG_PROP, L());
 			
 			createNewMessage(newMsg);
 		}
@@ -135,7 +152,7 @@ public class SimBetTS extends ActiveRouter
 		 * Here we update our last encounter times based on the information sent
 		 * from our peer. 
 		 */
-		Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>)m.getProperty(SUMMARY_XCHG_PROP);
+		Map<DTNHost, EncounterInfo> peerEncounters = m.getProperty(SUMMARY_XCHG_PROP);
 		if(isDeliveredMessage(m) && peerEncounters != null)
 		{
 			
@@ -145,13 +162,19 @@ public class SimBetTS extends ActiveRouter
 			 */
 			secHopEncounters.put(from, peerEncounters);
 			EncounterInfo info = fstHopEncounters.get(from);
-			int _sim = similarity(fstHopEncounters.keySet(), secHopEncounters.get(from).keySet());
+			HostSet peerContacts = m.getProperty(CONTACTS_XCHG_PROP);
+			if(peerContacts == null)
+			{
+				peerContacts = new HostSet(peerEncounters.keySet());
+			}
+			egoNetwork.setContactsOf(from, peerContacts);
+			int _sim = egoNetwork.similarity(from);
 			info.setSim(_sim);
                         
-			info.setStats(((Double)m.getProperty(EBC_XCHG_PROP)).doubleValue(), 
-						  ((Integer)m.getProperty(Fn_XCHG_PROP)).intValue(),
-						  ((Double)m.getProperty(Dn_XCHG_PROP)).doubleValue(),
-						  ((Double)m.getProperty(L_XCHG_PROP)).doubleValue());
+			info.setStats(m.getDoubleProperty(EBC_XCHG_PROP), 
+						  m.getIntProperty(Fn_XCHG_PROP),
+						  m.getDoubleProperty(Dn_XCHG_PROP),
+						  m.getDoubleProperty(L_XCHG_PROP));
 			betweenness_update();
 			
 			return m;
@@ -174,7 +197,7 @@ public class SimBetTS extends ActiveRouter
 			return; // ..start of transfer -> no need to reduce amount of copies
 		}
 		
-		if(msg.getProperty(SUMMARY_XCHG_PROP) != null)
+		if(msg.hasProperty(SUMMARY_XCHG_PROP))
 		{
 			deleteMessage(msgId, false);
 			return;
@@ -201,7 +224,7 @@ public class SimBetTS extends ActiveRouter
 
 		for (Message m : getMessageCollection())
 		{
-			if(m.getProperty(SUMMARY_XCHG_PROP) != null) continue;
+			if(m.hasProperty(SUMMARY_XCHG_PROP)) continue;
 			
 			DTNHost dest = m.getTo();
 			Connection toSend = null;
@@ -328,21 +351,7 @@ public class SimBetTS extends ActiveRouter
 	
 	public int similarity(Set<DTNHost> _A, Set<DTNHost> _B)
 	{
-		Object[] A = _A.toArray();
-		Object[] B = _B.toArray();
-		int sim = 0;
-		for (Object _a : A) {
-			DTNHost a = (DTNHost)_a;
-			for (Object _b : B) {
-				DTNHost b = (DTNHost)_b;
-				if (a == b)
-				{
-					sim ++;
-					break;
-				}
-			}
-		}
-		return sim;
+		return new HostSet(_A).andCardinality(new HostSet(_B));
 	}
 	
 	
@@ -350,83 +359,7 @@ public class SimBetTS extends ActiveRouter
 
 	public void betweenness_update ()
 	{
-		int Ni = fstHopEncounters.size();
-		// Adjacency Matrix
-		int A [][] = new int[Ni][Ni];
-		
-		//
-		Object[] fstHopIDs = fstHopEncounters.keySet().toArray();
-		// for each contact in our contact set
-		for (int i = 0; i < Ni; i++)
-		{
-			DTNHost c1 = (DTNHost)fstHopIDs[i];
-			// see if they require us to connect them to our other contacts
-			for (int j = 0; j < Ni; j++)
-			{
-				// dont try to connect them with themselves
-				if (i != j)
-				{
-					DTNHost c2 = (DTNHost)fstHopIDs[j];
-					boolean adj = false;
-					if (secHopEncounters.get(c1) != null){
-						for (Object _c1c : secHopEncounters.get(c1).keySet().toArray())
-						{
-							DTNHost c1c = (DTNHost)_c1c;
-							if (c1c == c2)
-							{
-								adj = true;
-								break;
-							}
-						}
-					}
-					if (adj)
-						A[i][j] = 1;
-					else
-						A[i][j] = 0;	
-				} else {
-					A[i][j] = 0;
-				}
-			}
-		}
-		
-		// A^2
-		double A2 [][] = new double[Ni][Ni];;
-		for (int i = 0; i < Ni; i++)
-		{
-			for (int j = 0; j < Ni; j++)
-			{
-				A2[i][j] = 0;
-				for (int k = 0; k < Ni; k++)
-				{
-					A2[i][j] += A[i][k] * A[k][j];
-				}
-			}
-		}
-		
-		// A^2[1-A]ij
-		double A3 [][] = new double[Ni][Ni];;
-		for (int i = 0; i < Ni; i++)
-		{
-			for (int j = 0; j < Ni; j++)
-			{
-				if (A2[i][j] != 0)
-					A3[i][j] = 1 / A2[i][j];
-			}
-		}
-		
-		// Sum of values for dependant contacts
-		double b = 0.0;
-		for (int i = 0; i < Ni; i++)
-		{
-			for (int j = i+1; j < Ni; j++)
-			{
-				if (A[i][j] == 0)
-					b += A3[i][j];
-			}
-		}
-		//System.out.println("Betttt: " + b);
-		this.EBC = b;
-		
+		this.EBC = egoNetwork.betweenness();
 	}
 	
 	protected void updateFnDn()
@@ -1,6 +1,11 @@
 package routing;
 
 import java.util.*;
+import routing.util.AckTable;
+import routing.util.EgoNetwork;
+import routing.util.HostSet;
+import routing.util.PeerStateTable;
+import routing.util.SentMessageTable;
 import util.Tuple;
 import core.*;
 import java.util.Map.Entry;
@@ -24,11 +29,19 @@ public class SimBetTSSocial extends ActiveRouter {
      * Message property key for summary vector messages exchanged between direct
      * peers
      */
-    public static final String SUMMARY_XCHG_PROP = "HelloMessage.protoXchg";
-    public static final String EBC_XCHG_PROP = "SimBetTS.ebcXchg";
-    public static final String Fn_XCHG_PROP = "SimBetTS.FnXchg";
-    public static final String Dn_XCHG_PROP = "SimBetTS.DnXchg";
-    public static final String L_XCHG_PROP = "SimBetTS.LXchg";
+    public static final PropertyKey<Map<DTNHost, EncounterInfo>> SUMMARY_XCHG_PROP =
+            PropertyKey.of("HelloMessage.protoXchg");
+    /** Property carrying the sender's contact set ({@link HostSet}) */
+    public static final PropertyKey<HostSet> CONTACTS_XCHG_PROP =
+            PropertyKey.of("HelloMessage.contacts");
+    public static final PropertyKey<Double> EBC_XCHG_PROP =
+            PropertyKey.ofDouble("SimBetTS.ebcXchg");
+    public static final PropertyKey<Integer> Fn_XCHG_PROP =
+            PropertyKey.ofInt("SimBetTS.FnXchg");
+    public static final PropertyKey<Double> Dn_XCHG_PROP =
+            PropertyKey.ofDouble("SimBetTS.DnXchg");
+    public static final PropertyKey<Double> L_XCHG_PROP =
+            PropertyKey.ofDouble("SimBetTS.LXchg");
 
     protected static final String SUMMARY_XCHG_IDPREFIX = "summary";
     protected static final double defaultTransitivityThreshold = 60.0;
@@ -37,9 +50,10 @@ public class SimBetTSSocial extends ActiveRouter {
     /**
      * Stores information about nodes with which this host has come in contact
      */
-    protected Map<DTNHost, EncounterInfo> fstHopEncounters;
-    protected Map<DTNHost, Map<DTNHost, EncounterInfo>> secHopEncounters;
-    private Set<String> ackedMessageIds;
+    protected PeerStateTable<EncounterInfo> fstHopEncounters;
+    protected PeerStateTable<Map<DTNHost, EncounterInfo>> secHopEncounters;
+    protected EgoNetwork egoNetwork;
+    private AckTable ackedMessageIds;
 
     // Ego Betweenness Centrality
     protected double EBC;
@@ -50,24 +64,25 @@ public class SimBetTSSocial extends ActiveRouter {
     // Time of Creation
     protected double TOC;
     
-    private Map<DTNHost, Set<String>> sentMessages;
+    private SentMessageTable sentMessages;
 
-    protected Map<DTNHost, ArrayList<Double>> encountersHistory;
+    protected PeerStateTable<ArrayList<Double>> encountersHistory;
 
     public SimBetTSSocial(Settings s) {
         super(s);
         //Settings setts = new Settings(PROTOCOL_NS);
-        fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
-        secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+        fstHopEncounters = new PeerStateTable<EncounterInfo>();
+        secHopEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
 
         EBC = 0.0;
         Fn = 0;
         Dn = 0.0;
         TOC = SimClock.getTime();
 
-        encountersHistory = new HashMap<DTNHost, ArrayList<Double>>();
-        this.sentMessages = new HashMap<DTNHost, Set<String>>();
-        this.ackedMessageIds = new HashSet<String>();
+        encountersHistory = new PeerStateTable<ArrayList<Double>>();
+        this.sentMessages = new SentMessageTable();
+        this.ackedMessageIds = new AckTable();
     }
 
     /**
@@ -77,17 +92,18 @@ public class SimBetTSSocial extends ActiveRouter {
      */
     public SimBetTSSocial(SimBetTSSocial r) {
         super(r);
-        fstHopEncounters = new HashMap<DTNHost, EncounterInfo>();
-        secHopEncounters = new HashMap<DTNHost, Map<DTNHost, EncounterInfo>>();
+        fstHopEncounters = new PeerStateTable<EncounterInfo>();
+        secHopEncounters = new PeerStateTable<Map<DTNHost, EncounterInfo>>();
+        egoNetwork = new EgoNetwork();
 
         EBC = 0.0;
         Fn = 0;
         Dn = 0.0;
         TOC = SimClock.getTime();
 
-        encountersHistory = new HashMap<DTNHost, ArrayList<Double>>();
-        this.sentMessages = new HashMap<DTNHost, Set<String>>();
-        this.ackedMessageIds = new HashSet<String>();
+        encountersHistory = new PeerStateTable<ArrayList<Double>>();
+        this.sentMessages = new SentMessageTable();
+        this.ackedMessageIds = new AckTable();
     }
 
     @Override
@@ -117,18 +133,21 @@ public class SimBetTSSocial extends ActiveRouter {
 
         } else {
             fstHopEncounters.put(peer, new EncounterInfo(SimClock.getTime()));
+            egoNetwork.addContact(peer);
         }
 
         if (con.isUp()) {
             // TODO: Update msgSize to reflect SimBetTS contact
-            int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8;
+            int msgSize = fstHopEncounters.size() * 64 + getMessageCollection().size() * 8
+                    + getCacheDigestSize();
 
             Message newMsg = new Message(thisHost, peer, SUMMARY_XCHG_IDPREFIX + protocolMsgIdx++, msgSize, null);
             newMsg.addProperty(SUMMARY_XCHG_PROP, fstHopEncounters);
-            newMsg.addProperty(EBC_XCHG_PROP, new Double(this.EBC));
-            newMsg.addProperty(Fn_XCHG_PROP, new Integer(this.Fn));
-            newMsg.addProperty(Dn_XCHG_PROP, new Double(this.Dn));
-            newMsg.addProperty(L_XCHG_PROP, new Double(L()));
+            newMsg.addProperty(CONTACTS_XCHG_PROP, egoNetwork.getContacts());
+            newMsg.updateDoubleProperty(EBC_XCHG_PROP, this.EBC);
+            newMsg.updateIntProperty(Fn_XCHG_PROP, this.Fn);
+            newMsg.updateDoubleProperty(Dn_XCHG_PROP, this.Dn);
+            newMsg.updateDoubleProperty(L_XCHG_PROP, L());
 
             createNewMessage(newMsg);
 
@@ -145,17 +164,17 @@ public class SimBetTSSocial extends ActiveRouter {
                 DTNHost otherHost = con.getOtherNode(getHost());
                 SimBetTSSocial otherRouter = (SimBetTSSocial) otherHost.getRouter();
                 
-                this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-                otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+                this.ackedMessageIds.merge(otherRouter.ackedMessageIds, otherHost);
+                otherRouter.ackedMessageIds.merge(this.ackedMessageIds, getHost());
                 deleteAckedMessages();
                 otherRouter.deleteAckedMessages();
             }
         }
     }
     private void deleteAckedMessages() {
-        for (String id : this.ackedMessageIds) {
-            if (this.hasMessage(id) && !isSending(id)) {
-                this.deleteMessage(id, false);
+        for (Message m : getMessageCollection().toArray(new Message[0])) {
+            if (this.ackedMessageIds.contains(m) && !isSending(m.getId())) {
+                this.deleteMessage(m.getId(), false);
             }
         }
     }
@@ -188,11 +207,11 @@ public class SimBetTSSocial extends ActiveRouter {
         double C1 = 0.0;
         double C2 = 0.0;
         int N = encountersHistory.size();
-        for (Entry<DTNHost, ArrayList<Double>> entry : encountersHistory.entrySet()) {
-            C1 += getSocialTieValue(entry.getKey());
+        for (DTNHost peer : encountersHistory.keySet()) {
+            C1 += getSocialTieValue(peer);
         }
-        for (Entry<DTNHost, ArrayList<Double>> entry : encountersHistory.entrySet()) {
-            C2 += Math.pow(getSocialTieValue(entry.getKey()), 2);
+        for (DTNHost peer : encountersHistory.keySet()) {
+            C2 += Math.pow(getSocialTieValue(peer), 2);
         }
         C = (alpha / N) * C1 + ((1 - alpha) / N) * Math.pow(C1, 2) / C2;
         //System.out.printf("%f ",C);
@@ -204,7 +223,7 @@ public class SimBetTSSocial extends ActiveRouter {
         Collection<Message> messages = this.getMessageCollection();
         Message oldest = null;
         for (Message m : messages) {
-            if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+            if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                 continue;
             }
             if (excludeMsgBeingSent && isSending(m.getId())) {
@@ -224,7 +243,7 @@ public class SimBetTSSocial extends ActiveRouter {
         List<Message> validMessages = new ArrayList<Message>();
 
         for (Message m : messages) {
-            if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+            if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                 continue;
             }
             if (excludeMsgBeingSent && isSending(m.getId())) {
@@ -243,7 +262,7 @@ public class SimBetTSSocial extends ActiveRouter {
 		 * Here we update our last encounter times based on the information sent
 		 * from our peer. 
          */
-        Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>) m.getProperty(SUMMARY_XCHG_PROP);
+        Map<DTNHost, EncounterInfo> peerEncounters = m.getProperty(SUMMARY_XCHG_PROP);
         if (isDeliveredMessage(m) && peerEncounters != null) {
 
             /*
@@ -252,15 +271,20 @@ public class SimBetTSSocial extends ActiveRouter {
              */
             secHopEncounters.put(from, peerEncounters);
             EncounterInfo info = fstHopEncounters.get(from);
-            int _sim = similarity(fstHopEncounters.keySet(), secHopEncounters.get(from).keySet());
+            HostSet peerContacts = m.getProperty(CONTACTS_XCHG_PROP);
+            if (peerContacts == null) {
+                peerContacts = new HostSet(peerEncounters.keySet());
+            }
+            egoNetwork.setContactsOf(from, peerContacts);
+            int _sim = egoNetwork.similarity(from);
             info.setSim(_sim);
 
-            info.setStats(((Double) m.getProperty(EBC_XCHG_PROP)).doubleValue(),
-                    ((Integer) m.getProperty(Fn_XCHG_PROP)).intValue(),
-                    ((Double) m.getProperty(Dn_XCHG_PROP)).doubleValue(),
-                    ((Double) m.getProperty(L_XCHG_PROP)).doubleValue());
+            info.setStats(m.getDoubleProperty(EBC_XCHG_PROP),
+                    m.getIntProperty(Fn_XCHG_PROP),
+                    m.getDoubleProperty(Dn_XCHG_PROP),
+                    m.getDoubleProperty(L_XCHG_PROP));
             betweenness_update();
-            this.ackedMessageIds.add(id);
+            this.ackedMessageIds.add(m);
             return m;
         }
 
@@ -278,26 +302,20 @@ public class SimBetTSSocial extends ActiveRouter {
             return; // ..start of transfer -> no need to reduce amount of copies
         }
 
-        if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+        if (m.hasProperty(SUMMARY_XCHG_PROP)) {
             deleteMessage(msgId, false);
             return;
         }
-        String id = m.getId();
         DTNHost recipient = con.getOtherNode(getHost());
-        Set<String> sentMsgIds = this.sentMessages.get(recipient);
 
         /* was the message delivered to the final recipient? */
         if (m.getTo() == recipient) {
-            this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+            this.ackedMessageIds.add(m); // yes, add to ACKed messages
             this.deleteMessage(m.getId(), false); // delete from buffer
         }
 
-        /* update the map of where each message is already sent */
-        if (sentMsgIds == null) {
-            sentMsgIds = new HashSet<String>();
-            this.sentMessages.put(recipient, sentMsgIds);
-        }
-        sentMsgIds.add(id);
+        /* update the table of where each message is already sent */
+        this.sentMessages.add(recipient, m);
 
     }
 
@@ -318,7 +336,7 @@ public class SimBetTSSocial extends ActiveRouter {
         /*List<Tuple<Message, Connection>> forwardlist = new LinkedList<Tuple<Message, Connection>>();
 
         for (Message m : getMessageCollection()) {
-            if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+            if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                 continue;
             }
 
@@ -446,7 +464,6 @@ public class SimBetTSSocial extends ActiveRouter {
         for (Connection con : getConnections()) {
             DTNHost other = con.getOtherNode(getHost());
             SimBetTSSocial othRouter = (SimBetTSSocial) other.getRouter();
-            Set<String> sentMsgIds = this.sentMessages.get(other);
 
             if (othRouter.isTransferring()) {
                 continue; // skip hosts that are transferring
@@ -461,10 +478,10 @@ public class SimBetTSSocial extends ActiveRouter {
                 }
                 /* skip message if this host has already sent it to the other
                  host (regardless of if the other host still has it) */
-                if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+                if (this.sentMessages.contains(other, m)) {
                     continue;
                 }
-                if (m.getProperty(SUMMARY_XCHG_PROP) != null) {
+                if (m.hasProperty(SUMMARY_XCHG_PROP)) {
                     continue;
                 }
                 /* message was a good candidate for sending */
@@ -612,91 +629,11 @@ public class SimBetTSSocial extends ActiveRouter {
     }
 
     public int similarity(Set<DTNHost> _A, Set<DTNHost> _B) {
-        Object[] A = _A.toArray();
-        Object[] B = _B.toArray();
-        int sim = 0;
-        for (Object _a : A) {
-            DTNHost a = (DTNHost) _a;
-            for (Object _b : B) {
-                DTNHost b = (DTNHost) _b;
-                if (a == b) {
-                    sim++;
-                    break;
-                }
-            }
-        }
-        return sim;
+        return new HostSet(_A).andCardinality(new HostSet(_B));
     }
 
     public void betweenness_update() {
-        int Ni = fstHopEncounters.size();
-        // Adjacency Matrix
-        int A[][] = new int[Ni][Ni];
-
-        //
-        Object[] fstHopIDs = fstHopEncounters.keySet().toArray();
-        // for each contact in our contact set
-        for (int i = 0; i < Ni; i++) {
-            DTNHost c1 = (DTNHost) fstHopIDs[i];
-            // see if they require us to connect them to our other contacts
-            for (int j = 0; j < Ni; j++) {
-                // dont try to connect them with themselves
-                if (i != j) {
-                    DTNHost c2 = (DTNHost) fstHopIDs[j];
-                    boolean adj = false;
-                    if (secHopEncounters.get(c1) != null) {
-                        for (Object _c1c : secHopEncounters.get(c1).keySet().toArray()) {
-                            DTNHost c1c = (DTNHost) _c1c;
-                            if (c1c == c2) {
-                                adj = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (adj) {
-                        A[i][j] = 1;
-                    } else {
-                        A[i][j] = 0;
-                    }
-                } else {
-                    A[i][j] = 0;
-                }
-            }
-        }
-
-        // A^2
-        double A2[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                A2[i][j] = 0;
-                for (int k = 0; k < Ni; k++) {
-                    A2[i][j] += A[i][k] * A[k][j];
-                }
-            }
-        }
-
-        // A^2[1-A]ij
-        double A3[][] = new double[Ni][Ni];;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = 0; j < Ni; j++) {
-                if (A2[i][j] != 0) {
-                    A3[i][j] = 1.0 / (double) A2[i][j];
-                }
-            }
-        }
-
-        // Sum of values for dependant contacts
-        double b = 0.0;
-        for (int i = 0; i < Ni; i++) {
-            for (int j = i + 1; j < Ni; j++) {
-                if (A[i][j] == 0) {
-                    b += A3[i][j];
-                }
-            }
-        }
-        //System.out.println("Betttt: " + b);
-        this.EBC = b;
-
+        this.EBC = egoNetwork.betweenness();
     }
 
     protected void updateFnDn() {
@@ -13,9 +13,11 @@ public class SprayAndFocusRouter extends ActiveRouter
 	/** identifier for the difference in timer values needed to forward on a message copy */
 	public static final String TIMER_THRESHOLD_S = "transitivityTimerThreshold";
 	/** Message property key for the remaining available copies of a message */
-	public static final String MSG_COUNT_PROP = "SprayAndFocus.copies";
+	public static final PropertyKey<Integer> MSG_COUNT_PROP =
+		PropertyKey.ofInt("SprayAndFocus.copies");
 	/** Message property key for summary vector messages exchanged between direct peers */
-	public static final String SUMMARY_XCHG_PROP = "SprayAndFocus.protoXchg";
+	public static final PropertyKey<Map<DTNHost, EncounterInfo>> SUMMARY_XCHG_PROP =
+		PropertyKey.of("SprayAndFocus.protoXchg");
 	
 	protected static final String SUMMARY_XCHG_IDPREFIX = "summary";
 	protected static final double defaultTransitivityThreshold = 60.0;
@@ -105,7 +107,8 @@ public class SprayAndFocusRouter extends ActiveRouter
 		 * access to the peers we recently encountered; so we duplicate the recentEncounters
 		 * Map and attach it to a message.
 		 */
-		int msgSize = recentEncounters.size() * 64 + getMessageCollection().size() * 8;
+		int msgSize = recentEncounters.size() * 64 + getMessageCollection().size() * 8
+				+ getCacheDigestSize();
 		Message newMsg = new Message(thisHost, peer, SUMMARY_XCHG_IDPREFIX + protocolMsgIdx++, msgSize, null);
 		newMsg.addProperty(SUMMARY_XCHG_PROP, /*new HashMap<DTNHost, EncounterInfo>(*/recentEncounters);
 		
@@ -117,7 +120,7 @@ public class SprayAndFocusRouter extends ActiveRouter
 	{
 		makeRoomForNewMessage(m.getSize());
 
-		m.addProperty(MSG_COUNT_PROP, new Integer(initialNrofCopies));
+		m.addProperty(MSG_COUNT_PROP, initialNrofCopies);
 		addToMessages(m, true);
 		return true;
 	}
@@ -131,7 +134,7 @@ public class SprayAndFocusRouter extends ActiveRouter
 		 * Here we update our last encounter times based on the information sent
 		 * from our peer. 
 		 */
-		Map<DTNHost, EncounterInfo> peerEncounters = (Map<DTNHost, EncounterInfo>)m.getProperty(SUMMARY_XCHG_PROP);
+		Map<DTNHost, EncounterInfo> peerEncounters = m.getProperty(SUMMARY_XCHG_PROP);
 		if(isDeliveredMessage(m) && peerEncounters != null)
 		{
 			double distTo = getHost().getLocation().distance(from.getLocation());
@@ -182,11 +185,11 @@ public class SprayAndFocusRouter extends ActiveRouter
 		
 		//Normal message beyond here
 		
-		Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROP);
+		int nrofCopies = m.getIntProperty(MSG_COUNT_PROP);
 		
 		nrofCopies = (int)Math.ceil(nrofCopies/2.0);
 		
-		m.updateProperty(MSG_COUNT_PROP, nrofCopies);
+		m.updateIntProperty(MSG_COUNT_PROP, nrofCopies);
 		
 		return m;
 	}
@@ -194,7 +197,7 @@ public class SprayAndFocusRouter extends ActiveRouter
 	@Override
 	protected void transferDone(Connection con) 
 	{
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
@@ -203,7 +206,7 @@ public class SprayAndFocusRouter extends ActiveRouter
 			return; // ..start of transfer -> no need to reduce amount of copies
 		}
 		
-		if(msg.getProperty(SUMMARY_XCHG_PROP) != null)
+		if(msg.hasProperty(SUMMARY_XCHG_PROP))
 		{
 			deleteMessage(msgId, false);
 			return;
@@ -214,13 +217,13 @@ public class SprayAndFocusRouter extends ActiveRouter
 		 * we apparently just transferred the msg (focus phase), then we should
 		 * delete it. 
 		 */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROP);
+		nrofCopies = msg.getIntProperty(MSG_COUNT_PROP);
 		if(nrofCopies > 1)
 			nrofCopies /= 2;
 		else
 			deleteMessage(msgId, false);
 		
-		msg.updateProperty(MSG_COUNT_PROP, nrofCopies);
+		msg.updateIntProperty(MSG_COUNT_PROP, nrofCopies);
 	}
 	
 	
@@ -243,11 +246,9 @@ public class SprayAndFocusRouter extends ActiveRouter
 
 		for (Message m : getMessageCollection())
 		{
-			if(m.getProperty(SUMMARY_XCHG_PROP) != null) continue;
+			if(m.hasProperty(SUMMARY_XCHG_PROP)) continue;
 			
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROP);
-			assert nrofCopies != null : "SnF message " + m + " didn't have " + 
-				"nrof copies property!";
+			int nrofCopies = m.getIntProperty(MSG_COUNT_PROP);
 			if (nrofCopies > 1)
 			{
 				spraylist.add(m);
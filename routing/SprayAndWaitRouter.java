@@ -10,6 +10,7 @@ import java.util.List;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.PropertyKey;
 import core.Settings;
 
 /**
@@ -26,8 +27,8 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	/** SprayAndWait router's settings name space ({@value})*/
 	public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
 	/** Message property key */
-	public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." +
-		"copies";
+	public static final PropertyKey<Integer> MSG_COUNT_PROPERTY =
+		PropertyKey.ofInt(SPRAYANDWAIT_NS + ".copies");
 
 	protected int initialNrofCopies;
 	protected boolean isBinary;
@@ -58,9 +59,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message msg = super.messageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-
-		assert nrofCopies != null : "Not a SnW message: " + msg;
+		int nrofCopies = msg.getIntProperty(MSG_COUNT_PROPERTY);
 
 		if (isBinary) {
 			/* in binary S'n'W the receiving node gets ceil(n/2) copies */
@@ -71,7 +70,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			nrofCopies = 1;
 		}
 
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.updateIntProperty(MSG_COUNT_PROPERTY, nrofCopies);
 		return msg;
 	}
 
@@ -80,7 +79,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		makeRoomForNewMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+		msg.addProperty(MSG_COUNT_PROPERTY, initialNrofCopies);
 		addToMessages(msg, true);
 		return true;
 	}
@@ -116,9 +115,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		List<Message> list = new ArrayList<Message>();
 
 		for (Message m : getMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "SnW message " + m + " didn't have " +
-				"nrof copies property!";
+			int nrofCopies = m.getIntProperty(MSG_COUNT_PROPERTY);
 			if (nrofCopies > 1) {
 				list.add(m);
 			}
@@ -136,7 +133,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	 */
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
@@ -146,14 +143,14 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getIntProperty(MSG_COUNT_PROPERTY);
 		if (isBinary) {
 			nrofCopies /= 2;
 		}
 		else {
 			nrofCopies--;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.updateIntProperty(MSG_COUNT_PROPERTY, nrofCopies);
 	}
 
 	@Override
@@ -0,0 +1,176 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import core.Content;
+import core.Settings;
+
+/**
+ * Adaptive replacement cache (N. Megiddo and D. Modha: "ARC: A Self-Tuning,
+ * Low Overhead Replacement Cache", 2003), with the list sizes measured in
+ * bytes. Contents requested once since they were cached are in the recency
+ * list T1 and contents requested again in the frequency list T2. Ghost lists
+ * B1 and B2 remember the ids of the contents recently evicted from T1 and
+ * T2; caching a content that is in a ghost list moves the target size of T1
+ * towards the list that would have kept it. All the operations take
+ * constant time.
+ */
+public class ARCCachePolicy implements CachePolicy {
+    private long capacity;
+    /** target size of T1 (bytes) */
+    private long target;
+
+    private LinkedHashMap<Integer, Content> t1;
+    private LinkedHashMap<Integer, Content> t2;
+    /** ghost lists: sizes of the evicted contents by id, oldest first */
+    private LinkedHashMap<Integer, Integer> b1;
+    private LinkedHashMap<Integer, Integer> b2;
+    /** sizes of the cached contents by id */
+    private HashMap<Integer, Integer> sizes;
+    private long t1Bytes;
+    private long t2Bytes;
+    private long b1Bytes;
+    private long b2Bytes;
+
+    public ARCCachePolicy(Settings s) {
+        this.t1 = new LinkedHashMap<Integer, Content>();
+        this.t2 = new LinkedHashMap<Integer, Content>();
+        this.b1 = new LinkedHashMap<Integer, Integer>();
+        this.b2 = new LinkedHashMap<Integer, Integer>();
+        this.sizes = new HashMap<Integer, Integer>();
+    }
+
+    public void init(long capacity) {
+        this.capacity = capacity;
+        this.target = 0;
+        t1.clear();
+        t2.clear();
+        b1.clear();
+        b2.clear();
+        sizes.clear();
+        t1Bytes = t2Bytes = b1Bytes = b2Bytes = 0;
+    }
+
+    public void contentAdded(Content c) {
+        int id = c.getContentId();
+        int size = c.getSize();
+        Integer old = sizes.put(id, size);
+        if (old != null) { // only the size changed
+            if (t1.containsKey(id)) {
+                t1Bytes += size - old;
+            } else {
+                t2Bytes += size - old;
+            }
+            return;
+        }
+
+        Integer ghost = b1.remove(id);
+        if (ghost != null) { // T1 was too small for this one
+            b1Bytes -= ghost;
+            long delta = b1Bytes > 0 ? Math.max(size, size * b2Bytes / b1Bytes)
+                    : size;
+            target = Math.min(capacity, target + delta);
+            putT2(id, c, size);
+        } else if ((ghost = b2.remove(id)) != null) { // T2 was too small
+            b2Bytes -= ghost;
+            long delta = b2Bytes > 0 ? Math.max(size, size * b1Bytes / b2Bytes)
+                    : size;
+            target = Math.max(0, target - delta);
+            putT2(id, c, size);
+        } else {
+            t1.put(id, c);
+            t1Bytes += size;
+        }
+        trimGhosts();
+    }
+
+    public void contentAccessed(Content c) {
+        int id = c.getContentId();
+        Content e = t1.remove(id);
+        if (e != null) {
+            int size = sizes.get(id);
+            t1Bytes -= size;
+            putT2(id, e, size);
+        } else if ((e = t2.remove(id)) != null) {
+            t2.put(id, e); // to the most recent end
+        }
+    }
+
+    public void contentRemoved(Content c) {
+        int id = c.getContentId();
+        Integer size = sizes.remove(id);
+        if (size == null) {
+            return;
+        }
+        if (t1.remove(id) != null) {
+            t1Bytes -= size;
+            b1.put(id, size);
+            b1Bytes += size;
+        } else {
+            t2.remove(id);
+            t2Bytes -= size;
+            b2.put(id, size);
+            b2Bytes += size;
+        }
+        trimGhosts();
+    }
+
+    public Content nextToEvict() {
+        if (!t1.isEmpty() && (t1Bytes > target || t2.isEmpty())) {
+            return t1.values().iterator().next();
+        } else if (!t2.isEmpty()) {
+            return t2.values().iterator().next();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the target size of the recency list.
+     *
+     * @return The target (bytes)
+     */
+    public long getTarget() {
+        return target;
+    }
+
+    public CachePolicy replicate() {
+        return new ARCCachePolicy((Settings) null);
+    }
+
+    private void putT2(int id, Content c, int size) {
+        t2.put(id, c);
+        t2Bytes += size;
+    }
+
+    /**
+     * Drops the oldest ghosts so that T1 and B1 together, and all the lists
+     * together, stay within the capacity and twice the capacity.
+     */
+    private void trimGhosts() {
+        b1Bytes -= trim(b1, b1Bytes - Math.max(0, capacity - t1Bytes));
+        b2Bytes -= trim(b2, t1Bytes + t2Bytes + b1Bytes + b2Bytes
+                - 2 * capacity);
+    }
+
+    /**
+     * Removes the oldest ghosts from a list until at least the given number
+     * of bytes has been removed or the list is empty.
+     *
+     * @return The number of bytes removed
+     */
+    private static long trim(LinkedHashMap<Integer, Integer> ghosts,
+            long excess) {
+        long removed = 0;
+        Iterator<Integer> i = ghosts.values().iterator();
+        while (removed < excess && i.hasNext()) {
+            removed += i.next();
+            i.remove();
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.cache;
+
+import core.Content;
+
+/**
+ * Interface for content store replacement policies. A router informs its
+ * policy about the contents it caches, the cache hits and the contents it
+ * removes, and asks the policy which content to evict when it needs room.
+ * Contents published by the host are never given to the policy, so they are
+ * never evicted.
+ * <P>
+ * Implementations are selected with the router's
+ * {@link routing.MessageRouter#CACHE_POLICY_S} setting and must have a
+ * constructor that takes a {@link core.Settings} object. Each router gets
+ * its own replica of the configured policy.
+ */
+public interface CachePolicy {
+
+    /**
+     * Initializes the policy for a cache.
+     *
+     * @param capacity Size of the cache (bytes)
+     */
+    public void init(long capacity);
+
+    /**
+     * Called when a content is put to the content store. If the content is
+     * already tracked (e.g., a partially cached content got a new chunk),
+     * only its size is updated.
+     *
+     * @param c The content
+     */
+    public void contentAdded(Content c);
+
+    /**
+     * Called when a cached content answers a request.
+     *
+     * @param c The content
+     */
+    public void contentAccessed(Content c);
+
+    /**
+     * Called when a content is removed from the content store.
+     *
+     * @param c The content
+     */
+    public void contentRemoved(Content c);
+
+    /**
+     * Returns the content that should be evicted next. The content is not
+     * removed from the policy until {@link #contentRemoved(Content)} is
+     * called for it.
+     *
+     * @return The content, or null if there is nothing to evict
+     */
+    public Content nextToEvict();
+
+    /**
+     * Creates an empty policy with the same configuration.
+     *
+     * @return The replica
+     */
+    public CachePolicy replicate();
+}
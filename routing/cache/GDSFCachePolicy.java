@@ -0,0 +1,29 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.cache;
+
+import core.Settings;
+
+/**
+ * Greedy-Dual-Size-Frequency replacement (L. Cherkasova: "Improving WWW
+ * Proxies Performance with Greedy-Dual-Size-Frequency Caching Policy", 1998):
+ * evicts the content with the lowest request count per byte plus the
+ * inflation value, so small popular contents are kept in favour of large
+ * ones. Every content has the same cost, which optimizes the hit ratio.
+ */
+public class GDSFCachePolicy extends PriorityCachePolicy {
+
+    public GDSFCachePolicy(Settings s) {
+        super();
+    }
+
+    @Override
+    protected double priority(double inflation, int frequency, int size) {
+        return inflation + (double) frequency / Math.max(1, size);
+    }
+
+    public CachePolicy replicate() {
+        return new GDSFCachePolicy((Settings) null);
+    }
+}
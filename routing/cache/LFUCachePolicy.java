@@ -0,0 +1,27 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.cache;
+
+import core.Settings;
+
+/**
+ * Least frequently used replacement with dynamic aging (LFU-DA): evicts the
+ * content with the lowest request count plus the inflation value at the
+ * time of its latest request. Ties are broken by recency.
+ */
+public class LFUCachePolicy extends PriorityCachePolicy {
+
+    public LFUCachePolicy(Settings s) {
+        super();
+    }
+
+    @Override
+    protected double priority(double inflation, int frequency, int size) {
+        return inflation + frequency;
+    }
+
+    public CachePolicy replicate() {
+        return new LFUCachePolicy((Settings) null);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.cache;
+
+import java.util.LinkedHashMap;
+
+import core.Content;
+import core.Settings;
+
+/**
+ * Least recently used replacement: evicts the content that has been added
+ * or requested least recently. All the operations take constant time.
+ */
+public class LRUCachePolicy implements CachePolicy {
+    /** contents by id, least recently used first */
+    private LinkedHashMap<Integer, Content> contents;
+
+    public LRUCachePolicy(Settings s) {
+        this.contents = new LinkedHashMap<Integer, Content>(16, 0.75f, true);
+    }
+
+    public void init(long capacity) {
+        this.contents.clear();
+    }
+
+    public void contentAdded(Content c) {
+        if (!contents.containsKey(c.getContentId())) {
+            contents.put(c.getContentId(), c);
+        }
+    }
+
+    public void contentAccessed(Content c) {
+        contents.get(c.getContentId()); // moves to the most recent end
+    }
+
+    public void contentRemoved(Content c) {
+        contents.remove(c.getContentId());
+    }
+
+    public Content nextToEvict() {
+        if (contents.isEmpty()) {
+            return null;
+        }
+        return contents.values().iterator().next();
+    }
+
+    public CachePolicy replicate() {
+        return new LRUCachePolicy((Settings) null);
+    }
+}
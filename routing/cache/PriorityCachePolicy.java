@@ -0,0 +1,121 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.cache;
+
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import core.Content;
+
+/**
+ * Superclass for replacement policies that evict the content with the lowest
+ * priority, where the priority depends on how often the content has been
+ * requested. The policies age with an inflation value (dynamic aging): the
+ * priority of an evicted content becomes the base of the priorities computed
+ * after it, so contents that were popular long ago are eventually evicted
+ * too. The contents are kept in a sorted set, so the operations take
+ * O(log n) time.
+ */
+public abstract class PriorityCachePolicy implements CachePolicy {
+    /** contents ordered by priority, lowest first */
+    private TreeSet<Entry> queue;
+    private HashMap<Integer, Entry> entries;
+    /** priority of the latest evicted content */
+    private double inflation;
+    private long nextSeq;
+
+    protected PriorityCachePolicy() {
+        this.queue = new TreeSet<Entry>();
+        this.entries = new HashMap<Integer, Entry>();
+    }
+
+    /**
+     * Returns the priority of a content.
+     *
+     * @param inflation The current inflation value
+     * @param frequency How many times the content has been cached or
+     * requested since it was cached
+     * @param size Size of the content
+     * @return The priority
+     */
+    protected abstract double priority(double inflation, int frequency,
+            int size);
+
+    public void init(long capacity) {
+        this.queue.clear();
+        this.entries.clear();
+        this.inflation = 0;
+        this.nextSeq = 0;
+    }
+
+    public void contentAdded(Content c) {
+        Entry e = entries.get(c.getContentId());
+        if (e == null) {
+            e = new Entry(c);
+            entries.put(c.getContentId(), e);
+        } else {
+            queue.remove(e);
+            e.content = c;
+        }
+        update(e);
+    }
+
+    public void contentAccessed(Content c) {
+        Entry e = entries.get(c.getContentId());
+        if (e == null) {
+            return;
+        }
+        queue.remove(e);
+        e.frequency++;
+        update(e);
+    }
+
+    public void contentRemoved(Content c) {
+        Entry e = entries.remove(c.getContentId());
+        if (e == null) {
+            return;
+        }
+        if (e == queue.first()) {
+            inflation = e.priority; // evicted, age the rest
+        }
+        queue.remove(e);
+    }
+
+    public Content nextToEvict() {
+        return queue.isEmpty() ? null : queue.first().content;
+    }
+
+    /**
+     * Returns the current inflation value.
+     *
+     * @return The priority of the latest evicted content
+     */
+    public double getInflation() {
+        return inflation;
+    }
+
+    private void update(Entry e) {
+        e.priority = priority(inflation, e.frequency, e.content.getSize());
+        e.seq = nextSeq++;
+        queue.add(e);
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private Content content;
+        private int frequency;
+        private double priority;
+        /** order of updates, to break ties (least recent first) */
+        private long seq;
+
+        Entry(Content content) {
+            this.content = content;
+            this.frequency = 1;
+        }
+
+        public int compareTo(Entry e) {
+            int c = Double.compare(priority, e.priority);
+            return c != 0 ? c : Long.compare(seq, e.seq);
+        }
+    }
+}
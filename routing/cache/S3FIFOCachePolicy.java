@@ -0,0 +1,222 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import core.Content;
+import core.Settings;
+
+/**
+ * S3-FIFO replacement (J. Yang et al.: "FIFO queues are all you need for
+ * cache eviction", 2023). New contents go to a small FIFO queue that takes
+ * {@value #SMALL_SHARE} of the capacity; the ones that are requested again
+ * before they reach its head move to the main FIFO queue, the rest are
+ * evicted and remembered in a ghost queue. A content that is cached again
+ * while in the ghost queue goes straight to the main queue. The main queue
+ * is a FIFO with reinsertion: a content at its head that has been requested
+ * is moved back to the tail with its request count decremented.
+ * <P>
+ * {@link #nextToEvict()} only looks for the victim; the promotions and
+ * reinsertions that lead to it are done when the victim is removed before
+ * the cache changes otherwise, so asking for a victim (e.g. for cache
+ * admission) doesn't change the queues. The victim is looked up in time
+ * linear to the number of requested contents at the heads of the queues and
+ * remembered until the cache changes; the other operations take amortized
+ * constant time.
+ */
+public class S3FIFOCachePolicy implements CachePolicy {
+    /** Share of the capacity for the small queue */
+    public static final double SMALL_SHARE = 0.1;
+    /** Largest request count kept for a content */
+    public static final int MAX_FREQUENCY = 3;
+
+    private long capacity;
+    private LinkedHashMap<Integer, Entry> small;
+    private LinkedHashMap<Integer, Entry> main;
+    /** sizes of the contents evicted from the small queue, oldest first */
+    private LinkedHashMap<Integer, Integer> ghost;
+    private HashMap<Integer, Entry> entries;
+    private long smallBytes;
+    private long ghostBytes;
+    /** the next content to evict, or null if it hasn't been looked up
+     * since the last change */
+    private Entry victim;
+
+    public S3FIFOCachePolicy(Settings s) {
+        this.small = new LinkedHashMap<Integer, Entry>();
+        this.main = new LinkedHashMap<Integer, Entry>();
+        this.ghost = new LinkedHashMap<Integer, Integer>();
+        this.entries = new HashMap<Integer, Entry>();
+    }
+
+    public void init(long capacity) {
+        this.capacity = capacity;
+        small.clear();
+        main.clear();
+        ghost.clear();
+        entries.clear();
+        smallBytes = ghostBytes = 0;
+        victim = null;
+    }
+
+    public void contentAdded(Content c) {
+        victim = null;
+        int id = c.getContentId();
+        Entry e = entries.get(id);
+        if (e != null) { // only the size changed
+            if (e.inSmall) {
+                smallBytes += c.getSize() - e.size;
+            }
+            e.content = c;
+            e.size = c.getSize();
+            return;
+        }
+        e = new Entry(c);
+        entries.put(id, e);
+        Integer ghostSize = ghost.remove(id);
+        if (ghostSize != null) {
+            ghostBytes -= ghostSize;
+            main.put(id, e);
+        } else {
+            e.inSmall = true;
+            small.put(id, e);
+            smallBytes += e.size;
+        }
+    }
+
+    public void contentAccessed(Content c) {
+        victim = null;
+        Entry e = entries.get(c.getContentId());
+        if (e != null && e.frequency < MAX_FREQUENCY) {
+            e.frequency++;
+        }
+    }
+
+    public void contentRemoved(Content c) {
+        int id = c.getContentId();
+        Entry e = entries.get(id);
+        if (e == null) {
+            return;
+        }
+        if (e == victim) {
+            rotateToVictim(); // evicted: pass the contents before it
+        }
+        victim = null;
+        entries.remove(id);
+        if (e.inSmall) {
+            small.remove(id);
+            smallBytes -= e.size;
+            ghost.put(id, e.size);
+            ghostBytes += e.size;
+            /* the ghost queue remembers about as much as the main queue */
+            long excess = ghostBytes - (long) (capacity * (1 - SMALL_SHARE));
+            Iterator<Integer> i = ghost.values().iterator();
+            while (excess > 0 && i.hasNext()) {
+                int size = i.next();
+                i.remove();
+                ghostBytes -= size;
+                excess -= size;
+            }
+        } else {
+            main.remove(id);
+        }
+    }
+
+    public Content nextToEvict() {
+        Entry e = findVictim();
+        return e != null ? e.content : null;
+    }
+
+    /**
+     * Returns the entry {@link #rotateToVictim()} would stop at without
+     * changing the queues: the first content of the small queue that hasn't
+     * been requested while the small queue is evicted from, otherwise the
+     * first content of the main queue with the smallest request count
+     * (contents promoted from the small queue come after the main queue's
+     * contents with no requests).
+     */
+    private Entry findVictim() {
+        if (victim != null) {
+            return victim;
+        }
+        long bytes = smallBytes;
+        boolean mainEmpty = main.isEmpty();
+        Entry promoted = null;
+        for (Entry e : small.values()) {
+            if (bytes < capacity * SMALL_SHARE && !mainEmpty) {
+                break;
+            }
+            if (e.frequency == 0) {
+                return victim = e;
+            }
+            bytes -= e.size;
+            mainEmpty = false;
+            if (promoted == null) {
+                promoted = e;
+            }
+        }
+        Entry least = null;
+        for (Entry e : main.values()) {
+            if (e.frequency == 0) {
+                return victim = e;
+            }
+            if (least == null || e.frequency < least.frequency) {
+                least = e;
+            }
+        }
+        return victim = (promoted != null ? promoted : least);
+    }
+
+    /**
+     * Promotes and reinserts the contents at the heads of the queues until
+     * a content with no requests is at the head of the queue to evict from.
+     */
+    private void rotateToVictim() {
+        while (true) {
+            if (!small.isEmpty() && (smallBytes >= capacity * SMALL_SHARE
+                    || main.isEmpty())) {
+                Entry e = small.values().iterator().next();
+                if (e.frequency == 0) {
+                    return;
+                }
+                /* requested while in the small queue: promote */
+                small.remove(e.content.getContentId());
+                smallBytes -= e.size;
+                e.inSmall = false;
+                e.frequency = 0;
+                main.put(e.content.getContentId(), e);
+            } else if (!main.isEmpty()) {
+                Entry e = main.values().iterator().next();
+                if (e.frequency == 0) {
+                    return;
+                }
+                /* requested since the last pass: reinsert at the tail */
+                main.remove(e.content.getContentId());
+                e.frequency--;
+                main.put(e.content.getContentId(), e);
+            } else {
+                return;
+            }
+        }
+    }
+
+    public CachePolicy replicate() {
+        return new S3FIFOCachePolicy((Settings) null);
+    }
+
+    private static class Entry {
+        private Content content;
+        private int size;
+        private int frequency;
+        private boolean inSmall;
+
+        Entry(Content content) {
+            this.content = content;
+            this.size = content.getSize();
+        }
+    }
+}
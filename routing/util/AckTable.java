@@ -0,0 +1,178 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Set of acknowledged (delivered) messages for routers that spread delivery
+ * acknowledgements, like MaxProp. Messages are identified by their
+ * {@link Message#getIdIndex() identifier index} and membership is kept in a
+ * bit vector, one bit per message identifier.
+ * <P>
+ * Acknowledgements are also kept in a log in the order they were learned,
+ * together with the expiry time of the acknowledged message. The log has
+ * two uses:
+ * <UL>
+ * <LI>Acknowledgements are dropped once the message's TTL has passed, since
+ * no router can hold a copy of the message after that.</LI>
+ * <LI>{@link #merge(AckTable, DTNHost)} remembers how far into each peer's
+ * log it has read and only goes through the entries added after that.</LI>
+ * </UL>
+ */
+public class AckTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** identifier indexes of the acknowledged messages */
+    private BitSet acked;
+    /** log of identifier indexes in the order they were added */
+    private int[] ids;
+    /** expiry times of the messages in the log */
+    private double[] expiryTimes;
+    /** index of the oldest live log entry */
+    private int head;
+    /** index one past the newest log entry */
+    private int tail;
+    /** sequence number of the entry at head (never decreases) */
+    private long headSeq;
+    /** next sequence number to read from each peer's log, by address */
+    private long[] cursors;
+
+    /**
+     * Creates an empty table.
+     */
+    public AckTable() {
+        this.acked = new BitSet();
+        this.ids = new int[INITIAL_CAPACITY];
+        this.expiryTimes = new double[INITIAL_CAPACITY];
+        this.head = 0;
+        this.tail = 0;
+        this.headSeq = 0;
+        this.cursors = new long[0];
+    }
+
+    /**
+     * Adds an acknowledgement for a message.
+     *
+     * @param m The delivered message
+     * @return True if the message was not acknowledged before (always false
+     * for protocol messages, which are not acknowledged)
+     */
+    public boolean add(Message m) {
+        return add(m.getIdIndex(), m.getExpiryTime());
+    }
+
+    private boolean add(int id, double expiryTime) {
+        if (id < 0) {
+            return false; // protocol messages are not acknowledged
+        }
+        if (acked.get(id)) {
+            return false;
+        }
+        acked.set(id);
+        if (tail == ids.length) {
+            makeRoom();
+        }
+        ids[tail] = id;
+        expiryTimes[tail] = expiryTime;
+        tail++;
+        return true;
+    }
+
+    /**
+     * Returns true if the message has been acknowledged.
+     *
+     * @param m The message
+     * @return True if the message is in the table
+     */
+    public boolean contains(Message m) {
+        return m.getIdIndex() >= 0 && acked.get(m.getIdIndex());
+    }
+
+    /**
+     * Returns the number of acknowledgements in the table.
+     *
+     * @return The number of acknowledgements
+     */
+    public int size() {
+        return tail - head;
+    }
+
+    /**
+     * Adds the acknowledgements that the other table has learned since the
+     * last merge from it. Expired acknowledgements are dropped from this
+     * table first and are not copied from the other one.
+     *
+     * @param other The table to merge from
+     * @param otherHost The host the other table belongs to
+     * @return The number of new acknowledgements added to this table
+     */
+    public int merge(AckTable other, DTNHost otherHost) {
+        expire();
+        double now = SimClock.getTime();
+        int address = otherHost.getAddress();
+        if (address >= cursors.length) {
+            cursors = Arrays.copyOf(cursors,
+                Math.max(address + 1, 2 * cursors.length));
+        }
+
+        long from = Math.max(cursors[address], other.headSeq);
+        int added = 0;
+        for (int i = other.head + (int) (from - other.headSeq);
+                i < other.tail; i++) {
+            if (other.expiryTimes[i] >= now &&
+                    add(other.ids[i], other.expiryTimes[i])) {
+                added++;
+            }
+        }
+        cursors[address] = other.headSeq + (other.tail - other.head);
+        return added;
+    }
+
+    /**
+     * Drops the acknowledgements of expired messages from the front of the
+     * log. Entries are learned roughly in expiry order, so an expired entry
+     * may stay behind a newer one for at most one message TTL.
+     */
+    public void expire() {
+        double now = SimClock.getTime();
+        while (head < tail && expiryTimes[head] < now) {
+            acked.clear(ids[head]);
+            head++;
+            headSeq++;
+        }
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+        }
+    }
+
+    /**
+     * Makes room for a new log entry by either moving the live entries to
+     * the beginning of the arrays or growing the arrays.
+     */
+    private void makeRoom() {
+        int live = tail - head;
+        if (head > 0 && live <= ids.length / 2) {
+            System.arraycopy(ids, head, ids, 0, live);
+            System.arraycopy(expiryTimes, head, expiryTimes, 0, live);
+        }
+        else {
+            int[] newIds = new int[2 * ids.length];
+            double[] newTimes = new double[2 * ids.length];
+            System.arraycopy(ids, head, newIds, 0, live);
+            System.arraycopy(expiryTimes, head, newTimes, 0, live);
+            ids = newIds;
+            expiryTimes = newTimes;
+        }
+        head = 0;
+        tail = live;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.SimClock;
+
+/**
+ * Estimates how likely a node's buffer is to become congested (full) again,
+ * from the history of its congestion periods. The node reports whether its
+ * buffer is full whenever it checks a message it is about to receive; a
+ * congestion period starts when the buffer becomes full and ends when it
+ * has room again. The level is 1 while congested, 0 if the buffer has never
+ * been full, and otherwise grows with the time since the latest congestion
+ * relative to the average congestion cycle (duration + gap).
+ * <P>
+ * Only the sums and counts of the durations and gaps are kept, and the level
+ * is computed at most once per simulation time step, so asking the level
+ * of every peer in dense contacts takes constant time.
+ */
+public class CongestionEstimator {
+    /** time when the node started */
+    private double startTime;
+    /** time from the start to the first congestion, -1 before it */
+    private double freeTime;
+    private boolean congested;
+    private int nrofCongestions;
+    private double congestionStart;
+    private double congestionEnd;
+
+    private double durationSum;
+    private int nrofDurations;
+    private double gapSum;
+    private int nrofGaps;
+
+    /** the latest computed level and the time it was computed for */
+    private double level;
+    private double levelTime;
+
+    /**
+     * Creates an estimator for a node with an empty buffer.
+     *
+     * @param startTime Time when the node started
+     */
+    public CongestionEstimator(double startTime) {
+        this.startTime = startTime;
+        this.freeTime = -1;
+        this.congestionStart = -1;
+        this.congestionEnd = -1;
+        this.levelTime = Double.NaN;
+    }
+
+    /**
+     * Updates the congestion state with the buffer state at the current
+     * simulation time.
+     *
+     * @param full True if the buffer is full (has no room for the message
+     * being received), false if not
+     */
+    public void bufferChecked(boolean full) {
+        if (full == congested) {
+            return;
+        }
+        double now = SimClock.getTime();
+        congested = full;
+        if (full) {
+            nrofCongestions++;
+            congestionStart = now;
+            if (congestionEnd > 0) {
+                gapSum += congestionStart - congestionEnd;
+                nrofGaps++;
+            }
+            if (freeTime == -1) {
+                freeTime = congestionStart - startTime;
+            }
+        } else {
+            congestionEnd = now;
+            durationSum += congestionEnd - congestionStart;
+            nrofDurations++;
+        }
+        levelTime = Double.NaN;
+    }
+
+    /**
+     * Returns true if the buffer is currently congested.
+     *
+     * @return True if the latest buffer check found the buffer full
+     */
+    public boolean isCongested() {
+        return congested;
+    }
+
+    /**
+     * Returns how many times the buffer has become congested.
+     *
+     * @return The number of congestion periods
+     */
+    public int getNrofCongestions() {
+        return nrofCongestions;
+    }
+
+    /**
+     * Returns the congestion level at the current simulation time.
+     *
+     * @return The congestion level
+     */
+    public double getLevel() {
+        double now = SimClock.getTime();
+        if (now != levelTime) {
+            level = computeLevel(now);
+            levelTime = now;
+        }
+        return level;
+    }
+
+    private double computeLevel(double now) {
+        if (congested) {
+            return 1;
+        } else if (nrofCongestions == 0) {
+            return 0;
+        }
+
+        double recency = now - congestionEnd;
+        double averageDuration = durationSum / nrofDurations;
+        double averageGap = nrofGaps > 0 ? gapSum / nrofGaps : 0;
+        double timeWindow = averageDuration + averageGap;
+        if (recency - averageGap >= timeWindow) {
+            double n = nrofCongestions + freeTime / timeWindow +
+                    (recency - averageGap) / timeWindow;
+            double lambda = nrofCongestions / n;
+            return (((recency - averageGap) % timeWindow) * lambda) /
+                    (Math.exp(lambda) * timeWindow);
+        } else {
+            double n = nrofCongestions + freeTime / timeWindow;
+            double lambda = nrofCongestions / n;
+            return (Math.abs(recency - averageGap) * lambda) /
+                    (Math.exp(lambda) * timeWindow);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.DTNHost;
+
+/**
+ * Ego network of a host as seen by the social routers (SimBetTS family):
+ * the set of hosts the ego has encountered and, for those of them that
+ * have sent a summary, the contact set of that neighbour. All sets are
+ * {@link HostSet}s, so similarity, common neighbour and ego betweenness
+ * queries are word-parallel AND/popcount operations.
+ * <P>
+ * Neighbour contact sets are kept by reference, i.e., if a neighbour hands
+ * out its live {@link #getContacts()} set, later contacts it makes are seen
+ * here too (like the encounter maps that were exchanged before).
+ */
+public class EgoNetwork {
+
+    /** hosts the ego has encountered */
+    private HostSet contacts;
+    /** contact sets reported by the neighbours */
+    private PeerStateTable<HostSet> neighbourContacts;
+
+    /** scratch rows/columns of the adjacency matrix for betweenness() */
+    private HostSet[] rows;
+    private HostSet[] cols;
+
+    /**
+     * Creates an empty ego network.
+     */
+    public EgoNetwork() {
+        this.contacts = new HostSet();
+        this.neighbourContacts = new PeerStateTable<HostSet>();
+        this.rows = new HostSet[0];
+        this.cols = new HostSet[0];
+    }
+
+    /**
+     * Adds a host to the ego's contact set.
+     *
+     * @param host The encountered host
+     */
+    public void addContact(DTNHost host) {
+        contacts.add(host);
+    }
+
+    /**
+     * Returns true if the host is in the ego's contact set.
+     *
+     * @param host The host to check
+     * @return True if the ego has encountered the host
+     */
+    public boolean isContact(DTNHost host) {
+        return contacts.contains(host);
+    }
+
+    /**
+     * Returns the ego's (live) contact set.
+     *
+     * @return The ego's contact set
+     */
+    public HostSet getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Sets the contact set of a neighbour.
+     *
+     * @param neighbour The neighbour
+     * @param nc The neighbour's contacts (stored by reference)
+     */
+    public void setContactsOf(DTNHost neighbour, HostSet nc) {
+        neighbourContacts.put(neighbour, nc);
+    }
+
+    /**
+     * Returns the contact set of a neighbour.
+     *
+     * @param neighbour The neighbour
+     * @return The neighbour's contacts or null if it has not reported any
+     */
+    public HostSet getContactsOf(DTNHost neighbour) {
+        return neighbourContacts.get(neighbour);
+    }
+
+    /**
+     * Forgets the contact set of a neighbour.
+     *
+     * @param neighbour The neighbour
+     */
+    public void removeContactsOf(DTNHost neighbour) {
+        neighbourContacts.remove(neighbour);
+    }
+
+    /**
+     * Returns the number of contacts the ego has in common with a set.
+     *
+     * @param other The set to compare with
+     * @return Size of the intersection of the ego's contacts and the set
+     */
+    public int similarity(HostSet other) {
+        return contacts.andCardinality(other);
+    }
+
+    /**
+     * Returns the number of contacts the ego has in common with a neighbour.
+     *
+     * @param neighbour The neighbour
+     * @return Number of common contacts, or 0 if the neighbour's contacts are
+     * not known
+     */
+    public int similarity(DTNHost neighbour) {
+        HostSet nc = neighbourContacts.get(neighbour);
+        return nc == null ? 0 : similarity(nc);
+    }
+
+    /**
+     * Returns the number of contacts two neighbours have in common.
+     *
+     * @param a The first neighbour
+     * @param b The second neighbour
+     * @return Number of common contacts, or 0 if either neighbour's contacts
+     * are not known
+     */
+    public int commonNeighbours(DTNHost a, DTNHost b) {
+        HostSet na = neighbourContacts.get(a);
+        HostSet nb = neighbourContacts.get(b);
+        if (na == null || nb == null) {
+            return 0;
+        }
+        return na.andCardinality(nb);
+    }
+
+    /**
+     * Computes the ego betweenness centrality: the sum, over all pairs of the
+     * ego's contacts that are not directly connected, of 1/(number of two-hop
+     * paths between them inside the ego network). The adjacency matrix A over
+     * the contacts is directed (i -> j if j is in the contact set i reported)
+     * and the two-hop path counts are the entries of A<SUP>2</SUP>, computed
+     * as popcount(row<SUB>i</SUB> AND column<SUB>j</SUB>).
+     *
+     * @return The ego betweenness
+     */
+    public double betweenness() {
+        int first = contacts.nextSetBit(0);
+        if (first < 0) {
+            return 0.0;
+        }
+        ensureScratch(contacts.length());
+
+        for (int i = first; i >= 0; i = contacts.nextSetBit(i + 1)) {
+            cols[i].clear();
+        }
+        for (int i = first; i >= 0; i = contacts.nextSetBit(i + 1)) {
+            HostSet row = rows[i];
+            HostSet nc = neighbourContacts.get(i);
+            if (nc == null) {
+                row.clear();
+                continue;
+            }
+            row.setAnd(nc, contacts);
+            row.remove(i);
+            for (int k = row.nextSetBit(0); k >= 0; k = row.nextSetBit(k + 1)) {
+                cols[k].add(i);
+            }
+        }
+
+        double b = 0.0;
+        for (int i = first; i >= 0; i = contacts.nextSetBit(i + 1)) {
+            HostSet row = rows[i];
+            for (int j = contacts.nextSetBit(i + 1); j >= 0;
+                    j = contacts.nextSetBit(j + 1)) {
+                if (row.contains(j)) {
+                    continue; // directly connected
+                }
+                int paths = row.andCardinality(cols[j]);
+                if (paths != 0) {
+                    b += 1.0 / paths;
+                }
+            }
+        }
+        return b;
+    }
+
+    private void ensureScratch(int n) {
+        if (rows.length >= n) {
+            return;
+        }
+        HostSet[] newRows = new HostSet[n];
+        HostSet[] newCols = new HostSet[n];
+        System.arraycopy(rows, 0, newRows, 0, rows.length);
+        System.arraycopy(cols, 0, newCols, 0, cols.length);
+        for (int i = rows.length; i < n; i++) {
+            newRows[i] = new HostSet(n);
+            newCols[i] = new HostSet(n);
+        }
+        rows = newRows;
+        cols = newCols;
+    }
+}
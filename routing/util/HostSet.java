@@ -0,0 +1,242 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import core.DTNHost;
+
+/**
+ * Set of hosts stored as a bitset over {@link DTNHost#getAddress()}. Host
+ * addresses are small dense integers (0..N-1), so a plain array of 64 bit
+ * words is as compact as any container based scheme and lets intersections
+ * be computed a word at a time with {@link Long#bitCount(long)}.
+ * <P>
+ * Only the addresses are stored; use a {@link PeerStateTable} if the host
+ * objects themselves are needed.
+ */
+public class HostSet {
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+    private long[] words;
+
+    /**
+     * Creates an empty set.
+     */
+    public HostSet() {
+        this(BITS_PER_WORD);
+    }
+
+    /**
+     * Creates an empty set that can hold the given number of addresses
+     * before it has to grow.
+     *
+     * @param nrofAddresses Initial address capacity
+     */
+    public HostSet(int nrofAddresses) {
+        this.words = new long[wordIndex(Math.max(nrofAddresses, 1) - 1) + 1];
+    }
+
+    /**
+     * Creates a set that contains the given hosts.
+     *
+     * @param hosts The hosts to add
+     */
+    public HostSet(Collection<DTNHost> hosts) {
+        this();
+        for (DTNHost h : hosts) {
+            add(h.getAddress());
+        }
+    }
+
+    private static int wordIndex(int address) {
+        return address >> ADDRESS_BITS_PER_WORD;
+    }
+
+    private void ensureCapacity(int nrofWords) {
+        if (words.length < nrofWords) {
+            words = Arrays.copyOf(words, Math.max(nrofWords, 2 * words.length));
+        }
+    }
+
+    /**
+     * Adds an address to the set.
+     *
+     * @param address The address to add
+     * @return True if the address was not in the set before
+     */
+    public boolean add(int address) {
+        int w = wordIndex(address);
+        ensureCapacity(w + 1);
+        long mask = 1L << address;
+        boolean added = (words[w] & mask) == 0;
+        words[w] |= mask;
+        return added;
+    }
+
+    /**
+     * Adds a host to the set.
+     *
+     * @param host The host to add
+     * @return True if the host was not in the set before
+     */
+    public boolean add(DTNHost host) {
+        return add(host.getAddress());
+    }
+
+    /**
+     * Removes an address from the set.
+     *
+     * @param address The address to remove
+     */
+    public void remove(int address) {
+        int w = wordIndex(address);
+        if (w < words.length) {
+            words[w] &= ~(1L << address);
+        }
+    }
+
+    /**
+     * Returns true if the address is in the set.
+     *
+     * @param address The address to check
+     * @return True if the address is in the set
+     */
+    public boolean contains(int address) {
+        int w = wordIndex(address);
+        return address >= 0 && w < words.length &&
+            (words[w] & (1L << address)) != 0;
+    }
+
+    /**
+     * Returns true if the host is in the set.
+     *
+     * @param host The host to check
+     * @return True if the host is in the set
+     */
+    public boolean contains(DTNHost host) {
+        return contains(host.getAddress());
+    }
+
+    /**
+     * Returns the number of addresses in the set.
+     *
+     * @return The number of addresses in the set
+     */
+    public int cardinality() {
+        int n = 0;
+        for (long word : words) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    /**
+     * Returns one past the highest address in the set.
+     *
+     * @return The highest address plus one, or 0 if the set is empty
+     */
+    public int length() {
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                return w * BITS_PER_WORD + BITS_PER_WORD -
+                    Long.numberOfLeadingZeros(words[w]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if the set has no addresses.
+     *
+     * @return True if the set is empty
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all addresses from the set.
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * Returns the smallest address in the set that is equal to or larger
+     * than <code>from</code>. Addresses can be iterated with
+     * <code>for (int a = s.nextSetBit(0); a >= 0; a = s.nextSetBit(a+1))</code>.
+     *
+     * @param from The address to start from
+     * @return The next address in the set or -1 if there are no more
+     */
+    public int nextSetBit(int from) {
+        int w = wordIndex(from);
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return w * BITS_PER_WORD + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    /**
+     * Returns the size of the intersection of this set and the given set
+     * without creating the intersection.
+     *
+     * @param other The other set
+     * @return Number of addresses that are in both sets
+     */
+    public int andCardinality(HostSet other) {
+        int n = Math.min(words.length, other.words.length);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the contents of this set with the intersection of the two
+     * given sets.
+     *
+     * @param a The first set
+     * @param b The second set
+     */
+    public void setAnd(HostSet a, HostSet b) {
+        int n = Math.min(a.words.length, b.words.length);
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            words[i] = a.words[i] & b.words[i];
+        }
+        Arrays.fill(words, n, words.length, 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int a = nextSetBit(0); a >= 0; a = nextSetBit(a + 1)) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(a);
+        }
+        return sb.append('}').toString();
+    }
+}
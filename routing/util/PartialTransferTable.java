@@ -0,0 +1,123 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import core.SimClock;
+
+/**
+ * Table of partially received messages for resuming aborted transfers. For
+ * each message (by {@link core.Message#getIdIndex()}) the table records how
+ * many bytes of it were received before the transfer was aborted, so that
+ * the next transfer of the same message can continue from there instead of
+ * starting from zero.
+ * <P>
+ * The table is bounded: entries expire a given time after the (latest)
+ * abort, and when the table is full the oldest entry is dropped to make
+ * room for a new one.
+ */
+public class PartialTransferTable {
+
+    /** received byte counts by message id index, oldest first */
+    private Map<Integer, Entry> entries;
+    private int maxEntries;
+    private double timeout;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param maxEntries Maximum number of partial messages to keep
+     * @param timeout How long (seconds) a partial message is kept
+     */
+    public PartialTransferTable(int maxEntries, double timeout) {
+        this.entries = new LinkedHashMap<Integer, Entry>();
+        this.maxEntries = maxEntries;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Records the received part of an aborted message. If the message was
+     * already partially received, the larger byte count is kept.
+     *
+     * @param idIndex Id index of the message
+     * @param bytes Number of bytes received
+     * @return The number of bytes of other partial messages that had to be
+     * dropped to make room for this one
+     */
+    public int put(int idIndex, int bytes) {
+        expire();
+        Entry old = entries.remove(idIndex);
+        if (old != null && old.bytes > bytes) {
+            bytes = old.bytes;
+        }
+
+        int dropped = 0;
+        Iterator<Entry> i = entries.values().iterator();
+        while (entries.size() >= maxEntries && i.hasNext()) {
+            dropped += i.next().bytes;
+            i.remove();
+        }
+        if (maxEntries > 0) {
+            entries.put(idIndex, new Entry(bytes,
+                    SimClock.getTime() + timeout));
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the number of bytes received of a message.
+     *
+     * @param idIndex Id index of the message
+     * @return The number of bytes, or 0 if the message is not in the table
+     */
+    public int get(int idIndex) {
+        expire();
+        Entry e = entries.get(idIndex);
+        return e == null ? 0 : e.bytes;
+    }
+
+    /**
+     * Removes a message from the table (e.g., when it has been received).
+     *
+     * @param idIndex Id index of the message
+     * @return The number of bytes that were recorded, or 0 if none
+     */
+    public int remove(int idIndex) {
+        Entry e = entries.remove(idIndex);
+        return e == null ? 0 : e.bytes;
+    }
+
+    /**
+     * Returns the number of partial messages in the table.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops the expired entries from the front of the table.
+     */
+    private void expire() {
+        double now = SimClock.getTime();
+        Iterator<Entry> i = entries.values().iterator();
+        while (i.hasNext() && i.next().expiryTime < now) {
+            i.remove();
+        }
+    }
+
+    private static class Entry {
+        private int bytes;
+        private double expiryTime;
+
+        Entry(int bytes, double expiryTime) {
+            this.bytes = bytes;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import core.DTNHost;
+
+/**
+ * Per-peer state container for routers. Values are stored in dense arrays
+ * indexed by {@link DTNHost#getAddress()}, so lookups are a bounds check and
+ * an array load instead of an identity hash lookup. Slots are grown lazily up
+ * to the highest address that has been stored.
+ * <P>
+ * The class implements the {@link Map} interface so that existing router code
+ * written against <code>Map&lt;DTNHost, V&gt;</code> keeps working; the key
+ * set, value collection and entry set are live views that do not copy the
+ * table, and the entries' <code>setValue</code> writes through to it.
+ * Null values are not supported (storing null removes the mapping).
+ *
+ * @param <V> Type of the per-peer value
+ */
+public class PeerStateTable<V> extends AbstractMap<DTNHost, V> {
+
+    /** Initial number of slots if no capacity hint is given */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /** hosts of the occupied slots (null for free slots) */
+    private DTNHost[] hosts;
+    /** values of the slots, indexed by host address */
+    private Object[] values;
+    /** number of occupied slots */
+    private int size;
+    /** one past the highest occupied address (iteration bound) */
+    private int limit;
+
+    private KeySet keySet;
+    private Values valueCollection;
+    private EntrySet entrySet;
+
+    /**
+     * Creates an empty table with the default capacity.
+     */
+    public PeerStateTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param capacity Initial number of address slots (e.g., the number of
+     * hosts in the scenario, if known)
+     */
+    public PeerStateTable(int capacity) {
+        if (capacity < 1) {
+            capacity = 1;
+        }
+        this.hosts = new DTNHost[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+        this.limit = 0;
+    }
+
+    /**
+     * Copy constructor. Makes a shallow copy of the given table.
+     *
+     * @param t The table to copy
+     */
+    public PeerStateTable(PeerStateTable<V> t) {
+        this.hosts = Arrays.copyOf(t.hosts, t.hosts.length);
+        this.values = Arrays.copyOf(t.values, t.values.length);
+        this.size = t.size;
+        this.limit = t.limit;
+    }
+
+    /**
+     * Returns the value stored for the host with the given address.
+     *
+     * @param address Network address of the host
+     * @return The value or null if there is no value for the address
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int address) {
+        if (address < 0 || address >= limit) {
+            return null;
+        }
+        return (V) values[address];
+    }
+
+    /**
+     * Returns true if the table has a value for the given address.
+     *
+     * @param address Network address of the host
+     * @return True if a value is stored for the address
+     */
+    public boolean containsAddress(int address) {
+        return address >= 0 && address < limit && hosts[address] != null;
+    }
+
+    /**
+     * Returns the host of the given slot, or null if the slot is free.
+     *
+     * @param address Network address of the host
+     * @return The host stored in the slot or null
+     */
+    public DTNHost getHost(int address) {
+        if (address < 0 || address >= limit) {
+            return null;
+        }
+        return hosts[address];
+    }
+
+    /**
+     * Returns one past the highest address that currently has a value. Can be
+     * used as the upper bound when iterating over addresses with
+     * {@link #get(int)} without allocating an iterator.
+     *
+     * @return Upper (exclusive) bound of the occupied addresses
+     */
+    public int addressLimit() {
+        return limit;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof DTNHost)) {
+            return null;
+        }
+        return get(((DTNHost) key).getAddress());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof DTNHost)) {
+            return false;
+        }
+        DTNHost h = (DTNHost) key;
+        int address = h.getAddress();
+        return address >= 0 && address < limit && hosts[address] == h;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(DTNHost host, V value) {
+        if (value == null) {
+            return remove(host);
+        }
+        int address = host.getAddress();
+        ensureCapacity(address + 1);
+
+        V old = (V) values[address];
+        if (hosts[address] == null) {
+            size++;
+        }
+        hosts[address] = host;
+        values[address] = value;
+        if (address >= limit) {
+            limit = address + 1;
+        }
+        return old;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (!(key instanceof DTNHost)) {
+            return null;
+        }
+        int address = ((DTNHost) key).getAddress();
+        if (address < 0 || address >= limit || hosts[address] == null) {
+            return null;
+        }
+        V old = (V) values[address];
+        hosts[address] = null;
+        values[address] = null;
+        size--;
+
+        while (limit > 0 && hosts[limit - 1] == null) {
+            limit--;
+        }
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(hosts, 0, limit, null);
+        Arrays.fill(values, 0, limit, null);
+        size = 0;
+        limit = 0;
+    }
+
+    @Override
+    public Set<DTNHost> keySet() {
+        if (keySet == null) {
+            keySet = new KeySet();
+        }
+        return keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        if (valueCollection == null) {
+            valueCollection = new Values();
+        }
+        return valueCollection;
+    }
+
+    @Override
+    public Set<Map.Entry<DTNHost, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * Grows the slot arrays so that at least <code>minCapacity</code>
+     * addresses fit.
+     *
+     * @param minCapacity Required number of slots
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= hosts.length) {
+            return;
+        }
+        int newCapacity = Math.max(minCapacity, hosts.length * 2);
+        hosts = Arrays.copyOf(hosts, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+    }
+
+    /**
+     * Iterator over the occupied slots in address order.
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+
+        private int next;
+        private int current;
+
+        SlotIterator() {
+            this.current = -1;
+            this.next = advance(0);
+        }
+
+        private int advance(int from) {
+            while (from < limit && hosts[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        public boolean hasNext() {
+            return next < limit;
+        }
+
+        protected int nextSlot() {
+            if (next >= limit) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = advance(next + 1);
+            return current;
+        }
+
+        public void remove() {
+            if (current < 0 || hosts[current] == null) {
+                throw new IllegalStateException();
+            }
+            PeerStateTable.this.remove(hosts[current]);
+            current = -1;
+        }
+    }
+
+    private class KeySet extends AbstractSet<DTNHost> {
+
+        @Override
+        public Iterator<DTNHost> iterator() {
+            return new SlotIterator<DTNHost>() {
+                public DTNHost next() {
+                    return hosts[nextSlot()];
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private class Values extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            return new SlotIterator<V>() {
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    return (V) values[nextSlot()];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<DTNHost, V>> {
+
+        @Override
+        public Iterator<Map.Entry<DTNHost, V>> iterator() {
+            return new SlotIterator<Map.Entry<DTNHost, V>>() {
+                @SuppressWarnings("unchecked")
+                public Map.Entry<DTNHost, V> next() {
+                    return new Entry(nextSlot());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Entry of a slot. {@link #setValue(Object)} writes through to the
+     * table; setting a null value is not supported.
+     */
+    private class Entry extends SimpleEntry<DTNHost, V> {
+        private static final long serialVersionUID = 1L;
+        private final int slot;
+
+        @SuppressWarnings("unchecked")
+        Entry(int slot) {
+            super(hosts[slot], (V) values[slot]);
+            this.slot = slot;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) {
+                throw new NullPointerException("Null values are not supported");
+            }
+            if (hosts[slot] != getKey()) {
+                throw new IllegalStateException("Entry was removed");
+            }
+            values[slot] = value;
+            return super.setValue(value);
+        }
+    }
+}
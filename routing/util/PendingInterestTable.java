@@ -0,0 +1,197 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import core.Message;
+import core.SimClock;
+
+/**
+ * Pending Interest Table (PIT) for Interest aggregation. The table records,
+ * per content id, the Interests a node has seen but could not satisfy. The
+ * first Interest for a content id is forwarded as usual; Interests from other
+ * requests for the same content id are only recorded ("aggregated") until the
+ * content comes back through the node, and then served all at once.
+ * <P>
+ * An entry lives as long as the TTL of the Interest that was forwarded for
+ * it. When an entry expires, or its forwarded Interest is dropped, the
+ * aggregated Interests are released so that the router can forward them
+ * again (see {@link #expire()}).
+ */
+public class PendingInterestTable {
+
+    /** pending Interests by content id; the first one is the forwarded one */
+    private Map<Integer, Entry> entries;
+    /** time before which no entry expires */
+    private double nextExpiry;
+
+    /**
+     * Creates an empty table.
+     */
+    public PendingInterestTable() {
+        this.entries = new HashMap<Integer, Entry>();
+        this.nextExpiry = Double.MAX_VALUE;
+    }
+
+    /**
+     * Records an Interest. If the entry for the content id has expired, the
+     * Interest replaces its forwarded Interest and the aggregated Interests
+     * that are still alive stay pending for it.
+     *
+     * @param interest The Interest message
+     * @return True if the Interest should be forwarded (it is the first
+     * pending Interest for its content id, or a copy of it), false if it was
+     * aggregated to an earlier Interest for the same content
+     */
+    public boolean add(Message interest) {
+        int contentId = interest.getContent().getContentId();
+        Entry e = entries.get(contentId);
+        if (e == null) {
+            put(contentId, new Entry(interest));
+            return true;
+        }
+        if (e.isExpired()) {
+            Entry renewed = new Entry(interest);
+            for (Message m : e.getAggregated()) {
+                if (m.getRequestId() != interest.getRequestId()) {
+                    renewed.interests.add(m);
+                }
+            }
+            put(contentId, renewed);
+            return true;
+        }
+        if (e.interests.get(0).getRequestId() == interest.getRequestId()) {
+            return true;
+        }
+        for (Message m : e.interests) {
+            if (m.getRequestId() == interest.getRequestId()) {
+                return false; // already aggregated
+            }
+        }
+        e.interests.add(interest);
+        return false;
+    }
+
+    /**
+     * Returns true if there are pending Interests for the content id.
+     *
+     * @param contentId The content id
+     * @return True if the content is pending
+     */
+    public boolean contains(int contentId) {
+        Entry e = entries.get(contentId);
+        return e != null && !e.isExpired();
+    }
+
+    /**
+     * Removes and returns the pending Interests of a content id, the
+     * forwarded one first. Interests whose TTL has run out are left out.
+     *
+     * @param contentId The content id
+     * @return The pending Interests (an empty list if there are none)
+     */
+    public List<Message> remove(int contentId) {
+        Entry e = entries.remove(contentId);
+        if (e == null) {
+            return Collections.emptyList();
+        }
+        return alive(e.interests);
+    }
+
+    /**
+     * Expires the entry of a forwarded Interest, e.g., when the Interest is
+     * dropped, so that the Interests aggregated to it are released by the
+     * next {@link #expire()}.
+     *
+     * @param forwarded The forwarded Interest
+     */
+    public void release(Message forwarded) {
+        Entry e = entries.get(forwarded.getContent().getContentId());
+        if (e != null && e.interests.get(0).getRequestId() ==
+                forwarded.getRequestId()) {
+            e.expiryTime = -1;
+            nextExpiry = -1;
+        }
+    }
+
+    /**
+     * Returns the number of content ids with pending Interests.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops the entries whose forwarded Interest has expired and returns the
+     * Interests that were aggregated to them.
+     *
+     * @return The aggregated Interests of the dropped entries that are
+     * still alive
+     */
+    public List<Message> expire() {
+        double now = SimClock.getTime();
+        if (now <= nextExpiry) {
+            return Collections.emptyList();
+        }
+        List<Message> released = new ArrayList<Message>();
+        nextExpiry = Double.MAX_VALUE;
+        Iterator<Entry> i = entries.values().iterator();
+        while (i.hasNext()) {
+            Entry e = i.next();
+            if (e.expiryTime < now) {
+                released.addAll(e.getAggregated());
+                i.remove();
+            } else {
+                nextExpiry = Math.min(nextExpiry, e.expiryTime);
+            }
+        }
+        return released;
+    }
+
+    private void put(int contentId, Entry e) {
+        entries.put(contentId, e);
+        nextExpiry = Math.min(nextExpiry, e.expiryTime);
+    }
+
+    /**
+     * Returns the Interests of a list whose TTL hasn't run out.
+     */
+    private static List<Message> alive(List<Message> interests) {
+        double now = SimClock.getTime();
+        List<Message> alive = new ArrayList<Message>(interests.size());
+        for (Message m : interests) {
+            if (m.getExpiryTime() >= now) {
+                alive.add(m);
+            }
+        }
+        return alive;
+    }
+
+    private static class Entry {
+        private double expiryTime;
+        private List<Message> interests;
+
+        Entry(Message forwarded) {
+            this.expiryTime = forwarded.getExpiryTime();
+            this.interests = new ArrayList<Message>(2);
+            this.interests.add(forwarded);
+        }
+
+        boolean isExpired() {
+            return expiryTime < SimClock.getTime();
+        }
+
+        List<Message> getAggregated() {
+            return alive(interests.subList(1, interests.size()));
+        }
+    }
+}
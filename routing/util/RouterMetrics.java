@@ -0,0 +1,179 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import core.Content;
+import core.Message;
+import core.MetricsRegistry;
+import core.MetricsRegistry.Counter;
+import core.MetricsRegistry.Gauge;
+import core.MetricsRegistry.Histogram;
+import core.SimClock;
+
+/**
+ * The metrics of the message routers and their content stores in the
+ * {@link MetricsRegistry}. All the routers share the metrics, so the values
+ * are totals over the hosts.
+ */
+public class RouterMetrics {
+    /** Upper bounds of the buckets of the delivery delay histogram
+     * (seconds) */
+    public static final double[] DELAY_BUCKETS = {60, 300, 600, 1800, 3600,
+            7200, 14400, 43200, 86400};
+
+    private Counter created;
+    private Counter relayed;
+    private Counter delivered;
+    private Counter dropped;
+    private Histogram deliveryDelay;
+    private Gauge bufferUsed;
+    private Gauge bufferCapacity;
+    private Counter cacheLookups;
+    private Counter cacheHits;
+    private Counter contentStored;
+    private Counter contentEvicted;
+    private Gauge contentCached;
+
+    /**
+     * Gets (and registers if needed) the metrics from a registry.
+     * @param registry The registry
+     */
+    public RouterMetrics(MetricsRegistry registry) {
+        created = registry.counter("messages_created_total",
+                "Messages created");
+        relayed = registry.counter("messages_relayed_total",
+                "Message transfers completed");
+        delivered = registry.counter("messages_delivered_total",
+                "Messages delivered to their final recipient");
+        dropped = registry.counter("messages_dropped_total",
+                "Messages dropped from buffers");
+        deliveryDelay = registry.histogram("message_delivery_delay_seconds",
+                "Time from the creation to the delivery of messages",
+                DELAY_BUCKETS);
+        bufferUsed = registry.gauge("buffer_used_bytes",
+                "Bytes of messages in the buffers");
+        bufferCapacity = registry.gauge("buffer_capacity_bytes",
+                "Total size of the buffers that have a size limit");
+        cacheLookups = registry.counter("icn_cache_lookups_total",
+                "Interests looked up from the caches of non-publishers");
+        cacheHits = registry.counter("icn_cache_hits_total",
+                "Interests answered from a cache");
+        contentStored = registry.counter("content_store_insertions_total",
+                "Contents stored in the caches");
+        contentEvicted = registry.counter("content_store_evictions_total",
+                "Contents evicted from the caches");
+        contentCached = registry.gauge("content_store_cached_bytes",
+                "Bytes of cached (not published) contents");
+
+        final Counter lookups = cacheLookups;
+        final Counter hits = cacheHits;
+        registry.register(new Gauge("icn_cache_hit_ratio",
+                "Share of the cache lookups that were hits") {
+            @Override
+            public double getValue() {
+                return lookups.getValue() == 0 ? 0 :
+                    (double) hits.getValue() / lookups.getValue();
+            }
+        });
+    }
+
+    /**
+     * Adds the size of a buffer to the total capacity.
+     * @param size Size of the buffer; Integer.MAX_VALUE for no limit
+     */
+    public void bufferAdded(long size) {
+        if (size != Integer.MAX_VALUE) {
+            bufferCapacity.inc(size);
+        }
+    }
+
+    /**
+     * Records a message put to a buffer.
+     * @param m The message
+     * @param replaced The message with the same id that was replaced, or null
+     * @param newMessage True if the message was created
+     */
+    public void messageAdded(Message m, Message replaced, boolean newMessage) {
+        bufferUsed.inc(m.getSize());
+        if (replaced != null) {
+            bufferUsed.dec(replaced.getSize());
+        }
+        if (newMessage) {
+            created.inc();
+        }
+    }
+
+    /**
+     * Records a message removed from a buffer.
+     * @param m The message
+     */
+    public void messageRemoved(Message m) {
+        bufferUsed.dec(m.getSize());
+    }
+
+    /**
+     * Records a dropped message.
+     */
+    public void messageDropped() {
+        dropped.inc();
+    }
+
+    /**
+     * Records a completed transfer.
+     * @param m The transferred message
+     * @param firstDelivery True if the message was delivered to its final
+     * recipient for the first time
+     */
+    public void messageTransferred(Message m, boolean firstDelivery) {
+        relayed.inc();
+        if (firstDelivery) {
+            delivered.inc();
+            deliveryDelay.observe(SimClock.getTime() - m.getCreationTime());
+        }
+    }
+
+    /**
+     * Records a cache lookup.
+     * @param hit True if a cached content answered the Interest
+     */
+    public void cacheLookup(boolean hit) {
+        cacheLookups.inc();
+        if (hit) {
+            cacheHits.inc();
+        }
+    }
+
+    /**
+     * Records a content stored to a content store.
+     * @param c The content
+     */
+    public void contentStored(Content c) {
+        contentStored.inc();
+        if (!c.getIsPublishedContent()) {
+            contentCached.inc(c.getSize());
+        }
+    }
+
+    /**
+     * Records a chunk added to a partially stored content.
+     * @param entry The partially stored content
+     * @param chunk The chunk
+     */
+    public void chunkStored(Content entry, Content chunk) {
+        if (!entry.getIsPublishedContent()) {
+            contentCached.inc(chunk.getSize());
+        }
+    }
+
+    /**
+     * Records a content deleted from a content store.
+     * @param c The content
+     */
+    public void contentEvicted(Content c) {
+        contentEvicted.inc();
+        if (!c.getIsPublishedContent()) {
+            contentCached.dec(c.getSize());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Keeps track of which peers a router has already sent each message to.
+ * Each message has an entry with the set of peers, and the entry is dropped
+ * after the message's TTL has passed. Entries are kept in the order the
+ * message was first sent, and expired entries are dropped from the front
+ * when new messages are added.
+ */
+public class SentMessageTable {
+
+    /** sent messages by identifier index, in first-send order */
+    private Map<Integer, Entry> entries;
+
+    /**
+     * Creates an empty table.
+     */
+    public SentMessageTable() {
+        this.entries = new LinkedHashMap<Integer, Entry>();
+    }
+
+    /**
+     * Records that a message has been sent to a peer.
+     *
+     * @param peer The peer the message was sent to
+     * @param m The message
+     */
+    public void add(DTNHost peer, Message m) {
+        Entry e = entries.get(m.getIdIndex());
+        if (e == null) {
+            expire();
+            e = new Entry(m.getExpiryTime());
+            entries.put(m.getIdIndex(), e);
+        }
+        e.peers.add(peer);
+    }
+
+    /**
+     * Returns true if the message has been sent to the peer.
+     *
+     * @param peer The peer
+     * @param m The message
+     * @return True if the message has been sent to the peer
+     */
+    public boolean contains(DTNHost peer, Message m) {
+        Entry e = entries.get(m.getIdIndex());
+        return e != null && e.peers.contains(peer);
+    }
+
+    /**
+     * Returns the number of messages in the table.
+     *
+     * @return The number of messages in the table
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops the expired messages from the front of the table.
+     */
+    public void expire() {
+        double now = SimClock.getTime();
+        Iterator<Entry> i = entries.values().iterator();
+        while (i.hasNext() && i.next().expiryTime < now) {
+            i.remove();
+        }
+    }
+
+    private static class Entry {
+        private double expiryTime;
+        private HostSet peers;
+
+        Entry(double expiryTime) {
+            this.expiryTime = expiryTime;
+            this.peers = new HostSet();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.AckTable;
+import routing.util.SentMessageTable;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the acknowledgement and sent message tables.
+ */
+public class AckTableTest extends TestCase {
+	private static final int TTL = 10; // minutes
+	private SimClock clock;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+		Message.reset();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<3; i++) {
+			hosts.add(utils.createHost());
+		}
+	}
+
+	private Message newMessage(String id) {
+		Message m = new Message(hosts.get(0), hosts.get(1), id, 10, null);
+		m.setTtl(TTL);
+		return m;
+	}
+
+	public void testIdIndexIsSharedByReplicates() {
+		Message m1 = newMessage("M1");
+		Message m2 = newMessage("M2");
+		assertFalse(m1.getIdIndex() == m2.getIdIndex());
+		assertEquals(m1.getIdIndex(), m1.replicate().getIdIndex());
+		assertEquals(m2.getIdIndex(), Message.indexOf("M2"));
+	}
+
+	public void testAddAndContains() {
+		AckTable t = new AckTable();
+		Message m1 = newMessage("M1");
+		Message m2 = newMessage("M2");
+
+		assertTrue(t.add(m1));
+		assertFalse(t.add(m1.replicate()));
+		assertTrue(t.contains(m1));
+		assertFalse(t.contains(m2));
+		assertEquals(1, t.size());
+	}
+
+	public void testMergeOnlyCopiesNewEntries() {
+		AckTable a = new AckTable();
+		AckTable b = new AckTable();
+		a.add(newMessage("M1"));
+		a.add(newMessage("M2"));
+
+		assertEquals(2, b.merge(a, hosts.get(0)));
+		assertEquals(0, b.merge(a, hosts.get(0)));
+
+		Message m3 = newMessage("M3");
+		a.add(m3);
+		b.add(newMessage("M4"));
+		assertEquals(1, b.merge(a, hosts.get(0)));
+		assertTrue(b.contains(m3));
+		assertEquals(4, b.size());
+
+		/* merging back only brings in what a has not seen */
+		assertEquals(1, a.merge(b, hosts.get(1)));
+		assertEquals(4, a.size());
+	}
+
+	public void testExpiredAcksAreDropped() {
+		AckTable a = new AckTable();
+		AckTable b = new AckTable();
+		Message old = newMessage("old");
+		a.add(old);
+		clock.setTime(TTL * 60 / 2);
+		Message young = newMessage("young");
+		a.add(young);
+
+		clock.setTime(TTL * 60 + 1);
+		assertEquals(1, b.merge(a, hosts.get(0)));
+		assertFalse(b.contains(old));
+		assertTrue(b.contains(young));
+
+		a.expire();
+		assertFalse(a.contains(old));
+		assertEquals(1, a.size());
+
+		/* entries beyond the cursor are still read after the peer's log has
+		 * been compacted */
+		for (int i=0; i<200; i++) {
+			a.add(newMessage("n" + i));
+		}
+		clock.setTime(2 * TTL * 60);
+		a.expire();
+		for (int i=0; i<100; i++) {
+			a.add(newMessage("k" + i));
+		}
+		assertEquals(300, b.merge(a, hosts.get(0)));
+	}
+
+	public void testSentMessageTable() {
+		SentMessageTable t = new SentMessageTable();
+		Message m1 = newMessage("M1");
+		Message m2 = newMessage("M2");
+
+		t.add(hosts.get(1), m1);
+		t.add(hosts.get(2), m1);
+		assertTrue(t.contains(hosts.get(1), m1.replicate()));
+		assertTrue(t.contains(hosts.get(2), m1));
+		assertFalse(t.contains(hosts.get(0), m1));
+		assertFalse(t.contains(hosts.get(1), m2));
+
+		clock.setTime(TTL * 60 + 1);
+		Message m3 = newMessage("M3");
+		t.add(hosts.get(1), m3);
+		assertFalse(t.contains(hosts.get(1), m1));
+		assertEquals(1, t.size());
+	}
+}
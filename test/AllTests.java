@@ -50,6 +50,34 @@ public class AllTests {
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(PeerStateTableTest.class);
+		suite.addTestSuite(EgoNetworkTest.class);
+		suite.addTestSuite(AckTableTest.class);
+		suite.addTestSuite(MessageIdTest.class);
+		suite.addTestSuite(MessagePropertyTest.class);
+		suite.addTestSuite(PendingInterestTableTest.class);
+		suite.addTestSuite(InterestAggregationTest.class);
+		suite.addTestSuite(BloomFilterTest.class);
+		suite.addTestSuite(ContentChunkTest.class);
+		suite.addTestSuite(PartialTransferTest.class);
+		suite.addTestSuite(ZipfGeneratorTest.class);
+		suite.addTestSuite(RealContentTracesGeneratorTest.class);
+		suite.addTestSuite(RequestTraceReplayerTest.class);
+		suite.addTestSuite(FrequencySketchTest.class);
+		suite.addTestSuite(CachePolicyTest.class);
+		suite.addTestSuite(CongestionEstimatorTest.class);
+		suite.addTestSuite(StreamingStatisticsTest.class);
+		suite.addTestSuite(ICNListenerTest.class);
+		suite.addTestSuite(AsyncReportWriterTest.class);
+		suite.addTestSuite(BinaryEventLogTest.class);
+		suite.addTestSuite(MetricsRegistryTest.class);
+		suite.addTestSuite(SimProfilerTest.class);
+		suite.addTestSuite(PathFinderTest.class);
+		suite.addTestSuite(CompiledMapTest.class);
+		suite.addTestSuite(CacheDigestRouterTest.class);
+		suite.addTestSuite(ChunkRequestTest.class);
+		suite.addTestSuite(MessageContentStatsReportTest.class);
+		suite.addTestSuite(ContentStoreRouterTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,149 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import report.AsyncReportWriter;
+import report.EventLogReport;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimError;
+
+/**
+ * Tests for the asynchronous report output.
+ */
+public class AsyncReportWriterTest extends TestCase {
+	private static final String NL = System.getProperty("line.separator");
+
+	private static final AsyncReportWriter.RecordFormatter FORMATTER =
+		new AsyncReportWriter.RecordFormatter() {
+			public void format(AsyncReportWriter.Record r,
+					StringBuilder line) {
+				line.append(r.type).append(':').append(r.text);
+			}
+		};
+
+	public void testOrderWithBackPressure() {
+		StringWriter sw = new StringWriter();
+		/* a tiny buffer makes the producer wait for the writer */
+		AsyncReportWriter w = new AsyncReportWriter(sw, FORMATTER, 3, "test");
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			if (i % 10 == 0) {
+				w.write("line " + i);
+				expected.append("line " + i).append(NL);
+			} else {
+				AsyncReportWriter.Record r = w.claim();
+				r.type = i % 7;
+				r.prefix = "\t";
+				r.text = "m" + i;
+				w.publish();
+				expected.append("\t" + (i % 7) + ":m" + i).append(NL);
+			}
+		}
+		w.close();
+		assertEquals(expected.toString(), sw.toString());
+	}
+
+	public void testClose() {
+		StringWriter sw = new StringWriter();
+		AsyncReportWriter w = new AsyncReportWriter(sw, FORMATTER,
+				AsyncReportWriter.DEF_CAPACITY, "test");
+		w.write("only");
+		w.close();
+		w.close(); // no effect
+		assertEquals("only" + NL, sw.toString());
+		try {
+			w.write("too late");
+			fail("Writing to a closed writer should fail");
+		} catch (SimError e) {
+			// ok
+		}
+	}
+
+	public void testWriteFailure() {
+		Writer failing = new Writer() {
+			public void write(char[] cbuf, int off, int len)
+					throws IOException {
+				throw new IOException("disk full");
+			}
+			public void flush() throws IOException {
+				throw new IOException("disk full");
+			}
+			public void close() {
+			}
+		};
+		AsyncReportWriter w = new AsyncReportWriter(failing, FORMATTER, 2,
+				"test");
+		try {
+			for (int i = 0; i < 10 * AsyncReportWriter.BUFFER_SIZE; i++) {
+				w.write("line " + i);
+			}
+			w.close();
+			fail("The write failure should be reported");
+		} catch (SimError e) {
+			assertTrue(e.getMessage().contains("disk full"));
+		}
+	}
+
+	public void testSameAsSynchronousOutput() throws IOException {
+		TestSettings ts = new TestSettings();
+		File syncFile = File.createTempFile("asynctest", ".tmp");
+		File asyncFile = File.createTempFile("asynctest", ".tmp");
+		syncFile.deleteOnExit();
+		asyncFile.deleteOnExit();
+
+		ts.putSetting("EventLogReport.output", syncFile.getAbsolutePath());
+		EventLogReport syncReport = new EventLogReport();
+		ts.putSetting("EventLogReport.output", asyncFile.getAbsolutePath());
+		ts.putSetting("EventLogReport.asyncOutput", "true");
+		ts.putSetting("EventLogReport.asyncCapacity", "4");
+		EventLogReport asyncReport = new EventLogReport();
+
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(syncReport);
+		ml.add(asyncReport);
+		TestUtils utils = new TestUtils(null, ml, ts);
+		utils.setTransmitRange(2);
+		DTNHost h1 = utils.createHost(new Coord(0,0), "h1");
+		DTNHost h2 = utils.createHost(new Coord(1,0), "h2");
+		DTNHost h3 = utils.createHost(new Coord(2,0), "h3");
+		for (int i = 0; i < 100; i++) {
+			String id = "M" + i;
+			h1.createNewMessage(new Message(h1, h3, id, 1, null));
+			h1.sendMessage(id, h2);
+			h2.messageTransferred(id, h1);
+			h2.sendMessage(id, h3);
+			h3.messageTransferred(id, h2);
+		}
+		syncReport.done();
+		asyncReport.done();
+
+		List<String> syncLines = readLines(syncFile);
+		assertEquals(500, syncLines.size());
+		assertEquals(syncLines, readLines(asyncFile));
+	}
+
+	private List<String> readLines(File f) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(f));
+		List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+}
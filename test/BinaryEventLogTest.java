@@ -0,0 +1,168 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import report.BinaryEventLog;
+import report.BinaryEventLogReport;
+import report.EventLogStats;
+import report.MessageStatsReport;
+import core.Content;
+import core.ContentType;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageKind;
+import core.MessageListener;
+import core.SimClock;
+
+/**
+ * Tests for the binary event log and the offline statistics.
+ */
+public class BinaryEventLogTest extends TestCase {
+	private TestSettings ts;
+	private File logFile;
+	private File statsFile;
+	private BinaryEventLogReport logReport;
+	private MessageStatsReport statsReport;
+	private DTNHost h1, h2, h3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ts = new TestSettings();
+		logFile = File.createTempFile("binlogtest",
+				BinaryEventLogReport.LOG_SUFFIX);
+		statsFile = File.createTempFile("binlogtest", ".txt");
+		logFile.deleteOnExit();
+		statsFile.deleteOnExit();
+		ts.putSetting("BinaryEventLogReport.output",
+				logFile.getAbsolutePath());
+		ts.putSetting("MessageStatsReport.output",
+				statsFile.getAbsolutePath());
+		logReport = new BinaryEventLogReport();
+		statsReport = new MessageStatsReport();
+
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(logReport);
+		ml.add(statsReport);
+		TestUtils utils = new TestUtils(null, ml, ts);
+		utils.setTransmitRange(2);
+		h1 = utils.createHost(new Coord(0,0), "h1");
+		h2 = utils.createHost(new Coord(1,0), "h2");
+		h3 = utils.createHost(new Coord(2,0), "h3");
+	}
+
+	/**
+	 * Relays messages from h1 to h3 through h2, a block's worth and more.
+	 */
+	private void relayMessages(int count) {
+		for (int i = 0; i < count; i++) {
+			SimClock.getInstance().setTime(i * 0.5);
+			String id = "M" + i;
+			h1.createNewMessage(new Message(h1, h3, id, 10 + i, null));
+			h1.sendMessage(id, h2);
+			h2.messageTransferred(id, h1);
+			h2.sendMessage(id, h3);
+			SimClock.getInstance().setTime(i * 0.5 + 0.25);
+			h3.messageTransferred(id, h2);
+		}
+	}
+
+	public void testReadBack() throws IOException {
+		relayMessages(3);
+		logReport.contentStored(new Content(7, ContentType.Content, 0, 0,
+				500), h2);
+		logReport.done();
+
+		BinaryEventLog log = new BinaryEventLog(logFile.getAbsolutePath());
+		int[] types = {BinaryEventLogReport.CREATED,
+				BinaryEventLogReport.STARTED,
+				BinaryEventLogReport.TRANSFERRED,
+				BinaryEventLogReport.STARTED,
+				BinaryEventLogReport.TRANSFERRED};
+		for (int i = 0; i < 3; i++) {
+			for (int j = 0; j < types.length; j++) {
+				assertTrue(log.next());
+				assertEquals(types[j], log.getType());
+				assertEquals("M" + i, log.getMessage().id);
+				assertEquals(10 + i, log.getMessage().size);
+			}
+			/* the last event is the delivery to h3 */
+			assertEquals(i * 0.5 + 0.25, log.getTime());
+			assertEquals(h2.getAddress(), log.getHost1());
+			assertEquals(h3.getAddress(), log.getHost2());
+			assertEquals(3, log.getPathLength());
+			assertTrue(log.getFlag());
+		}
+		assertTrue(log.next());
+		assertEquals(BinaryEventLogReport.CONTENT_STORED, log.getType());
+		assertEquals(h2.getAddress(), log.getHost1());
+		assertEquals(-1, log.getHost2());
+		assertEquals(7, log.getContentId());
+		assertEquals(500, log.getContentSize());
+		assertTrue(log.next());
+		assertEquals(BinaryEventLogReport.END, log.getType());
+		assertFalse(log.next());
+		log.close();
+	}
+
+	public void testReplaySameAsLiveReport() throws IOException {
+		relayMessages(BinaryEventLogReport.BLOCK_SIZE / 4);
+		logReport.done();
+		statsReport.done();
+
+		String name = MessageStatsReport.class.getSimpleName();
+		List<String> outputs = new EventLogStats().replay(
+				logFile.getAbsolutePath(), new String[] {name});
+		assertEquals(1, outputs.size());
+		File replayed = new File(outputs.get(0));
+		replayed.deleteOnExit();
+
+		List<String> live = readLines(statsFile);
+		assertTrue(live.size() > 1);
+		assertEquals(live, readLines(replayed));
+	}
+
+	public void testProtocolMessages() throws IOException {
+		String id = MessageKind.PROTOCOL_PREFIX + "3";
+		h1.createNewMessage(new Message(h1, h2, id, 20, null));
+		h1.sendMessage(id, h2);
+		h2.messageTransferred(id, h1);
+		relayMessages(1);
+		logReport.done();
+
+		BinaryEventLog log = new BinaryEventLog(logFile.getAbsolutePath());
+		for (int i = 0; i < 3; i++) {
+			assertTrue(log.next());
+			assertEquals(id, log.getMessage().id);
+		}
+		assertTrue(log.next());
+		assertEquals("M0", log.getMessage().id);
+		log.close();
+
+		List<String> outputs = new EventLogStats().replay(
+				logFile.getAbsolutePath(),
+				new String[] {MessageStatsReport.class.getSimpleName()});
+		new File(outputs.get(0)).deleteOnExit();
+	}
+
+	private List<String> readLines(File f) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(f));
+		List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+}
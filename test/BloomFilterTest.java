@@ -0,0 +1,118 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.BloomFilter;
+import util.CountingBloomFilter;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Tests for the Bloom filters and the content store digest of hosts.
+ */
+public class BloomFilterTest extends TestCase {
+	private static final int BITS = 1024;
+	private static final int HASHES = 3;
+
+	public void testNoFalseNegatives() {
+		BloomFilter f = new BloomFilter(BITS, HASHES);
+		assertTrue(f.isEmpty());
+		for (int i=0; i<100; i++) {
+			f.add(i * 7);
+		}
+		for (int i=0; i<100; i++) {
+			assertTrue(f.mightContain(i * 7));
+		}
+
+		/* 100 keys in 1024 bits with 3 hashes: ~2.5% false positives */
+		int falsePositives = 0;
+		for (int i=100000; i<110000; i++) {
+			if (f.mightContain(i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("Too many false positives: " + falsePositives,
+				falsePositives < 600);
+		assertEquals(BITS / 8, f.getSize());
+	}
+
+	public void testUnion() {
+		BloomFilter a = new BloomFilter(BITS, HASHES);
+		BloomFilter b = new BloomFilter(BITS, HASHES);
+		a.add(1);
+		b.add(2);
+		BloomFilter u = new BloomFilter(a);
+		u.or(b);
+		assertTrue(u.mightContain(1));
+		assertTrue(u.mightContain(2));
+		assertFalse(a.mightContain(2));
+
+		try {
+			u.or(new BloomFilter(2 * BITS, HASHES));
+			fail("Combining filters of different sizes should fail");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testCountingRemove() {
+		CountingBloomFilter c = new CountingBloomFilter(BITS, HASHES);
+		Random rng = new Random(3);
+		int[] keys = new int[200];
+		for (int i=0; i<keys.length; i++) {
+			keys[i] = rng.nextInt();
+			c.add(keys[i]);
+		}
+		/* remove every other key; the rest must still be found */
+		for (int i=0; i<keys.length; i+=2) {
+			c.remove(keys[i]);
+		}
+		BloomFilter f = c.toBloomFilter();
+		for (int i=1; i<keys.length; i+=2) {
+			assertTrue(c.mightContain(keys[i]));
+			assertTrue(f.mightContain(keys[i]));
+		}
+		for (int i=1; i<keys.length; i+=2) {
+			c.remove(keys[i]);
+		}
+		assertTrue(c.toBloomFilter().isEmpty());
+	}
+
+	public void testHostContentDigest() {
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+		DTNHost h = utils.createHost();
+		assertNull(h.getContentDigest());
+
+		Content c1 = new Content(1, ContentType.Content, 0, 3600, 100);
+		Content c2 = new Content(2, ContentType.Content, 0, 3600, 100);
+		ArrayList<Content> contents = new ArrayList<Content>();
+		contents.add(c1);
+		h.addContents(contents);
+
+		h.enableContentDigest(BITS, HASHES);
+		assertTrue(h.getContentDigest().mightContain(1));
+		assertFalse(h.getContentDigest().mightContain(2));
+
+		contents.clear();
+		contents.add(c2);
+		h.addContents(contents);
+		h.deleteContent(c1);
+		h.deleteContent(c1); // not in the store anymore
+		assertFalse(h.getContentDigest().mightContain(1));
+		assertTrue(h.getContentDigest().mightContain(2));
+	}
+}
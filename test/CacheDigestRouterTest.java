@@ -0,0 +1,80 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Tests for exchanging the cache digests of ActiveRouter.
+ */
+public class CacheDigestRouterTest extends AbstractRouterTest {
+
+	/** Router that exposes the digest rank */
+	private static class DigestRouter extends EpidemicRouter {
+		public DigestRouter(Settings s) {
+			super(s);
+		}
+
+		protected DigestRouter(DigestRouter r) {
+			super(r);
+		}
+
+		@Override
+		public DigestRouter replicate() {
+			return new DigestRouter(this);
+		}
+
+		public int rank(Message m, DTNHost peer) {
+			return getCacheDigestRank(m, peer);
+		}
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		TestSettings s = new TestSettings();
+		s.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		s.putSetting(ActiveRouter.CACHE_DIGEST_S, "true");
+		setRouterProto(new DigestRouter(s));
+		super.setUp();
+	}
+
+	private void store(DTNHost host, int contentId) {
+		ArrayList<Content> list = new ArrayList<Content>();
+		list.add(new Content(contentId, ContentType.Content, 0, 1000, 10));
+		host.addContents(list);
+	}
+
+	private int rank(DTNHost host, Message m, DTNHost peer) {
+		return ((DigestRouter)host.getRouter()).rank(m, peer);
+	}
+
+	public void testDigestsOfPastPeersAreDropped() {
+		store(h2, 7);
+		Message interest = new Message(h1, null, msgId1, 10,
+				new Content(7, ContentType.Interest, 0, 1000, 10));
+
+		h3.connect(h2);
+		assertEquals(2, rank(h3, interest, h2));
+		h1.connect(h3);
+		assertEquals(1, rank(h1, interest, h3));
+
+		disconnect(h2);
+		assertEquals(0, rank(h3, interest, h2));
+
+		disconnect(h1);
+		assertEquals(0, rank(h1, interest, h3));
+		h1.connect(h3);
+		/* h3 is no longer connected to h2, so it can't claim the content */
+		assertEquals(0, rank(h1, interest, h3));
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import routing.cache.ARCCachePolicy;
+import routing.cache.CachePolicy;
+import routing.cache.GDSFCachePolicy;
+import routing.cache.LFUCachePolicy;
+import routing.cache.LRUCachePolicy;
+import routing.cache.S3FIFOCachePolicy;
+import core.Content;
+import core.ContentType;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Tests for the content store replacement policies.
+ */
+public class CachePolicyTest extends TestCase {
+	private static final int SIZE = 100;
+	private Content[] c;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		c = new Content[10];
+		for (int i=1; i<c.length; i++) {
+			c[i] = newContent(i, SIZE);
+		}
+	}
+
+	private static Content newContent(int id, int size) {
+		return new Content(id, ContentType.Content, 0, 3600, size);
+	}
+
+	private static CachePolicy init(CachePolicy p, long capacity) {
+		p.init(capacity);
+		return p;
+	}
+
+	/** Evicts the policy's choice and returns its id */
+	private static int evict(CachePolicy p) {
+		Content victim = p.nextToEvict();
+		p.contentRemoved(victim);
+		return victim.getContentId();
+	}
+
+	public void testLRU() {
+		CachePolicy p = init(new LRUCachePolicy((Settings)null), 3 * SIZE);
+		assertNull(p.nextToEvict());
+		p.contentAdded(c[1]);
+		p.contentAdded(c[2]);
+		p.contentAdded(c[3]);
+		p.contentAccessed(c[1]);
+		assertEquals(2, evict(p));
+		assertEquals(3, evict(p));
+		assertEquals(1, evict(p));
+		assertNull(p.nextToEvict());
+	}
+
+	public void testLFUAging() {
+		LFUCachePolicy p = new LFUCachePolicy((Settings)null);
+		p.init(3 * SIZE);
+		p.contentAdded(c[1]);
+		p.contentAdded(c[2]);
+		p.contentAccessed(c[1]);
+		p.contentAccessed(c[1]);
+		assertEquals(2, evict(p));
+		assertEquals(1.0, p.getInflation());
+
+		/* new contents start from the inflation value */
+		p.contentAdded(c[3]);
+		p.contentAccessed(c[3]);
+		p.contentAccessed(c[3]);
+		p.contentAccessed(c[3]);
+		assertEquals(1, evict(p)); // 3 vs 1 + 4
+		assertEquals(3, evict(p));
+	}
+
+	public void testGDSFPrefersSmallContents() {
+		CachePolicy p = init(new GDSFCachePolicy((Settings)null), 10 * SIZE);
+		Content big = newContent(20, 5 * SIZE);
+		p.contentAdded(c[1]);
+		p.contentAdded(big);
+		p.contentAdded(c[2]);
+		assertEquals(20, evict(p));
+
+		/* but popularity outweighs the size */
+		p.contentAdded(big);
+		for (int i=0; i<10; i++) {
+			p.contentAccessed(big);
+		}
+		assertEquals(1, evict(p));
+	}
+
+	public void testARC() {
+		ARCCachePolicy p = new ARCCachePolicy((Settings)null);
+		p.init(3 * SIZE);
+		p.contentAdded(c[1]);
+		p.contentAdded(c[2]);
+		p.contentAdded(c[3]);
+		p.contentAccessed(c[1]); // to the frequency list
+		assertEquals(2, evict(p)); // oldest of the recency list
+		assertEquals(0, p.getTarget());
+
+		/* recently evicted from the recency list: it should be larger */
+		p.contentAdded(c[2]);
+		assertEquals(SIZE, p.getTarget());
+		p.contentAdded(c[4]);
+		assertEquals(3, evict(p));
+		/* the recency list is now at its target */
+		assertEquals(1, evict(p));
+		assertEquals(2, evict(p));
+		assertEquals(4, evict(p));
+		assertNull(p.nextToEvict());
+	}
+
+	public void testS3FIFO() {
+		CachePolicy p = init(new S3FIFOCachePolicy((Settings)null),
+				10 * SIZE);
+		p.contentAdded(c[1]);
+		p.contentAdded(c[2]);
+		p.contentAdded(c[3]);
+		p.contentAccessed(c[1]);
+		/* 1 was requested in the small queue and moves to the main queue,
+		 * 2 is a one-hit wonder */
+		assertEquals(2, evict(p));
+		assertEquals(3, evict(p));
+
+		/* cached again while remembered: straight to the main queue */
+		p.contentAdded(c[2]);
+		p.contentAccessed(c[1]);
+		assertEquals(2, evict(p)); // 1 gets a second chance
+		assertEquals(1, evict(p));
+		assertNull(p.nextToEvict());
+	}
+
+	public void testS3FIFOVictimLookupHasNoSideEffects() {
+		CachePolicy p = init(new S3FIFOCachePolicy((Settings)null),
+				10 * SIZE);
+		CachePolicy peeked = init(new S3FIFOCachePolicy((Settings)null),
+				10 * SIZE);
+		Random rng = new Random(42);
+		Set<Integer> cached = new HashSet<Integer>();
+		for (int i = 0; i < 2000; i++) {
+			int id = 1 + rng.nextInt(20);
+			Content content = newContent(id, SIZE);
+			if (cached.contains(id)) {
+				p.contentAccessed(content);
+				peeked.contentAccessed(content);
+			} else {
+				if (cached.size() == 10) {
+					int victim = evict(p);
+					assertEquals(victim, evict(peeked));
+					cached.remove(victim);
+				}
+				p.contentAdded(content);
+				peeked.contentAdded(content);
+				cached.add(id);
+			}
+			/* e.g. a rejected cache admission */
+			peeked.nextToEvict();
+		}
+	}
+
+	public void testSizeUpdate() {
+		CachePolicy p = init(new S3FIFOCachePolicy((Settings)null),
+				10 * SIZE);
+		Content whole = newContent(5, 3 * SIZE);
+		Content partial = Content.partialOf(whole.getChunk(0, SIZE));
+		p.contentAdded(partial);
+		partial.addChunk(whole.getChunk(1, SIZE));
+		p.contentAdded(partial); // grew, not a new content
+		assertEquals(5, evict(p));
+		assertNull(p.nextToEvict());
+	}
+
+	public void testRouterSetting() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MessageRouter.CACHE_POLICY_S, "s3-fifo");
+		MessageRouter r = new EpidemicRouter(ts);
+		assertTrue(r.getCachePolicy() instanceof S3FIFOCachePolicy);
+		MessageRouter copy = r.replicate();
+		assertTrue(copy.getCachePolicy() instanceof S3FIFOCachePolicy);
+		assertNotSame(r.getCachePolicy(), copy.getCachePolicy());
+
+		ts.putSetting(MessageRouter.CACHE_POLICY_S, "MRU");
+		try {
+			new EpidemicRouter(ts);
+			fail("Unknown policy should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+}
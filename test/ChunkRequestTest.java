@@ -0,0 +1,151 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.Message;
+import core.MessageKind;
+
+/**
+ * Tests for requesting and serving content chunks in MessageRouter.
+ */
+public class ChunkRequestTest extends AbstractRouterTest {
+	private static final int CHUNK = 300;
+	private static final int TIMEOUT = 100;
+	private static final int CONTENT = 5;
+
+	@Override
+	public void setUp() throws Exception {
+		TestSettings s = new TestSettings();
+		s.putSetting(MessageRouter.B_SIZE_S, "10000");
+		s.putSetting(MessageRouter.C_SIZE_S, "1000");
+		s.putSetting(MessageRouter.CHUNK_SIZE_S, ""+CHUNK);
+		s.putSetting(MessageRouter.CHUNK_TIMEOUT_S, ""+TIMEOUT);
+		s.putSetting(MessageRouter.CHUNK_RETRIES_S, "1");
+		s.putSetting(MessageRouter.CACHE_POLICY_S, "LRU");
+		setRouterProto(new EpidemicRouter(s));
+		super.setUp();
+		Message.reset();
+	}
+
+	/** Transfers a replicate of a message from one host to another */
+	private void transfer(Message m, DTNHost from, DTNHost to) {
+		assertEquals(MessageRouter.RCV_OK, to.receiveMessage(m, from));
+		to.messageTransferred(m.getId(), from);
+	}
+
+	private Message chunk(String request, DTNHost to, int index) {
+		Content c = new Content(CONTENT, ContentType.Content, 0, 3600,
+				1000).getChunk(index, CHUNK);
+		return new Message(h0, to, Message.requestIdOf(request), index,
+				c.getSize(), c);
+	}
+
+	private Message interest(String request, DTNHost from) {
+		return new Message(from, null, Message.requestIdOf(request),
+				MessageKind.Interest, 10,
+				new Content(CONTENT, ContentType.Interest, 0, 0, 10));
+	}
+
+	private Message chunkInterest(String request, DTNHost from, int index) {
+		return new Message(from, null, Message.requestIdOf(request),
+				MessageKind.Interest, index, 10,
+				new Content(CONTENT, ContentType.Interest, 0, 0, 10)
+				.getChunkInterest(index, 4));
+	}
+
+	private Message message(DTNHost host, String id) {
+		for (Message m : host.getMessageCollection()) {
+			if (m.getId().equals(id)) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	public void testChunkInterestIds() {
+		Message m = chunkInterest("M7", h1, 2);
+		assertEquals("M7" + Message.CHUNK_SEPARATOR + "2_interest", m.getId());
+		assertEquals(MessageKind.Interest, m.getKind());
+		assertEquals(m.getIdIndex(), Message.lookupIndex(m.getId()));
+		assertFalse(m.getIdIndex() == chunk("M7", h1, 2).getIdIndex());
+		assertTrue(m.getContent().isChunk());
+		assertEquals(2, m.getContent().getChunkIndex());
+	}
+
+	public void testPartialContentServesChunks() {
+		transfer(chunk("M7", h1, 1), h0, h2);
+		Content entry = h2.getContent(CONTENT);
+		assertNotNull(entry);
+		assertFalse(entry.isComplete());
+
+		/* a chunk Interest for a cached chunk is answered */
+		transfer(chunkInterest("M8", h4, 1), h4, h2);
+		Message answer = message(h2, "M8" + Message.CHUNK_SEPARATOR + "1");
+		assertNotNull(answer);
+		assertEquals(h4, answer.getTo());
+		assertEquals(Message.requestIdOf("M8"), answer.getRequestId());
+		assertNull(message(h2, chunkInterest("M8", h4, 1).getId()));
+
+		/* and one for a chunk that isn't cached is forwarded */
+		transfer(chunkInterest("M8", h4, 0), h4, h2);
+		assertNull(message(h2, "M8" + Message.CHUNK_SEPARATOR + "0"));
+		assertNotNull(message(h2, chunkInterest("M8", h4, 0).getId()));
+
+		/* a whole content Interest gets the cached chunks and goes on */
+		transfer(interest("M9", h5), h5, h2);
+		assertNotNull(message(h2, "M9" + Message.CHUNK_SEPARATOR + "1"));
+		assertNull(message(h2, "M9" + Message.CHUNK_SEPARATOR + "0"));
+		assertNotNull(message(h2, "M9_interest"));
+	}
+
+	public void testMissingChunksAreRequested() {
+		h1.createNewMessage(interest("M7", h1));
+		transfer(chunk("M7", h1, 0), h0, h1);
+		transfer(chunk("M7", h1, 2), h0, h1);
+
+		clock.advance(TIMEOUT - 1);
+		h1.update(true);
+		assertNull(message(h1, chunkInterest("M7", h1, 1).getId()));
+
+		clock.advance(1);
+		h1.update(true);
+		assertNull(message(h1, chunkInterest("M7", h1, 0).getId()));
+		assertNotNull(message(h1, chunkInterest("M7", h1, 1).getId()));
+		assertNull(message(h1, chunkInterest("M7", h1, 2).getId()));
+		Message retry = message(h1, chunkInterest("M7", h1, 3).getId());
+		assertNotNull(retry);
+		assertEquals(3, retry.getContent().getChunkIndex());
+		assertEquals(Message.requestIdOf("M7"), retry.getRequestId());
+
+		/* the retries are used up */
+		h1.deleteMessage(retry.getId(), false);
+		clock.advance(TIMEOUT);
+		h1.update(true);
+		assertNull(message(h1, retry.getId()));
+	}
+
+	public void testStalePartialContentIsEvictedFirst() {
+		Message whole = new Message(h0, h1, Message.requestIdOf("M6"),
+				MessageKind.Data, 400,
+				new Content(6, ContentType.Content, 0, 3600, 400));
+		transfer(whole, h0, h2);
+		transfer(chunk("M7", h1, 0), h0, h2);
+		assertNotNull(h2.getContent(CONTENT));
+
+		/* the partial content is newer, but hasn't grown in the timeout */
+		clock.advance(TIMEOUT);
+		Message other = new Message(h0, h1, Message.requestIdOf("M8"),
+				MessageKind.Data, 400,
+				new Content(8, ContentType.Content, 0, 3600, 400));
+		transfer(other, h0, h2);
+		assertNull(h2.getContent(CONTENT));
+		assertNotNull(h2.getContent(6));
+		assertNotNull(h2.getContent(8));
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.CompiledMap;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import core.Coord;
+import core.SimError;
+
+/**
+ * Tests for writing and reading compiled maps.
+ */
+public class CompiledMapTest extends TestCase {
+	private static final String WKT1 =
+		"LINESTRING (1.0 1.0, 2.0 1.0, 3.0 1.0, 8.0 1.0)\n" +
+		"LINESTRING (1.0 1.0, 1.0 3.0)\n" +
+		"LINESTRING (2.0 1.0, 2.0 0.0, 3.0 0.0, 3.0 1.0)\n";
+	private static final String WKT2 =
+		"LINESTRING (1.0 3.0, 2.0 3.0, 3.0 3.0)\n" +
+		"LINESTRING (8.0 1.0, 8.0 9.5)\n";
+
+	private SimMap map;
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		WKTMapReader reader = new WKTMapReader(true);
+		reader.addPaths(new StringReader(WKT1), 1);
+		reader.addPaths(new StringReader(WKT2), 2);
+		map = reader.getMap();
+		map.mirror();
+		map.translate(-1, 3);
+		file = File.createTempFile("compiledMapTest", CompiledMap.EXTENSION);
+		file.deleteOnExit();
+	}
+
+	public void testWriteAndRead() throws IOException {
+		CompiledMap.write(map, file, "abc");
+		SimMap read = CompiledMap.read(file, "abc");
+
+		assertNotNull(read);
+		assertEquals(map.getOffset(), read.getOffset());
+		assertTrue(read.isMirrored());
+		assertEquals(map.getMinBound(), read.getMinBound());
+		assertEquals(map.getMaxBound(), read.getMaxBound());
+
+		List<MapNode> nodes = map.getNodes();
+		List<MapNode> readNodes = read.getNodes();
+		assertEquals(nodes.size(), readNodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			MapNode n = nodes.get(i);
+			MapNode r = readNodes.get(i);
+			assertEquals(n.getLocation(), r.getLocation());
+			for (int t = MapNode.MIN_TYPE; t <= MapNode.MAX_TYPE; t++) {
+				assertEquals(n.isType(t), r.isType(t));
+			}
+			assertEquals(n.getNeighbors().size(), r.getNeighbors().size());
+			for (int j = 0; j < n.getNeighbors().size(); j++) {
+				assertEquals(n.getNeighbors().get(j).getLocation(),
+						r.getNeighbors().get(j).getLocation());
+			}
+		}
+
+		Coord c = nodes.get(3).getLocation();
+		assertSame(readNodes.get(3), read.getNodeByCoord(c));
+	}
+
+	public void testWrongHash() throws IOException {
+		CompiledMap.write(map, file, "abc");
+		assertNull(CompiledMap.read(file, "abd"));
+		assertNull(CompiledMap.read(new File(file.getPath() + ".x"), "abc"));
+	}
+
+	public void testCorruptedFile() throws IOException {
+		CompiledMap.write(map, file, "abc");
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+		try {
+			CompiledMap.read(file, "abc");
+			fail("Truncated file was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testHash() throws IOException {
+		File f1 = writeWkt(WKT1);
+		File f2 = writeWkt(WKT2);
+		List<File> files = new ArrayList<File>();
+		files.add(f1);
+		files.add(f2);
+		String hash = CompiledMap.hash(files);
+
+		assertEquals(hash, CompiledMap.hash(files));
+		files.set(0, f2);
+		files.set(1, f1);
+		assertFalse(hash.equals(CompiledMap.hash(files)));
+		files.set(0, writeWkt(WKT1 + "LINESTRING (0.0 0.0, 1.0 1.0)\n"));
+		files.set(1, f2);
+		assertFalse(hash.equals(CompiledMap.hash(files)));
+	}
+
+	public void testReadOnly() {
+		map.setReadOnly();
+		try {
+			map.translate(1, 1);
+			fail("Read-only map was translated");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	private File writeWkt(String wkt) throws IOException {
+		File f = File.createTempFile("compiledMapTest", ".wkt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		out.print(wkt);
+		out.close();
+		return f;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.CongestionEstimator;
+import core.SimClock;
+
+/**
+ * Tests for the congestion level estimator of the offloading routers.
+ */
+public class CongestionEstimatorTest extends TestCase {
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+	}
+
+	public void testLevels() {
+		CongestionEstimator ce = new CongestionEstimator(0);
+		clock.setTime(10);
+		assertEquals(0.0, ce.getLevel());
+		ce.bufferChecked(false);
+		assertEquals(0.0, ce.getLevel());
+
+		ce.bufferChecked(true);
+		assertTrue(ce.isCongested());
+		assertEquals(1, ce.getNrofCongestions());
+		/* the level changes within a time step if the state changes */
+		assertEquals(1.0, ce.getLevel());
+		ce.bufferChecked(true);
+		assertEquals(1, ce.getNrofCongestions());
+
+		clock.setTime(30);
+		ce.bufferChecked(false);
+		assertFalse(ce.isCongested());
+		double level = ce.getLevel();
+		assertTrue(level >= 0 && level < 1);
+	}
+
+	public void testSameAsHistory() {
+		Random rng = new Random(7);
+		CongestionEstimator ce = new CongestionEstimator(5);
+		History h = new History(5);
+		double time = 5;
+		boolean full = false;
+		for (int i=0; i<2000; i++) {
+			time += 0.1 + rng.nextDouble() * 50;
+			clock.setTime(time);
+			if (rng.nextInt(3) == 0) {
+				full = !full;
+			}
+			ce.bufferChecked(full);
+			h.bufferChecked(full, time);
+			assertFalse(Double.isNaN(ce.getLevel()));
+			assertEquals(h.level(time), ce.getLevel(), 1e-9);
+		}
+	}
+
+	/**
+	 * The congestion level as computed from the full history of the
+	 * congestion durations and gaps
+	 */
+	private static class History {
+		private ArrayList<Double> durations = new ArrayList<Double>();
+		private ArrayList<Double> gaps = new ArrayList<Double>();
+		private boolean congested;
+		private int nrofCongestions;
+		private double start = -1;
+		private double end = -1;
+		private double startTime;
+		private double freeTime = -1;
+
+		History(double startTime) {
+			this.startTime = startTime;
+		}
+
+		void bufferChecked(boolean full, double time) {
+			if (full && !congested) {
+				congested = true;
+				nrofCongestions++;
+				start = time;
+				if (end > 0) {
+					gaps.add(start - end);
+				}
+				if (freeTime == -1) {
+					freeTime = start - startTime;
+				}
+			} else if (!full && congested) {
+				congested = false;
+				end = time;
+				durations.add(end - start);
+			}
+		}
+
+		double level(double time) {
+			if (congested) {
+				return 1;
+			} else if (nrofCongestions == 0) {
+				return 0;
+			}
+			double recency = time - end;
+			double duration = 0;
+			for (double d : durations) {
+				duration += d;
+			}
+			duration /= durations.size();
+			double gap = 0;
+			for (double g : gaps) {
+				gap += g;
+			}
+			gap = gaps.isEmpty() ? 0 : gap / gaps.size();
+
+			double window = duration + gap;
+			if (recency - gap >= window) {
+				double n = nrofCongestions + freeTime / window +
+						(recency - gap) / window;
+				double lambda = nrofCongestions / n;
+				return (((recency - gap) % window) * lambda) /
+						(Math.pow(Math.E, lambda) * window);
+			}
+			double n = nrofCongestions + freeTime / window;
+			double lambda = nrofCongestions / n;
+			return (Math.abs(recency - gap) * lambda) /
+					(Math.pow(Math.E, lambda) * window);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.Content;
+import core.ContentType;
+import core.Message;
+import core.MessageKind;
+
+/**
+ * Tests for content chunks and chunk messages.
+ */
+public class ContentChunkTest extends TestCase {
+	private static final int CHUNK = 300;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Message.reset();
+	}
+
+	public void testChunks() {
+		Content c = new Content(5, ContentType.Content, 0, 3600, 1000);
+		assertFalse(c.isChunk());
+		assertTrue(c.isComplete());
+		assertEquals(4, Content.nrofChunks(1000, CHUNK));
+		assertEquals(1, Content.nrofChunks(100, CHUNK));
+
+		int total = 0;
+		for (int i=0; i<4; i++) {
+			Content chunk = c.getChunk(i, CHUNK);
+			assertTrue(chunk.isChunk());
+			assertEquals(i, chunk.getChunkIndex());
+			assertEquals(4, chunk.getNrofChunks());
+			assertEquals(5, chunk.getContentId());
+			assertEquals(1000, chunk.getTotalSize());
+			total += chunk.getSize();
+		}
+		assertEquals(100, c.getChunk(3, CHUNK).getSize());
+		assertEquals(1000, total);
+	}
+
+	public void testPartialContent() {
+		Content c = new Content(5, ContentType.Content, 0, 3600, 1000);
+		Content partial = Content.partialOf(c.getChunk(2, CHUNK));
+		assertFalse(partial.isChunk());
+		assertFalse(partial.isComplete());
+		assertTrue(partial.hasChunk(2));
+		assertFalse(partial.hasChunk(0));
+		assertEquals(CHUNK, partial.getSize());
+
+		assertFalse(partial.addChunk(c.getChunk(2, CHUNK)));
+		assertTrue(partial.addChunk(c.getChunk(3, CHUNK)));
+		assertTrue(partial.addChunk(c.getChunk(0, CHUNK)));
+		assertEquals(700, partial.getSize());
+		assertFalse(partial.isComplete());
+		assertTrue(partial.addChunk(c.getChunk(1, CHUNK)));
+		assertTrue(partial.isComplete());
+		assertEquals(1000, partial.getSize());
+	}
+
+	public void testChunkMessages() {
+		int request = Message.requestIdOf("M7");
+		Content c = new Content(5, ContentType.Content, 0, 3600, 1000);
+		Message whole = new Message(null, null, request, MessageKind.Data,
+				1000, c);
+		Message m0 = new Message(null, null, request, 0, CHUNK,
+				c.getChunk(0, CHUNK));
+		Message m1 = new Message(null, null, request, 1, CHUNK,
+				c.getChunk(1, CHUNK));
+
+		assertEquals(request, m0.getRequestId());
+		assertEquals(request, m1.getRequestId());
+		assertEquals(MessageKind.Data, m1.getKind());
+		assertEquals(1, m1.getChunk());
+		assertEquals(-1, whole.getChunk());
+		assertEquals("M7" + Message.CHUNK_SEPARATOR + "1", m1.getId());
+
+		assertFalse(m0.getIdIndex() == m1.getIdIndex());
+		assertFalse(m0.getIdIndex() == whole.getIdIndex());
+		assertEquals(m1.getIdIndex(), Message.lookupIndex(m1.getId()));
+		assertEquals(whole.getIdIndex(), Message.lookupIndex("M7"));
+
+		Message r = m1.replicate();
+		assertEquals(m1.getIdIndex(), r.getIdIndex());
+		assertEquals(m1.getId(), r.getId());
+		assertEquals(1, r.getChunk());
+		assertEquals(request, r.getRequestId());
+	}
+}
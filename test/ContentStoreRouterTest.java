@@ -0,0 +1,109 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.MetricsRegistry;
+import core.Settings;
+
+/**
+ * Tests for adding contents to the content store of MessageRouter.
+ */
+public class ContentStoreRouterTest extends AbstractRouterTest {
+
+	/** Router that stores contents without checking the store first */
+	private static class StoreRouter extends EpidemicRouter {
+		public StoreRouter(Settings s) {
+			super(s);
+		}
+
+		protected StoreRouter(StoreRouter r) {
+			super(r);
+		}
+
+		@Override
+		public StoreRouter replicate() {
+			return new StoreRouter(this);
+		}
+
+		public void store(Content c) {
+			addToContentStore(c);
+		}
+
+		public void storeChunk(Content chunk) {
+			storeNewChunkToContentStore(chunk);
+		}
+
+		public void delete(Content c) {
+			deleteContent(c);
+		}
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		TestSettings s = new TestSettings();
+		s.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		s.putSetting(MessageRouter.CACHE_POLICY_S, "LFU");
+		setRouterProto(new StoreRouter(s));
+		MetricsRegistry.reset();
+		super.setUp();
+	}
+
+	private void store(DTNHost host, Content c) {
+		((StoreRouter)host.getRouter()).store(c);
+	}
+
+	private long insertions() {
+		return ((MetricsRegistry.Counter)MetricsRegistry.getInstance().get(
+				"content_store_insertions_total")).getValue();
+	}
+
+	private double cachedBytes() {
+		return ((MetricsRegistry.Gauge)MetricsRegistry.getInstance().get(
+				"content_store_cached_bytes")).getValue();
+	}
+
+	public void testAddContents() {
+		ArrayList<Content> list = new ArrayList<Content>();
+		list.add(new Content(7, ContentType.Content, 0, 1000, 10));
+		assertTrue(h1.addContents(list));
+		assertFalse(h1.addContents(list));
+		list.add(new Content(8, ContentType.Content, 0, 1000, 10));
+		assertTrue(h1.addContents(list));
+	}
+
+	public void testDuplicateIsNotAddedToPolicy() {
+		Content c = new Content(7, ContentType.Content, 0, 1000, 10);
+		store(h1, c);
+		store(h1, new Content(7, ContentType.Content, 0, 1000, 20));
+
+		assertSame(c, h1.getContent(7));
+		/* the policy still refers to the cached content */
+		assertSame(c, h1.getRouter().getCachePolicy().nextToEvict());
+	}
+
+	public void testStoreMetrics() {
+		StoreRouter r = (StoreRouter)h1.getRouter();
+		r.store(new Content(7, ContentType.Content, 0, 1000, 10));
+		r.store(new Content(7, ContentType.Content, 0, 1000, 10));
+		assertEquals(1, insertions());
+		assertEquals(10.0, cachedBytes());
+
+		Content c = new Content(8, ContentType.Content, 0, 1000, 50);
+		r.storeChunk(c.getChunk(0, 20));
+		r.storeChunk(c.getChunk(0, 20));
+		r.storeChunk(c.getChunk(2, 20));
+		assertEquals(2, insertions());
+		assertEquals(40.0, cachedBytes());
+
+		r.delete(h1.getContent(8));
+		assertEquals(10.0, cachedBytes());
+	}
+}
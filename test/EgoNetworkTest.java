@@ -0,0 +1,178 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.EgoNetwork;
+import routing.util.HostSet;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Tests for the bitset based host sets and ego network.
+ */
+public class EgoNetworkTest extends TestCase {
+	private static final int NROF_HOSTS = 150;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts.add(utils.createHost());
+		}
+	}
+
+	public void testHostSet() {
+		HostSet s = new HostSet(10);
+		assertTrue(s.isEmpty());
+		assertTrue(s.add(3));
+		assertTrue(s.add(64));
+		assertTrue(s.add(hosts.get(130))); // grows the set
+		assertFalse(s.add(3));
+		assertEquals(3, s.cardinality());
+		assertEquals(131, s.length());
+		assertTrue(s.contains(hosts.get(64)));
+		assertFalse(s.contains(4));
+		assertFalse(s.contains(1000));
+
+		assertEquals(3, s.nextSetBit(0));
+		assertEquals(64, s.nextSetBit(4));
+		assertEquals(130, s.nextSetBit(65));
+		assertEquals(-1, s.nextSetBit(131));
+
+		HostSet t = new HostSet(hosts.subList(60, 70));
+		assertEquals(1, s.andCardinality(t));
+		assertEquals(1, t.andCardinality(s));
+
+		HostSet u = new HostSet();
+		u.setAnd(s, t);
+		assertEquals("{64}", u.toString());
+
+		s.remove(64);
+		assertEquals(0, s.andCardinality(t));
+		s.clear();
+		assertTrue(s.isEmpty());
+	}
+
+	public void testSimilarityAndCommonNeighbours() {
+		EgoNetwork ego = new EgoNetwork();
+		for (int i=0; i<10; i++) {
+			ego.addContact(hosts.get(i));
+		}
+		ego.setContactsOf(hosts.get(1), new HostSet(hosts.subList(5, 20)));
+		ego.setContactsOf(hosts.get(2), new HostSet(hosts.subList(8, 12)));
+
+		assertEquals(5, ego.similarity(hosts.get(1)));
+		assertEquals(2, ego.similarity(hosts.get(2)));
+		assertEquals(0, ego.similarity(hosts.get(3)));
+		assertEquals(4, ego.commonNeighbours(hosts.get(1), hosts.get(2)));
+		assertEquals(0, ego.commonNeighbours(hosts.get(1), hosts.get(3)));
+
+		/* neighbour sets are live references */
+		HostSet live = ego.getContactsOf(hosts.get(2));
+		live.add(0);
+		assertEquals(3, ego.similarity(hosts.get(2)));
+		ego.removeContactsOf(hosts.get(2));
+		assertNull(ego.getContactsOf(hosts.get(2)));
+	}
+
+	public void testBetweennessOfStar() {
+		/* ego is the only connection between its contacts */
+		EgoNetwork ego = new EgoNetwork();
+		for (int i=1; i<=4; i++) {
+			ego.addContact(hosts.get(i));
+		}
+		assertEquals(0.0, ego.betweenness(), 0.0);
+
+		/* a path 1 - 2 - 3 via reported contacts: (1,3) has one two-hop
+		 * path through 2 */
+		ego.setContactsOf(hosts.get(1), set(2));
+		ego.setContactsOf(hosts.get(2), set(1, 3));
+		ego.setContactsOf(hosts.get(3), set(2));
+		assertEquals(1.0, ego.betweenness(), 0.0);
+	}
+
+	public void testBetweennessMatchesMatrixDefinition() {
+		Random rng = new Random(42);
+		for (int round=0; round<20; round++) {
+			EgoNetwork ego = new EgoNetwork();
+			List<Integer> contacts = new ArrayList<Integer>();
+			for (int i=0; i<NROF_HOSTS; i++) {
+				if (rng.nextDouble() < 0.3) {
+					ego.addContact(hosts.get(i));
+					contacts.add(i);
+				}
+			}
+			HostSet[] reported = new HostSet[NROF_HOSTS];
+			for (int c : contacts) {
+				if (rng.nextDouble() < 0.2) {
+					continue; // no summary from this neighbour
+				}
+				reported[c] = new HostSet();
+				for (int i=0; i<NROF_HOSTS; i++) {
+					if (rng.nextDouble() < 0.15) {
+						reported[c].add(i);
+					}
+				}
+				ego.setContactsOf(hosts.get(c), reported[c]);
+			}
+
+			assertEquals(matrixBetweenness(contacts, reported),
+					ego.betweenness(), 1e-9);
+		}
+	}
+
+	/**
+	 * Ego betweenness computed with adjacency matrices the way the routers
+	 * used to compute it.
+	 */
+	private static double matrixBetweenness(List<Integer> contacts,
+			HostSet[] reported) {
+		int n = contacts.size();
+		int[][] a = new int[n][n];
+		for (int i=0; i<n; i++) {
+			for (int j=0; j<n; j++) {
+				HostSet r = reported[contacts.get(i)];
+				if (i != j && r != null && r.contains(contacts.get(j))) {
+					a[i][j] = 1;
+				}
+			}
+		}
+		double b = 0.0;
+		for (int i=0; i<n; i++) {
+			for (int j=i+1; j<n; j++) {
+				int a2 = 0;
+				for (int k=0; k<n; k++) {
+					a2 += a[i][k] * a[k][j];
+				}
+				if (a[i][j] == 0 && a2 != 0) {
+					b += 1.0 / a2;
+				}
+			}
+		}
+		return b;
+	}
+
+	private HostSet set(int... addresses) {
+		HostSet s = new HostSet();
+		for (int a : addresses) {
+			s.add(a);
+		}
+		return s;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import util.FrequencySketch;
+
+/**
+ * Tests for the frequency sketch of cache admission.
+ */
+public class FrequencySketchTest extends TestCase {
+	private static final int WIDTH = 512;
+
+	public void testFrequency() {
+		FrequencySketch s = new FrequencySketch(WIDTH, false);
+		assertEquals(0, s.frequency(1));
+		for (int i=0; i<5; i++) {
+			s.increment(1);
+		}
+		s.increment(2);
+		assertEquals(5, s.frequency(1));
+		assertEquals(1, s.frequency(2));
+		assertEquals(0, s.frequency(3));
+
+		for (int i=0; i<100; i++) {
+			s.increment(1);
+		}
+		assertEquals(FrequencySketch.MAX_COUNT, s.frequency(1));
+	}
+
+	public void testPopularKeysStandOut() {
+		FrequencySketch s = new FrequencySketch(WIDTH, false);
+		/* a few popular keys among many one-off keys */
+		for (int round=0; round<8; round++) {
+			for (int k=0; k<10; k++) {
+				s.increment(k);
+			}
+			for (int k=0; k<300; k++) {
+				s.increment(1000 + round * 300 + k);
+			}
+		}
+		for (int k=0; k<10; k++) {
+			assertTrue(s.frequency(k) >= 8);
+		}
+		int high = 0;
+		for (int k=1000; k<1000+2400; k++) {
+			if (s.frequency(k) >= 8) {
+				high++;
+			}
+		}
+		assertTrue("Too many overestimates: " + high, high < 24);
+	}
+
+	public void testAging() {
+		FrequencySketch s = new FrequencySketch(WIDTH, false);
+		for (int i=0; i<12; i++) {
+			s.increment(1);
+		}
+		assertEquals(0, s.getNrofResets());
+		/* fill up the rest of the sample with another key */
+		for (int i=12; i<10 * WIDTH; i++) {
+			s.increment(2);
+		}
+		assertEquals(1, s.getNrofResets());
+		assertEquals(6, s.frequency(1));
+	}
+
+	public void testDoorkeeper() {
+		FrequencySketch s = new FrequencySketch(WIDTH, true);
+		s.increment(1);
+		assertEquals(1, s.frequency(1)); // only in the doorkeeper
+		s.increment(1);
+		s.increment(1);
+		assertEquals(3, s.frequency(1));
+
+		for (int i=3; i<10 * WIDTH; i++) {
+			s.increment(2);
+		}
+		/* the doorkeeper is cleared and the counters halved */
+		assertEquals(1, s.frequency(1));
+	}
+}
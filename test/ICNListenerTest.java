@@ -0,0 +1,200 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.ICNEvents;
+import core.ICNListener;
+import core.Message;
+import core.MessageKind;
+import core.MessageListener;
+import core.SimClock;
+
+/**
+ * Tests that the routers inform the ICN listeners about the ICN events.
+ */
+public class ICNListenerTest extends TestCase {
+	private static final int CONTENT_ID = 5;
+	private MessageChecker checker;
+	private Recorder recorder;
+	private ICNEvents icnEvents;
+	private DTNHost requester;
+	private DTNHost cache1;
+	private DTNHost cache2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		Message.reset();
+		MessageRouter.reset();
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+
+		checker = new MessageChecker();
+		List<MessageListener> mListeners = new ArrayList<MessageListener>();
+		mListeners.add(checker);
+		TestSettings ts = new TestSettings();
+		TestUtils utils = new TestUtils(null, mListeners, ts);
+		MessageRouter proto = new EpidemicRouter(ts);
+		recorder = new Recorder();
+		icnEvents = new ICNEvents();
+		icnEvents.add(recorder);
+		proto.setICNListeners(icnEvents);
+		utils.setMessageRouterProto(proto);
+
+		requester = utils.createHost();
+		cache1 = utils.createHost();
+		cache2 = utils.createHost();
+		for (DTNHost cache : new DTNHost[] {cache1, cache2}) {
+			ArrayList<Content> contents = new ArrayList<Content>();
+			contents.add(new Content(CONTENT_ID, ContentType.Content, 0, 3600,
+					100));
+			cache.addContents(contents);
+		}
+	}
+
+	private Message newInterest() {
+		Message m = new Message(requester, null, Message.requestIdOf("M1"),
+				MessageKind.Interest, 10,
+				new Content(CONTENT_ID, ContentType.Interest, 0, 3600, 10));
+		requester.createNewMessage(m);
+		checker.next(); // the new message
+		return m;
+	}
+
+	private void transfer(Message m, DTNHost from, DTNHost to) {
+		to.receiveMessage(m, from);
+		to.messageTransferred(m.getId(), from);
+	}
+
+	/** skips the message events until the next relay event */
+	private void nextRelay() {
+		while (checker.next()) {
+			if (checker.getLastType().equals(checker.TYPE_RELAY)) {
+				return;
+			}
+		}
+		fail("No relay event");
+	}
+
+	public void testInterestMatchedFromCache() {
+		Message interest = newInterest();
+		transfer(interest, requester, cache1);
+
+		assertEquals("matched " + cache1 + " true", recorder.next());
+		assertEquals("lookup " + cache1 + " true", recorder.next());
+		assertEquals("served " + cache1 + " true", recorder.next());
+		assertNull(recorder.next());
+
+		/* the first delivery of the Interest at a cache */
+		nextRelay();
+		assertEquals(interest.getId(), checker.getLastMsg().getId());
+		assertTrue(checker.getLastFirstDelivery());
+
+		/* another copy is answered by another cache */
+		transfer(interest, requester, cache2);
+		assertEquals("matched " + cache2 + " false", recorder.next());
+		assertEquals("lookup " + cache2 + " true", recorder.next());
+		assertNull(recorder.next());
+		nextRelay();
+		assertFalse(checker.getLastFirstDelivery());
+	}
+
+	public void testContentIsStored() {
+		Message interest = newInterest();
+		transfer(interest, requester, cache1);
+		recorder.clear();
+		checker.reset();
+
+		/* the answer of the cache is stored by the requester */
+		Message data = cache1.getMessageCollection().iterator().next();
+		assertEquals(ContentType.Content, data.getContent().getContentType());
+		transfer(data, cache1, requester);
+		assertEquals("stored " + requester + " " + CONTENT_ID,
+				recorder.next());
+		assertNull(recorder.next());
+	}
+
+	public void testListenerAddedAfterHosts() {
+		/* reports are added to the scenario after the hosts are created */
+		Recorder late = new Recorder();
+		icnEvents.add(late);
+		transfer(newInterest(), requester, cache2);
+		assertEquals("matched " + cache2 + " true", late.next());
+		assertEquals("matched " + cache2 + " true", recorder.next());
+	}
+
+	public void testListenerOfOneEventType() {
+		final List<DTNHost> lookups = new ArrayList<DTNHost>();
+		icnEvents.add(new ICNListener.CacheLookup() {
+			public void cacheLookup(Message interest, DTNHost host,
+					boolean hit) {
+				lookups.add(host);
+			}
+		});
+		transfer(newInterest(), requester, cache1);
+		assertEquals(1, lookups.size());
+		assertEquals(cache1, lookups.get(0));
+		assertEquals("matched " + cache1 + " true", recorder.next());
+	}
+
+	/**
+	 * Records the ICN events as strings
+	 */
+	private static class Recorder implements ICNListener.All {
+		private List<String> events = new ArrayList<String>();
+
+		public String next() {
+			return events.isEmpty() ? null : events.remove(0);
+		}
+
+		public void clear() {
+			events.clear();
+		}
+
+		public void interestMatched(Message interest, DTNHost host,
+				boolean first) {
+			events.add("matched " + host + " " + first);
+		}
+		public void advertisementMatched(Message advert, Message interest,
+				DTNHost host, boolean first) {
+			events.add("advert " + host + " " + first);
+		}
+		public void requestServed(Message m, DTNHost host, boolean cacheHit) {
+			events.add("served " + host + " " + cacheHit);
+		}
+		public void cacheLookup(Message interest, DTNHost host, boolean hit) {
+			events.add("lookup " + host + " " + hit);
+		}
+		public void interestPending(Message interest, DTNHost host,
+				boolean aggregated) {
+			events.add("pending " + host + " " + aggregated);
+		}
+		public void pendingInterestSatisfied(Message interest, DTNHost host) {
+			events.add("satisfied " + host);
+		}
+		public void cacheDigestForward(Message interest, DTNHost host,
+				boolean hit) {
+			events.add("digest " + host + " " + hit);
+		}
+		public void admissionDecided(Content content, DTNHost host,
+				boolean admitted) {
+			events.add("admission " + host + " " + admitted);
+		}
+		public void contentStored(Content content, DTNHost host) {
+			events.add("stored " + host + " " + content.getContentId());
+		}
+		public void contentEvicted(Content content, DTNHost host) {
+			events.add("evicted " + host + " " + content.getContentId());
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.Message;
+import core.MessageKind;
+
+/**
+ * Tests for the Interest aggregation of MessageRouter.
+ */
+public class InterestAggregationTest extends AbstractRouterTest {
+	private static final int TTL = 10; // minutes
+
+	@Override
+	public void setUp() throws Exception {
+		TestSettings s = new TestSettings();
+		s.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		s.putSetting(MessageRouter.INTEREST_AGGREGATION_S, "true");
+		setRouterProto(new EpidemicRouter(s));
+		super.setUp();
+		Message.reset();
+	}
+
+	/** Transfers a replicate of a message from one host to another */
+	private void transfer(Message m, DTNHost from, DTNHost to) {
+		assertEquals(MessageRouter.RCV_OK, to.receiveMessage(m, from));
+		to.messageTransferred(m.getId(), from);
+	}
+
+	private Message interest(String request, DTNHost from, int ttl) {
+		Message m = new Message(from, null, Message.requestIdOf(request),
+				MessageKind.Interest, 10,
+				new Content(7, ContentType.Interest, 0, 0, 10));
+		m.setTtl(ttl);
+		return m;
+	}
+
+	public void testAggregatedInterestIsForwardedAfterExpiry() {
+		transfer(interest("M1", h1, TTL), h1, h2);
+		Message aggregated = interest("M2", h3, 2 * TTL);
+		transfer(aggregated, h3, h2);
+		assertTrue(h2.getRouter().hasMessage("M1_interest"));
+		assertFalse(h2.getRouter().hasMessage(aggregated.getId()));
+
+		clock.advance(TTL * 60 + 1);
+		h2.update(true);
+		assertTrue(h2.getRouter().hasMessage(aggregated.getId()));
+		/* and it's no longer blacklisted */
+		h2.deleteMessage(aggregated.getId(), false);
+		assertEquals(MessageRouter.RCV_OK, h2.receiveMessage(aggregated, h3));
+	}
+
+	public void testAggregatedInterestIsForwardedWhenForwardedIsDropped() {
+		transfer(interest("M1", h1, TTL), h1, h2);
+		Message aggregated = interest("M2", h3, TTL);
+		transfer(aggregated, h3, h2);
+
+		h2.deleteMessage("M1_interest", true);
+		h2.update(true);
+		assertTrue(h2.getRouter().hasMessage(aggregated.getId()));
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+import report.MessageContentStatsReport;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimClock;
+
+/**
+ * Tests for the statistics of MessageContentStatsReport.
+ */
+public class MessageContentStatsReportTest extends TestCase {
+	private static final int CHUNK = 300;
+	private File outFile;
+	private MessageContentStatsReport report;
+	private DTNHost h1, h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		Message.reset();
+		TestSettings ts = new TestSettings();
+		outFile = File.createTempFile("contentStatsTest", ".txt");
+		outFile.deleteOnExit();
+		ts.putSetting("MessageContentStatsReport.output",
+				outFile.getAbsolutePath());
+		report = new MessageContentStatsReport();
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+	}
+
+	private Message chunk(int index) {
+		Content c = new Content(7, ContentType.Content, 0, 3600, 1000)
+			.getChunk(index, CHUNK);
+		return new Message(h1, h2, Message.requestIdOf("M1"), index,
+				c.getSize(), c);
+	}
+
+	private String value(String name) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(outFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(name + ": ")) {
+					return line.substring(name.length() + 2);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return null;
+	}
+
+	public void testChunkedContentLatencyFromFirstChunk() throws IOException {
+		Message[] chunks = new Message[4];
+		for (int i = 0; i < chunks.length; i++) {
+			SimClock.getInstance().setTime(10 * i);
+			chunks[i] = chunk(i);
+			report.newMessage(chunks[i]);
+		}
+		SimClock.getInstance().setTime(100);
+		for (int i = 0; i < chunks.length; i++) {
+			report.messageTransferred(chunks[i], h1, h2, true);
+		}
+		report.done();
+
+		assertEquals("1", value("delivered"));
+		assertEquals(100.0, Double.parseDouble(value("latency_avg")));
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.AckTable;
+import util.LongHashMap;
+import core.DTNHost;
+import core.Message;
+import core.MessageKind;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Tests for the integer message identities and the long keyed hash map.
+ */
+public class MessageIdTest extends TestCase {
+	private DTNHost h1;
+	private DTNHost h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+		Message.reset();
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+	}
+
+	public void testKindOfId() {
+		assertEquals(MessageKind.Interest, MessageKind.of("M1_interest"));
+		assertEquals(MessageKind.Advert, MessageKind.of("M1_advert"));
+		assertEquals(MessageKind.Data, MessageKind.of("M1"));
+		assertEquals("M1", MessageKind.requestOf("M1_interest"));
+		assertEquals("M1", MessageKind.requestOf("M1_advert"));
+		assertEquals("M1", MessageKind.requestOf("M1"));
+	}
+
+	public void testKindsShareRequestId() {
+		Message interest = new Message(h1, null, "M1_interest", 10, null);
+		Message advert = new Message(h2, null, "M1_advert", 10, null);
+		Message data = new Message(h2, h1, interest.getRequestId(),
+				MessageKind.Data, 10, null);
+		Message other = new Message(h1, null, "M2_interest", 10, null);
+
+		assertEquals(interest.getRequestId(), advert.getRequestId());
+		assertEquals(interest.getRequestId(), data.getRequestId());
+		assertFalse(interest.getRequestId() == other.getRequestId());
+
+		assertFalse(interest.getIdIndex() == advert.getIdIndex());
+		assertFalse(interest.getIdIndex() == data.getIdIndex());
+		assertEquals(MessageKind.Data, data.getKind());
+		assertEquals("M1", data.getId());
+		assertEquals(data.getIdIndex(), Message.indexOf("M1"));
+	}
+
+	public void testChunkIds() {
+		int request = Message.requestIdOf("M7");
+		Message c2 = new Message(h1, h2, request, 2, 10, null);
+		Message i2 = new Message(h1, null, request, MessageKind.Interest, 2,
+				10, null);
+		assertEquals("M7" + Message.CHUNK_SEPARATOR + "2", c2.getId());
+		assertFalse(c2.getIdIndex() == i2.getIdIndex());
+		assertFalse(c2.getIdIndex() ==
+				Message.indexOf(request, MessageKind.Data));
+		assertEquals(c2.getIdIndex(), Message.lookupIndex(c2.getId()));
+		assertEquals(i2.getIdIndex(), Message.lookupIndex(i2.getId()));
+		assertEquals(-1, Message.lookupIndex(
+				"M7" + Message.CHUNK_SEPARATOR + "3"));
+
+		/* the chunks don't get request identifiers of their own */
+		assertEquals(request + 1, Message.requestIdOf("M8"));
+
+		Message byId = new Message(h1, h2,
+				"M7" + Message.CHUNK_SEPARATOR + "2", 10, null);
+		assertEquals(c2.getIdIndex(), byId.getIdIndex());
+		assertEquals(request, byId.getRequestId());
+		assertEquals(2, byId.getChunk());
+	}
+
+	public void testNumericConstructorAndLookup() {
+		assertEquals(-1, Message.lookupIndex("req_interest"));
+		int request = Message.requestIdOf("req");
+		assertEquals(Message.indexOf(request, MessageKind.Interest),
+				Message.lookupIndex("req_interest"));
+		Message m = new Message(h1, null, request, MessageKind.Interest, 10,
+				null);
+		assertEquals(m.getIdIndex(), Message.lookupIndex("req_interest"));
+		assertEquals(-1, Message.lookupIndex("unknown"));
+		assertEquals("req_interest", m.getId());
+
+		Message r = m.replicate();
+		assertEquals(m.getIdIndex(), r.getIdIndex());
+		assertEquals(MessageKind.Interest, r.getKind());
+		assertEquals(m.getId(), r.getId());
+	}
+
+	public void testProtocolIdsAreNotInterned() {
+		int before = Message.requestIdOf("before");
+		Message hello = new Message(h1, h2, "summary0", 10, null);
+		for (int i=1; i<100; i++) {
+			new Message(h1, h2, "summary" + i, 10, null);
+		}
+		/* no request identifiers were used up by the protocol messages */
+		assertEquals(before + 1, Message.requestIdOf("after"));
+
+		assertEquals(MessageKind.Protocol, hello.getKind());
+		assertEquals(-1, hello.getRequestId());
+		assertTrue(hello.getIdIndex() < -1);
+		assertEquals(hello.getIdIndex(), Message.lookupIndex("summary0"));
+		assertEquals(hello.getIdIndex(), Message.indexOf("summary0"));
+		assertFalse(hello.getIdIndex() == Message.indexOf("summary1"));
+		assertEquals("summary0", hello.replicate().getId());
+		assertEquals(hello.getIdIndex(), hello.replicate().getIdIndex());
+
+		AckTable acks = new AckTable();
+		assertFalse(acks.add(hello));
+		assertFalse(acks.contains(hello));
+
+		/* ids that only look alike are ordinary data ids */
+		assertEquals(MessageKind.Data, MessageKind.of("summary"));
+		assertEquals(MessageKind.Data, MessageKind.of("summaryX1"));
+	}
+
+	public void testLongHashMap() {
+		LongHashMap<Integer> map = new LongHashMap<Integer>();
+		Map<Long, Integer> ref = new HashMap<Long, Integer>();
+		Random rng = new Random(7);
+
+		for (int i=0; i<20000; i++) {
+			/* few distinct keys so that removals hit probe chains */
+			long key = ((long) rng.nextInt(300) << 32) | rng.nextInt(4);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(ref.remove(key), map.remove(key));
+			}
+			else {
+				assertEquals(ref.put(key, i), map.put(key, i));
+			}
+			assertEquals(ref.size(), map.size());
+		}
+		for (Map.Entry<Long, Integer> e : ref.entrySet()) {
+			assertTrue(map.containsKey(e.getKey()));
+			assertEquals(e.getValue(), map.get(e.getKey()));
+		}
+
+		int n = 0;
+		for (Integer v : map.values()) {
+			assertTrue(ref.containsValue(v));
+			n++;
+		}
+		assertEquals(ref.size(), n);
+
+		map.put(-1L, null);
+		assertTrue(map.containsKey(-1L));
+		assertNull(map.get(-1L));
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(-1L));
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.Message;
+import core.PropertyKey;
+import core.SimError;
+
+/**
+ * Tests for the typed message properties.
+ */
+public class MessagePropertyTest extends TestCase {
+	private static final PropertyKey<Integer> COPIES =
+		PropertyKey.ofInt("MessagePropertyTest.copies");
+	private static final PropertyKey<Double> WEIGHT =
+		PropertyKey.ofDouble("MessagePropertyTest.weight");
+	private static final PropertyKey<Long> BYTES =
+		PropertyKey.ofLong("MessagePropertyTest.bytes");
+	private static final PropertyKey<String> NAME =
+		PropertyKey.of("MessagePropertyTest.name");
+
+	private Message msg;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Message.reset();
+		msg = new Message(null, null, "M", 100, null);
+	}
+
+	public void testPrimitiveProperties() {
+		assertFalse(msg.hasProperty(COPIES));
+		assertNull(msg.getProperty(COPIES));
+
+		msg.updateIntProperty(COPIES, -3);
+		msg.updateDoubleProperty(WEIGHT, 0.25);
+		msg.updateLongProperty(BYTES, 1L << 40);
+		assertEquals(-3, msg.getIntProperty(COPIES));
+		assertEquals(0.25, msg.getDoubleProperty(WEIGHT), 0.0);
+		assertEquals(1L << 40, msg.getLongProperty(BYTES));
+
+		/* boxed access to the same slots */
+		assertEquals(Integer.valueOf(-3), msg.getProperty(COPIES));
+		msg.updateProperty(WEIGHT, 2.0);
+		assertEquals(2.0, msg.getDoubleProperty(WEIGHT), 0.0);
+		msg.updateProperty(WEIGHT, null);
+		assertFalse(msg.hasProperty(WEIGHT));
+
+		try {
+			msg.getDoubleProperty(WEIGHT);
+			fail("Reading a missing primitive property should fail");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testAddChecksForExistingValue() {
+		msg.addProperty(COPIES, 4);
+		msg.addProperty(NAME, "x");
+		try {
+			msg.addProperty(COPIES, 5);
+			fail("Adding a property twice should fail");
+		} catch (SimError e) {
+			// expected
+		}
+		try {
+			msg.addProperty("MessagePropertyTest.name", "y");
+			fail("Adding a property twice should fail");
+		} catch (SimError e) {
+			// expected
+		}
+		assertEquals(4, msg.getIntProperty(COPIES));
+	}
+
+	public void testStringKeysShareSlots() {
+		msg.addProperty(NAME, "typed");
+		assertEquals("typed", msg.getProperty("MessagePropertyTest.name"));
+		msg.updateProperty("MessagePropertyTest.name", "string");
+		assertEquals("string", msg.getProperty(NAME));
+
+		msg.updateIntProperty(COPIES, 7);
+		assertEquals(7, msg.getProperty("MessagePropertyTest.copies"));
+
+		assertNull(msg.getProperty("MessagePropertyTest.unknown"));
+		assertSame(NAME, PropertyKey.<String>of("MessagePropertyTest.name"));
+	}
+
+	public void testKeyTypeConflict() {
+		try {
+			PropertyKey.ofDouble("MessagePropertyTest.copies");
+			fail("Registering a name with another type should fail");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	public void testReplicatesCopyOnWrite() {
+		msg.updateIntProperty(COPIES, 8);
+		msg.addProperty(NAME, "a");
+
+		Message r1 = msg.replicate();
+		Message r2 = msg.replicate();
+		assertEquals(8, r1.getIntProperty(COPIES));
+		assertEquals("a", r2.getProperty(NAME));
+
+		r1.updateIntProperty(COPIES, 4);
+		r2.updateProperty(NAME, "b");
+		msg.updateDoubleProperty(WEIGHT, 1.5);
+
+		assertEquals(8, msg.getIntProperty(COPIES));
+		assertEquals(4, r1.getIntProperty(COPIES));
+		assertEquals(8, r2.getIntProperty(COPIES));
+		assertEquals("a", msg.getProperty(NAME));
+		assertEquals("a", r1.getProperty(NAME));
+		assertEquals("b", r2.getProperty(NAME));
+		assertFalse(r1.hasProperty(WEIGHT));
+		assertFalse(r2.hasProperty(WEIGHT));
+
+		Message r3 = new Message(null, null, "N", 10, null).replicate();
+		assertFalse(r3.hasProperty(NAME));
+	}
+}
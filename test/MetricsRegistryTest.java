@@ -0,0 +1,199 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import report.MetricsReport;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.MetricsRegistry;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Tests for the metrics registry, the metrics of the routers and interfaces
+ * and the metrics report.
+ */
+public class MetricsRegistryTest extends TestCase {
+	private MetricsRegistry registry;
+	private TestSettings ts;
+	private TestUtils utils;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		MetricsRegistry.reset();
+		registry = MetricsRegistry.getInstance();
+		ts = new TestSettings();
+		utils = new TestUtils(null, new ArrayList<MessageListener>(), ts);
+		utils.setTransmitRange(2);
+	}
+
+	public void testMetricsAreSharedByName() {
+		MetricsRegistry.Counter c = registry.counter("a_total", "A");
+		c.inc();
+		assertSame(c, registry.counter("a_total", "A"));
+		registry.counter("a_total", "A").inc(2);
+		assertEquals(3, c.getValue());
+
+		MetricsRegistry.Gauge g = registry.gauge("b", "B");
+		g.inc(5);
+		g.dec(2);
+		assertEquals(3.0, registry.gauge("b", "B").getValue());
+
+		final MetricsRegistry.Counter counter = c;
+		registry.register(new MetricsRegistry.Gauge("double_a", "2A") {
+			public double getValue() {
+				return 2 * counter.getValue();
+			}
+		});
+		c.inc();
+		assertEquals(8.0,
+				((MetricsRegistry.Gauge) registry.get("double_a")).getValue());
+		assertEquals(3, registry.getMetrics().size());
+	}
+
+	public void testInvalidMetrics() {
+		registry.counter("c_total", "C");
+		try {
+			registry.gauge("c_total", "C");
+			fail("Registering a name with another type should fail");
+		} catch (SimError e) {
+			// ok
+		}
+		try {
+			registry.counter("bad name", "D");
+			fail("Invalid name should fail");
+		} catch (SimError e) {
+			// ok
+		}
+		try {
+			registry.counter("c_total", "C").inc(-1);
+			fail("Decrementing a counter should fail");
+		} catch (SimError e) {
+			// ok
+		}
+	}
+
+	public void testHistogram() {
+		MetricsRegistry.Histogram h = registry.histogram("h_seconds", "H",
+				new double[] {1, 10});
+		h.observe(0.5);
+		h.observe(1);
+		h.observe(5);
+		h.observe(100);
+		assertEquals(2, h.getCumulativeCount(0));
+		assertEquals(3, h.getCumulativeCount(1));
+		assertEquals(4, h.getCumulativeCount(2));
+		assertEquals(4, h.getCount());
+		assertEquals(106.5, h.getSum());
+	}
+
+	public void testRouterMetrics() {
+		DTNHost h1 = utils.createHost(new Coord(0,0), "h1");
+		DTNHost h2 = utils.createHost(new Coord(1,0), "h2");
+		DTNHost h3 = utils.createHost(new Coord(2,0), "h3");
+		h1.createNewMessage(new Message(h1, h3, "M1", 10, null));
+		assertEquals(1, counter("messages_created_total"));
+		assertEquals(10.0, gauge("buffer_used_bytes"));
+
+		SimClock.getInstance().setTime(20);
+		h2.receiveMessage(h1.getMessageCollection().iterator().next(), h1);
+		h2.messageTransferred("M1", h1);
+		assertEquals(1, counter("messages_relayed_total"));
+		assertEquals(20.0, gauge("buffer_used_bytes"));
+
+		SimClock.getInstance().setTime(30);
+		h3.receiveMessage(h2.getMessageCollection().iterator().next(), h2);
+		h3.messageTransferred("M1", h2);
+		assertEquals(2, counter("messages_relayed_total"));
+		assertEquals(1, counter("messages_delivered_total"));
+		MetricsRegistry.Histogram delay = (MetricsRegistry.Histogram)
+				registry.get("message_delivery_delay_seconds");
+		assertEquals(1, delay.getCount());
+		assertEquals(30.0, delay.getSum());
+
+		h1.deleteMessage("M1", true);
+		assertEquals(1, counter("messages_dropped_total"));
+		assertEquals(10.0, gauge("buffer_used_bytes"));
+	}
+
+	public void testContactMetrics() {
+		DTNHost h1 = utils.createHost(new Coord(0,0), "h1");
+		DTNHost h2 = utils.createHost(new Coord(1,0), "h2");
+		h1.connect(h2);
+		assertEquals(1.0, gauge("contacts_active"));
+		h1.getInterfaces().get(0).destroyConnection(
+				h2.getInterfaces().get(0));
+		assertEquals(0.0, gauge("contacts_active"));
+		assertEquals(1, counter("contacts_total"));
+	}
+
+	public void testReport() throws IOException {
+		File csv = File.createTempFile("metricstest", ".csv");
+		File prom = File.createTempFile("metricstest", ".prom");
+		csv.deleteOnExit();
+		prom.deleteOnExit();
+		ts.putSetting("MetricsReport.output", csv.getAbsolutePath());
+		ts.putSetting("MetricsReport.prometheusOutput",
+				prom.getAbsolutePath());
+		ts.putSetting("MetricsReport.sampleInterval", "10");
+		MetricsReport report = new MetricsReport();
+
+		MetricsRegistry.Counter c = registry.counter("events_total", "E");
+		registry.histogram("size_bytes", "S", new double[] {100});
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 1; i <= 3; i++) {
+			SimClock.getInstance().setTime(i * 10);
+			c.inc();
+			report.updated(hosts);
+		}
+		SimClock.getInstance().setTime(35);
+		c.inc();
+		report.done();
+
+		List<String> lines = readLines(csv);
+		assertEquals("time,events_total,size_bytes_count,size_bytes_sum",
+				lines.get(0));
+		assertEquals(5, lines.size());
+		assertTrue(lines.get(1).startsWith("10"));
+		assertTrue(lines.get(1).contains(",1,0,"));
+		assertTrue(lines.get(4).contains(",4,0,"));
+
+		List<String> promLines = readLines(prom);
+		assertTrue(promLines.contains("# TYPE events_total counter"));
+		assertTrue(promLines.contains("events_total 4"));
+		assertTrue(promLines.contains("size_bytes_bucket{le=\"100\"} 0"));
+		assertTrue(promLines.contains("size_bytes_bucket{le=\"+Inf\"} 0"));
+		assertTrue(promLines.contains("size_bytes_count 0"));
+	}
+
+	private long counter(String name) {
+		return ((MetricsRegistry.Counter) registry.get(name)).getValue();
+	}
+
+	private double gauge(String name) {
+		return ((MetricsRegistry.Gauge) registry.get(name)).getValue();
+	}
+
+	private List<String> readLines(File f) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(f));
+		List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		reader.close();
+		return lines;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import routing.util.PartialTransferTable;
+import core.CBRConnection;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for resuming aborted transfers.
+ */
+public class PartialTransferTest extends TestCase {
+	private static final int SPEED = 10;
+	private SimClock clock;
+	private DTNHost h0;
+	private DTNHost h1;
+	private MessageChecker checker;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		Message.reset();
+	}
+
+	private void createHosts(boolean resume) {
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "" + SPEED);
+		checker = new MessageChecker();
+		ArrayList<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(checker);
+		TestUtils utils = new TestUtils(null, ml, ts);
+		ts.setNameSpace(null);
+		ts.putSetting(ActiveRouter.RESUME_TRANSFERS_S, "" + resume);
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+		h0 = utils.createHost();
+		h1 = utils.createHost();
+	}
+
+	private CBRConnection connect() {
+		return new CBRConnection(h0, h0.getInterfaces().get(0), h1,
+				h1.getInterfaces().get(0), SPEED);
+	}
+
+	/** Returns the replica the receiver got in the last transfer start */
+	private Message startedMessage() {
+		Message started = null;
+		while (checker.next()) {
+			if (checker.getLastType().equals(checker.TYPE_START)) {
+				started = checker.getLastMsg();
+			}
+		}
+		return started;
+	}
+
+	public void testTable() {
+		PartialTransferTable t = new PartialTransferTable(2, 100);
+		t.put(1, 10);
+		t.put(2, 20);
+		assertEquals(10, t.get(1));
+		t.put(1, 5); // the larger byte count is kept
+		assertEquals(10, t.get(1));
+
+		/* 2 is now the oldest entry and makes room for 3 */
+		assertEquals(20, t.put(3, 30));
+		assertEquals(0, t.get(2));
+		assertEquals(2, t.size());
+
+		clock.setTime(150);
+		t.put(4, 40); // the entries above have expired
+		assertEquals(0, t.get(1));
+		assertEquals(0, t.get(3));
+		assertEquals(40, t.remove(4));
+		assertEquals(0, t.size());
+	}
+
+	public void testTransferIsResumed() {
+		createHosts(true);
+		Message m = new Message(h0, h1, "M1", 1000, null);
+		h0.createNewMessage(m);
+
+		CBRConnection con = connect();
+		assertEquals(0, con.startTransfer(h0, m));
+		clock.setTime(40); // 400 bytes sent
+		assertEquals(600, con.getRemainingByteCount());
+		con.abortTransfer();
+
+		con = connect();
+		assertEquals(0, con.startTransfer(h0, m));
+		assertEquals(600, con.getRemainingByteCount());
+		assertEquals(Integer.valueOf(400),
+				startedMessage().getProperty(ActiveRouter.RESUME_OFFSET_PROP));
+		/* the sender's copies aren't changed */
+		assertFalse(m.hasProperty(ActiveRouter.RESUME_OFFSET_PROP));
+		assertFalse(con.getMessage().hasProperty(
+				ActiveRouter.RESUME_OFFSET_PROP));
+		clock.setTime(100);
+		assertTrue(con.isMessageTransferred());
+		assertEquals(600, con.getTotalBytesTransferred());
+		con.finalizeTransfer();
+	}
+
+	public void testTransferRestartsWithoutResume() {
+		createHosts(false);
+		Message m = new Message(h0, h1, "M1", 1000, null);
+		h0.createNewMessage(m);
+
+		CBRConnection con = connect();
+		con.startTransfer(h0, m);
+		clock.setTime(40);
+		con.abortTransfer();
+
+		con = connect();
+		con.startTransfer(h0, m);
+		assertEquals(1000, con.getRemainingByteCount());
+		assertFalse(startedMessage().hasProperty(
+				ActiveRouter.RESUME_OFFSET_PROP));
+	}
+}
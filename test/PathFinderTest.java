@@ -0,0 +1,191 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.map.AStarPathFinder;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import movement.map.PathCache;
+import movement.map.PathFinder;
+import movement.map.RoadGraph;
+import core.Coord;
+
+/**
+ * Tests for the A* path finder and the path cache against
+ * {@link DijkstraPathFinder}.
+ */
+public class PathFinderTest extends TestCase {
+	private static final int SIDE = 12;
+	private static final double DELTA = 0.00001;
+
+	private List<MapNode> nodes;
+	private RoadGraph graph;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		rng = new Random(42);
+		nodes = createGrid(rng);
+		graph = new RoadGraph(nodes);
+	}
+
+	/**
+	 * Creates a grid of slightly displaced nodes where some of the streets
+	 * are missing and some nodes are of type 2 (the others of type 1)
+	 */
+	private List<MapNode> createGrid(Random rng) {
+		MapNode[][] grid = new MapNode[SIDE][SIDE];
+		List<MapNode> list = new ArrayList<MapNode>();
+		for (int i = 0; i < SIDE; i++) {
+			for (int j = 0; j < SIDE; j++) {
+				MapNode n = new MapNode(new Coord(i * 10 + rng.nextDouble(),
+						j * 10 + rng.nextDouble()));
+				n.addType(rng.nextDouble() < 0.2 ? 2 : 1);
+				grid[i][j] = n;
+				list.add(n);
+			}
+		}
+		for (int i = 0; i < SIDE; i++) {
+			for (int j = 0; j < SIDE; j++) {
+				if (i + 1 < SIDE && rng.nextDouble() > 0.2) {
+					connect(grid[i][j], grid[i+1][j]);
+				}
+				if (j + 1 < SIDE && rng.nextDouble() > 0.2) {
+					connect(grid[i][j], grid[i][j+1]);
+				}
+			}
+		}
+		return list;
+	}
+
+	private void connect(MapNode a, MapNode b) {
+		a.addNeighbor(b);
+		b.addNeighbor(a);
+	}
+
+	private double length(List<MapNode> path) {
+		double len = 0;
+		for (int i = 1; i < path.size(); i++) {
+			len += path.get(i-1).getLocation().distance(
+					path.get(i).getLocation());
+		}
+		return len;
+	}
+
+	private MapNode randomNode() {
+		return nodes.get(rng.nextInt(nodes.size()));
+	}
+
+	/**
+	 * Checks that the finder gives paths as long as Dijkstra's (or none
+	 * if Dijkstra finds none) between random nodes
+	 */
+	private void checkAgainstDijkstra(PathFinder finder, int[] okTypes) {
+		DijkstraPathFinder dijkstra = new DijkstraPathFinder(okTypes);
+		for (int i = 0; i < 300; i++) {
+			MapNode from = randomNode();
+			MapNode to = randomNode();
+			List<MapNode> expected = dijkstra.getShortestPath(from, to);
+			List<MapNode> path = finder.getShortestPath(from, to);
+			assertEquals("Path from " + from + " to " + to,
+					expected.isEmpty(), path.isEmpty());
+			if (path.isEmpty()) {
+				continue;
+			}
+			assertEquals(from, path.get(0));
+			assertEquals(to, path.get(path.size() - 1));
+			assertEquals(length(expected), length(path), DELTA);
+			for (int j = 1; j < path.size(); j++) {
+				assertTrue(path.get(j-1).getNeighbors().contains(path.get(j)));
+				if (okTypes != null) {
+					assertTrue(path.get(j).isType(okTypes));
+				}
+			}
+		}
+	}
+
+	public void testAStar() {
+		checkAgainstDijkstra(new AStarPathFinder(graph, null, 0), null);
+	}
+
+	public void testAStarWithLandmarks() {
+		checkAgainstDijkstra(new AStarPathFinder(graph, null, 4), null);
+	}
+
+	public void testAStarOkMapNodes() {
+		int[] ok = {1};
+		checkAgainstDijkstra(new AStarPathFinder(graph, ok, 4), ok);
+	}
+
+	public void testDirectedEdge() {
+		MapNode a = new MapNode(new Coord(0, 0));
+		MapNode b = new MapNode(new Coord(10, 0));
+		MapNode c = new MapNode(new Coord(10, 10));
+		a.addNeighbor(b);
+		b.addNeighbor(c);
+		c.addNeighbor(a);
+		List<MapNode> list = new ArrayList<MapNode>();
+		list.add(a);
+		list.add(b);
+		list.add(c);
+		RoadGraph g = new RoadGraph(list);
+		AStarPathFinder finder = new AStarPathFinder(g, null, 2);
+
+		assertEquals(2, finder.getShortestPath(a, b).size());
+		assertEquals(3, finder.getShortestPath(b, a).size());
+		assertEquals(1, finder.getShortestPath(a, a).size());
+	}
+
+	public void testPrecomputedTrees() {
+		int[] ok = {1};
+		DijkstraPathFinder dijkstra = new DijkstraPathFinder(ok);
+		PathCache cache = new PathCache(dijkstra, graph, ok, 0);
+		List<MapNode> pois = new ArrayList<MapNode>();
+		for (int i = 0; i < 5; i++) {
+			pois.add(randomNode());
+		}
+		cache.precompute(pois);
+
+		for (MapNode poi : pois) {
+			for (int i = 0; i < 50; i++) {
+				MapNode other = randomNode();
+				/* paths from the precomputed nodes are Dijkstra's paths */
+				assertEquals(dijkstra.getShortestPath(poi, other),
+						cache.getShortestPath(poi, other));
+				List<MapNode> expected = dijkstra.getShortestPath(other, poi);
+				List<MapNode> path = cache.getShortestPath(other, poi);
+				assertEquals(expected.isEmpty(), path.isEmpty());
+				assertEquals(length(expected), length(path), DELTA);
+			}
+		}
+		assertEquals(0, cache.getMisses());
+		checkAgainstDijkstra(cache, ok);
+	}
+
+	public void testLruCache() {
+		PathCache cache = new PathCache(new AStarPathFinder(graph, null, 4),
+				graph, null, 2);
+		MapNode a = nodes.get(0);
+		MapNode b = nodes.get(nodes.size() - 1);
+		MapNode c = nodes.get(SIDE);
+
+		List<MapNode> ab = cache.getShortestPath(a, b);
+		assertSame(ab, cache.getShortestPath(a, b));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		cache.getShortestPath(a, c);
+		cache.getShortestPath(b, c); // evicts (a, b)
+		assertEquals(2, cache.size());
+		assertNotSame(ab, cache.getShortestPath(a, b));
+		assertEquals(4, cache.getMisses());
+
+		checkAgainstDijkstra(cache, null);
+	}
+}
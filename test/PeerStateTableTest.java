@@ -0,0 +1,117 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import routing.util.PeerStateTable;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Tests for the address indexed per-peer state table.
+ */
+public class PeerStateTableTest extends TestCase {
+	private static final int NROF_HOSTS = 40;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts.add(utils.createHost());
+		}
+	}
+
+	public void testPutGetRemove() {
+		PeerStateTable<String> t = new PeerStateTable<String>(2);
+		assertTrue(t.isEmpty());
+
+		t.put(hosts.get(3), "a");
+		t.put(hosts.get(30), "b"); // forces the slots to grow
+		assertEquals(2, t.size());
+		assertEquals("a", t.get(hosts.get(3)));
+		assertEquals("b", t.get(30));
+		assertNull(t.get(hosts.get(4)));
+		assertTrue(t.containsKey(hosts.get(30)));
+		assertFalse(t.containsKey(hosts.get(31)));
+		assertFalse(t.containsKey("not a host"));
+
+		assertEquals("a", t.put(hosts.get(3), "c"));
+		assertEquals(2, t.size());
+
+		assertEquals("b", t.remove(hosts.get(30)));
+		assertEquals(1, t.size());
+		assertEquals(4, t.addressLimit());
+		assertNull(t.remove(hosts.get(30)));
+	}
+
+	public void testViewsIterateInAddressOrder() {
+		PeerStateTable<Integer> t = new PeerStateTable<Integer>();
+		int[] addrs = {17, 2, 9, 35};
+		for (int a : addrs) {
+			t.put(hosts.get(a), a);
+		}
+
+		int prev = -1;
+		int count = 0;
+		for (DTNHost h : t.keySet()) {
+			assertTrue(h.getAddress() > prev);
+			assertEquals(Integer.valueOf(h.getAddress()), t.get(h));
+			prev = h.getAddress();
+			count++;
+		}
+		assertEquals(addrs.length, count);
+
+		int sum = 0;
+		for (int v : t.values()) {
+			sum += v;
+		}
+		assertEquals(17 + 2 + 9 + 35, sum);
+		assertTrue(t.keySet().contains(hosts.get(9)));
+		assertFalse(t.keySet().contains(hosts.get(10)));
+	}
+
+	public void testCopyIsIndependent() {
+		PeerStateTable<String> t = new PeerStateTable<String>();
+		t.put(hosts.get(1), "x");
+		PeerStateTable<String> copy = new PeerStateTable<String>(t);
+		copy.put(hosts.get(2), "y");
+
+		assertEquals(1, t.size());
+		assertEquals(2, copy.size());
+		assertEquals("x", copy.get(hosts.get(1)));
+	}
+
+	public void testEntrySetValueWritesThrough() {
+		PeerStateTable<String> t = new PeerStateTable<String>();
+		t.put(hosts.get(3), "a");
+		t.put(hosts.get(7), "b");
+
+		for (Map.Entry<DTNHost, String> e : t.entrySet()) {
+			assertEquals(e.getValue(), e.setValue(e.getValue() + "2"));
+		}
+		assertEquals("a2", t.get(hosts.get(3)));
+		assertEquals("b2", t.get(hosts.get(7)));
+
+		try {
+			t.entrySet().iterator().next().setValue(null);
+			fail("Null value was accepted");
+		} catch (NullPointerException e) {
+			// expected
+		}
+	}
+}
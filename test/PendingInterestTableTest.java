@@ -0,0 +1,151 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.PendingInterestTable;
+import core.Content;
+import core.ContentType;
+import core.DTNHost;
+import core.Message;
+import core.MessageKind;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the Pending Interest Table.
+ */
+public class PendingInterestTableTest extends TestCase {
+	private static final int TTL = 10; // minutes
+	private SimClock clock;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		core.NetworkInterface.reset();
+		core.DTNHost.reset();
+		Message.reset();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<4; i++) {
+			hosts.add(utils.createHost());
+		}
+	}
+
+	private Message interest(String request, DTNHost from, int contentId) {
+		Content c = new Content(contentId, ContentType.Interest,
+				SimClock.getTime(), 0, 10);
+		Message m = new Message(from, null, Message.requestIdOf(request),
+				MessageKind.Interest, 10, c);
+		m.setTtl(TTL);
+		return m;
+	}
+
+	public void testAggregation() {
+		PendingInterestTable pit = new PendingInterestTable();
+		Message i1 = interest("r1", hosts.get(0), 5);
+		Message i2 = interest("r2", hosts.get(1), 5);
+		Message i3 = interest("r3", hosts.get(2), 5);
+		Message other = interest("r4", hosts.get(3), 6);
+
+		assertTrue(pit.add(i1));
+		assertTrue(pit.add(i1.replicate())); // the forwarded one again
+		assertFalse(pit.add(i2));
+		assertFalse(pit.add(i2.replicate()));
+		assertFalse(pit.add(i3));
+		assertTrue(pit.add(other));
+		assertEquals(2, pit.size());
+		assertTrue(pit.contains(5));
+
+		List<Message> pending = pit.remove(5);
+		assertEquals(3, pending.size());
+		assertSame(i1, pending.get(0));
+		assertSame(i2, pending.get(1));
+		assertSame(i3, pending.get(2));
+		assertFalse(pit.contains(5));
+		assertTrue(pit.remove(5).isEmpty());
+
+		/* after the content has passed, the next Interest is forwarded */
+		assertTrue(pit.add(interest("r5", hosts.get(0), 5)));
+	}
+
+	public void testEntriesExpireWithForwardedInterest() {
+		PendingInterestTable pit = new PendingInterestTable();
+		pit.add(interest("r1", hosts.get(0), 5));
+		clock.setTime(TTL * 60 / 2);
+		assertFalse(pit.add(interest("r2", hosts.get(1), 5)));
+		pit.add(interest("r3", hosts.get(1), 6));
+
+		clock.setTime(TTL * 60 + 1);
+		assertFalse(pit.contains(5));
+		assertTrue(pit.contains(6));
+		assertTrue(pit.add(interest("r4", hosts.get(2), 5)));
+		assertEquals(2, pit.size());
+	}
+
+	public void testExpiryOutOfInsertionOrder() {
+		PendingInterestTable pit = new PendingInterestTable();
+		Message longLived = interest("r1", hosts.get(0), 5);
+		longLived.setTtl(TTL * 2);
+		pit.add(longLived);
+		pit.add(interest("r2", hosts.get(1), 6));
+		Message aggregated = interest("r3", hosts.get(2), 6);
+		aggregated.setTtl(TTL * 2);
+		assertFalse(pit.add(aggregated));
+
+		/* the entry behind a live one expires too */
+		clock.setTime(TTL * 60 + 1);
+		assertTrue(pit.contains(5));
+		assertFalse(pit.contains(6));
+		List<Message> released = pit.expire();
+		assertEquals(1, released.size());
+		assertSame(aggregated, released.get(0));
+		assertEquals(1, pit.size());
+		assertTrue(pit.expire().isEmpty());
+	}
+
+	public void testRenewedEntryKeepsAggregatedInterests() {
+		PendingInterestTable pit = new PendingInterestTable();
+		pit.add(interest("r1", hosts.get(0), 5));
+		Message aggregated = interest("r2", hosts.get(1), 5);
+		aggregated.setTtl(TTL * 2);
+		pit.add(aggregated);
+
+		clock.setTime(TTL * 60 + 1);
+		Message renewed = interest("r3", hosts.get(2), 5);
+		assertTrue(pit.add(renewed));
+		List<Message> pending = pit.remove(5);
+		assertEquals(2, pending.size());
+		assertSame(renewed, pending.get(0));
+		assertSame(aggregated, pending.get(1));
+	}
+
+	public void testRelease() {
+		PendingInterestTable pit = new PendingInterestTable();
+		Message forwarded = interest("r1", hosts.get(0), 5);
+		pit.add(forwarded);
+		Message aggregated = interest("r2", hosts.get(1), 5);
+		pit.add(aggregated);
+
+		pit.release(aggregated); // not the forwarded one
+		assertTrue(pit.contains(5));
+		pit.release(forwarded);
+		assertFalse(pit.contains(5));
+		List<Message> released = pit.expire();
+		assertEquals(1, released.size());
+		assertSame(aggregated, released.get(0));
+		assertEquals(0, pit.size());
+	}
+}
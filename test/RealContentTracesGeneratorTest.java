@@ -0,0 +1,114 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+import input.RealContentTracesGenerator;
+import core.SimError;
+
+/**
+ * Tests for the popularity trace based content generator.
+ */
+public class RealContentTracesGeneratorTest extends TestCase {
+	private File trace;
+	private File cache;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		trace = File.createTempFile("popularity", ".txt");
+		cache = new File(trace.getPath()
+				+ RealContentTracesGenerator.CACHE_SUFFIX);
+		PrintWriter out = new PrintWriter(new FileWriter(trace));
+		out.println("a|4:58|1000|x");
+		out.println("b|1:00|50|x"); // too few views
+		out.println("c|9:56|3000|x");
+		out.println("d|0:30|6000");
+		out.println("e|1:02:00|200|x");
+		out.close();
+	}
+
+	protected void tearDown() throws Exception {
+		trace.delete();
+		cache.delete();
+		super.tearDown();
+	}
+
+	public void testRanking() {
+		RealContentTracesGenerator g = newGenerator(10);
+		assertEquals(4, g.getNrofContents());
+		/* d (6000), c (3000), a (1000), e (200) */
+		assertEquals(size(30), g.getSize(1));
+		assertEquals(size(596), g.getSize(2));
+		assertEquals(size(298), g.getSize(3));
+		assertEquals(size(3720), g.getSize(4));
+
+		int[] counts = new int[5];
+		for (int i=0; i<10200; i++) {
+			counts[g.next()]++;
+		}
+		assertEquals(6000, counts[1], 300);
+		assertEquals(3000, counts[2], 250);
+		assertEquals(1000, counts[3], 150);
+		assertEquals(200, counts[4], 70);
+	}
+
+	public void testLimit() {
+		RealContentTracesGenerator g = newGenerator(2);
+		assertEquals(2, g.getNrofContents());
+		/* c (3000), a (1000) */
+		assertEquals(size(596), g.getSize(1));
+	}
+
+	public void testCache() throws IOException {
+		newGenerator(10);
+		assertTrue(cache.isFile());
+		long modified = trace.lastModified();
+
+		/* the cache is used as long as the trace stays the same */
+		PrintWriter out = new PrintWriter(new FileWriter(trace));
+		out.println("a|4:58|1000|x");
+		out.println("b|1:00|500|x"); // same length, now enough views
+		out.println("c|9:56|3000|");
+		out.println("d|0:30|6000");
+		out.println("e|1:02:00|200|x");
+		out.close();
+		trace.setLastModified(modified);
+		assertEquals(4, newGenerator(10).getNrofContents());
+
+		/* but not for a different number of contents */
+		assertEquals(3, newGenerator(3).getNrofContents());
+
+		trace.setLastModified(modified + 10000);
+		RealContentTracesGenerator g = newGenerator(10);
+		assertEquals(5, g.getNrofContents());
+		assertEquals(size(60), g.getSize(4));
+	}
+
+	public void testInvalidTrace() throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(trace));
+		out.println("a|1:00|lots|x");
+		out.close();
+		try {
+			newGenerator(10);
+			fail("Invalid view count should not be accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	/** @return Size of an item of the given length (seconds) */
+	private static int size(int length) {
+		return (int)Math.round(length / (4.97 * 60) * 8.4 * 1000000);
+	}
+
+	private RealContentTracesGenerator newGenerator(int nrofContents) {
+		return new RealContentTracesGenerator(trace.getPath(), nrofContents,
+				1);
+	}
+}
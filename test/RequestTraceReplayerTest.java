@@ -0,0 +1,104 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+import input.ExternalEvent;
+import input.MessageCreateEvent;
+import input.MessageEventGenerator;
+import input.RequestTraceReplayer;
+import core.SimError;
+
+/**
+ * Tests for replaying request traces.
+ */
+public class RequestTraceReplayerTest extends TestCase {
+	private File trace;
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		trace = File.createTempFile("requests", ".txt");
+		ts = new TestSettings();
+		ts.setNameSpace("Events1");
+		ts.putSetting(MessageEventGenerator.MESSAGE_SIZE_S, "500");
+		ts.putSetting(MessageEventGenerator.CONTENT_SIZE_S, "10");
+		ts.putSetting(MessageEventGenerator.MESSAGE_INTEREST_SIZE, "10");
+		ts.putSetting(MessageEventGenerator.MESSAGE_INTERVAL_S, "1");
+		ts.putSetting(MessageEventGenerator.HOST_RANGE_S, "0,100");
+		ts.putSetting(MessageEventGenerator.MESSAGE_ID_PREFIX_S, "R");
+		ts.putSetting(MessageEventGenerator.PERCENT_SUBSCRIBER, "0.5");
+		ts.putSetting(MessageEventGenerator.PERCENT_PUBLISHER, "1");
+		ts.putSetting(MessageEventGenerator.ZIPF_ALPHA, "0.8");
+		ts.putSetting(RequestTraceReplayer.TRACE_FILE_S, trace.getPath());
+	}
+
+	protected void tearDown() throws Exception {
+		trace.delete();
+		super.tearDown();
+	}
+
+	private void writeTrace(String... lines) throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(trace));
+		for (String line : lines) {
+			out.println(line);
+		}
+		out.close();
+	}
+
+	public void testReplay() throws IOException {
+		writeTrace("# time requester content size",
+				"1000.5 3 7 2000",
+				"",
+				"1002,  3, 12",
+				"1010 alice 10 100");
+		ts.putSetting(RequestTraceReplayer.TIME_SCALE_S, "2");
+		RequestTraceReplayer r = new RequestTraceReplayer(ts);
+
+		assertEquals(0.0, r.nextEventsTime());
+		MessageCreateEvent e = (MessageCreateEvent)r.nextEvent();
+		assertEquals(0.0, e.getTime());
+		assertEquals(7, e.getContentId());
+		assertEquals(2000, e.getSize());
+		assertTrue(e.toString().contains("[3->3]"));
+
+		assertEquals(3.0, r.nextEventsTime());
+		e = (MessageCreateEvent)r.nextEvent();
+		assertEquals(2, e.getContentId()); // folded into 1...10
+		assertEquals(500, e.getSize()); // from the size setting
+
+		e = (MessageCreateEvent)r.nextEvent();
+		assertEquals(19.0, e.getTime());
+		assertEquals(10, e.getContentId());
+
+		assertEquals(Double.MAX_VALUE, r.nextEventsTime());
+		ExternalEvent end = r.nextEvent();
+		assertEquals(Double.MAX_VALUE, end.getTime());
+	}
+
+	public void testTimeRange() throws IOException {
+		writeTrace("5 1 1", "10 1 2", "20 1 3", "21 1 4");
+		ts.putSetting(MessageEventGenerator.MESSAGE_TIME_S, "100,110");
+		RequestTraceReplayer r = new RequestTraceReplayer(ts);
+		assertEquals(100.0, r.nextEvent().getTime());
+		assertEquals(105.0, r.nextEvent().getTime());
+		assertEquals(Double.MAX_VALUE, r.nextEventsTime());
+	}
+
+	public void testOutOfOrder() throws IOException {
+		writeTrace("5 1 1", "4 1 2");
+		RequestTraceReplayer r = new RequestTraceReplayer(ts);
+		try {
+			r.nextEvent();
+			fail("Requests out of time order should not be accepted");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.SimProfiler;
+
+/**
+ * Tests for the profiler of the world updates.
+ */
+public class SimProfilerTest extends TestCase {
+	private static final int ARRAY_SIZE = 1 << 20;
+	private static Object sink;
+
+	public void testPhases() {
+		SimProfiler p = new SimProfiler(false);
+		p.enter(SimProfiler.MOVEMENT);
+		sink = new byte[ARRAY_SIZE];
+		busyWait(2000000);
+		p.enter(SimProfiler.ROUTING);
+		busyWait(1000000);
+		p.updateDone();
+		busyWait(1000000); // not in any phase
+
+		assertTrue(p.getNanos(SimProfiler.MOVEMENT) >= 2000000);
+		assertTrue(p.getNanos(SimProfiler.ROUTING) >= 1000000);
+		assertEquals(0, p.getNanos(SimProfiler.EVENTS));
+		if (p.isAllocationMeasured()) {
+			assertTrue(p.getAllocatedBytes(SimProfiler.MOVEMENT) >=
+					ARRAY_SIZE);
+			assertTrue(p.getAllocatedBytes(SimProfiler.ROUTING) <
+					ARRAY_SIZE);
+		}
+	}
+
+	public void testSummaries() {
+		SimProfiler p = new SimProfiler(false);
+		p.enter(SimProfiler.EVENTS);
+		busyWait(1000000);
+		p.updateDone();
+		String first = p.intervalSummary();
+		assertTrue(first.contains("events"));
+		assertTrue(first.contains("100.0%"));
+
+		p.enter(SimProfiler.LISTENERS);
+		busyWait(1000000);
+		p.updateDone();
+		String second = p.intervalSummary();
+		String[] lines = second.split("\\r?\\n");
+		assertEquals(SimProfiler.PHASE_NAMES.length + 1, lines.length);
+		assertTrue(lines[1 + SimProfiler.LISTENERS].contains("100.0%"));
+		assertFalse(p.totalSummary().contains("100.0%"));
+	}
+
+	private static void busyWait(long nanos) {
+		long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end) {
+			// wait
+		}
+	}
+}
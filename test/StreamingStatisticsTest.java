@@ -0,0 +1,97 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.StreamingStatistics;
+
+/**
+ * Tests for the streaming summary statistics of the reports.
+ */
+public class StreamingStatisticsTest extends TestCase {
+
+	public void testEmpty() {
+		StreamingStatistics s = new StreamingStatistics();
+		assertEquals(0, s.getCount());
+		assertTrue(Double.isNaN(s.getMean()));
+		assertTrue(Double.isNaN(s.getVariance()));
+		assertTrue(Double.isNaN(s.getMedian()));
+		assertTrue(Double.isNaN(s.getMin()));
+	}
+
+	public void testMoments() {
+		StreamingStatistics s = new StreamingStatistics();
+		double[] values = {2, 4, 4, 4, 5, 5, 7, 9};
+		for (double v : values) {
+			s.add(v);
+		}
+		assertEquals(8, s.getCount());
+		assertEquals(5.0, s.getMean(), 1e-12);
+		assertEquals(4.0, s.getVariance(), 1e-12);
+		assertEquals(2.0, s.getStdDev(), 1e-12);
+		assertEquals(2.0, s.getMin());
+		assertEquals(9.0, s.getMax());
+	}
+
+	public void testMomentsAreStable() {
+		/* a large offset ruins the naive sum of squares */
+		StreamingStatistics s = new StreamingStatistics();
+		for (int i=0; i<1000; i++) {
+			s.add(1e9 + (i % 2));
+		}
+		assertEquals(0.25, s.getVariance(), 1e-6);
+	}
+
+	public void testQuantiles() {
+		Random rng = new Random(3);
+		StreamingStatistics s = new StreamingStatistics();
+		List<Double> values = new ArrayList<Double>();
+		for (int i=0; i<20000; i++) {
+			/* long tail from milliseconds to days */
+			double v = Math.exp(rng.nextGaussian() * 3 + 5);
+			s.add(v);
+			values.add(v);
+		}
+		Collections.sort(values);
+		double[] qs = {0, 0.1, 0.5, 0.9, 0.99, 1};
+		for (double q : qs) {
+			double exact = values.get(Math.min(values.size() - 1,
+					(int)(q * values.size())));
+			assertEquals("q=" + q, exact, s.getQuantile(q),
+					exact * StreamingStatistics.DEF_ACCURACY);
+		}
+	}
+
+	public void testSmallIntegers() {
+		StreamingStatistics s = new StreamingStatistics();
+		int[] hops = {0, 0, 1, 1, 1, 2, 3, 5};
+		for (int h : hops) {
+			s.add(h);
+		}
+		assertEquals(1, Math.round(s.getMedian())); // same as sorted[n/2]
+		assertEquals(0.0, s.getQuantile(0));
+		assertEquals(5.0, s.getQuantile(1), 5 * StreamingStatistics.DEF_ACCURACY);
+		assertEquals(3, Math.round(s.getQuantile(0.8)));
+	}
+
+	public void testInvalidArguments() {
+		try {
+			new StreamingStatistics(0);
+			fail("Accuracy 0 should not be accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new StreamingStatistics().getQuantile(1.5);
+			fail("Quantile 1.5 should not be accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -5,6 +5,7 @@
 package test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 
 import movement.MovementModel;
@@ -13,6 +14,7 @@ import routing.PassiveRouter;
 import core.ConnectionListener;
 import core.Coord;
 import core.DTNHost;
+import core.DTNSim;
 import core.MessageListener;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
@@ -48,6 +50,8 @@ public class TestUtils {
 		this.mr = new PassiveRouter(settings);
 
 		this.comBus = new ModuleCommunicationBus();
+		/* normally created by DTNSim.main */
+		DTNSim.allAvailableInterfaces = new HashSet<NetworkInterface>();
 	}
 
 	public void setMessageRouterProto(MessageRouter mr) {
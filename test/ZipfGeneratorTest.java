@@ -0,0 +1,207 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+import input.ZipfGenerator;
+
+/**
+ * Tests for the Zipf generator. The draws are compared against the table
+ * based (cumulative probability map) sampler the generator used before.
+ */
+public class ZipfGeneratorTest extends TestCase {
+	private static final int DRAWS = 200000;
+	/* chi-square critical values at p = 0.001 for 9, 19 and 49 degrees
+	 * of freedom */
+	private static final double CHI2_9 = 27.88;
+	private static final double CHI2_19 = 43.82;
+	private static final double CHI2_49 = 85.35;
+
+	public void testRange() {
+		ZipfGenerator z = new ZipfGenerator(5, 1.2, 1);
+		for (int i=0; i<10000; i++) {
+			int v = z.next();
+			assertTrue("Value out of range: " + v, v >= 1 && v <= 5);
+		}
+		z = new ZipfGenerator(1, 0.8, 1);
+		assertEquals(1, z.next());
+	}
+
+	public void testInvalidParameters() {
+		try {
+			new ZipfGenerator(0, 1.0);
+			fail("Empty range should not be accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new ZipfGenerator(10, -0.5);
+			fail("Negative skew should not be accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testSeeding() {
+		ZipfGenerator a = new ZipfGenerator(1000, 0.8, 42);
+		ZipfGenerator b = new ZipfGenerator(1000, 0.8, 42);
+		ZipfGenerator c = new ZipfGenerator(1000, 0.8, 43);
+		boolean differs = false;
+		for (int i=0; i<1000; i++) {
+			int v = a.next();
+			assertEquals(v, b.next());
+			differs |= (v != c.next());
+		}
+		assertTrue(differs);
+	}
+
+	public void testExactProbabilities() {
+		int size = 20;
+		double[] skews = {0.0, 0.2, 1.0, 1.2, 2.5};
+		for (double skew : skews) {
+			long[] counts = draw(new ZipfGenerator(size, skew, 7), size);
+			double chi2 = chiSquare(counts, probabilities(size, skew));
+			assertTrue("skew " + skew + ": chi2 " + chi2, chi2 < CHI2_19);
+		}
+	}
+
+	public void testConformanceWithTableSampler() {
+		int size = 1000;
+		double[] skews = {0.2, 0.6, 1.0, 1.2};
+		for (double skew : skews) {
+			long[] counts = draw(new ZipfGenerator(size, skew, 3), size);
+			long[] reference = draw(new TableSampler(size, skew, 3), size);
+			double chi2 = twoSampleChiSquare(bin(counts, 10),
+					bin(reference, 10));
+			assertTrue("skew " + skew + ": chi2 " + chi2, chi2 < CHI2_9);
+
+			/* the most popular items individually */
+			long[] head = new long[50];
+			long[] refHead = new long[50];
+			System.arraycopy(counts, 1, head, 0, head.length);
+			System.arraycopy(reference, 1, refHead, 0, refHead.length);
+			chi2 = twoSampleChiSquare(head, refHead);
+			assertTrue("skew " + skew + ": head chi2 " + chi2,
+					chi2 < CHI2_49);
+		}
+	}
+
+	public void testLargeCatalog() {
+		ZipfGenerator z = new ZipfGenerator(1000000, 1.0, 5);
+		long ones = 0;
+		for (int i=0; i<DRAWS; i++) {
+			int v = z.next();
+			assertTrue(v >= 1 && v <= 1000000);
+			if (v == 1) {
+				ones++;
+			}
+		}
+		/* P(1) = 1 / H(1000000) ~ 0.0695 */
+		double p = (1.0 * ones) / DRAWS;
+		assertEquals(0.0695, p, 0.003);
+	}
+
+	private interface Sampler {
+		int next();
+	}
+
+	private static long[] draw(final ZipfGenerator z, int size) {
+		return draw(new Sampler() {
+			public int next() {
+				return z.next();
+			}
+		}, size);
+	}
+
+	/** @return Counts of the values indexed by the value (index 0 unused) */
+	private static long[] draw(Sampler z, int size) {
+		long[] counts = new long[size + 1];
+		for (int i=0; i<DRAWS; i++) {
+			counts[z.next()]++;
+		}
+		return counts;
+	}
+
+	private static double[] probabilities(int size, double skew) {
+		double[] p = new double[size + 1];
+		double div = 0;
+		for (int i=1; i<=size; i++) {
+			div += 1 / Math.pow(i, skew);
+		}
+		for (int i=1; i<=size; i++) {
+			p[i] = (1 / Math.pow(i, skew)) / div;
+		}
+		return p;
+	}
+
+	private static double chiSquare(long[] counts, double[] p) {
+		double chi2 = 0;
+		for (int i=1; i<counts.length; i++) {
+			double expected = p[i] * DRAWS;
+			double d = counts[i] - expected;
+			chi2 += d * d / expected;
+		}
+		return chi2;
+	}
+
+	/**
+	 * Chi-square statistic of two equally large samples being from the same
+	 * distribution.
+	 */
+	private static double twoSampleChiSquare(long[] a, long[] b) {
+		double chi2 = 0;
+		for (int i=0; i<a.length; i++) {
+			if (a[i] + b[i] > 0) {
+				double d = a[i] - b[i];
+				chi2 += d * d / (a[i] + b[i]);
+			}
+		}
+		return chi2;
+	}
+
+	/** Sums the value counts into bins of equal value ranges */
+	private static long[] bin(long[] counts, int nrofBins) {
+		long[] bins = new long[nrofBins];
+		int size = counts.length - 1;
+		for (int i=1; i<=size; i++) {
+			bins[(int)((i - 1L) * nrofBins / size)] += counts[i];
+		}
+		return bins;
+	}
+
+	/**
+	 * The cumulative probability map sampler ZipfGenerator used to have.
+	 */
+	private static class TableSampler implements Sampler {
+		private Random random;
+		private NavigableMap<Double, Integer> map;
+
+		TableSampler(int size, double skew, long seed) {
+			this.random = new Random(seed);
+			this.map = new TreeMap<Double, Integer>();
+			double div = 0;
+			for (int i = 1; i <= size; i++) {
+				div += (1 / Math.pow(i, skew));
+			}
+			double sum = 0;
+			for (int i = 1; i <= size; i++) {
+				double p = (1.0d / Math.pow(i, skew)) / div;
+				sum += p;
+				map.put(sum, i - 1);
+			}
+		}
+
+		public int next() {
+			/* rounding may leave the last sum just under 1.0 */
+			Map.Entry<Double, Integer> e =
+				map.ceilingEntry(random.nextDouble());
+			return (e == null ? map.lastEntry() : e).getValue() + 1;
+		}
+	}
+}
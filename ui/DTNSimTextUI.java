@@ -5,9 +5,12 @@
 package ui;
 
 import core.SimClock;
+import core.SimProfiler;
 
 /**
- * Simple text-based user interface.
+ * Simple text-based user interface. If profiling is enabled (see
+ * {@link SimProfiler}), the time and allocations of the phases of the
+ * updates are printed with every UI update and for the whole run at the end.
  */
 public class DTNSimTextUI extends DTNSimUI {
 	private long lastUpdateRt;	// real time of last ui update
@@ -43,6 +46,11 @@ public class DTNSimTextUI extends DTNSimUI {
 		this.update(true); // force final UI update
 
 		print("Simulation done in " + String.format("%.2f", duration) + "s");
+		SimProfiler profiler = world.getProfiler();
+		if (profiler != null) {
+			print("Profile of the run:");
+			print(profiler.totalSummary());
+		}
 
 	}
 
@@ -61,6 +69,10 @@ public class DTNSimTextUI extends DTNSimUI {
 			double ssps = ((SimClock.getTime() - lastUpdate)*1000) / diff;
 			print(String.format("%.1f %d: %.2f 1/s", dur,
 					SimClock.getIntTime(),ssps));
+			SimProfiler profiler = world.getProfiler();
+			if (profiler != null) {
+				print(profiler.intervalSummary());
+			}
 
 			this.lastUpdateRt = System.currentTimeMillis();
 			this.lastUpdate = SimClock.getTime();
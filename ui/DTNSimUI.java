@@ -9,6 +9,7 @@ import java.util.Vector;
 import report.Report;
 import core.ApplicationListener;
 import core.ConnectionListener;
+import core.ICNListener;
 import core.MessageListener;
 import core.MovementListener;
 import core.Settings;
@@ -154,6 +155,9 @@ public abstract class DTNSimUI {
 		if (r instanceof ApplicationListener) {
 			scen.addApplicationListener((ApplicationListener)r);
 		}
+		if (r instanceof ICNListener) {
+			scen.addICNListener((ICNListener)r);
+		}
 
 		this.reports.add(r);
 	}
@@ -0,0 +1,190 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter over integer keys (e.g., content ids). The filter answers
+ * "might contain" queries with no false negatives and a false positive rate
+ * that depends on the number of bits, the number of hash functions and the
+ * number of keys added. Filters of the same geometry can be combined with
+ * {@link #or(BloomFilter)} to summarize the union of their key sets.
+ * <P>
+ * The k bit positions of a key are derived from two hashes of the key
+ * (Kirsch-Mitzenmacher double hashing), so adding or querying a key does
+ * not allocate.
+ */
+public class BloomFilter {
+
+    private final long[] words;
+    private final int nrofBits;
+    private final int nrofHashes;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param nrofBits Number of bits in the filter (rounded up to a multiple
+     * of 64)
+     * @param nrofHashes Number of hash functions (bits set per key)
+     */
+    public BloomFilter(int nrofBits, int nrofHashes) {
+        if (nrofBits < 1 || nrofHashes < 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size " +
+                    nrofBits + " bits, " + nrofHashes + " hashes");
+        }
+        this.words = new long[(nrofBits + 63) >>> 6];
+        this.nrofBits = this.words.length << 6;
+        this.nrofHashes = nrofHashes;
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param f The filter to copy
+     */
+    public BloomFilter(BloomFilter f) {
+        this.words = Arrays.copyOf(f.words, f.words.length);
+        this.nrofBits = f.nrofBits;
+        this.nrofHashes = f.nrofHashes;
+    }
+
+    /**
+     * Returns the i:th bit position of a key.
+     *
+     * @param key The key
+     * @param i Index of the hash function
+     * @param nrofBits Number of positions
+     * @return The position in range [0, nrofBits)
+     */
+    static int position(int key, int i, int nrofBits) {
+        long h = (key + 1) * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 29);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1; // odd, so that all positions differ
+        return ((h1 + i * h2) & Integer.MAX_VALUE) % nrofBits;
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key The key
+     */
+    public void add(int key) {
+        for (int i = 0; i < nrofHashes; i++) {
+            int p = position(key, i, nrofBits);
+            words[p >>> 6] |= 1L << p;
+        }
+    }
+
+    /**
+     * Returns true if the key might have been added to the filter, false if
+     * it was certainly not added.
+     *
+     * @param key The key
+     * @return True if all the bits of the key are set
+     */
+    public boolean mightContain(int key) {
+        for (int i = 0; i < nrofHashes; i++) {
+            int p = position(key, i, nrofBits);
+            if ((words[p >>> 6] & (1L << p)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the keys of another filter to this filter.
+     *
+     * @param f The other filter; must have the same number of bits and hashes
+     * @throws IllegalArgumentException if the filters have different sizes
+     */
+    public void or(BloomFilter f) {
+        if (f.nrofBits != nrofBits || f.nrofHashes != nrofHashes) {
+            throw new IllegalArgumentException("Can't combine Bloom filters " +
+                    "of different sizes");
+        }
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= f.words[i];
+        }
+    }
+
+    /**
+     * Sets the bit at a position. Used by filters that derive a plain Bloom
+     * filter from their own state.
+     *
+     * @param position The bit position
+     */
+    void setBit(int position) {
+        words[position >>> 6] |= 1L << position;
+    }
+
+    /**
+     * Removes all keys from the filter.
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * Returns true if no key has been added to the filter.
+     *
+     * @return True if all bits are clear
+     */
+    public boolean isEmpty() {
+        for (long w : words) {
+            if (w != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of set bits.
+     *
+     * @return The number of set bits
+     */
+    public int cardinality() {
+        int n = 0;
+        for (long w : words) {
+            n += Long.bitCount(w);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of bits in the filter.
+     *
+     * @return The number of bits
+     */
+    public int getNrofBits() {
+        return this.nrofBits;
+    }
+
+    /**
+     * Returns the number of hash functions of the filter.
+     *
+     * @return The number of hashes
+     */
+    public int getNrofHashes() {
+        return this.nrofHashes;
+    }
+
+    /**
+     * Returns the size of the filter when sent over a connection.
+     *
+     * @return The size in bytes
+     */
+    public int getSize() {
+        return this.nrofBits / 8;
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilter(" + nrofBits + " bits, " + nrofHashes +
+                " hashes, " + cardinality() + " set)";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Counting Bloom filter over integer keys. Each position has a small counter
+ * instead of a bit, so keys can also be removed. This is used to keep a
+ * digest of a set that changes over time (like a content store) without
+ * rebuilding it; {@link #toBloomFilter()} gives the plain Bloom filter that
+ * is sent to other nodes.
+ * <P>
+ * Counters are 8 bits wide and saturate: a counter that has reached the
+ * maximum is never decremented again, which keeps the filter free of false
+ * negatives at the cost of a few permanently set positions.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 0xFF;
+
+    private final byte[] counters;
+    private final int nrofHashes;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param nrofBits Number of positions (rounded up to a multiple of 64 so
+     * that the filter maps to a {@link BloomFilter} of the same geometry)
+     * @param nrofHashes Number of hash functions
+     */
+    public CountingBloomFilter(int nrofBits, int nrofHashes) {
+        if (nrofBits < 1 || nrofHashes < 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size " +
+                    nrofBits + " bits, " + nrofHashes + " hashes");
+        }
+        this.counters = new byte[((nrofBits + 63) >>> 6) << 6];
+        this.nrofHashes = nrofHashes;
+    }
+
+    /**
+     * Adds a key to the filter. Adding the same key twice requires removing
+     * it twice.
+     *
+     * @param key The key
+     */
+    public void add(int key) {
+        for (int i = 0; i < nrofHashes; i++) {
+            int p = BloomFilter.position(key, i, counters.length);
+            int c = counters[p] & 0xFF;
+            if (c < MAX_COUNT) {
+                counters[p] = (byte) (c + 1);
+            }
+        }
+    }
+
+    /**
+     * Removes a key that was earlier added to the filter. Removing a key
+     * that was not added may cause false negatives for other keys.
+     *
+     * @param key The key
+     */
+    public void remove(int key) {
+        for (int i = 0; i < nrofHashes; i++) {
+            int p = BloomFilter.position(key, i, counters.length);
+            int c = counters[p] & 0xFF;
+            if (c > 0 && c < MAX_COUNT) {
+                counters[p] = (byte) (c - 1);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the key might be in the filter, false if it certainly
+     * is not.
+     *
+     * @param key The key
+     * @return True if all the counters of the key are non-zero
+     */
+    public boolean mightContain(int key) {
+        for (int i = 0; i < nrofHashes; i++) {
+            if (counters[BloomFilter.position(key, i, counters.length)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a plain Bloom filter with the same keys.
+     *
+     * @return A new Bloom filter that has the bits of the non-zero counters
+     * set
+     */
+    public BloomFilter toBloomFilter() {
+        BloomFilter f = new BloomFilter(counters.length, nrofHashes);
+        for (int p = 0; p < counters.length; p++) {
+            if (counters[p] != 0) {
+                f.setBit(p);
+            }
+        }
+        return f;
+    }
+
+    /**
+     * Returns the number of positions (bits of the plain filter).
+     *
+     * @return The number of positions
+     */
+    public int getNrofBits() {
+        return counters.length;
+    }
+
+    /**
+     * Returns the number of hash functions of the filter.
+     *
+     * @return The number of hashes
+     */
+    public int getNrofHashes() {
+        return this.nrofHashes;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Count-min sketch that estimates how often integer keys (e.g., content ids)
+ * have been seen recently, for TinyLFU style cache admission (G. Einziger,
+ * R. Friedman and B. Manes: "TinyLFU: A Highly Efficient Cache Admission
+ * Policy", 2017). Each key has a small saturating counter in each of
+ * {@value #DEPTH} rows and its estimate is the smallest of them.
+ * <P>
+ * The sketch ages: after a sample of 10 times its width increments all the
+ * counters are halved, so that the estimates follow changes in popularity.
+ * Optionally, a doorkeeper Bloom filter absorbs the first occurrence of each
+ * key in a sample so that one-off keys don't take counter space.
+ */
+public class FrequencySketch {
+    /** Number of counter rows (hash functions) */
+    public static final int DEPTH = 4;
+    /** Largest value of a counter */
+    public static final int MAX_COUNT = 15;
+
+    private final byte[] counters;
+    private final int width;
+    private final int sampleSize;
+    private final BloomFilter doorkeeper;
+    private int additions;
+    private int nrofResets;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param width Number of counters per row; should be about the number of
+     * keys whose frequency matters (e.g., the cache capacity in items)
+     * @param doorkeeper If true, a doorkeeper filter is used
+     */
+    public FrequencySketch(int width, boolean doorkeeper) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Invalid sketch width " +
+                    width);
+        }
+        this.width = width;
+        this.counters = new byte[DEPTH * width];
+        this.sampleSize = 10 * width;
+        /* 8 bits per key of a sample keep false positives at about 3% */
+        this.doorkeeper = doorkeeper ? new BloomFilter(8 * sampleSize, 3)
+                : null;
+    }
+
+    /**
+     * Records an occurrence of a key.
+     *
+     * @param key The key
+     */
+    public void increment(int key) {
+        if (++additions >= sampleSize) {
+            reset();
+        }
+        if (doorkeeper != null && !doorkeeper.mightContain(key)) {
+            doorkeeper.add(key);
+            return;
+        }
+        for (int i = 0; i < DEPTH; i++) {
+            int p = i * width + BloomFilter.position(key, i, width);
+            if (counters[p] < MAX_COUNT) {
+                counters[p]++;
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent occurrences of a key.
+     *
+     * @param key The key
+     * @return The estimate, at most {@link #MAX_COUNT} (+1 with a doorkeeper)
+     */
+    public int frequency(int key) {
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            int p = i * width + BloomFilter.position(key, i, width);
+            min = Math.min(min, counters[p]);
+        }
+        if (doorkeeper != null && doorkeeper.mightContain(key)) {
+            min++;
+        }
+        return min;
+    }
+
+    /**
+     * Halves all the counters and clears the doorkeeper.
+     */
+    private void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>= 1;
+        }
+        if (doorkeeper != null) {
+            doorkeeper.clear();
+        }
+        additions = 0;
+        nrofResets++;
+    }
+
+    /**
+     * Returns the number of counters per row.
+     *
+     * @return The width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns how many times the counters have been halved.
+     *
+     * @return The number of resets
+     */
+    public int getNrofResets() {
+        return nrofResets;
+    }
+}
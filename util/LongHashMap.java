@@ -0,0 +1,251 @@
+/*
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive <code>long</code> keys. Keys are kept in an open
+ * addressing table with linear probing, so lookups do not box the key or
+ * allocate entry objects. Removal shifts the following entries back instead
+ * of leaving tombstones. Null values are allowed.
+ *
+ * @param <V> Type of the values
+ */
+public class LongHashMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    /** true for the slots that hold an entry */
+    private boolean[] used;
+    private int size;
+    private int mask;
+    /** number of structural modifications, for fail-fast iteration */
+    private int modCount;
+
+    /**
+     * Creates an empty map.
+     */
+    public LongHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Returns the slot of the key or -1 if the key is not in the map.
+     */
+    private int find(long key) {
+        for (int i = slot(key); used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of a key or null if the key is not in the map.
+     *
+     * @param key The key
+     * @return The value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = find(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    /**
+     * Returns true if the map contains the key.
+     *
+     * @param key The key
+     * @return True if there is a value for the key
+     */
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Stores a value for a key.
+     *
+     * @param key The key
+     * @param value The value
+     * @return The previous value of the key or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int i = slot(key);
+        for (; used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        used[i] = true;
+        size++;
+        modCount++;
+        if (size > keys.length * LOAD_FACTOR) {
+            rehash(2 * keys.length);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key
+     * @return The removed value or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        V old = (V) values[i];
+        size--;
+        modCount++;
+
+        /* move back the entries of the probe sequence that follows the
+         * removed slot so that lookups don't stop at the hole */
+        int hole = i;
+        for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        used[hole] = false;
+        values[hole] = null;
+        return old;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the map has no entries.
+     *
+     * @return True if the map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+        modCount++;
+    }
+
+    /**
+     * Returns a read-only view of the values. The view reflects later
+     * changes to the map, but iterating it while the map is changed throws
+     * {@link ConcurrentModificationException}.
+     *
+     * @return The values of the map
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int j = slot(oldKeys[i]);
+                while (used[j]) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+                used[j] = true;
+                size++;
+            }
+        }
+    }
+
+    private class ValueIterator implements Iterator<V> {
+        private int next;
+        private final int expectedModCount;
+
+        ValueIterator() {
+            this.expectedModCount = modCount;
+            this.next = advance(0);
+        }
+
+        private int advance(int from) {
+            while (from < used.length && !used[from]) {
+                from++;
+            }
+            return from;
+        }
+
+        public boolean hasNext() {
+            return next < used.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) values[next];
+            next = advance(next + 1);
+            return value;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}